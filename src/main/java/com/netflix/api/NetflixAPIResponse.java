@@ -39,6 +39,26 @@ public class NetflixAPIResponse
 	 */
 	private String executionSummary;
 	
+	/**
+	 * Set by a response handler that stopped reading the body early.
+	 */
+	private volatile boolean remainingBodyDiscarded;
+	
+	/**
+	 * Tells the client that the handler streaming this response will not
+	 * read the rest of its body, so the connection is closed instead of
+	 * being drained for reuse.  Worth it when much of the body is left.
+	 */
+	public void discardRemainingBody()
+	{
+		this.remainingBodyDiscarded = true;
+	}
+	
+	public boolean isRemainingBodyDiscarded()
+	{
+		return this.remainingBodyDiscarded;
+	}
+	
 	public String getResponseBody() throws IOException
 	{
 		return this.responseBody;
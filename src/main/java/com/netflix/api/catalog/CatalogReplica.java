@@ -0,0 +1,395 @@
+package com.netflix.api.catalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.EndpointFamily;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.paging.ItemConsumer;
+import com.netflix.api.decoder.IndexParser;
+import com.netflix.api.decoder.StaxCatalogDecoder;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.ResourceIds;
+import com.netflix.api.model.ResultPage;
+import com.netflix.api.utils.SnapshotFile;
+
+/**
+ * A local copy of the catalog, built from the full index
+ * (<code>APIEndpoints.INDEX_URI</code>), so that title lookups by
+ * <code>MOVIE_URI</code> or <code>SERIES_URI</code> resource ID are answered
+ * without a call to the API. <br />
+ * Readers always see one complete <code>CatalogSnapshot</code>, which holds
+ * its titles in <code>TitleColumns</code> rather than as
+ * <code>CatalogTitle</code>s, so the catalog takes a fraction of the heap
+ * and every lookup decodes a new copy.  A refresh builds the next snapshot
+ * beside the current one and swaps it in with a single volatile write, so
+ * lookups never wait and never see a half built catalog. <br />
+ * Each title is kept with a hash of its bytes in the index.  A refresh has
+ * the parser hash every title of the new index before decoding it, and
+ * carries over any title whose hash has not changed without decoding it:
+ * its encoded row is copied from the current columns, translating only
+ * dictionary codes.  Only changed and added titles are decoded, each for
+ * as long as it takes to add its row, so a refresh never holds the catalog
+ * as objects; a snapshot loaded from a file has no columns yet, so its
+ * first refresh decodes the carried over titles from the file too.
+ * A snapshot can be saved to a <code>SnapshotFile</code> and loaded at
+ * startup by mapping the file, without decoding its titles, so a restarted
+ * node answers lookups at once and refreshes from the API later.
+ * Refreshes run one at a time; lookups are thread safe.
+ */
+public class CatalogReplica
+{
+	private static final Logger logger = LoggerFactory.getLogger(CatalogReplica.class);
+
+	private final IndexParser parser;
+
+	private final StaxCatalogDecoder decoder = new StaxCatalogDecoder();
+
+	private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+
+	private final List<ChangeListener> listeners = new CopyOnWriteArrayList<ChangeListener>();
+
+	/**
+	 * @param executor - parses index chunks during refreshes.
+	 * @param parallelism - chunks to parse at once.
+	 */
+	public CatalogReplica(ExecutorService executor, int parallelism)
+	{
+		this(new IndexParser(executor, parallelism));
+	}
+
+	/**
+	 * @param parser - reads the index files the replica is refreshed from.
+	 */
+	public CatalogReplica(IndexParser parser)
+	{
+		this.parser = parser;
+	}
+
+	/**
+	 * @return the current version of the catalog; empty until the first refresh.
+	 */
+	public CatalogSnapshot getSnapshot()
+	{
+		return this.snapshot;
+	}
+
+	/**
+	 * @param listener - told of every title each later refresh adds,
+	 * changes or removes.
+	 */
+	public void addChangeListener(ChangeListener listener)
+	{
+		this.listeners.add(listener);
+	}
+
+	public void removeChangeListener(ChangeListener listener)
+	{
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * @param id - a numeric title ID.
+	 * @return the title, or null if the replica does not hold it.
+	 */
+	public CatalogTitle getTitle(long id)
+	{
+		return this.snapshot.getTitle(id);
+	}
+
+	/**
+	 * @param uri - a title resource URI, e.g. <code>APIEndpoints.MOVIE_URI + "/70075473"</code>.
+	 * @return the title, or null if the URI is not a title's or the replica does not hold it.
+	 */
+	public CatalogTitle getTitle(String uri)
+	{
+		long id = titleId(uri);
+		return id < 0 ? null : this.snapshot.getTitle(id);
+	}
+
+	/**
+	 * Looks a title up locally, and asks the API only if the replica does
+	 * not hold it, such as a title added since the last refresh.
+	 * @param client - makes the consumer signed call on a miss.
+	 * @param uri - a title resource URI.
+	 * @return the title, or null if the API does not know it either.
+	 * @throws Exception - if the call to the API fails.
+	 */
+	public CatalogTitle getTitle(NetflixAPIClient client, String uri) throws Exception
+	{
+		CatalogTitle title = this.getTitle(uri);
+		if (title != null)
+			return title;
+		APIRequest request = APIRequest.consumerSigned(uri, null, NetflixAPIClient.GET_METHOD_TYPE);
+		ResultPage<CatalogTitle> page = client.execute(request, this.decoder.titlesHandler());
+		return page.getItems().isEmpty() ? null : page.getItems().get(0);
+	}
+
+	/**
+	 * Downloads the index to the given file, resuming any partial download,
+	 * then refreshes from it.
+	 * @param client
+	 * @param index - where to keep the downloaded index.
+	 * @return what changed.
+	 * @throws Exception - if the index cannot be downloaded or parsed; the
+	 * current snapshot is kept.
+	 */
+	public Report refresh(NetflixAPIClient client, File index) throws Exception
+	{
+		client.downloadIndex(index, null);
+		return this.refresh(index);
+	}
+
+	/**
+	 * Builds a snapshot from the given index and makes it current.
+	 * @param index - an index file, as written by <code>IndexDownloader</code>.
+	 * @return what changed.
+	 * @throws Exception - if the index cannot be parsed; the current snapshot is kept.
+	 */
+	public synchronized Report refresh(File index) throws Exception
+	{
+		long start = System.nanoTime();
+		final CatalogSnapshot current = this.snapshot;
+		final TitleColumns.Builder next = new TitleColumns.Builder(current.size());
+		final Report report = new Report();
+
+		this.parser.parse(index, new IndexParser.TitleSelector()
+		{
+			public boolean decode(long id, long hash)
+			{
+				// unchanged bytes make an unchanged title
+				return !current.holds(id, hash);
+			}
+		}, new ItemConsumer<IndexParser.IndexedTitle>()
+		{
+			public void accept(IndexParser.IndexedTitle indexed)
+			{
+				long id = indexed.getId();
+				if (id < 0)
+				{
+					report.skipped++;
+					return;
+				}
+				// a changed title is decoded only for as long as it takes to add its row
+				if (indexed.getTitle() != null)
+					next.add(id, indexed.getTitle(), indexed.getHash());
+				else current.copyTo(next, id);
+			}
+		});
+
+		TitleColumns columns = next.build();
+		// counted once every duplicate has had its say
+		for (int row = 0; row < columns.size(); row++)
+		{
+			long id = columns.getId(row);
+			if (!current.contains(id))
+				report.added++;
+			else if (current.holds(id, columns.getHash(row)))
+				report.unchanged++;
+			else report.changed++;
+		}
+		report.duplicates = next.size() - columns.size();
+		report.removed = current.size() - report.unchanged - report.changed;
+		report.titles = columns.size();
+		CatalogSnapshot published = new CatalogSnapshot(columns, System.currentTimeMillis());
+		this.snapshot = published;
+		if (!this.listeners.isEmpty())
+			this.notifyChanges(current, published);
+		report.elapsedNanos = System.nanoTime() - start;
+		if (logger.isInfoEnabled())
+			logger.info("Refreshed catalog replica from " + index + ": " + report);
+		return report;
+	}
+
+	/**
+	 * Saves the current snapshot for <code>load</code>.
+	 * @param file - replaced once the snapshot is completely written.
+	 * @throws IOException
+	 */
+	public void save(File file) throws IOException
+	{
+		CatalogSnapshot snapshot = this.snapshot;
+		long start = System.nanoTime();
+		new SnapshotFile.Writer().addSection(MappedTitles.SECTION, MappedTitles.VERSION, MappedTitles.encode(snapshot))
+			.write(file);
+		if (logger.isInfoEnabled())
+			logger.info("Saved " + snapshot.size() + " titles to " + file + " in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+	}
+
+	/**
+	 * Makes a saved snapshot current.  Its titles are read from the mapped
+	 * file as they are looked up, until the next refresh replaces it; that
+	 * refresh compares content hashes as usual, so only titles changed since
+	 * the save are reported to listeners.
+	 * @param file - as written by <code>save</code>.
+	 * @return the loaded snapshot, or null if the file holds no titles in the
+	 * layout this version reads, in which case the current one is kept.
+	 * @throws IOException - if the file cannot be read or is corrupt.
+	 */
+	public synchronized CatalogSnapshot load(File file) throws IOException
+	{
+		long start = System.nanoTime();
+		ByteBuffer section = SnapshotFile.open(file).getSection(MappedTitles.SECTION, MappedTitles.VERSION);
+		if (section == null)
+		{
+			logger.warn(file + " holds no catalog of version " + MappedTitles.VERSION);
+			return null;
+		}
+		CatalogSnapshot current = this.snapshot;
+		CatalogSnapshot loaded = new CatalogSnapshot(new MappedTitles(section));
+		this.snapshot = loaded;
+		if (!this.listeners.isEmpty())
+			this.notifyChanges(current, loaded);
+		if (logger.isInfoEnabled())
+			logger.info("Loaded " + loaded.size() + " titles from " + file + " in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+		return loaded;
+	}
+
+	/**
+	 * Tells the listeners what differs between two snapshots: a title whose
+	 * hash differs has changed.
+	 */
+	private void notifyChanges(CatalogSnapshot previous, CatalogSnapshot current)
+	{
+		for (long id : current.getIds())
+		{
+			if (!previous.holds(id, current.getHash(id)))
+				this.notifyChange(id, previous.getTitle(id), current.getTitle(id));
+		}
+		for (long id : previous.getIds())
+		{
+			if (!current.contains(id))
+				this.notifyChange(id, previous.getTitle(id), null);
+		}
+	}
+
+	private void notifyChange(long id, CatalogTitle previous, CatalogTitle current)
+	{
+		for (ChangeListener listener : this.listeners)
+		{
+			try
+			{
+				listener.titleChanged(id, previous, current);
+			}
+			catch (RuntimeException e)
+			{
+				logger.warn("Catalog change listener failed for title " + id, e);
+			}
+		}
+	}
+
+	/**
+	 * @return the numeric ID of a title resource URI, or -1 for other URIs.
+	 */
+	static long titleId(String uri)
+	{
+		if (EndpointFamily.forUri(uri) != EndpointFamily.CATALOG_TITLE)
+			return -1;
+		return ResourceIds.numericId(uri);
+	}
+
+	/**
+	 * Receives the titles a refresh changed, after the new snapshot is
+	 * published, on the refreshing thread.
+	 */
+	public interface ChangeListener
+	{
+		/**
+		 * @param id - the numeric title ID.
+		 * @param previous - the title before, or null if it was added.
+		 * @param current - the title now, or null if it was removed.
+		 */
+		void titleChanged(long id, CatalogTitle previous, CatalogTitle current);
+	}
+
+	/**
+	 * What a refresh changed.
+	 */
+	public static class Report
+	{
+		private int titles;
+
+		private int added;
+
+		private int changed;
+
+		private int unchanged;
+
+		private int removed;
+
+		private int skipped;
+
+		private int duplicates;
+
+		private long elapsedNanos;
+
+		/**
+		 * @return titles in the new snapshot.
+		 */
+		public int getTitles()
+		{
+			return titles;
+		}
+
+		public int getAdded()
+		{
+			return added;
+		}
+
+		public int getChanged()
+		{
+			return changed;
+		}
+
+		/**
+		 * @return titles whose current record was kept.
+		 */
+		public int getUnchanged()
+		{
+			return unchanged;
+		}
+
+		public int getRemoved()
+		{
+			return removed;
+		}
+
+		/**
+		 * @return index entries without a numeric ID, which were left out.
+		 */
+		public int getSkipped()
+		{
+			return skipped;
+		}
+
+		/**
+		 * @return index entries for an ID already seen; the last one wins.
+		 */
+		public int getDuplicates()
+		{
+			return duplicates;
+		}
+
+		public long getElapsedNanos()
+		{
+			return elapsedNanos;
+		}
+
+		public String toString()
+		{
+			return this.titles + " titles (" + this.added + " added, " + this.changed + " changed, " + this.unchanged
+				+ " unchanged, " + this.removed + " removed) in " + this.elapsedNanos / 1000000 + "ms";
+		}
+	}
+
+}
@@ -0,0 +1,285 @@
+package com.netflix.api.catalog;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.netflix.api.client.APIEndpoints;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.decoder.StaxCatalogDecoder;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Person;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Answers title and people searches - the <code>term</code> searches of
+ * <code>APIEndpoints.CATALOG_URI</code> and <code>PEOPLE_URI</code> - without
+ * the consumer signed call where it can. <br />
+ * Titles are searched in a local <code>TextIndex</code> that follows a
+ * <code>CatalogReplica</code>: it is built from the current snapshot, then
+ * updated title by title as refreshes add, change and remove titles.  The
+ * API is called only when the index has no match.  Local results rank by
+ * relevance and may differ from the API's order. <br />
+ * There is no index of all people, so a local match could never tell
+ * whether the API knows better ones.  People searches go to the API, and
+ * its pages are cached by query for a time to live, the least recently
+ * used dropped past a capacity.  Thread safe.
+ */
+public class CatalogSearch implements CatalogReplica.ChangeListener
+{
+	/**
+	 * People search pages kept, unless given.
+	 */
+	public static final int DEFAULT_PEOPLE_PAGES = 10000;
+
+	/**
+	 * How long a people search page is used, unless given.
+	 */
+	public static final long DEFAULT_PEOPLE_TIME_TO_LIVE_MILLIS = 60 * 60 * 1000L;
+
+	private final CatalogReplica replica;
+
+	private final TextIndex titles = new TextIndex();
+
+	private final long peopleTimeToLiveMillis;
+
+	/**
+	 * Query to the API's page, least recently used first.  Guarded by itself.
+	 */
+	private final Map<String, CachedPage> people;
+
+	private final StaxCatalogDecoder decoder = new StaxCatalogDecoder();
+
+	private final AtomicLong localSearches = new AtomicLong();
+
+	private final AtomicLong fallbacks = new AtomicLong();
+
+	/**
+	 * Indexes the replica's titles and follows its refreshes.
+	 * @param replica
+	 */
+	public CatalogSearch(CatalogReplica replica)
+	{
+		this(replica, DEFAULT_PEOPLE_PAGES, DEFAULT_PEOPLE_TIME_TO_LIVE_MILLIS);
+	}
+
+	/**
+	 * Indexes the replica's titles and follows its refreshes.
+	 * @param replica
+	 * @param peoplePages - the most people search pages to keep.
+	 * @param peopleTimeToLiveMillis - how long a people search page is used.
+	 */
+	public CatalogSearch(CatalogReplica replica, final int peoplePages, long peopleTimeToLiveMillis)
+	{
+		if (peoplePages < 1)
+			throw new IllegalArgumentException("People pages must be positive: " + peoplePages);
+		this.peopleTimeToLiveMillis = peopleTimeToLiveMillis;
+		this.people = new LinkedHashMap<String, CachedPage>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest)
+			{
+				return size() > peoplePages;
+			}
+		};
+		this.replica = replica;
+		replica.addChangeListener(this);
+		CatalogSnapshot snapshot = replica.getSnapshot();
+		for (long id : snapshot.getIds())
+			this.titleChanged(id, null, snapshot.getTitle(id));
+	}
+
+	/**
+	 * Stops following the replica.
+	 */
+	public void close()
+	{
+		this.replica.removeChangeListener(this);
+	}
+
+	public void titleChanged(long id, CatalogTitle previous, CatalogTitle current)
+	{
+		if (current == null)
+			this.titles.remove(id);
+		else if (previous == null || !same(previous.getRegularTitle(), current.getRegularTitle())
+			|| !same(previous.getShortTitle(), current.getShortTitle()))
+			this.titles.put(id, current.getRegularTitle(), shortTitle(current));
+	}
+
+	/**
+	 * Searches titles by name, as <code>APIEndpoints.CATALOG_URI?term=...</code> does.
+	 * @param client - searches the API when nothing matches locally.
+	 * @param term - terms and quoted phrases.
+	 * @param maxResults
+	 * @return the best matches, best first.
+	 * @throws Exception - if the call to the API fails.
+	 */
+	public ResultPage<CatalogTitle> searchTitles(NetflixAPIClient client, String term, int maxResults) throws Exception
+	{
+		TextIndex.Result result = this.titles.search(term, maxResults);
+		CatalogSnapshot snapshot = this.replica.getSnapshot();
+		ResultPage<CatalogTitle> page = page(result, maxResults);
+		for (long id : result.getIds())
+		{
+			CatalogTitle title = snapshot.getTitle(id);
+			if (title != null)
+				page.addItem(title);
+		}
+		if (!page.getItems().isEmpty())
+		{
+			this.localSearches.incrementAndGet();
+			return page;
+		}
+		this.fallbacks.incrementAndGet();
+		return client.execute(request(APIEndpoints.CATALOG_URI, term, maxResults), this.decoder.titlesHandler());
+	}
+
+	/**
+	 * Searches people by name, as <code>APIEndpoints.PEOPLE_URI?term=...</code>
+	 * does.  The API's page is cached for later searches with the same term,
+	 * ignoring case and whitespace.
+	 * @param client - searches the API when the page is not cached.
+	 * @param term - terms and quoted phrases.
+	 * @param maxResults
+	 * @return the API's matches, in its order.
+	 * @throws Exception - if the call to the API fails.
+	 */
+	public ResultPage<Person> searchPeople(NetflixAPIClient client, String term, int maxResults) throws Exception
+	{
+		String key = key(term, maxResults);
+		long now = System.currentTimeMillis();
+		CachedPage cached;
+		synchronized (this.people)
+		{
+			cached = this.people.get(key);
+		}
+		if (cached != null && now - cached.fetchedMillis < this.peopleTimeToLiveMillis)
+		{
+			this.localSearches.incrementAndGet();
+			return copy(cached.page);
+		}
+		this.fallbacks.incrementAndGet();
+		ResultPage<Person> fetched = client.execute(request(APIEndpoints.PEOPLE_URI, term, maxResults),
+			this.decoder.peopleHandler());
+		synchronized (this.people)
+		{
+			this.people.put(key, new CachedPage(copy(fetched), now));
+		}
+		return fetched;
+	}
+
+	/**
+	 * Drops the cached people searches that returned a person, e.g. once it
+	 * is known to have changed.
+	 * @param id - the person's numeric ID.
+	 */
+	public void removePerson(long id)
+	{
+		synchronized (this.people)
+		{
+			for (Iterator<CachedPage> pages = this.people.values().iterator(); pages.hasNext();)
+			{
+				for (Person person : pages.next().page.getItems())
+				{
+					if (person.getNumericId() == id)
+					{
+						pages.remove();
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	public TextIndex getTitleIndex()
+	{
+		return titles;
+	}
+
+	/**
+	 * @return searches answered from the title index or the cached people pages.
+	 */
+	public long getLocalSearches()
+	{
+		return localSearches.get();
+	}
+
+	/**
+	 * @return searches that went to the API.
+	 */
+	public long getFallbacks()
+	{
+		return fallbacks.get();
+	}
+
+	private static <T> ResultPage<T> page(TextIndex.Result result, int maxResults)
+	{
+		ResultPage<T> page = new ResultPage<T>();
+		page.setNumberOfResults(result.getCount());
+		page.setStartIndex(0);
+		page.setResultsPerPage(maxResults);
+		return page;
+	}
+
+	private static <T> ResultPage<T> copy(ResultPage<T> page)
+	{
+		ResultPage<T> copy = new ResultPage<T>();
+		copy.setNumberOfResults(page.getNumberOfResults());
+		copy.setStartIndex(page.getStartIndex());
+		copy.setResultsPerPage(page.getResultsPerPage());
+		for (T item : page.getItems())
+			copy.addItem(item);
+		return copy;
+	}
+
+	/**
+	 * @return the request as sent, so queries share a page only if they
+	 * differ just in case or whitespace; the API matches anything else,
+	 * even a different word ending, differently.
+	 */
+	private static String key(String term, int maxResults)
+	{
+		String normalized = term == null ? "" : term.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ENGLISH);
+		return maxResults + " " + normalized;
+	}
+
+	private static APIRequest request(String uri, String term, int maxResults)
+	{
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("term", term);
+		parameters.put("max_results", String.valueOf(maxResults));
+		return APIRequest.consumerSigned(uri, parameters, NetflixAPIClient.GET_METHOD_TYPE);
+	}
+
+	/**
+	 * @return the short title if it adds anything to the regular one.
+	 */
+	private static String shortTitle(CatalogTitle title)
+	{
+		return same(title.getShortTitle(), title.getRegularTitle()) ? null : title.getShortTitle();
+	}
+
+	private static boolean same(String a, String b)
+	{
+		return a == null ? b == null : a.equals(b);
+	}
+
+	private static class CachedPage
+	{
+		final ResultPage<Person> page;
+
+		final long fetchedMillis;
+
+		CachedPage(ResultPage<Person> page, long fetchedMillis)
+		{
+			this.page = page;
+			this.fetchedMillis = fetchedMillis;
+		}
+	}
+
+}
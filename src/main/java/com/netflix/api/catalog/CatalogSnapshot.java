@@ -0,0 +1,161 @@
+package com.netflix.api.catalog;
+
+import com.netflix.api.model.CatalogTitle;
+
+/**
+ * One immutable version of a <code>CatalogReplica</code>: every title of
+ * the index it was built from, by numeric ID. <br />
+ * A snapshot never changes once published, so a reader that needs several
+ * lookups to agree with each other should take one snapshot and make them
+ * all against it.  Its titles are held in <code>TitleColumns</code>, or,
+ * for a snapshot loaded from a saved file, read from the mapped file as
+ * they are looked up; either way each lookup returns a new copy.  A loaded
+ * snapshot builds its columns from the file the first time they are asked
+ * for, e.g. by a <code>TitleIndex</code>.
+ */
+public class CatalogSnapshot
+{
+	static final CatalogSnapshot EMPTY = new CatalogSnapshot(new TitleColumns.Builder(0).build(), 0);
+
+	/**
+	 * Null until first asked for if the snapshot was loaded from a file.
+	 */
+	private volatile TitleColumns columns;
+
+	/**
+	 * The saved titles, instead of the columns; null unless loaded from a file.
+	 */
+	private final MappedTitles mapped;
+
+	private final long createdMillis;
+
+	CatalogSnapshot(TitleColumns columns, long createdMillis)
+	{
+		this.columns = columns;
+		this.mapped = null;
+		this.createdMillis = createdMillis;
+	}
+
+	CatalogSnapshot(MappedTitles mapped)
+	{
+		this.columns = null;
+		this.mapped = mapped;
+		this.createdMillis = mapped.getCreatedMillis();
+	}
+
+	/**
+	 * @param id - a numeric title ID, e.g. 70075473.
+	 * @return a new copy of the title, or null if it is not in the snapshot.
+	 */
+	public CatalogTitle getTitle(long id)
+	{
+		if (this.mapped != null)
+		{
+			int index = this.mapped.find(id);
+			return index < 0 ? null : this.mapped.getTitle(index);
+		}
+		return this.columns.getTitle(id);
+	}
+
+	/**
+	 * @return the numeric IDs of every title, in order.
+	 */
+	public long[] getIds()
+	{
+		if (this.mapped != null)
+			return this.mapped.getIds();
+		return this.columns.getIds();
+	}
+
+	public int size()
+	{
+		return this.mapped != null ? this.mapped.size() : this.columns.size();
+	}
+
+	/**
+	 * @return the titles, for a <code>TitleIndex</code>; built from the file
+	 * on the first call if the snapshot was loaded from one.
+	 */
+	public TitleColumns getColumns()
+	{
+		TitleColumns columns = this.columns;
+		if (columns != null)
+			return columns;
+		synchronized (this)
+		{
+			if (this.columns == null)
+			{
+				long[] ids = this.mapped.getIds();
+				TitleColumns.Builder builder = new TitleColumns.Builder(ids.length);
+				for (int index = 0; index < ids.length; index++)
+					builder.add(ids[index], this.mapped.getTitle(index), this.mapped.getHash(index));
+				this.columns = builder.build();
+			}
+			return this.columns;
+		}
+	}
+
+	/**
+	 * @return when the snapshot was built, or 0 for the empty one.
+	 */
+	public long getCreatedMillis()
+	{
+		return createdMillis;
+	}
+
+	/**
+	 * @return whether the snapshot holds the title.
+	 */
+	boolean contains(long id)
+	{
+		if (this.mapped != null)
+			return this.mapped.find(id) >= 0;
+		return this.columns.getRow(id) >= 0;
+	}
+
+	/**
+	 * @return whether the snapshot holds the title, with the given hash.
+	 */
+	boolean holds(long id, long hash)
+	{
+		if (this.mapped != null)
+		{
+			int index = this.mapped.find(id);
+			return index >= 0 && this.mapped.getHash(index) == hash;
+		}
+		int row = this.columns.getRow(id);
+		return row >= 0 && this.columns.getHash(row) == hash;
+	}
+
+	/**
+	 * Adds the title to a builder, copying its encoded row if the snapshot
+	 * has columns, or decoding it from the file if not.
+	 * @param id - a title in the snapshot.
+	 */
+	void copyTo(TitleColumns.Builder builder, long id)
+	{
+		TitleColumns columns = this.columns;
+		if (columns != null)
+		{
+			builder.copy(columns, columns.getRow(id));
+			return;
+		}
+		int index = this.mapped.find(id);
+		builder.add(id, this.mapped.getTitle(index), this.mapped.getHash(index));
+	}
+
+	/**
+	 * @return the hash of the title's bytes in the index, or 0 if it is not in the snapshot.
+	 */
+	long getHash(long id)
+	{
+		if (this.mapped != null)
+		{
+			int index = this.mapped.find(id);
+			return index < 0 ? 0 : this.mapped.getHash(index);
+		}
+		int row = this.columns.getRow(id);
+		return row < 0 ? 0 : this.columns.getHash(row);
+	}
+
+}
@@ -0,0 +1,317 @@
+package com.netflix.api.catalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Link;
+import com.netflix.api.utils.StringDictionary;
+
+/**
+ * The titles of a saved <code>CatalogSnapshot</code>, read in place from
+ * the section of a mapped <code>SnapshotFile</code> that holds them. <br />
+ * Nothing is decoded up front: a lookup binary searches the sorted IDs and
+ * decodes only the title it finds.  The section holds, one after the other:
+ * <ul>
+ * <li>when the snapshot was built, the title count, the string count and
+ * how many strings more than one title holds;</li>
+ * <li>the sorted numeric IDs, a long each;</li>
+ * <li>the hash of each title's bytes in the index it was refreshed from;</li>
+ * <li>where each title's record starts;</li>
+ * <li>where each distinct string starts, then the strings in UTF-8, those
+ * held by more than one title first;</li>
+ * <li>the records, an int per value: string codes, year, running time,
+ * rating bits, and counted lists of genres, formats and links.</li>
+ * </ul>
+ * Strings held by more than one title, such as genres, link relations and
+ * people, are decoded once and shared; the rest are decoded for each
+ * lookup.  Thread safe.
+ */
+class MappedTitles
+{
+	static final String SECTION = "catalog.titles";
+
+	/**
+	 * Bumped whenever the layout above, or what it holds, changes.
+	 */
+	static final int VERSION = 2;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int IDS_AT = 24;
+
+	private final ByteBuffer buffer;
+
+	private final long createdMillis;
+
+	private final int size;
+
+	/**
+	 * Decoded shared strings, by code; filled in as they are first read.
+	 * Racing readers may each decode one, which is harmless.
+	 */
+	private final String[] shared;
+
+	private final int hashesAt;
+
+	private final int recordOffsetsAt;
+
+	private final int stringOffsetsAt;
+
+	private final int stringsAt;
+
+	private final int recordsAt;
+
+	/**
+	 * @param buffer - the section, as <code>encode</code> wrote it.
+	 */
+	MappedTitles(ByteBuffer buffer)
+	{
+		this.buffer = buffer;
+		this.createdMillis = buffer.getLong(0);
+		this.size = buffer.getInt(8);
+		int strings = buffer.getInt(12);
+		this.shared = new String[buffer.getInt(16) + 1];
+		this.hashesAt = IDS_AT + this.size * 8;
+		this.recordOffsetsAt = this.hashesAt + this.size * 8;
+		this.stringOffsetsAt = this.recordOffsetsAt + this.size * 4;
+		this.stringsAt = this.stringOffsetsAt + (strings + 1) * 4;
+		this.recordsAt = this.stringsAt + buffer.getInt(this.stringOffsetsAt + strings * 4);
+	}
+
+	/**
+	 * @return the snapshot's titles laid out as a section.
+	 */
+	static byte[] encode(CatalogSnapshot snapshot) throws IOException
+	{
+		long[] ids = snapshot.getIds();
+		Arrays.sort(ids);
+		// number the strings several titles hold first, so readers can keep them
+		Map<String, Integer> holders = new HashMap<String, Integer>();
+		for (long id : ids)
+		{
+			for (String value : strings(snapshot.getTitle(id)))
+			{
+				Integer count = holders.get(value);
+				holders.put(value, count == null ? 1 : count + 1);
+			}
+		}
+		StringDictionary strings = new StringDictionary();
+		for (Map.Entry<String, Integer> holder : holders.entrySet())
+		{
+			if (holder.getValue() > 1)
+				strings.encode(holder.getKey());
+		}
+		int shared = strings.size() - 1;
+		holders = null;
+		ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(ids.length * 64);
+		DataOutputStream records = new DataOutputStream(recordBytes);
+		long[] hashes = new long[ids.length];
+		int[] recordOffsets = new int[ids.length];
+		for (int i = 0; i < ids.length; i++)
+		{
+			CatalogTitle title = snapshot.getTitle(ids[i]);
+			hashes[i] = snapshot.getHash(ids[i]);
+			recordOffsets[i] = records.size();
+			records.writeInt(strings.encode(title.getId()));
+			records.writeInt(strings.encode(title.getShortTitle()));
+			records.writeInt(strings.encode(title.getRegularTitle()));
+			records.writeInt(strings.encode(title.getBoxArtSmall()));
+			records.writeInt(strings.encode(title.getBoxArtMedium()));
+			records.writeInt(strings.encode(title.getBoxArtLarge()));
+			records.writeInt(title.getReleaseYear());
+			records.writeInt(title.getRuntime());
+			records.writeInt(Float.floatToIntBits(title.getAverageRating()));
+			records.writeInt(strings.encode(title.getRating()));
+			records.writeInt(title.getGenres().size());
+			for (String genre : title.getGenres())
+				records.writeInt(strings.encode(genre));
+			records.writeInt(title.getFormats().size());
+			for (String format : title.getFormats())
+				records.writeInt(strings.encode(format));
+			records.writeInt(title.getLinks().size());
+			for (Link link : title.getLinks())
+			{
+				records.writeInt(strings.encode(link.getHref()));
+				records.writeInt(strings.encode(link.getRel()));
+				records.writeInt(strings.encode(link.getTitle()));
+			}
+		}
+		records.flush();
+
+		ByteArrayOutputStream section = new ByteArrayOutputStream(recordBytes.size() + ids.length * 24);
+		DataOutputStream out = new DataOutputStream(section);
+		out.writeLong(snapshot.getCreatedMillis());
+		out.writeInt(ids.length);
+		out.writeInt(strings.size());
+		out.writeInt(shared);
+		// padding, so the longs that follow are 8 byte aligned
+		out.writeInt(0);
+		for (long id : ids)
+			out.writeLong(id);
+		for (long hash : hashes)
+			out.writeLong(hash);
+		for (int offset : recordOffsets)
+			out.writeInt(offset);
+		// code 0 is null, and takes no bytes
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+		out.writeInt(0);
+		for (int code = 1; code < strings.size(); code++)
+		{
+			text.write(strings.decode(code).getBytes(UTF8));
+			out.writeInt(text.size());
+		}
+		out.writeInt(text.size());
+		text.writeTo(out);
+		recordBytes.writeTo(out);
+		out.flush();
+		return section.toByteArray();
+	}
+
+	/**
+	 * @return the title's strings, each once.
+	 */
+	private static Set<String> strings(CatalogTitle title)
+	{
+		Set<String> strings = new HashSet<String>();
+		strings.add(title.getId());
+		strings.add(title.getShortTitle());
+		strings.add(title.getRegularTitle());
+		strings.add(title.getBoxArtSmall());
+		strings.add(title.getBoxArtMedium());
+		strings.add(title.getBoxArtLarge());
+		strings.add(title.getRating());
+		strings.addAll(title.getGenres());
+		strings.addAll(title.getFormats());
+		for (Link link : title.getLinks())
+		{
+			strings.add(link.getHref());
+			strings.add(link.getRel());
+			strings.add(link.getTitle());
+		}
+		strings.remove(null);
+		return strings;
+	}
+
+	int size()
+	{
+		return this.size;
+	}
+
+	long getCreatedMillis()
+	{
+		return this.createdMillis;
+	}
+
+	/**
+	 * @return the numeric IDs, in order.
+	 */
+	long[] getIds()
+	{
+		long[] ids = new long[this.size];
+		for (int i = 0; i < this.size; i++)
+			ids[i] = this.buffer.getLong(IDS_AT + i * 8);
+		return ids;
+	}
+
+	/**
+	 * @return the index of the title with the given ID, or -1.
+	 */
+	int find(long id)
+	{
+		int low = 0;
+		int high = this.size - 1;
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			long found = this.buffer.getLong(IDS_AT + middle * 8);
+			if (found < id)
+				low = middle + 1;
+			else if (found > id)
+				high = middle - 1;
+			else return middle;
+		}
+		return -1;
+	}
+
+	long getHash(int index)
+	{
+		return this.buffer.getLong(this.hashesAt + index * 8);
+	}
+
+	/**
+	 * @return a new copy of the title at the given index.
+	 */
+	CatalogTitle getTitle(int index)
+	{
+		int at = this.recordsAt + this.buffer.getInt(this.recordOffsetsAt + index * 4);
+		CatalogTitle title = new CatalogTitle();
+		title.setId(this.string(at));
+		title.setShortTitle(this.string(at + 4));
+		title.setRegularTitle(this.string(at + 8));
+		title.setBoxArtSmall(this.string(at + 12));
+		title.setBoxArtMedium(this.string(at + 16));
+		title.setBoxArtLarge(this.string(at + 20));
+		title.setReleaseYear(this.buffer.getInt(at + 24));
+		title.setRuntime(this.buffer.getInt(at + 28));
+		title.setAverageRating(Float.intBitsToFloat(this.buffer.getInt(at + 32)));
+		title.setRating(this.string(at + 36));
+		at += 40;
+		int count = this.buffer.getInt(at);
+		List<String> genres = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++)
+			genres.add(this.string(at += 4));
+		title.setGenres(genres);
+		count = this.buffer.getInt(at += 4);
+		List<String> formats = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++)
+			formats.add(this.string(at += 4));
+		title.setFormats(formats);
+		count = this.buffer.getInt(at += 4);
+		List<Link> links = new ArrayList<Link>(count);
+		for (int i = 0; i < count; i++, at += 12)
+			links.add(new Link(this.string(at + 4), this.string(at + 8), this.string(at + 12)));
+		title.setLinks(links);
+		return title;
+	}
+
+	/**
+	 * @return the string whose code is stored at the given position.
+	 */
+	private String string(int position)
+	{
+		int code = this.buffer.getInt(position);
+		if (code == StringDictionary.NULL)
+			return null;
+		if (code < this.shared.length)
+		{
+			String value = this.shared[code];
+			if (value == null)
+				this.shared[code] = value = this.decode(code);
+			return value;
+		}
+		return this.decode(code);
+	}
+
+	private String decode(int code)
+	{
+		int start = this.buffer.getInt(this.stringOffsetsAt + (code - 1) * 4);
+		int end = this.buffer.getInt(this.stringOffsetsAt + code * 4);
+		byte[] bytes = new byte[end - start];
+		ByteBuffer text = this.buffer.duplicate();
+		text.position(this.stringsAt + start);
+		text.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.netflix.api.catalog;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns names and queries into the terms a <code>TextIndex</code> holds:
+ * lower cased, with accents removed, split at anything but letters and
+ * digits, and lightly stemmed so plurals and common verb endings meet their
+ * stem.  Apostrophes join rather than split, so <code>Schindler's</code> is
+ * one term.  Documents and queries go through the same steps, so the stems
+ * only need to be consistent, not correct English.
+ */
+class TextAnalyzer
+{
+	private TextAnalyzer()
+	{
+		// static helpers only
+	}
+
+	/**
+	 * @param text - may be null.
+	 * @return the terms, in order.
+	 */
+	static List<String> terms(String text)
+	{
+		List<String> terms = new ArrayList<String>();
+		if (text == null)
+			return terms;
+		String folded = fold(text);
+		StringBuilder term = new StringBuilder();
+		for (int i = 0; i <= folded.length(); i++)
+		{
+			char c = i < folded.length() ? folded.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c))
+				term.append(Character.toLowerCase(c));
+			else if ((c == '\'' || c == '\u2019') && term.length() > 0)
+				continue;
+			else if (term.length() > 0)
+			{
+				terms.add(stem(term.toString()));
+				term.setLength(0);
+			}
+		}
+		return terms;
+	}
+
+	/**
+	 * @return the text with accents removed, e.g. <code>Am&eacute;lie</code> as <code>Amelie</code>.
+	 */
+	static String fold(String text)
+	{
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (text.charAt(i) > 0x7f)
+				return Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+		}
+		return text;
+	}
+
+	/**
+	 * Strips the common English suffixes of a lower case word.
+	 */
+	static String stem(String word)
+	{
+		int length = word.length();
+		if (length <= 3 || !Character.isLetter(word.charAt(length - 1)))
+			return word;
+		if (word.endsWith("ies") && length > 4)
+			return word.substring(0, length - 3) + "y";
+		if (word.endsWith("sses") || word.endsWith("xes") || word.endsWith("ches") || word.endsWith("shes"))
+			return word.substring(0, length - 2);
+		if (word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us") && !word.endsWith("is"))
+			return word.substring(0, length - 1);
+		if (word.endsWith("ing") && length > 5)
+			return undouble(word.substring(0, length - 3));
+		if (word.endsWith("ed") && length > 4)
+			return undouble(word.substring(0, length - 2));
+		return word;
+	}
+
+	/**
+	 * @return the stem without a doubled final consonant, e.g. <code>runn</code> as <code>run</code>.
+	 */
+	private static String undouble(String stem)
+	{
+		int length = stem.length();
+		char last = stem.charAt(length - 1);
+		if (length > 2 && last == stem.charAt(length - 2) && "aeioulsz".indexOf(last) < 0)
+			return stem.substring(0, length - 1);
+		return stem;
+	}
+
+}
@@ -0,0 +1,427 @@
+package com.netflix.api.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.netflix.api.utils.LongObjectMap;
+
+/**
+ * A full text index of short documents, such as title or people names,
+ * keyed by numeric ID. <br />
+ * Each term maps to the documents holding it and the positions it holds
+ * there, so queries can ask for phrases as well as terms.  Matches are
+ * ranked by BM25: terms rarer across the index and more frequent in a
+ * document count for more, and short documents outrank long ones with the
+ * same matches. <br />
+ * A query is terms and quoted phrases, e.g. <code>kill bill "uma thurman"</code>.
+ * Every phrase must match; the terms outside phrases match any document
+ * holding one of them and rank those holding more first.  Documents are
+ * added, replaced and removed one at a time, so the index follows a
+ * changing catalog without being rebuilt.  Thread safe: searches run
+ * concurrently, updates one at a time.
+ */
+public class TextIndex
+{
+	/**
+	 * How quickly repeats of a term stop adding to the score.
+	 */
+	static final double K1 = 1.2;
+
+	/**
+	 * How much a document's length discounts its score, from 0 to 1.
+	 */
+	static final double B = 0.75;
+
+	/**
+	 * Positions skipped between fields, so phrases do not span them.
+	 */
+	private static final int FIELD_GAP = 100;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Term, to document ID, to the ascending positions of the term in it.
+	 */
+	private final Map<String, LongObjectMap<int[]>> postings = new HashMap<String, LongObjectMap<int[]>>();
+
+	/**
+	 * The distinct terms of each document, to remove it, and its length.
+	 */
+	private final LongObjectMap<Document> documents = new LongObjectMap<Document>();
+
+	private long totalLength;
+
+	/**
+	 * Adds a document, or replaces the one with the same ID.
+	 * @param id
+	 * @param fields - the document's text, e.g. a name and a short name; null ones are skipped.
+	 */
+	public void put(long id, String... fields)
+	{
+		Map<String, int[]> positions = new HashMap<String, int[]>();
+		int length = 0;
+		int position = 0;
+		for (String field : fields)
+		{
+			for (String term : TextAnalyzer.terms(field))
+			{
+				int[] at = positions.get(term);
+				at = at == null ? new int[1] : Arrays.copyOf(at, at.length + 1);
+				at[at.length - 1] = position++;
+				positions.put(term, at);
+				length++;
+			}
+			position += FIELD_GAP;
+		}
+		this.lock.writeLock().lock();
+		try
+		{
+			this.removeDocument(id);
+			for (Map.Entry<String, int[]> entry : positions.entrySet())
+			{
+				LongObjectMap<int[]> documents = this.postings.get(entry.getKey());
+				if (documents == null)
+					this.postings.put(entry.getKey(), documents = new LongObjectMap<int[]>(4));
+				documents.put(id, entry.getValue());
+			}
+			this.documents.put(id, new Document(positions.keySet().toArray(new String[positions.size()]), length));
+			this.totalLength += length;
+		}
+		finally
+		{
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return true if the document was in the index.
+	 */
+	public boolean remove(long id)
+	{
+		this.lock.writeLock().lock();
+		try
+		{
+			return this.removeDocument(id);
+		}
+		finally
+		{
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return documents in the index.
+	 */
+	public int size()
+	{
+		this.lock.readLock().lock();
+		try
+		{
+			return this.documents.size();
+		}
+		finally
+		{
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param query - terms and quoted phrases.
+	 * @param limit - the most documents to return.
+	 * @return the best matches, best first.
+	 */
+	public Result search(String query, int limit)
+	{
+		List<List<String>> phrases = new ArrayList<List<String>>();
+		List<String> terms = new ArrayList<String>();
+		parse(query, phrases, terms);
+
+		this.lock.readLock().lock();
+		try
+		{
+			LongObjectMap<double[]> scores = new LongObjectMap<double[]>();
+			if (phrases.isEmpty())
+			{
+				for (String term : terms)
+					this.score(term, null, scores);
+			}
+			else
+			{
+				LongObjectMap<int[]> matches = this.phrase(phrases.get(0));
+				for (int i = 1; i < phrases.size() && matches.size() > 0; i++)
+				{
+					LongObjectMap<int[]> next = this.phrase(phrases.get(i));
+					for (long id : matches.keys())
+					{
+						if (!next.containsKey(id))
+							matches.remove(id);
+					}
+				}
+				for (List<String> phrase : phrases)
+				{
+					for (String term : phrase)
+						this.score(term, matches, scores);
+				}
+				for (String term : terms)
+					this.score(term, matches, scores);
+			}
+
+			return top(scores, limit);
+		}
+		finally
+		{
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the best scored documents, best first, with a bounded heap
+	 * rather than a sort of every match.
+	 */
+	private static Result top(LongObjectMap<double[]> scores, int limit)
+	{
+		long[] ids = scores.keys();
+		// a heap of the best seen so far, the worst of them at the root
+		int capacity = Math.max(Math.min(limit, ids.length), 0);
+		long[] heapIds = new long[capacity];
+		double[] heapScores = new double[capacity];
+		int size = 0;
+		for (long id : ids)
+		{
+			double score = scores.get(id)[0];
+			if (size < capacity)
+			{
+				heapIds[size] = id;
+				heapScores[size] = score;
+				siftUp(heapIds, heapScores, size++);
+			}
+			else if (capacity > 0 && worse(heapScores[0], heapIds[0], score, id))
+			{
+				heapIds[0] = id;
+				heapScores[0] = score;
+				siftDown(heapIds, heapScores, size);
+			}
+		}
+		// taking the worst off the root fills the result from the back
+		long[] top = new long[size];
+		double[] topScores = new double[size];
+		for (int i = size - 1; i >= 0; i--)
+		{
+			top[i] = heapIds[0];
+			topScores[i] = heapScores[0];
+			heapIds[0] = heapIds[i];
+			heapScores[0] = heapScores[i];
+			siftDown(heapIds, heapScores, i);
+		}
+		return new Result(ids.length, top, topScores);
+	}
+
+	/**
+	 * Adds a term's BM25 score to each document holding it.
+	 * @param within - only these documents, or null for any.
+	 */
+	private void score(String term, LongObjectMap<int[]> within, LongObjectMap<double[]> scores)
+	{
+		LongObjectMap<int[]> documents = this.postings.get(term);
+		if (documents == null)
+			return;
+		int count = this.documents.size();
+		double idf = Math.log(1 + (count - documents.size() + 0.5) / (documents.size() + 0.5));
+		double averageLength = (double) this.totalLength / count;
+		for (long id : documents.keys())
+		{
+			if (within != null && !within.containsKey(id))
+				continue;
+			int frequency = documents.get(id).length;
+			int length = this.documents.get(id).length;
+			double score = idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+			double[] total = scores.get(id);
+			if (total == null)
+				scores.put(id, total = new double[1]);
+			total[0] += score;
+		}
+	}
+
+	/**
+	 * @return the documents holding the terms one after the other, with
+	 * the positions the phrase starts at.
+	 */
+	private LongObjectMap<int[]> phrase(List<String> terms)
+	{
+		LongObjectMap<int[]> matches = new LongObjectMap<int[]>();
+		LongObjectMap<int[]> first = this.postings.get(terms.get(0));
+		if (first == null)
+			return matches;
+		for (long id : first.keys())
+		{
+			int[] starts = first.get(id);
+			int[] found = new int[starts.length];
+			int count = 0;
+			for (int start : starts)
+			{
+				boolean match = true;
+				for (int i = 1; i < terms.size() && match; i++)
+				{
+					LongObjectMap<int[]> documents = this.postings.get(terms.get(i));
+					int[] positions = documents == null ? null : documents.get(id);
+					match = positions != null && Arrays.binarySearch(positions, start + i) >= 0;
+				}
+				if (match)
+					found[count++] = start;
+			}
+			if (count > 0)
+				matches.put(id, Arrays.copyOf(found, count));
+		}
+		return matches;
+	}
+
+	private boolean removeDocument(long id)
+	{
+		Document document = this.documents.remove(id);
+		if (document == null)
+			return false;
+		for (String term : document.terms)
+		{
+			LongObjectMap<int[]> documents = this.postings.get(term);
+			documents.remove(id);
+			if (documents.size() == 0)
+				this.postings.remove(term);
+		}
+		this.totalLength -= document.length;
+		return true;
+	}
+
+	/**
+	 * @return whether the first document ranks below the second: a lower
+	 * score, or the same score and a higher ID.
+	 */
+	private static boolean worse(double score, long id, double otherScore, long otherId)
+	{
+		int byScore = Double.compare(score, otherScore);
+		return byScore != 0 ? byScore < 0 : id > otherId;
+	}
+
+	private static void siftUp(long[] ids, double[] scores, int i)
+	{
+		while (i > 0)
+		{
+			int parent = (i - 1) >>> 1;
+			if (!worse(scores[i], ids[i], scores[parent], ids[parent]))
+				break;
+			swap(ids, scores, parent, i);
+			i = parent;
+		}
+	}
+
+	private static void siftDown(long[] ids, double[] scores, int size)
+	{
+		int i = 0;
+		while (true)
+		{
+			int child = 2 * i + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && worse(scores[child + 1], ids[child + 1], scores[child], ids[child]))
+				child++;
+			if (!worse(scores[child], ids[child], scores[i], ids[i]))
+				break;
+			swap(ids, scores, i, child);
+			i = child;
+		}
+	}
+
+	private static void swap(long[] ids, double[] scores, int i, int j)
+	{
+		long id = ids[i];
+		ids[i] = ids[j];
+		ids[j] = id;
+		double score = scores[i];
+		scores[i] = scores[j];
+		scores[j] = score;
+	}
+
+	/**
+	 * Splits a query into its quoted phrases and its other terms.
+	 */
+	static void parse(String query, List<List<String>> phrases, List<String> terms)
+	{
+		if (query == null)
+			return;
+		String[] parts = query.split("\"", -1);
+		for (int i = 0; i < parts.length; i++)
+		{
+			List<String> analyzed = TextAnalyzer.terms(parts[i]);
+			// odd parts are inside quotes; an unclosed quote runs to the end
+			if (i % 2 == 1 && !analyzed.isEmpty())
+				phrases.add(analyzed);
+			else terms.addAll(analyzed);
+		}
+	}
+
+	private static class Document
+	{
+		final String[] terms;
+
+		final int length;
+
+		Document(String[] terms, int length)
+		{
+			this.terms = terms;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * The documents a search returned.
+	 */
+	public static class Result
+	{
+		private final int count;
+
+		private final long[] ids;
+
+		private final double[] scores;
+
+		Result(int count, long[] ids, double[] scores)
+		{
+			this.count = count;
+			this.ids = ids;
+			this.scores = scores;
+		}
+
+		/**
+		 * @return how many documents matched, including those past the limit.
+		 */
+		public int getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * @return the IDs of the documents returned, best first.
+		 */
+		public long[] getIds()
+		{
+			return ids;
+		}
+
+		/**
+		 * @return the score of each document returned.
+		 */
+		public double[] getScores()
+		{
+			return scores;
+		}
+
+		public String toString()
+		{
+			return this.ids.length + " of " + this.count + " documents";
+		}
+	}
+
+}
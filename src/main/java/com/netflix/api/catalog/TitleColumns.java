@@ -0,0 +1,642 @@
+package com.netflix.api.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Link;
+import com.netflix.api.utils.PackedInts;
+import com.netflix.api.utils.StringDictionary;
+
+/**
+ * The titles of a <code>CatalogSnapshot</code> stored column by column
+ * rather than as one object graph per title, so a catalog takes a fraction
+ * of the heap its <code>CatalogTitle</code>s would; each lookup decodes a
+ * new copy of the title. <br />
+ * Rows are in numeric ID order, and each attribute is one column:
+ * <ul>
+ * <li>ratings, genres, formats and link relations, which take few distinct
+ * values, are dictionary encoded, each row holding bit packed codes;</li>
+ * <li>release years and running times are bit packed, average ratings are a
+ * float[];</li>
+ * <li>resource URIs, box art and link hrefs are encoded with the title's own
+ * ID taken out, so <code>.../movies/70075473/cast</code> and
+ * <code>.../movies/60031236/cast</code> share one dictionary entry; hrefs of
+ * people, which are not the title's own, are shared by every title that
+ * links to the same person;</li>
+ * <li>multi valued attributes are one packed array of codes for every row,
+ * with a packed offset per row into it.</li>
+ * </ul>
+ * Only names, which are mostly distinct, are kept as Strings.  Each title
+ * also carries the hash it was added with. <br />
+ * Built by a <code>Builder</code>, and immutable once built, so it may be
+ * read from any number of threads.
+ */
+public class TitleColumns
+{
+	/**
+	 * Stands in for the title's own ID in encoded URIs.
+	 */
+	private static final char ID = '\u0000';
+
+	private final int size;
+
+	private final long[] ids;
+
+	private final long[] hashes;
+
+	private final String[] regularTitles;
+
+	private final String[] shortTitles;
+
+	private final StringDictionary uris;
+
+	private final PackedInts idUris;
+
+	private final PackedInts boxArtSmall;
+
+	private final PackedInts boxArtMedium;
+
+	private final PackedInts boxArtLarge;
+
+	private final PackedInts releaseYears;
+
+	private final PackedInts runtimes;
+
+	private final float[] averageRatings;
+
+	private final StringDictionary ratings;
+
+	private final PackedInts ratingCodes;
+
+	private final StringDictionary genres;
+
+	private final Values genreValues;
+
+	private final StringDictionary formats;
+
+	private final Values formatValues;
+
+	private final StringDictionary linkLabels;
+
+	private final Values linkHrefs;
+
+	private final Values linkRels;
+
+	private final Values linkTitles;
+
+	/**
+	 * Lays out the builder's rows in ID order, keeping the last row of any ID
+	 * added more than once.
+	 */
+	private TitleColumns(Builder builder)
+	{
+		int[] order = builder.order();
+		this.size = order.length;
+		this.ids = new long[this.size];
+		this.hashes = new long[this.size];
+		this.regularTitles = new String[this.size];
+		this.shortTitles = new String[this.size];
+		this.averageRatings = new float[this.size];
+		int[] idUris = new int[this.size];
+		int[] small = new int[this.size];
+		int[] medium = new int[this.size];
+		int[] large = new int[this.size];
+		int[] years = new int[this.size];
+		int[] runtimes = new int[this.size];
+		int[] ratings = new int[this.size];
+		for (int row = 0; row < this.size; row++)
+		{
+			int added = order[row];
+			this.ids[row] = builder.ids[added];
+			this.hashes[row] = builder.hashes[added];
+			this.regularTitles[row] = builder.regularTitles[added];
+			this.shortTitles[row] = builder.shortTitles[added];
+			this.averageRatings[row] = builder.averageRatings[added];
+			idUris[row] = builder.idUris[added];
+			small[row] = builder.small[added];
+			medium[row] = builder.medium[added];
+			large[row] = builder.large[added];
+			years[row] = builder.years[added];
+			runtimes[row] = builder.runtimes[added];
+			ratings[row] = builder.ratings[added];
+		}
+		this.uris = builder.uriDictionary;
+		this.ratings = builder.ratingDictionary;
+		this.genres = builder.genreDictionary;
+		this.formats = builder.formatDictionary;
+		this.linkLabels = builder.linkLabelDictionary;
+		this.idUris = PackedInts.copyOf(idUris, this.size);
+		this.boxArtSmall = PackedInts.copyOf(small, this.size);
+		this.boxArtMedium = PackedInts.copyOf(medium, this.size);
+		this.boxArtLarge = PackedInts.copyOf(large, this.size);
+		this.releaseYears = PackedInts.copyOf(years, this.size);
+		this.runtimes = PackedInts.copyOf(runtimes, this.size);
+		this.ratingCodes = PackedInts.copyOf(ratings, this.size);
+		this.genreValues = builder.genres.build(order);
+		this.formatValues = builder.formats.build(order);
+		this.linkHrefs = builder.hrefs.build(order);
+		this.linkRels = builder.rels.build(order);
+		// link rels and titles share offsets, as every link has both
+		this.linkTitles = new Values(this.linkRels.offsets, builder.titles.build(order).codes);
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * @param id - a numeric title ID.
+	 * @return the title's row, or -1 if it is not stored.
+	 */
+	public int getRow(long id)
+	{
+		int row = Arrays.binarySearch(this.ids, id);
+		return row < 0 ? -1 : row;
+	}
+
+	/**
+	 * @return the numeric IDs of every title, in order.
+	 */
+	public long[] getIds()
+	{
+		return this.ids.clone();
+	}
+
+	/**
+	 * @return the numeric ID of the title in the given row.
+	 */
+	public long getId(int row)
+	{
+		return this.ids[row];
+	}
+
+	/**
+	 * @param id - a numeric title ID.
+	 * @return a new copy of the title, or null if it is not stored.
+	 */
+	public CatalogTitle getTitle(long id)
+	{
+		int row = this.getRow(id);
+		return row < 0 ? null : this.getTitleAt(row);
+	}
+
+	/**
+	 * @return a new copy of the title in the given row.
+	 */
+	public CatalogTitle getTitleAt(int row)
+	{
+		String id = Long.toString(this.ids[row]);
+		CatalogTitle title = new CatalogTitle();
+		title.setId(this.decodeUri(this.idUris.get(row), id));
+		title.setRegularTitle(this.regularTitles[row]);
+		title.setShortTitle(this.shortTitles[row]);
+		title.setBoxArtSmall(this.decodeUri(this.boxArtSmall.get(row), id));
+		title.setBoxArtMedium(this.decodeUri(this.boxArtMedium.get(row), id));
+		title.setBoxArtLarge(this.decodeUri(this.boxArtLarge.get(row), id));
+		title.setReleaseYear(this.releaseYears.get(row));
+		title.setRuntime(this.runtimes.get(row));
+		title.setAverageRating(this.averageRatings[row]);
+		title.setRating(this.getRating(row));
+		title.setGenres(this.getGenres(row));
+		title.setFormats(this.getFormats(row));
+		int start = this.linkRels.start(row);
+		int end = this.linkRels.start(row + 1);
+		List<Link> links = new ArrayList<Link>(end - start);
+		for (int i = start; i < end; i++)
+		{
+			links.add(new Link(this.decodeUri(this.linkHrefs.codes.get(i), id),
+				this.linkLabels.decode(this.linkRels.codes.get(i)), this.linkLabels.decode(this.linkTitles.codes.get(i))));
+		}
+		title.setLinks(links);
+		return title;
+	}
+
+	/**
+	 * @return the hash the title was added with.
+	 */
+	public long getHash(int row)
+	{
+		return this.hashes[row];
+	}
+
+	public String getRegularTitle(int row)
+	{
+		return this.regularTitles[row];
+	}
+
+	public int getReleaseYear(int row)
+	{
+		return this.releaseYears.get(row);
+	}
+
+	public int getRuntime(int row)
+	{
+		return this.runtimes.get(row);
+	}
+
+	public float getAverageRating(int row)
+	{
+		return this.averageRatings[row];
+	}
+
+	public String getRating(int row)
+	{
+		return this.ratings.decode(this.ratingCodes.get(row));
+	}
+
+	public List<String> getGenres(int row)
+	{
+		return this.genreValues.decode(row, this.genres);
+	}
+
+	public List<String> getFormats(int row)
+	{
+		return this.formatValues.decode(row, this.formats);
+	}
+
+	private String decodeUri(int code, String id)
+	{
+		String uri = this.uris.decode(code >>> 1);
+		if ((code & 1) == 0)
+			return uri;
+		return uri.replace(String.valueOf(ID), id);
+	}
+
+	/**
+	 * A multi valued column: every row's codes end to end, and where each
+	 * row's start.
+	 */
+	private static class Values
+	{
+		final PackedInts offsets;
+
+		final PackedInts codes;
+
+		Values(PackedInts offsets, PackedInts codes)
+		{
+			this.offsets = offsets;
+			this.codes = codes;
+		}
+
+		int start(int row)
+		{
+			return this.offsets.get(row);
+		}
+
+		List<String> decode(int row, StringDictionary dictionary)
+		{
+			int start = this.start(row);
+			int end = this.start(row + 1);
+			List<String> values = new ArrayList<String>(end - start);
+			for (int i = start; i < end; i++)
+				values.add(dictionary.decode(this.codes.get(i)));
+			return values;
+		}
+	}
+
+	private static class ValuesBuilder
+	{
+		private int[] offsets = new int[64];
+
+		private int[] codes = new int[64];
+
+		private int count;
+
+		private int rows;
+
+		void add(int code)
+		{
+			if (this.count == this.codes.length)
+				this.codes = Arrays.copyOf(this.codes, this.count * 2);
+			this.codes[this.count++] = code;
+		}
+
+		void endRow()
+		{
+			if (this.rows + 1 == this.offsets.length)
+				this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+			this.offsets[++this.rows] = this.count;
+		}
+
+		/**
+		 * @param order - the rows to keep, in the order to keep them.
+		 */
+		Values build(int[] order)
+		{
+			int[] offsets = new int[order.length + 1];
+			int count = 0;
+			for (int i = 0; i < order.length; i++)
+			{
+				count += this.offsets[order[i] + 1] - this.offsets[order[i]];
+				offsets[i + 1] = count;
+			}
+			int[] codes = new int[count];
+			for (int i = 0; i < order.length; i++)
+				System.arraycopy(this.codes, this.offsets[order[i]], codes, offsets[i], offsets[i + 1] - offsets[i]);
+			return new Values(PackedInts.copyOf(offsets, offsets.length), PackedInts.copyOf(codes, count));
+		}
+	}
+
+	/**
+	 * The codes of one dictionary in another, looked up as they are first asked for.
+	 */
+	private static class CodeMap
+	{
+		private final StringDictionary from;
+
+		private final StringDictionary to;
+
+		private final int[] codes;
+
+		CodeMap(StringDictionary from, StringDictionary to)
+		{
+			this.from = from;
+			this.to = to;
+			this.codes = new int[from.size()];
+			Arrays.fill(this.codes, -1);
+		}
+
+		int get(int code)
+		{
+			int mapped = this.codes[code];
+			if (mapped < 0)
+				this.codes[code] = mapped = this.to.encode(this.from.decode(code));
+			return mapped;
+		}
+	}
+
+	/**
+	 * Takes titles one at a time, in any order, so a catalog can be stored
+	 * without first holding all of it as <code>CatalogTitle</code>s; rows of
+	 * other columns may be copied in without being decoded at all.  Rows are
+	 * kept unpacked until <code>build</code>.  Not thread safe.
+	 */
+	public static class Builder
+	{
+		private final StringDictionary uriDictionary = new StringDictionary();
+
+		private final StringDictionary ratingDictionary = new StringDictionary();
+
+		private final StringDictionary genreDictionary = new StringDictionary();
+
+		private final StringDictionary formatDictionary = new StringDictionary();
+
+		private final StringDictionary linkLabelDictionary = new StringDictionary();
+
+		private int size;
+
+		private long[] ids;
+
+		private long[] hashes;
+
+		private String[] regularTitles;
+
+		private String[] shortTitles;
+
+		private float[] averageRatings;
+
+		private int[] idUris;
+
+		private int[] small;
+
+		private int[] medium;
+
+		private int[] large;
+
+		private int[] years;
+
+		private int[] runtimes;
+
+		private int[] ratings;
+
+		private final ValuesBuilder genres = new ValuesBuilder();
+
+		private final ValuesBuilder formats = new ValuesBuilder();
+
+		private final ValuesBuilder hrefs = new ValuesBuilder();
+
+		private final ValuesBuilder rels = new ValuesBuilder();
+
+		private final ValuesBuilder titles = new ValuesBuilder();
+
+		/**
+		 * The columns rows were last copied from, and their codes in this
+		 * builder's dictionaries.
+		 */
+		private TitleColumns source;
+
+		private CodeMap uriCodes;
+
+		private CodeMap ratingCodes;
+
+		private CodeMap genreCodes;
+
+		private CodeMap formatCodes;
+
+		private CodeMap linkLabelCodes;
+
+		/**
+		 * @param expectedSize - titles expected, to size the rows.
+		 */
+		public Builder(int expectedSize)
+		{
+			int capacity = Math.max(expectedSize, 16);
+			this.ids = new long[capacity];
+			this.hashes = new long[capacity];
+			this.regularTitles = new String[capacity];
+			this.shortTitles = new String[capacity];
+			this.averageRatings = new float[capacity];
+			this.idUris = new int[capacity];
+			this.small = new int[capacity];
+			this.medium = new int[capacity];
+			this.large = new int[capacity];
+			this.years = new int[capacity];
+			this.runtimes = new int[capacity];
+			this.ratings = new int[capacity];
+		}
+
+		/**
+		 * Adds a row for the title, which is not kept.
+		 * @param id - the title's numeric ID.
+		 * @param title
+		 * @param hash - kept with the row, e.g. to tell whether the title has changed.
+		 */
+		public void add(long id, CatalogTitle title, long hash)
+		{
+			if (this.size == this.ids.length)
+				this.grow();
+			int row = this.size++;
+			String key = Long.toString(id);
+			this.ids[row] = id;
+			this.hashes[row] = hash;
+			this.regularTitles[row] = title.getRegularTitle();
+			// most titles have the same short and regular name
+			this.shortTitles[row] = title.getShortTitle() != null && title.getShortTitle().equals(title.getRegularTitle())
+				? title.getRegularTitle() : title.getShortTitle();
+			this.averageRatings[row] = title.getAverageRating();
+			this.idUris[row] = this.encodeUri(title.getId(), key);
+			this.small[row] = this.encodeUri(title.getBoxArtSmall(), key);
+			this.medium[row] = this.encodeUri(title.getBoxArtMedium(), key);
+			this.large[row] = this.encodeUri(title.getBoxArtLarge(), key);
+			this.years[row] = Math.max(title.getReleaseYear(), 0);
+			this.runtimes[row] = Math.max(title.getRuntime(), 0);
+			this.ratings[row] = this.ratingDictionary.encode(title.getRating());
+			for (String genre : title.getGenres())
+				this.genres.add(this.genreDictionary.encode(genre));
+			this.genres.endRow();
+			for (String format : title.getFormats())
+				this.formats.add(this.formatDictionary.encode(format));
+			this.formats.endRow();
+			for (Link link : title.getLinks())
+			{
+				this.hrefs.add(this.encodeUri(link.getHref(), key));
+				this.rels.add(this.linkLabelDictionary.encode(link.getRel()));
+				this.titles.add(this.linkLabelDictionary.encode(link.getTitle()));
+			}
+			this.hrefs.endRow();
+			this.rels.endRow();
+			this.titles.endRow();
+		}
+
+		/**
+		 * Adds a row copied as it is encoded from other columns, e.g. those of
+		 * the snapshot being replaced, without decoding the title: only its
+		 * dictionary codes are translated, each distinct code once.
+		 * @param columns
+		 * @param from - the row to copy, with its ID and hash.
+		 */
+		public void copy(TitleColumns columns, int from)
+		{
+			if (columns != this.source)
+			{
+				this.source = columns;
+				this.uriCodes = new CodeMap(columns.uris, this.uriDictionary);
+				this.ratingCodes = new CodeMap(columns.ratings, this.ratingDictionary);
+				this.genreCodes = new CodeMap(columns.genres, this.genreDictionary);
+				this.formatCodes = new CodeMap(columns.formats, this.formatDictionary);
+				this.linkLabelCodes = new CodeMap(columns.linkLabels, this.linkLabelDictionary);
+			}
+			if (this.size == this.ids.length)
+				this.grow();
+			int row = this.size++;
+			this.ids[row] = columns.ids[from];
+			this.hashes[row] = columns.hashes[from];
+			this.regularTitles[row] = columns.regularTitles[from];
+			this.shortTitles[row] = columns.shortTitles[from];
+			this.averageRatings[row] = columns.averageRatings[from];
+			this.idUris[row] = this.copyUri(columns.idUris.get(from));
+			this.small[row] = this.copyUri(columns.boxArtSmall.get(from));
+			this.medium[row] = this.copyUri(columns.boxArtMedium.get(from));
+			this.large[row] = this.copyUri(columns.boxArtLarge.get(from));
+			this.years[row] = columns.releaseYears.get(from);
+			this.runtimes[row] = columns.runtimes.get(from);
+			this.ratings[row] = this.ratingCodes.get(columns.ratingCodes.get(from));
+			copyValues(columns.genreValues, from, this.genreCodes, this.genres);
+			copyValues(columns.formatValues, from, this.formatCodes, this.formats);
+			for (int i = columns.linkRels.start(from); i < columns.linkRels.start(from + 1); i++)
+			{
+				this.hrefs.add(this.copyUri(columns.linkHrefs.codes.get(i)));
+				this.rels.add(this.linkLabelCodes.get(columns.linkRels.codes.get(i)));
+				this.titles.add(this.linkLabelCodes.get(columns.linkTitles.codes.get(i)));
+			}
+			this.hrefs.endRow();
+			this.rels.endRow();
+			this.titles.endRow();
+		}
+
+		/**
+		 * @return rows added so far, counting each of an ID added more than once.
+		 */
+		public int size()
+		{
+			return this.size;
+		}
+
+		/**
+		 * @return the titles added, in ID order; of an ID added more than
+		 * once, the last.  The builder must not be used again.
+		 */
+		public TitleColumns build()
+		{
+			return new TitleColumns(this);
+		}
+
+		/**
+		 * @return the rows to keep, in ID order.
+		 */
+		int[] order()
+		{
+			Integer[] rows = new Integer[this.size];
+			for (int row = 0; row < this.size; row++)
+				rows[row] = row;
+			final long[] ids = this.ids;
+			// stable, so of rows with the same ID the last added is last
+			Arrays.sort(rows, new Comparator<Integer>()
+			{
+				public int compare(Integer a, Integer b)
+				{
+					return ids[a] < ids[b] ? -1 : ids[a] > ids[b] ? 1 : 0;
+				}
+			});
+			int[] order = new int[this.size];
+			int count = 0;
+			for (int i = 0; i < rows.length; i++)
+			{
+				if (i + 1 < rows.length && ids[rows[i + 1]] == ids[rows[i]])
+					continue;
+				order[count++] = rows[i];
+			}
+			return Arrays.copyOf(order, count);
+		}
+
+		private void grow()
+		{
+			int capacity = this.ids.length * 2;
+			this.ids = Arrays.copyOf(this.ids, capacity);
+			this.hashes = Arrays.copyOf(this.hashes, capacity);
+			this.regularTitles = Arrays.copyOf(this.regularTitles, capacity);
+			this.shortTitles = Arrays.copyOf(this.shortTitles, capacity);
+			this.averageRatings = Arrays.copyOf(this.averageRatings, capacity);
+			this.idUris = Arrays.copyOf(this.idUris, capacity);
+			this.small = Arrays.copyOf(this.small, capacity);
+			this.medium = Arrays.copyOf(this.medium, capacity);
+			this.large = Arrays.copyOf(this.large, capacity);
+			this.years = Arrays.copyOf(this.years, capacity);
+			this.runtimes = Arrays.copyOf(this.runtimes, capacity);
+			this.ratings = Arrays.copyOf(this.ratings, capacity);
+		}
+
+		/**
+		 * @return a URI code of the source columns, with its flag bit, as a code of this builder's.
+		 */
+		private int copyUri(int code)
+		{
+			return this.uriCodes.get(code >>> 1) << 1 | (code & 1);
+		}
+
+		private static void copyValues(Values values, int from, CodeMap codes, ValuesBuilder to)
+		{
+			for (int i = values.start(from); i < values.start(from + 1); i++)
+				to.add(codes.get(values.codes.get(i)));
+			to.endRow();
+		}
+
+		/**
+		 * @return the URI with the title's ID taken out, or as it is if it does
+		 * not hold the ID, encoded as a dictionary code and a flag bit.
+		 */
+		private int encodeUri(String uri, String id)
+		{
+			if (uri == null)
+				return StringDictionary.NULL;
+			if (uri.indexOf(ID) < 0 && uri.contains(id))
+				return this.uriDictionary.encode(uri.replace(id, String.valueOf(ID))) << 1 | 1;
+			return this.uriDictionary.encode(uri) << 1;
+		}
+	}
+
+}
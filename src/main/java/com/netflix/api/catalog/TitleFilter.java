@@ -0,0 +1,200 @@
+package com.netflix.api.catalog;
+
+import com.netflix.api.utils.RowBitmap;
+
+/**
+ * A condition on titles that a <code>TitleIndex</code> answers from its
+ * bitmaps, e.g. dramas or comedies from the nineties rated PG-13:
+ * <pre>
+ * TitleFilter.genre("Drama").or(TitleFilter.genre("Comedy"))
+ *     .and(TitleFilter.releasedBetween(1990, 1999))
+ *     .and(TitleFilter.rating("PG-13"))
+ * </pre>
+ * Filters are immutable and may be kept and reused across indexes.
+ */
+public abstract class TitleFilter
+{
+	/**
+	 * @return the rows of the index the filter matches.
+	 */
+	abstract RowBitmap evaluate(TitleIndex index);
+
+	/**
+	 * @return titles matching both this and the other filter.
+	 */
+	public TitleFilter and(final TitleFilter other)
+	{
+		final TitleFilter self = this;
+		return new TitleFilter()
+		{
+			RowBitmap evaluate(TitleIndex index)
+			{
+				RowBitmap rows = self.evaluate(index);
+				return rows.isEmpty() ? rows : rows.and(other.evaluate(index));
+			}
+
+			public String toString()
+			{
+				return "(" + self + " and " + other + ")";
+			}
+		};
+	}
+
+	/**
+	 * @return titles matching either this or the other filter.
+	 */
+	public TitleFilter or(final TitleFilter other)
+	{
+		final TitleFilter self = this;
+		return new TitleFilter()
+		{
+			RowBitmap evaluate(TitleIndex index)
+			{
+				return self.evaluate(index).or(other.evaluate(index));
+			}
+
+			public String toString()
+			{
+				return "(" + self + " or " + other + ")";
+			}
+		};
+	}
+
+	/**
+	 * @return titles matching this filter but not the other.
+	 */
+	public TitleFilter andNot(final TitleFilter other)
+	{
+		final TitleFilter self = this;
+		return new TitleFilter()
+		{
+			RowBitmap evaluate(TitleIndex index)
+			{
+				RowBitmap rows = self.evaluate(index);
+				return rows.isEmpty() ? rows : rows.andNot(other.evaluate(index));
+			}
+
+			public String toString()
+			{
+				return "(" + self + " and not " + other + ")";
+			}
+		};
+	}
+
+	/**
+	 * @return every title.
+	 */
+	public static TitleFilter all()
+	{
+		return new TitleFilter()
+		{
+			RowBitmap evaluate(TitleIndex index)
+			{
+				return index.all();
+			}
+
+			public String toString()
+			{
+				return "all";
+			}
+		};
+	}
+
+	/**
+	 * @param genre - a genre label, e.g. <code>Drama</code>.
+	 */
+	public static TitleFilter genre(final String genre)
+	{
+		return new TitleFilter()
+		{
+			RowBitmap evaluate(TitleIndex index)
+			{
+				return index.genre(genre);
+			}
+
+			public String toString()
+			{
+				return "genre " + genre;
+			}
+		};
+	}
+
+	/**
+	 * @param rating - an MPAA or TV rating label, e.g. <code>PG-13</code>.
+	 */
+	public static TitleFilter rating(final String rating)
+	{
+		return new TitleFilter()
+		{
+			RowBitmap evaluate(TitleIndex index)
+			{
+				return index.rating(rating);
+			}
+
+			public String toString()
+			{
+				return "rating " + rating;
+			}
+		};
+	}
+
+	/**
+	 * @param format - a delivery format, e.g. <code>instant</code>.
+	 */
+	public static TitleFilter format(final String format)
+	{
+		return new TitleFilter()
+		{
+			RowBitmap evaluate(TitleIndex index)
+			{
+				return index.format(format);
+			}
+
+			public String toString()
+			{
+				return "format " + format;
+			}
+		};
+	}
+
+	/**
+	 * @param from - the first release year included.
+	 * @param to - the last release year included.
+	 */
+	public static TitleFilter releasedBetween(final int from, final int to)
+	{
+		return new TitleFilter()
+		{
+			RowBitmap evaluate(TitleIndex index)
+			{
+				return index.releasedBetween(from, to);
+			}
+
+			public String toString()
+			{
+				return "released " + from + "-" + to;
+			}
+		};
+	}
+
+	/**
+	 * @param min - the lowest average rating included, to a tenth, e.g. 3.5.
+	 * @param max - the highest included; 5 for no upper bound.
+	 */
+	public static TitleFilter averageRatingBetween(final float min, final float max)
+	{
+		return new TitleFilter()
+		{
+			RowBitmap evaluate(TitleIndex index)
+			{
+				return index.averageRatingBetween(min, max);
+			}
+
+			public String toString()
+			{
+				return "average rating " + min + "-" + max;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,396 @@
+package com.netflix.api.catalog;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.utils.RowBitmap;
+
+/**
+ * Answers browse filters - genre, rating, format, release year and average
+ * rating - over a local <code>TitleColumns</code>, without a catalog search
+ * call. <br />
+ * Every value of every filtered attribute has a compressed bitmap of the
+ * rows holding it, built once, so a filter is a few bitmap intersections
+ * and unions; year and average rating ranges merge one bitmap per year, or
+ * per tenth of a star, in one pass.  Matches are ordered with a bounded
+ * heap rather than a full sort; when they are many, ordering by year or
+ * rating first walks the same bitmaps from the best value down and stops
+ * once it has enough titles, so only those are ordered.
+ * <br />
+ * Immutable once built, so it may be queried from any number of threads.
+ * A refreshed catalog needs a new index.
+ */
+public class TitleIndex
+{
+	/**
+	 * Average ratings are indexed in tenths of a star, from 0 to 5.
+	 */
+	private static final int RATING_STEPS = 50;
+
+	/**
+	 * Ordered searches matching more than this fraction of the titles
+	 * collect candidates from the year or rating bitmaps; sparser ones order
+	 * every match.
+	 */
+	private static final int DENSE_MATCHES = 8;
+
+	private final TitleColumns columns;
+
+	private final RowBitmap all;
+
+	private final Map<String, RowBitmap> genres;
+
+	private final Map<String, RowBitmap> ratings;
+
+	private final Map<String, RowBitmap> formats;
+
+	private final int firstYear;
+
+	private final RowBitmap[] years;
+
+	private final RowBitmap[] averageRatings;
+
+	/**
+	 * @param columns - the titles to index.
+	 */
+	public TitleIndex(TitleColumns columns)
+	{
+		this.columns = columns;
+		int size = columns.size();
+		this.all = RowBitmap.range(0, size);
+
+		Map<String, RowBitmap.Builder> genres = new HashMap<String, RowBitmap.Builder>();
+		Map<String, RowBitmap.Builder> ratings = new HashMap<String, RowBitmap.Builder>();
+		Map<String, RowBitmap.Builder> formats = new HashMap<String, RowBitmap.Builder>();
+		int firstYear = Integer.MAX_VALUE;
+		int lastYear = 0;
+		for (int row = 0; row < size; row++)
+		{
+			int year = columns.getReleaseYear(row);
+			if (year > 0)
+			{
+				firstYear = Math.min(firstYear, year);
+				lastYear = Math.max(lastYear, year);
+			}
+		}
+		this.firstYear = firstYear == Integer.MAX_VALUE ? 0 : firstYear;
+		RowBitmap.Builder[] years = new RowBitmap.Builder[Math.max(lastYear - this.firstYear + 1, 0)];
+		RowBitmap.Builder[] averageRatings = new RowBitmap.Builder[RATING_STEPS + 1];
+		for (int row = 0; row < size; row++)
+		{
+			for (String genre : columns.getGenres(row))
+				builder(genres, genre).add(row);
+			for (String format : columns.getFormats(row))
+				builder(formats, format).add(row);
+			if (columns.getRating(row) != null)
+				builder(ratings, columns.getRating(row)).add(row);
+			int year = columns.getReleaseYear(row);
+			if (year > 0)
+				builder(years, year - this.firstYear).add(row);
+			builder(averageRatings, step(columns.getAverageRating(row))).add(row);
+		}
+		this.genres = build(genres);
+		this.ratings = build(ratings);
+		this.formats = build(formats);
+		this.years = build(years);
+		this.averageRatings = build(averageRatings);
+	}
+
+	/**
+	 * @return the titles the index covers.
+	 */
+	public TitleColumns getColumns()
+	{
+		return this.columns;
+	}
+
+	/**
+	 * @param filter
+	 * @return how many titles match, without ordering them.
+	 */
+	public int count(TitleFilter filter)
+	{
+		return filter.evaluate(this).getCardinality();
+	}
+
+	/**
+	 * @param filter
+	 * @param order
+	 * @param limit - the most titles to return.
+	 * @return the first titles matching the filter, in the given order.
+	 */
+	public Result search(TitleFilter filter, TitleOrder order, int limit)
+	{
+		RowBitmap matches = filter.evaluate(this);
+		if (order == TitleOrder.ID || limit <= 0)
+		{
+			int[] rows = matches.toArray();
+			return new Result(this.columns, rows.length, Arrays.copyOf(rows, Math.max(Math.min(limit, rows.length), 0)));
+		}
+		int[] candidates = null;
+		// each bucket walked costs about as much as keying every sparse match
+		if (matches.getCardinality() > this.columns.size() / DENSE_MATCHES)
+		{
+			switch (order)
+		{
+				case NEWEST:
+					candidates = candidates(matches, this.years, this.years.length - 1, 0, limit);
+					break;
+				case OLDEST:
+					candidates = candidates(matches, this.years, 0, this.years.length - 1, limit);
+					break;
+				case HIGHEST_RATED:
+					candidates = candidates(matches, this.averageRatings, RATING_STEPS, 1, limit);
+					break;
+				case LOWEST_RATED:
+					candidates = candidates(matches, this.averageRatings, 1, RATING_STEPS, limit);
+					break;
+				default:
+					break;
+			}
+		}
+		if (candidates == null)
+			candidates = matches.toArray();
+		return new Result(this.columns, matches.getCardinality(), this.top(candidates, order, limit));
+	}
+
+	/**
+	 * Collects the matches in the value bitmaps of an ordered attribute,
+	 * best value first, until there are enough of them.  As every title
+	 * left out orders after every one collected, the top titles of the
+	 * candidates are the top titles of all the matches.
+	 * @param from - the bitmap of the best value.
+	 * @param to - the bitmap of the worst known value; titles without a
+	 * value come after it.
+	 * @return the candidates, or null if the bitmaps held too few.
+	 */
+	private static int[] candidates(RowBitmap matches, RowBitmap[] buckets, int from, int to, int limit)
+	{
+		int step = from <= to ? 1 : -1;
+		RowBitmap candidates = RowBitmap.EMPTY;
+		for (int i = from; i != to + step && i >= 0 && i < buckets.length; i += step)
+		{
+			candidates = candidates.or(matches.and(buckets[i]));
+			if (candidates.getCardinality() >= limit)
+				return candidates.toArray();
+		}
+		return null;
+	}
+
+	/**
+	 * @return the first rows in the given order, with a bounded heap.
+	 */
+	private int[] top(int[] rows, TitleOrder order, int limit)
+	{
+		// a min heap of the best seen so far, each entry the key above the inverted row
+		long[] heap = new long[Math.min(limit, rows.length)];
+		int size = 0;
+		for (int row : rows)
+		{
+			long entry = order.key(this.columns, row) << 32 | (~row & 0xffffffffL);
+			if (size < heap.length)
+			{
+				heap[size] = entry;
+				siftUp(heap, size++);
+			}
+			else if (entry > heap[0])
+			{
+				heap[0] = entry;
+				siftDown(heap, size);
+			}
+		}
+		Arrays.sort(heap, 0, size);
+		int[] top = new int[size];
+		for (int i = 0; i < size; i++)
+			top[i] = ~(int) heap[size - 1 - i];
+		return top;
+	}
+
+	RowBitmap all()
+	{
+		return this.all;
+	}
+
+	RowBitmap genre(String genre)
+	{
+		return get(this.genres, genre);
+	}
+
+	RowBitmap rating(String rating)
+	{
+		return get(this.ratings, rating);
+	}
+
+	RowBitmap format(String format)
+	{
+		return get(this.formats, format);
+	}
+
+	RowBitmap releasedBetween(int from, int to)
+	{
+		return range(this.years, (long) from - this.firstYear, (long) to - this.firstYear);
+	}
+
+	RowBitmap averageRatingBetween(float min, float max)
+	{
+		return range(this.averageRatings, (long) Math.ceil(min * 10 - 0.01), (long) Math.floor(max * 10 + 0.01));
+	}
+
+	/**
+	 * @return the tenth of a star an average rating is indexed under.
+	 */
+	private static int step(float averageRating)
+	{
+		return Math.max(0, Math.min(RATING_STEPS, Math.round(averageRating * 10)));
+	}
+
+	private static RowBitmap range(RowBitmap[] bitmaps, long from, long to)
+	{
+		int first = (int) Math.max(from, 0);
+		int last = (int) Math.min(to, bitmaps.length - 1);
+		if (first > last)
+			return RowBitmap.EMPTY;
+		return RowBitmap.union(Arrays.copyOfRange(bitmaps, first, last + 1));
+	}
+
+	private static RowBitmap get(Map<String, RowBitmap> bitmaps, String value)
+	{
+		RowBitmap rows = bitmaps.get(value);
+		return rows == null ? RowBitmap.EMPTY : rows;
+	}
+
+	private static RowBitmap.Builder builder(Map<String, RowBitmap.Builder> builders, String value)
+	{
+		RowBitmap.Builder builder = builders.get(value);
+		if (builder == null)
+			builders.put(value, builder = new RowBitmap.Builder());
+		return builder;
+	}
+
+	private static RowBitmap.Builder builder(RowBitmap.Builder[] builders, int i)
+	{
+		if (builders[i] == null)
+			builders[i] = new RowBitmap.Builder();
+		return builders[i];
+	}
+
+	private static Map<String, RowBitmap> build(Map<String, RowBitmap.Builder> builders)
+	{
+		Map<String, RowBitmap> bitmaps = new HashMap<String, RowBitmap>(builders.size() * 2);
+		for (Map.Entry<String, RowBitmap.Builder> entry : builders.entrySet())
+			bitmaps.put(entry.getKey(), entry.getValue().build());
+		return bitmaps;
+	}
+
+	private static RowBitmap[] build(RowBitmap.Builder[] builders)
+	{
+		RowBitmap[] bitmaps = new RowBitmap[builders.length];
+		for (int i = 0; i < builders.length; i++)
+			bitmaps[i] = builders[i] == null ? RowBitmap.EMPTY : builders[i].build();
+		return bitmaps;
+	}
+
+	private static void siftUp(long[] heap, int i)
+	{
+		while (i > 0)
+		{
+			int parent = (i - 1) >>> 1;
+			if (heap[parent] <= heap[i])
+				break;
+			swap(heap, parent, i);
+			i = parent;
+		}
+	}
+
+	private static void siftDown(long[] heap, int size)
+	{
+		int i = 0;
+		while (true)
+		{
+			int child = 2 * i + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && heap[child + 1] < heap[child])
+				child++;
+			if (heap[i] <= heap[child])
+				break;
+			swap(heap, i, child);
+			i = child;
+		}
+	}
+
+	private static void swap(long[] heap, int i, int j)
+	{
+		long value = heap[i];
+		heap[i] = heap[j];
+		heap[j] = value;
+	}
+
+	/**
+	 * The titles a search returned.
+	 */
+	public static class Result
+	{
+		private final TitleColumns columns;
+
+		private final int count;
+
+		private final int[] rows;
+
+		Result(TitleColumns columns, int count, int[] rows)
+		{
+			this.columns = columns;
+			this.count = count;
+			this.rows = rows;
+		}
+
+		/**
+		 * @return how many titles matched, including those past the limit.
+		 */
+		public int getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * @return the numeric IDs of the titles returned, in order.
+		 */
+		public long[] getIds()
+		{
+			long[] ids = new long[this.rows.length];
+			for (int i = 0; i < ids.length; i++)
+				ids[i] = this.columns.getId(this.rows[i]);
+			return ids;
+		}
+
+		/**
+		 * @return the titles returned, in order, each read from the columns
+		 * as it is asked for.
+		 */
+		public List<CatalogTitle> getTitles()
+		{
+			return new AbstractList<CatalogTitle>()
+			{
+				public CatalogTitle get(int index)
+				{
+					return columns.getTitleAt(rows[index]);
+				}
+
+				public int size()
+				{
+					return rows.length;
+				}
+			};
+		}
+
+		public String toString()
+		{
+			return this.rows.length + " of " + this.count + " titles";
+		}
+	}
+
+}
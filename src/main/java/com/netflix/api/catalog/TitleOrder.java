@@ -0,0 +1,71 @@
+package com.netflix.api.catalog;
+
+/**
+ * How <code>TitleIndex</code> orders the titles a query matches.  Titles
+ * that tie are in numeric ID order, and titles without the value ordered
+ * by, such as an unknown year, come last.
+ */
+public enum TitleOrder
+{
+	/**
+	 * Numeric ID order only.
+	 */
+	ID
+	{
+		long key(TitleColumns columns, int row)
+		{
+			return 0;
+		}
+	},
+	NEWEST
+	{
+		long key(TitleColumns columns, int row)
+		{
+			return columns.getReleaseYear(row);
+		}
+	},
+	OLDEST
+	{
+		long key(TitleColumns columns, int row)
+		{
+			int year = columns.getReleaseYear(row);
+			return year == 0 ? Integer.MIN_VALUE : -year;
+		}
+	},
+	HIGHEST_RATED
+	{
+		long key(TitleColumns columns, int row)
+		{
+			// the bits of a non-negative float order as the float does
+			return Float.floatToIntBits(columns.getAverageRating(row));
+		}
+	},
+	LOWEST_RATED
+	{
+		long key(TitleColumns columns, int row)
+		{
+			float rating = columns.getAverageRating(row);
+			return rating == 0 ? Integer.MIN_VALUE : -Float.floatToIntBits(rating);
+		}
+	},
+	SHORTEST
+	{
+		long key(TitleColumns columns, int row)
+		{
+			return -columns.getRuntime(row);
+		}
+	},
+	LONGEST
+	{
+		long key(TitleColumns columns, int row)
+		{
+			return columns.getRuntime(row);
+		}
+	};
+
+	/**
+	 * @return a key that is greater for titles that come first.
+	 */
+	abstract long key(TitleColumns columns, int row);
+
+}
@@ -0,0 +1,243 @@
+package com.netflix.api.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.httpclient.HttpMethod;
+
+import com.netflix.api.NetflixAPIException;
+
+/**
+ * Describes a single call to the Netflix API: the resource URI, its
+ * parameters, the HTTP method and the level of security it is made at. <br />
+ * Requests are plain descriptors and can be queued, batched or retried
+ * freely; they are executed through <code>NetflixAPIClient.execute(APIRequest)</code>.
+ * The call parameters given here are copied on every execution, so a request
+ * never carries OAuth values over from a previous attempt.
+ * <br />
+ * A request that is being executed can be aborted from another thread,
+ * which closes its connection; once aborted it will not execute again.
+ */
+public class APIRequest
+{
+	/**
+	 * The levels of security a request can be made at (see
+	 * http://developer.netflix.com/docs/Security#0_18325 for more info).
+	 */
+	public enum SecurityLevel
+	{
+		UNSIGNED,
+		CONSUMER_SIGNED,
+		CUSTOMER_AUTHORIZED
+	}
+
+	private String uri;
+
+	private Map<String, String> callParameters;
+
+	private String methodType;
+
+	private SecurityLevel securityLevel;
+
+	private NetflixAPICustomer customer;
+
+	private Map<String, String> requestHeaders;
+
+	private volatile HttpMethod inFlight;
+
+	private volatile boolean aborted;
+
+	protected APIRequest(String uri, Map<String, String> callParameters, String methodType,
+			SecurityLevel securityLevel, NetflixAPICustomer customer)
+	{
+		this.uri = uri;
+		this.callParameters = callParameters;
+		this.methodType = methodType;
+		this.securityLevel = securityLevel;
+		this.customer = customer;
+	}
+
+	/**
+	 * Describes an unsigned GET, as made by <code>makeUnsignedApiCall</code>.
+	 * @param uri
+	 * @param callParameters
+	 * @return
+	 */
+	public static APIRequest unsigned(String uri, Map<String, String> callParameters)
+	{
+		return new APIRequest(uri, callParameters, NetflixAPIClient.GET_METHOD_TYPE, SecurityLevel.UNSIGNED, null);
+	}
+
+	/**
+	 * Describes a call as made by <code>makeConsumerSignedApiCall</code>.
+	 * @param uri
+	 * @param callParameters
+	 * @param methodType - either "GET" or "POST".
+	 * @return
+	 */
+	public static APIRequest consumerSigned(String uri, Map<String, String> callParameters, String methodType)
+	{
+		return new APIRequest(uri, callParameters, methodType, SecurityLevel.CONSUMER_SIGNED, null);
+	}
+
+	/**
+	 * Describes a call as made by <code>makeCustomerAuthorizedApiCall</code>.
+	 * @param uri
+	 * @param customer
+	 * @param callParameters
+	 * @param methodType - either "GET", "DELETE" or "POST".
+	 * @return
+	 */
+	public static APIRequest customerAuthorized(String uri, NetflixAPICustomer customer,
+			Map<String, String> callParameters, String methodType)
+	{
+		return new APIRequest(uri, callParameters, methodType, SecurityLevel.CUSTOMER_AUTHORIZED, customer);
+	}
+
+	/**
+	 * @return a fresh, mutable copy of this request's call parameters.
+	 */
+	public Map<String, String> copyCallParameters()
+	{
+		if (this.callParameters == null)
+			return new HashMap<String, String>();
+		return new HashMap<String, String>(this.callParameters);
+	}
+
+	/**
+	 * @param name
+	 * @param value
+	 * @return a copy of this request with the call parameter set.
+	 */
+	public APIRequest withCallParameter(String name, String value)
+	{
+		Map<String, String> parameters = this.copyCallParameters();
+		parameters.put(name, value);
+		return this.copyWith(parameters);
+	}
+
+	/**
+	 * @param startIndex
+	 * @param maxResults
+	 * @return a copy of this request asking for the given page of results.
+	 */
+	public APIRequest forPage(int startIndex, int maxResults)
+	{
+		Map<String, String> parameters = this.copyCallParameters();
+		parameters.put("start_index", String.valueOf(startIndex));
+		parameters.put("max_results", String.valueOf(maxResults));
+		return this.copyWith(parameters);
+	}
+
+	/**
+	 * @param href - a resource linked from this request's response.
+	 * @return a GET of the linked resource, at this request's security level
+	 * and for the same customer.
+	 */
+	public APIRequest forLink(String href)
+	{
+		APIRequest link = new APIRequest(href, null, NetflixAPIClient.GET_METHOD_TYPE, this.securityLevel, this.customer);
+		link.requestHeaders = this.requestHeaders;
+		return link;
+	}
+
+	/**
+	 * @return an identical request, that can be executed and aborted independently.
+	 */
+	APIRequest copy()
+	{
+		return this.copyWith(this.copyCallParameters());
+	}
+
+	private APIRequest copyWith(Map<String, String> parameters)
+	{
+		APIRequest copy = new APIRequest(this.uri, parameters, this.methodType, this.securityLevel, this.customer);
+		copy.requestHeaders = this.requestHeaders;
+		return copy;
+	}
+
+	/**
+	 * Aborts the execution of this request if one is in flight, and keeps
+	 * it from being executed afterwards.  Safe to call from any thread, and
+	 * more than once.
+	 */
+	public void abort()
+	{
+		this.aborted = true;
+		HttpMethod method = this.inFlight;
+		if (method != null)
+			method.abort();
+	}
+
+	public boolean isAborted()
+	{
+		return aborted;
+	}
+
+	/**
+	 * Marks the method as executing this request.
+	 * @throws NetflixAPIException - if the request has been aborted.
+	 */
+	void attach(HttpMethod method) throws NetflixAPIException
+	{
+		this.inFlight = method;
+		// re-checked after publishing the method, so a concurrent abort() is never lost
+		if (this.aborted)
+		{
+			this.inFlight = null;
+			throw new NetflixAPIException("Request aborted: " + this);
+		}
+	}
+
+	void detach()
+	{
+		this.inFlight = null;
+	}
+
+	public String getUri()
+	{
+		return uri;
+	}
+
+	public Map<String, String> getCallParameters()
+	{
+		return callParameters;
+	}
+
+	public String getMethodType()
+	{
+		return methodType;
+	}
+
+	public SecurityLevel getSecurityLevel()
+	{
+		return securityLevel;
+	}
+
+	public NetflixAPICustomer getCustomer()
+	{
+		return customer;
+	}
+
+	public Map<String, String> getRequestHeaders()
+	{
+		return requestHeaders;
+	}
+
+	/**
+	 * Sets extra HTTP headers to send with a customer authorized request.
+	 * @param requestHeaders
+	 * @return this request, for chaining.
+	 */
+	public APIRequest setRequestHeaders(Map<String, String> requestHeaders)
+	{
+		this.requestHeaders = requestHeaders;
+		return this;
+	}
+
+	public String toString()
+	{
+		return this.methodType + " " + this.uri;
+	}
+
+}
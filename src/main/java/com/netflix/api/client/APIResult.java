@@ -0,0 +1,72 @@
+package com.netflix.api.client;
+
+/**
+ * The outcome of one request within a bulk operation: either a value or
+ * the failure that prevented it, with the time the request took.
+ */
+public class APIResult<T>
+{
+	private final APIRequest request;
+	
+	private final T value;
+	
+	private final Throwable error;
+	
+	private final long elapsedNanos;
+	
+	private APIResult(APIRequest request, T value, Throwable error, long elapsedNanos)
+	{
+		this.request = request;
+		this.value = value;
+		this.error = error;
+		this.elapsedNanos = elapsedNanos;
+	}
+	
+	public static <T> APIResult<T> success(APIRequest request, T value, long elapsedNanos)
+	{
+		return new APIResult<T>(request, value, null, elapsedNanos);
+	}
+	
+	public static <T> APIResult<T> failure(APIRequest request, Throwable error, long elapsedNanos)
+	{
+		return new APIResult<T>(request, null, error, elapsedNanos);
+	}
+	
+	public boolean isSuccess()
+	{
+		return this.error == null;
+	}
+	
+	public APIRequest getRequest()
+	{
+		return request;
+	}
+	
+	/**
+	 * @return the decoded response; null if the request failed.
+	 */
+	public T getValue()
+	{
+		return value;
+	}
+	
+	/**
+	 * @return why the request failed; null if it succeeded.
+	 */
+	public Throwable getError()
+	{
+		return error;
+	}
+	
+	public long getElapsedNanos()
+	{
+		return elapsedNanos;
+	}
+	
+	public String toString()
+	{
+		return this.request + (this.error == null ? " succeeded" : " failed: " + this.error) + " in "
+			+ this.elapsedNanos / 1000000 + "ms";
+	}
+	
+}
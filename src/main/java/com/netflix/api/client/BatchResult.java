@@ -0,0 +1,98 @@
+package com.netflix.api.client;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The results of <code>NetflixAPIClient.executeAll</code>: one
+ * <code>APIResult</code> per request, in the order the requests were
+ * given, with timing for the batch as a whole.
+ */
+public class BatchResult<T>
+{
+	private final List<APIResult<T>> results;
+	
+	private final long elapsedNanos;
+	
+	private final int successCount;
+	
+	private final long totalRequestNanos;
+	
+	private final long maxRequestNanos;
+	
+	public BatchResult(List<APIResult<T>> results, long elapsedNanos)
+	{
+		this.results = Collections.unmodifiableList(results);
+		this.elapsedNanos = elapsedNanos;
+		int successes = 0;
+		long total = 0;
+		long max = 0;
+		for (APIResult<T> result : results)
+		{
+			if (result.isSuccess())
+				successes++;
+			total += result.getElapsedNanos();
+			max = Math.max(max, result.getElapsedNanos());
+		}
+		this.successCount = successes;
+		this.totalRequestNanos = total;
+		this.maxRequestNanos = max;
+	}
+	
+	/**
+	 * @return a result for every request, in submission order.
+	 */
+	public List<APIResult<T>> getResults()
+	{
+		return results;
+	}
+	
+	public APIResult<T> get(int index)
+	{
+		return this.results.get(index);
+	}
+	
+	public int size()
+	{
+		return this.results.size();
+	}
+	
+	public int getSuccessCount()
+	{
+		return successCount;
+	}
+	
+	public int getFailureCount()
+	{
+		return this.results.size() - this.successCount;
+	}
+	
+	/**
+	 * @return wall clock time for the whole batch.
+	 */
+	public long getElapsedNanos()
+	{
+		return elapsedNanos;
+	}
+	
+	/**
+	 * @return the sum of the individual request times; compared with
+	 * <code>getElapsedNanos()</code> it shows the parallelism achieved.
+	 */
+	public long getTotalRequestNanos()
+	{
+		return totalRequestNanos;
+	}
+	
+	public long getMaxRequestNanos()
+	{
+		return maxRequestNanos;
+	}
+	
+	public String toString()
+	{
+		return this.results.size() + " requests, " + this.getFailureCount() + " failed, in " + this.elapsedNanos / 1000000
+			+ "ms (" + this.totalRequestNanos / 1000000 + "ms of requests, slowest " + this.maxRequestNanos / 1000000 + "ms)";
+	}
+	
+}
@@ -0,0 +1,110 @@
+package com.netflix.api.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs a batch of requests with at most a fixed number in flight.  Each
+ * of up to <code>parallelism</code> workers takes the next unstarted
+ * request until none are left, so no queue of tasks is built and results
+ * land straight in their slot.
+ */
+abstract class BatchRunner<T>
+{
+	private final List<APIRequest> requests;
+	
+	/**
+	 * What is actually executed: copies, so aborting a batch never marks
+	 * the caller's requests as aborted.
+	 */
+	private final List<APIRequest> executions;
+	
+	private final AtomicReferenceArray<APIResult<T>> results;
+	
+	private final AtomicInteger nextIndex = new AtomicInteger();
+	
+	private volatile boolean stopped;
+	
+	BatchRunner(List<APIRequest> requests)
+	{
+		this.requests = new ArrayList<APIRequest>(requests);
+		this.executions = new ArrayList<APIRequest>(requests.size());
+		for (APIRequest request : requests)
+			this.executions.add(request.copy());
+		this.results = new AtomicReferenceArray<APIResult<T>>(requests.size());
+	}
+	
+	/**
+	 * Executes one request.
+	 */
+	protected abstract T call(APIRequest request) throws Exception;
+	
+	/**
+	 * Runs the batch and waits for it to finish.  If the waiting thread is
+	 * interrupted, requests in flight are aborted and the rest are not started.
+	 */
+	BatchResult<T> run(Executor executor, int parallelism) throws InterruptedException
+	{
+		if (parallelism <= 0)
+			throw new IllegalArgumentException("Parallelism must be positive");
+		long start = System.nanoTime();
+		int workers = Math.min(parallelism, this.requests.size());
+		final CountDownLatch done = new CountDownLatch(workers);
+		for (int i = 0; i < workers; i++)
+		{
+			executor.execute(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						work();
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			});
+		}
+		try
+		{
+			done.await();
+		}
+		catch (InterruptedException e)
+		{
+			this.stopped = true;
+			for (APIRequest execution : this.executions)
+				execution.abort();
+			throw e;
+		}
+		List<APIResult<T>> results = new ArrayList<APIResult<T>>(this.results.length());
+		for (int i = 0; i < this.results.length(); i++)
+			results.add(this.results.get(i));
+		return new BatchResult<T>(results, System.nanoTime() - start);
+	}
+	
+	private void work()
+	{
+		int index;
+		while (!this.stopped && (index = this.nextIndex.getAndIncrement()) < this.requests.size())
+		{
+			APIRequest request = this.requests.get(index);
+			long start = System.nanoTime();
+			try
+			{
+				T value = this.call(this.executions.get(index));
+				this.results.set(index, APIResult.success(request, value, System.nanoTime() - start));
+			}
+			catch (Exception e)
+			{
+				this.results.set(index, APIResult.<T>failure(request, e, System.nanoTime() - start));
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,216 @@
+package com.netflix.api.client;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.URI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.api.client.dal.HttpMethodBuilder;
+import com.netflix.api.client.oauth.OAuthAccessToken;
+
+/**
+ * Moves the one-off costs of a fresh client off live requests. <br />
+ * Resolves the API host, opens a number of pooled connections to
+ * <code>APIEndpoints.BASE_URI</code> and returns them to the pool, and runs
+ * the request signing and parameter encoding code in
+ * <code>HttpMethodBuilder</code> enough times for its classes to load and
+ * its hot paths to be JIT compiled.  No requests are sent.
+ */
+public class ClientWarmUp
+{
+	private static final Logger logger = LoggerFactory.getLogger(ClientWarmUp.class);
+
+	/**
+	 * Enough iterations for the signing path to reach the optimizing compiler.
+	 */
+	public static final int DEFAULT_SIGNING_ITERATIONS = 5000;
+
+	private final NetflixAPIClient client;
+
+	public ClientWarmUp(NetflixAPIClient client)
+	{
+		this.client = client;
+	}
+
+	/**
+	 * Runs all warm-up steps.  Failures to resolve or connect are logged and
+	 * reported, never thrown, so a warm-up cannot keep a node from starting.
+	 * @param connections - number of pooled connections to pre-open.
+	 * @param signingIterations - number of times to sign each kind of request.
+	 * @return what was done, and how long each step took.
+	 */
+	public Report warmUp(int connections, int signingIterations)
+	{
+		Report report = new Report();
+		HostConfiguration target = new HostConfiguration();
+		try
+		{
+			target.setHost(new URI(APIEndpoints.BASE_URI, false));
+			long start = System.nanoTime();
+			InetAddress.getAllByName(target.getHost());
+			report.resolveNanos = System.nanoTime() - start;
+			report.resolved = true;
+		}
+		catch (Exception e)
+		{
+			logger.warn("Warm-up could not resolve " + APIEndpoints.BASE_URI, e);
+		}
+
+		if (report.resolved && connections > 0)
+		{
+			long start = System.nanoTime();
+			report.connectionsOpened = this.openConnections(target, connections);
+			report.connectNanos = System.nanoTime() - start;
+		}
+
+		if (signingIterations > 0)
+		{
+			long start = System.nanoTime();
+			report.signingFailures = this.exerciseSigning(signingIterations);
+			report.signingNanos = System.nanoTime() - start;
+		}
+
+		if (logger.isInfoEnabled())
+			logger.info("Client warm-up finished: " + report);
+		return report;
+	}
+
+	/**
+	 * Checks out and opens up to <code>count</code> connections at once, then
+	 * hands them all back so they sit open in the pool.
+	 * @return number of connections opened.
+	 */
+	private int openConnections(HostConfiguration target, int count)
+	{
+		HttpConnectionManager cm = this.client.getHttpClient().getHttpConnectionManager();
+		List<HttpConnection> connections = new ArrayList<HttpConnection>(count);
+		int opened = 0;
+		try
+		{
+			for (int i = 0; i < count; i++)
+			{
+				// a pool smaller than requested simply stops us early
+				HttpConnection connection = cm.getConnectionWithTimeout(target, 1000);
+				if (connections.contains(connection))
+				{
+					// single-connection managers hand out the same connection again
+					break;
+				}
+				connections.add(connection);
+				if (!connection.isOpen())
+				{
+					connection.open();
+					opened++;
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			logger.warn("Warm-up opened " + opened + " of " + count + " connections", e);
+		}
+		finally
+		{
+			for (HttpConnection connection : connections)
+				connection.releaseConnection();
+		}
+		return opened;
+	}
+
+	/**
+	 * Builds, but never executes, signed methods of each kind the client uses.
+	 * @return number of iterations that failed.
+	 */
+	private int exerciseSigning(int iterations)
+	{
+		HttpMethodBuilder builder = this.client.getMethodBuilder();
+		NetflixAPICustomer customer = new NetflixAPICustomer(
+				new OAuthAccessToken("oauth_token=warmup&user_id=warmup&oauth_token_secret=warmup"));
+		String uri = APIEndpoints.CATALOG_URI;
+		int failures = 0;
+		for (int i = 0; i < iterations; i++)
+		{
+			try
+			{
+				Map<String, String> parameters = new HashMap<String, String>();
+				parameters.put("term", "warm up " + i);
+				parameters.put("start_index", String.valueOf(i));
+				parameters.putAll(builder.getDefaultOAuthParameters());
+				builder.buildConsumerSignedGetMethod(uri, new HashMap<String, String>(parameters));
+				builder.buildConsumerSignedPostMethod(uri, new HashMap<String, String>(parameters));
+				builder.buildCustomerAuthorizedGetMethod(uri, new HashMap<String, String>(parameters), customer);
+				builder.buildConsumerKeyedGetMethod(uri, new HashMap<String, String>(parameters));
+			}
+			catch (Exception e)
+			{
+				failures++;
+			}
+		}
+		if (failures > 0)
+			logger.warn(failures + " of " + iterations + " warm-up signing iterations failed");
+		return failures;
+	}
+
+	/**
+	 * Outcome of a warm-up.
+	 */
+	public static class Report
+	{
+		private boolean resolved;
+
+		private long resolveNanos;
+
+		private int connectionsOpened;
+
+		private long connectNanos;
+
+		private int signingFailures;
+
+		private long signingNanos;
+
+		public boolean isResolved()
+		{
+			return resolved;
+		}
+
+		public long getResolveNanos()
+		{
+			return resolveNanos;
+		}
+
+		public int getConnectionsOpened()
+		{
+			return connectionsOpened;
+		}
+
+		public long getConnectNanos()
+		{
+			return connectNanos;
+		}
+
+		public int getSigningFailures()
+		{
+			return signingFailures;
+		}
+
+		public long getSigningNanos()
+		{
+			return signingNanos;
+		}
+
+		public String toString()
+		{
+			return "resolved=" + this.resolved + " (" + this.resolveNanos / 1000000 + "ms), opened "
+				+ this.connectionsOpened + " connections (" + this.connectNanos / 1000000 + "ms), signing took "
+				+ this.signingNanos / 1000000 + "ms with " + this.signingFailures + " failures";
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.netflix.api.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of independent sub-calls that together make up one logical
+ * request, such as everything needed to render a title page.  Executed
+ * with <code>NetflixAPIClient.executeComposite</code>, which runs the parts
+ * concurrently under a shared deadline. <br />
+ * A part is critical if the composite is useless without it: a critical
+ * part that fails or misses the deadline fails the whole composite, while
+ * other parts are simply left out of the result.
+ */
+public class CompositeRequest
+{
+	private final List<Part<?>> parts = new ArrayList<Part<?>>();
+	
+	/**
+	 * Adds a sub-call.
+	 * @param name - identifies the part in logs and results.
+	 * @param request - the call to make.
+	 * @param handler - decodes its response.
+	 * @param critical - whether the composite fails without this part.
+	 * @return a key for the part's result.
+	 */
+	public <T> Part<T> add(String name, APIRequest request, ResponseHandler<T> handler, boolean critical)
+	{
+		Part<T> part = new Part<T>(name, request, handler, critical);
+		this.parts.add(part);
+		return part;
+	}
+	
+	public List<Part<?>> getParts()
+	{
+		return Collections.unmodifiableList(this.parts);
+	}
+	
+	/**
+	 * One sub-call of a composite, and the key to its result.
+	 */
+	public static class Part<T>
+	{
+		private final String name;
+		
+		private final APIRequest request;
+		
+		private final ResponseHandler<T> handler;
+		
+		private final boolean critical;
+		
+		Part(String name, APIRequest request, ResponseHandler<T> handler, boolean critical)
+		{
+			this.name = name;
+			this.request = request;
+			this.handler = handler;
+			this.critical = critical;
+		}
+		
+		public String getName()
+		{
+			return name;
+		}
+		
+		public APIRequest getRequest()
+		{
+			return request;
+		}
+		
+		public ResponseHandler<T> getHandler()
+		{
+			return handler;
+		}
+		
+		public boolean isCritical()
+		{
+			return critical;
+		}
+		
+		public String toString()
+		{
+			return this.name + (this.critical ? " (critical) " : " ") + this.request;
+		}
+	}
+	
+}
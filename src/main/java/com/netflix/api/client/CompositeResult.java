@@ -0,0 +1,91 @@
+package com.netflix.api.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The merged results of a <code>CompositeRequest</code>.  Every critical
+ * part succeeded; other parts may have failed or run out of time, in which
+ * case their value is null.
+ */
+public class CompositeResult
+{
+	private final Map<CompositeRequest.Part<?>, APIResult<?>> results = new HashMap<CompositeRequest.Part<?>, APIResult<?>>();
+	
+	private final List<String> timedOut = new ArrayList<String>();
+	
+	private long elapsedNanos;
+	
+	void put(CompositeRequest.Part<?> part, APIResult<?> result)
+	{
+		this.results.put(part, result);
+	}
+	
+	void addTimedOut(CompositeRequest.Part<?> part)
+	{
+		this.timedOut.add(part.getName());
+	}
+	
+	void setElapsedNanos(long elapsedNanos)
+	{
+		this.elapsedNanos = elapsedNanos;
+	}
+	
+	/**
+	 * @param part
+	 * @return the part's result, or null if it ran out of time.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> APIResult<T> get(CompositeRequest.Part<T> part)
+	{
+		return (APIResult<T>) this.results.get(part);
+	}
+	
+	/**
+	 * @param part
+	 * @return the part's decoded response, or null if it failed or ran out of time.
+	 */
+	public <T> T getValue(CompositeRequest.Part<T> part)
+	{
+		APIResult<T> result = this.get(part);
+		return result == null ? null : result.getValue();
+	}
+	
+	/**
+	 * @return true if every part succeeded in time.
+	 */
+	public boolean isComplete()
+	{
+		if (!this.timedOut.isEmpty())
+			return false;
+		for (APIResult<?> result : this.results.values())
+		{
+			if (!result.isSuccess())
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return names of the parts abandoned at the deadline.
+	 */
+	public List<String> getTimedOut()
+	{
+		return Collections.unmodifiableList(this.timedOut);
+	}
+	
+	public long getElapsedNanos()
+	{
+		return elapsedNanos;
+	}
+	
+	public String toString()
+	{
+		return this.results.size() + " parts in " + this.elapsedNanos / 1000000 + "ms"
+			+ (this.timedOut.isEmpty() ? "" : ", timed out: " + this.timedOut);
+	}
+	
+}
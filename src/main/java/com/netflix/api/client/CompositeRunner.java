@@ -0,0 +1,142 @@
+package com.netflix.api.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.api.NetflixAPIException;
+
+/**
+ * Scatters the parts of a composite across an executor and gathers them
+ * as they complete, until all are in or the deadline passes.
+ */
+class CompositeRunner
+{
+	private final NetflixAPIClient client;
+	
+	CompositeRunner(NetflixAPIClient client)
+	{
+		this.client = client;
+	}
+	
+	CompositeResult run(CompositeRequest composite, ExecutorService executor, long timeoutMillis)
+		throws NetflixAPIException, InterruptedException
+	{
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		CompletionService<APIResult<?>> completion = new ExecutorCompletionService<APIResult<?>>(executor);
+		Map<Future<APIResult<?>>, Execution> running = new HashMap<Future<APIResult<?>>, Execution>();
+		for (CompositeRequest.Part<?> part : composite.getParts())
+		{
+			Execution execution = new Execution(part);
+			running.put(completion.submit(execution), execution);
+		}
+		
+		CompositeResult result = new CompositeResult();
+		try
+		{
+			while (!running.isEmpty())
+			{
+				long remaining = deadline - System.nanoTime();
+				Future<APIResult<?>> done = remaining > 0 ? completion.poll(remaining, TimeUnit.NANOSECONDS) : null;
+				if (done == null)
+					break;
+				Execution execution = running.remove(done);
+				APIResult<?> partResult;
+				try
+				{
+					partResult = done.get();
+				}
+				catch (ExecutionException e)
+				{
+					// Execution records failures itself; only errors get here
+					partResult = APIResult.failure(execution.part.getRequest(), e.getCause(), System.nanoTime() - start);
+				}
+				if (!partResult.isSuccess() && execution.part.isCritical())
+					throw new NetflixAPIException("Critical part " + execution.part + " failed", partResult.getError());
+				result.put(execution.part, partResult);
+			}
+			
+			for (Execution execution : running.values())
+			{
+				if (execution.part.isCritical())
+					throw new NetflixAPIException("Critical part " + execution.part + " did not finish within " + timeoutMillis + "ms");
+			}
+			for (Execution execution : this.sorted(composite, running))
+				result.addTimedOut(execution.part);
+		}
+		finally
+		{
+			// whatever is left has been given up on
+			for (Map.Entry<Future<APIResult<?>>, Execution> entry : running.entrySet())
+			{
+				entry.getKey().cancel(true);
+				entry.getValue().request.abort();
+			}
+		}
+		result.setElapsedNanos(System.nanoTime() - start);
+		return result;
+	}
+	
+	/**
+	 * @return the unfinished executions, in the order their parts were added.
+	 */
+	private List<Execution> sorted(CompositeRequest composite, Map<Future<APIResult<?>>, Execution> running)
+	{
+		List<Execution> sorted = new ArrayList<Execution>(running.size());
+		for (CompositeRequest.Part<?> part : composite.getParts())
+		{
+			for (Execution execution : running.values())
+			{
+				if (execution.part == part)
+					sorted.add(execution);
+			}
+		}
+		return sorted;
+	}
+	
+	/**
+	 * Runs one part on a copy of its request, so abandoning it never marks
+	 * the caller's request as aborted.
+	 */
+	private class Execution implements Callable<APIResult<?>>
+	{
+		final CompositeRequest.Part<?> part;
+		
+		final APIRequest request;
+		
+		Execution(CompositeRequest.Part<?> part)
+		{
+			this.part = part;
+			this.request = part.getRequest().copy();
+		}
+		
+		public APIResult<?> call()
+		{
+			return this.call(this.part);
+		}
+		
+		private <T> APIResult<T> call(CompositeRequest.Part<T> typed)
+		{
+			long start = System.nanoTime();
+			try
+			{
+				T value = client.execute(this.request, typed.getHandler());
+				return APIResult.success(typed.getRequest(), value, System.nanoTime() - start);
+			}
+			catch (Exception e)
+			{
+				return APIResult.failure(typed.getRequest(), e, System.nanoTime() - start);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,82 @@
+package com.netflix.api.client;
+
+/**
+ * Groups API resource URIs by the kind of response they return, for
+ * decisions and statistics that are kept per kind of call rather than per
+ * URI.
+ */
+public enum EndpointFamily
+{
+	/**
+	 * Catalog searches: <code>/catalog/titles?term=...</code>
+	 */
+	CATALOG_SEARCH,
+	
+	/**
+	 * A single title or its sub-resources: <code>/catalog/titles/movies/...</code>
+	 */
+	CATALOG_TITLE,
+	
+	/**
+	 * The full catalog index: <code>/catalog/titles/index</code> and <code>/catalog/titles/full</code>
+	 */
+	CATALOG_INDEX,
+	
+	/**
+	 * Title autocompletion: <code>/catalog/titles/autocomplete</code>
+	 */
+	AUTOCOMPLETE,
+	
+	/**
+	 * People searches and details: <code>/catalog/people...</code>
+	 */
+	PEOPLE,
+	
+	/**
+	 * Customer resources such as queues and ratings: <code>/users/...</code>
+	 */
+	USER,
+	
+	/**
+	 * Token exchanges: <code>/oauth/...</code>
+	 */
+	OAUTH,
+	
+	OTHER;
+	
+	/**
+	 * @param uri - an absolute resource URI, or a path.
+	 * @return the family the resource belongs to.
+	 */
+	public static EndpointFamily forUri(String uri)
+	{
+		if (uri == null)
+			return OTHER;
+		int start = uri.indexOf("://");
+		start = start < 0 ? 0 : uri.indexOf('/', start + 3);
+		if (start < 0)
+			return OTHER;
+		int end = uri.indexOf('?', start);
+		String path = end < 0 ? uri.substring(start) : uri.substring(start, end);
+		
+		if (path.startsWith("/users"))
+			return USER;
+		if (path.startsWith("/catalog/titles"))
+		{
+			String rest = path.substring("/catalog/titles".length());
+			if (rest.length() == 0 || rest.equals("/"))
+				return CATALOG_SEARCH;
+			if (rest.startsWith("/index") || rest.startsWith("/full"))
+				return CATALOG_INDEX;
+			if (rest.startsWith("/autocomplete"))
+				return AUTOCOMPLETE;
+			return CATALOG_TITLE;
+		}
+		if (path.startsWith("/catalog/people"))
+			return PEOPLE;
+		if (path.startsWith("/oauth"))
+			return OAUTH;
+		return OTHER;
+	}
+	
+}
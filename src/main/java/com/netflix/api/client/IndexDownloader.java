@@ -0,0 +1,370 @@
+package com.netflix.api.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.api.NetflixAPIException;
+
+/**
+ * Downloads the full catalog index, <code>APIEndpoints.INDEX_URI</code>, to
+ * a file. <br />
+ * The index is far too large to read into a String, so the body is copied
+ * from the connection to the file through a single direct buffer of
+ * <code>bufferSize</code> bytes, and never held in the heap.  It is written
+ * to <code>&lt;target&gt;.part</code> and renamed over the target only once
+ * complete. <br />
+ * When the connection fails part way, the download resumes where the
+ * partial file ends, with a freshly signed request asking for the remaining
+ * <code>Range</code>.  The index's ETag is kept beside the partial file and
+ * sent as <code>If-Range</code>, so that if the index has changed in the
+ * meantime the server sends it whole and the download starts over; this
+ * also lets a later download resume a partial file left by an earlier one.
+ * A partial file the server's <code>Content-Range</code> does not line up
+ * with is discarded and the download started over. <br />
+ * Up to <code>maxRetries</code> failures in a row, whether connection
+ * failures or 5xx responses, are retried with a doubling delay; any
+ * progress resets the count.
+ */
+public class IndexDownloader
+{
+	private static final Logger logger = LoggerFactory.getLogger(IndexDownloader.class);
+
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+	public static final int DEFAULT_MAX_RETRIES = 5;
+
+	public static final long DEFAULT_RETRY_DELAY_MILLIS = 1000;
+
+	/**
+	 * Least time between two progress reports.
+	 */
+	public static final long PROGRESS_INTERVAL_MILLIS = 1000;
+
+	private final NetflixAPIClient client;
+
+	private final String uri;
+
+	private final int bufferSize;
+
+	private final int maxRetries;
+
+	private final long retryDelayMillis;
+
+	/**
+	 * Downloads <code>APIEndpoints.INDEX_URI</code> with the default buffer and retries.
+	 */
+	public IndexDownloader(NetflixAPIClient client)
+	{
+		this(client, APIEndpoints.INDEX_URI, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_RETRIES, DEFAULT_RETRY_DELAY_MILLIS);
+	}
+
+	/**
+	 * @param client - signs the requests and supplies the connections.
+	 * @param uri - the resource to download.
+	 * @param bufferSize - bytes copied at a time; the only buffer used.
+	 * @param maxRetries - failures in a row before giving up.
+	 * @param retryDelayMillis - delay before the first retry, doubled for each further one.
+	 */
+	public IndexDownloader(NetflixAPIClient client, String uri, int bufferSize, int maxRetries, long retryDelayMillis)
+	{
+		if (bufferSize <= 0 || maxRetries < 0)
+			throw new IllegalArgumentException("Buffer size must be positive and retries not negative");
+		this.client = client;
+		this.uri = uri;
+		this.bufferSize = bufferSize;
+		this.maxRetries = maxRetries;
+		this.retryDelayMillis = retryDelayMillis;
+	}
+
+	/**
+	 * Downloads the index, resuming any partial download of the same target.
+	 * @param target - the file to write; replaced once the download completes.
+	 * @param listener - told of progress, or null.
+	 * @return what was downloaded, and how fast.
+	 * @throws Exception - if the download fails more than <code>maxRetries</code> times in a row,
+	 * or the server refuses it.
+	 */
+	public Report download(File target, ProgressListener listener) throws Exception
+	{
+		File part = new File(target.getPath() + ".part");
+		File validator = new File(target.getPath() + ".part.etag");
+		Report report = new Report(target);
+		long start = System.nanoTime();
+		int failures = 0;
+		while (true)
+		{
+			long before = part.length();
+			try
+			{
+				if (this.transfer(part, validator, report, listener))
+					break;
+			}
+			catch (IOException e)
+			{
+				if (part.length() > before)
+					failures = 0;
+				if (++failures > this.maxRetries)
+					throw e;
+				long delay = this.retryDelayMillis << Math.min(failures - 1, 16);
+				logger.warn("Index download failed at byte " + part.length() + ", resuming in " + delay + "ms", e);
+				report.resumes++;
+				if (listener != null)
+					listener.resuming(part.length(), e);
+				Thread.sleep(delay);
+			}
+		}
+
+		if (target.exists() && !target.delete())
+			throw new IOException("Could not replace " + target);
+		if (!part.renameTo(target))
+			throw new IOException("Could not rename " + part + " to " + target);
+		validator.delete();
+		report.elapsedNanos = System.nanoTime() - start;
+		report.bytes = target.length();
+		if (logger.isInfoEnabled())
+			logger.info("Downloaded catalog index: " + report);
+		return report;
+	}
+
+	/**
+	 * Makes one request, appending what it returns to the partial file.
+	 * @return true if the body was received in full.
+	 */
+	private boolean transfer(File part, File validator, Report report, ProgressListener listener) throws Exception
+	{
+		long offset = part.length();
+		String etag = offset > 0 && validator.exists() ? FileUtils.readFileToString(validator, "UTF-8").trim() : null;
+		if (offset > 0 && etag == null)
+		{
+			// nothing to tell the server which version the partial file is of
+			offset = 0;
+		}
+
+		APIRequest request = APIRequest.consumerSigned(this.uri, null, NetflixAPIClient.GET_METHOD_TYPE);
+		HttpMethod method = this.client.buildMethod(request);
+		if (offset > 0)
+		{
+			method.setRequestHeader("Range", "bytes=" + offset + "-");
+			method.setRequestHeader("If-Range", etag);
+		}
+		request.attach(method);
+		RandomAccessFile file = null;
+		try
+		{
+			int status = this.client.getHttpClient().executeMethod(method);
+			long[] range = contentRange(method);
+			if (status == 416 && offset > 0)
+			{
+				// bytes */<size>: whole only if the partial file is that long
+				if (range[2] == offset)
+					return true;
+				return restart(part, "the partial file is " + offset + " bytes but the index is " + range[2]);
+			}
+			if (status >= 500)
+				throw new IOException("Index download failed: " + method.getStatusLine());
+			if (status == 200)
+				offset = 0;
+			else if (status != 206)
+				throw new NetflixAPIException("Index download failed: " + method.getStatusLine());
+			else if (range[0] != offset)
+				return restart(part, "asked for byte " + offset + " but got from byte " + range[0]);
+
+			Header tag = method.getResponseHeader("ETag");
+			if (offset == 0)
+			{
+				if (tag != null)
+					FileUtils.writeStringToFile(validator, tag.getValue(), "UTF-8");
+				else validator.delete();
+			}
+			Header length = method.getResponseHeader("Content-Length");
+			report.totalBytes = length == null ? -1 : offset + Long.parseLong(length.getValue().trim());
+
+			file = new RandomAccessFile(part, "rw");
+			file.setLength(offset);
+			FileChannel out = file.getChannel();
+			out.position(offset);
+			InputStream body = method.getResponseBodyAsStream();
+			if (body == null)
+				return true;
+			this.copy(Channels.newChannel(body), out, offset, report, listener);
+			return true;
+		}
+		finally
+		{
+			if (file != null)
+				file.close();
+			method.releaseConnection();
+			request.detach();
+		}
+	}
+
+	/**
+	 * Empties the partial file, so the next request asks for the whole index.
+	 * @return false, as nothing was received.
+	 */
+	private boolean restart(File part, String reason) throws IOException
+	{
+		logger.warn("Restarting the index download: " + reason);
+		if (part.exists() && !part.delete())
+			throw new IOException("Could not delete " + part);
+		return false;
+	}
+
+	/**
+	 * @return the first byte, last byte and size of a <code>Content-Range</code>
+	 * such as <code>bytes 0-99/1000</code> or <code>bytes *&#47;1000</code>;
+	 * -1 for any that is unknown or missing.
+	 */
+	private static long[] contentRange(HttpMethod method)
+	{
+		long[] range = { -1, -1, -1 };
+		Header header = method.getResponseHeader("Content-Range");
+		if (header == null)
+			return range;
+		String value = header.getValue().trim();
+		int space = value.indexOf(' ');
+		int slash = value.indexOf('/');
+		if (!value.startsWith("bytes") || space < 0 || slash < space)
+			return range;
+		try
+		{
+			String bytes = value.substring(space + 1, slash).trim();
+			int dash = bytes.indexOf('-');
+			if (dash > 0)
+			{
+				range[0] = Long.parseLong(bytes.substring(0, dash).trim());
+				range[1] = Long.parseLong(bytes.substring(dash + 1).trim());
+			}
+			String size = value.substring(slash + 1).trim();
+			if (!size.equals("*"))
+				range[2] = Long.parseLong(size);
+		}
+		catch (NumberFormatException e)
+		{
+			// as good as missing
+		}
+		return range;
+	}
+
+	/**
+	 * Copies the body to the file.
+	 * @throws IOException - if the body ends short of the total.
+	 */
+	private void copy(ReadableByteChannel in, FileChannel out, long offset, Report report, ProgressListener listener)
+		throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocateDirect(this.bufferSize);
+		long received = offset;
+		long windowStart = System.nanoTime();
+		long windowBytes = 0;
+		while (in.read(buffer) >= 0)
+		{
+			buffer.flip();
+			while (buffer.hasRemaining())
+				received += out.write(buffer);
+			buffer.clear();
+
+			long now = System.nanoTime();
+			long windowNanos = now - windowStart;
+			if (listener != null && windowNanos >= TimeUnit.MILLISECONDS.toNanos(PROGRESS_INTERVAL_MILLIS))
+			{
+				double bytesPerSecond = (received - offset - windowBytes) * 1e9 / windowNanos;
+				listener.progress(received, report.totalBytes, bytesPerSecond);
+				windowStart = now;
+				windowBytes = received - offset;
+			}
+		}
+		if (report.totalBytes >= 0 && received < report.totalBytes)
+			throw new IOException("Connection closed after " + received + " of " + report.totalBytes + " bytes");
+		if (listener != null)
+			listener.progress(received, report.totalBytes, 0);
+	}
+
+	/**
+	 * Told of a download's progress, on the downloading thread.
+	 */
+	public interface ProgressListener
+	{
+		/**
+		 * @param bytesReceived - bytes in the file so far, including any resumed from.
+		 * @param totalBytes - size of the index, or -1 if the server did not say.
+		 * @param bytesPerSecond - recent throughput; 0 in the final report.
+		 */
+		void progress(long bytesReceived, long totalBytes, double bytesPerSecond);
+
+		/**
+		 * @param offset - the byte the download will resume from.
+		 * @param cause - why it was interrupted.
+		 */
+		void resuming(long offset, Exception cause);
+	}
+
+	/**
+	 * Outcome of a download.
+	 */
+	public static class Report
+	{
+		private final File file;
+
+		private long bytes;
+
+		private long totalBytes = -1;
+
+		private long elapsedNanos;
+
+		private int resumes;
+
+		Report(File file)
+		{
+			this.file = file;
+		}
+
+		public File getFile()
+		{
+			return file;
+		}
+
+		public long getBytes()
+		{
+			return bytes;
+		}
+
+		public long getElapsedNanos()
+		{
+			return elapsedNanos;
+		}
+
+		/**
+		 * @return times the download was resumed after a failure.
+		 */
+		public int getResumes()
+		{
+			return resumes;
+		}
+
+		public double getBytesPerSecond()
+		{
+			return this.elapsedNanos == 0 ? 0 : this.bytes * 1e9 / this.elapsedNanos;
+		}
+
+		public String toString()
+		{
+			return this.bytes + " bytes to " + this.file + " in " + TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos)
+				+ "ms (" + Math.round(this.getBytesPerSecond() / 1024) + "KB/s, " + this.resumes + " resumes)";
+		}
+	}
+
+}
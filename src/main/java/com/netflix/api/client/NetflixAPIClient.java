@@ -1,15 +1,28 @@
 package com.netflix.api.client;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnectionManager;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,8 +30,15 @@ import org.slf4j.LoggerFactory;
 import com.netflix.api.NetflixAPIException;
 import com.netflix.api.NetflixAPIResponse;
 import com.netflix.api.client.dal.HttpMethodBuilder;
+import com.netflix.api.client.dal.IdleConnectionEvictor;
+import com.netflix.api.client.dal.StripedHttpConnectionManager;
+import com.netflix.api.client.metrics.MetricsRegistry;
+import com.netflix.api.client.metrics.StatusClass;
 import com.netflix.api.client.oauth.OAuthAccessToken;
 import com.netflix.api.client.oauth.OAuthRequestToken;
+import com.netflix.api.client.trace.RequestListener;
+import com.netflix.api.client.trace.RequestPhase;
+import com.netflix.api.client.trace.RequestTrace;
 
 /**
  * Main point of interaction with Netflix API. <br />
@@ -84,6 +104,24 @@ public class NetflixAPIClient
 	 */
 	private String consumerSecret;
 	
+	/**
+	 * Closes idle pooled connections in the background, when enabled.
+	 */
+	private IdleConnectionEvictor connectionEvictor;
+	
+	private ExecutorService sharedExecutor;
+	
+	/**
+	 * Told of every call made, when set; calls are not timed otherwise.
+	 */
+	private volatile MetricsRegistry metricsRegistry;
+	
+	/**
+	 * Told of the phases of every call, when there are any; calls are not
+	 * traced otherwise.
+	 */
+	private final List<RequestListener> requestListeners = new CopyOnWriteArrayList<RequestListener>();
+	
 	/**
 	 * Default no-arg constructor.
 	 */
@@ -125,7 +163,11 @@ public class NetflixAPIClient
 		try
 		{
 			int threads = Integer.decode(props.getProperty("THREADS"));
-			if (threads > 0)
+			if (threads > 0 && "striped".equalsIgnoreCase(props.getProperty("CONNECTION_POOL")))
+			{
+				this.httpClient = new HttpClient(new StripedHttpConnectionManager(threads, threads));
+			}
+			else if (threads > 0)
 			{
 				MultiThreadedHttpConnectionManager cm = new MultiThreadedHttpConnectionManager();
 				cm.setMaxTotalConnections(threads);
@@ -140,6 +182,20 @@ public class NetflixAPIClient
 		}
 		this.methodBuilder = new HttpMethodBuilder(this, props);
 		APIEndpoints.init(props);
+		
+		String idleTimeout = props.getProperty("IDLE_CONNECTION_TIMEOUT");
+		if (idleTimeout != null)
+		{
+			try
+			{
+				long timeout = Long.parseLong(idleTimeout.trim());
+				this.startIdleConnectionEviction(timeout, Math.max(timeout / 2, 1));
+			}
+			catch (NumberFormatException e)
+			{
+				logger.warn("Ignoring malformed IDLE_CONNECTION_TIMEOUT [" + idleTimeout + "]; idle connections will not be evicted");
+			}
+		}
 	}
 	
 	/**
@@ -160,6 +216,25 @@ public class NetflixAPIClient
 		APIEndpoints.init(props);
 	}
 	
+	/**
+	 * Initializes environment to configuration described by the provided
+	 * properties object and the given connection manager, e.g. a
+	 * <code>StripedHttpConnectionManager</code>.
+	 * @param consumerKey
+	 * @param consumerSecret
+	 * @param props
+	 * @param cm
+	 */
+	public NetflixAPIClient(String consumerKey, String consumerSecret, 
+			Properties props, HttpConnectionManager cm)
+	{
+		this.consumerKey = consumerKey;
+		this.consumerSecret = consumerSecret;
+		this.httpClient = new HttpClient(cm);
+		this.methodBuilder = new HttpMethodBuilder(this, props);
+		APIEndpoints.init(props);
+	}
+	
 	/**
 	 * Calls netflix API using no signing of any kind (appropriate for the
 	 * 'no auth' level of security).  Primarily of interest only to clients
@@ -173,26 +248,14 @@ public class NetflixAPIClient
 	 */
 	public NetflixAPIResponse makeUnsignedApiCall(String uri, Map<String, String> callParameters) throws Exception
 	{
-		NetflixAPIResponse response = new NetflixAPIResponse();
 		GetMethod method = null;
 		if (callParameters == null)
 			callParameters = new HashMap<String, String>();
 		callParameters.putAll(methodBuilder.getDefaultOAuthParameters());
 		
+		long building = this.startBuilding();
 		method = methodBuilder.buildConsumerKeyedGetMethod(uri, callParameters);
-		httpClient.executeMethod(method);
-		response.setResponseBody(method.getResponseBodyAsString());
-		response.setStatusCode(method.getStatusCode());
-		response.setStatusLine(method.getStatusLine().toString());
-		response.setResponseHeaders(this.resolveResponseHeaders(method));
-		method.releaseConnection();
-		
-		if (logger.isDebugEnabled())
-		{
-			response.setExecutionSummary("Calling [" + uri + "] resulted in status code [" + response.getStatusLine() + "] and response\n" + response.getResponseBody());
-			logger.debug(response.getExecutionSummary());
-		}
-		return response;
+		return this.executeMethod(uri, method, building);
 	}
 	
 	/**
@@ -208,32 +271,12 @@ public class NetflixAPIClient
 	 */
 	public NetflixAPIResponse makeConsumerSignedApiCall(String uri, Map<String, String> callParameters, String methodType) throws Exception
 	{
-		NetflixAPIResponse response = new NetflixAPIResponse();
-		HttpMethod method = null;
 		if (callParameters == null)
 			callParameters = new HashMap<String, String>();
 		callParameters.putAll(methodBuilder.getDefaultOAuthParameters());
 		
-		if (methodType.equalsIgnoreCase(GET_METHOD_TYPE))
-			method = methodBuilder.buildConsumerSignedGetMethod(uri, callParameters);
-		else if (methodType.equalsIgnoreCase(POST_METHOD_TYPE))
-			method = methodBuilder.buildConsumerSignedPostMethod(uri, callParameters);
-		else throw new NetflixAPIException("No valid HTTP method specified: must be GET or POST for consumer-signed calls.");
-		
-		httpClient.executeMethod(method);
-		response.setResponseBody(method.getResponseBodyAsString());
-		response.setStatusCode(method.getStatusCode());
-		response.setStatusLine(method.getStatusLine().toString());
-		response.setResponseHeaders(this.resolveResponseHeaders(method));
-		method.releaseConnection();
-		
-		if (logger.isDebugEnabled())
-		{
-			response.setExecutionSummary("Calling [" + uri + "] resulted in status code [" + response.getStatusLine() + "] and response\n" + response.getResponseBody());
-			logger.debug(response.getExecutionSummary());
-		}
-		
-		return response;
+		long building = this.startBuilding();
+		return this.executeMethod(uri, this.buildConsumerSignedMethod(uri, callParameters, methodType), building);
 	}
 	
 	/**
@@ -250,34 +293,12 @@ public class NetflixAPIClient
 	 */
 	public NetflixAPIResponse makeCustomerAuthorizedApiCall(String uri, NetflixAPICustomer customer, Map<String, String> callParameters, String methodType) throws Exception
 	{
-		NetflixAPIResponse response = new NetflixAPIResponse();
-		HttpMethod method = null;
 		if (callParameters == null)
 			callParameters = new HashMap<String, String>();
 		callParameters.putAll(methodBuilder.getDefaultOAuthParameters());
 		
-		if (methodType.equalsIgnoreCase(GET_METHOD_TYPE))
-			method = methodBuilder.buildCustomerAuthorizedGetMethod(uri, callParameters, customer);
-		else if (methodType.equalsIgnoreCase(POST_METHOD_TYPE))
-			method = methodBuilder.buildCustomerAuthorizedPostMethod(uri, callParameters, customer);
-		else if (methodType.equalsIgnoreCase(DELETE_METHOD_TYPE))
-			method = methodBuilder.buildCustomerAuthorizedDeleteMethod(uri, callParameters, customer);
-		else throw new NetflixAPIException("No valid HTTP method specified: must be GET, POST or DELETE for customer authorized calls.");
-		
-		httpClient.executeMethod(method);
-		response.setResponseBody(method.getResponseBodyAsString());
-		response.setStatusCode(method.getStatusCode());
-		response.setStatusLine(method.getStatusLine().toString());
-		response.setResponseHeaders(this.resolveResponseHeaders(method));
-		method.releaseConnection();
-		
-		if (logger.isDebugEnabled())
-		{
-			response.setExecutionSummary("Calling [" + uri + "] resulted in status code [" + response.getStatusLine() + "] and response\n" + response.getResponseBody());
-			logger.debug(response.getExecutionSummary());
-		}
-		
-		return response;
+		long building = this.startBuilding();
+		return this.executeMethod(uri, this.buildCustomerAuthorizedMethod(uri, customer, callParameters, null, methodType), building);
 	}
 	
 	/**
@@ -295,60 +316,558 @@ public class NetflixAPIClient
 	public NetflixAPIResponse makeCustomerAuthorizedApiCall(String uri, NetflixAPICustomer customer, Map<String, String> callParameters,
 			Map<String, String> requestHeaders, String methodType) throws Exception
 	{
-		NetflixAPIResponse response = new NetflixAPIResponse();
-		HttpMethod method = null;
 		if (callParameters == null)
 			callParameters = new HashMap<String, String>();
 		callParameters.putAll(methodBuilder.getDefaultOAuthParameters());
 		
+		long building = this.startBuilding();
+		return this.executeMethod(uri, this.buildCustomerAuthorizedMethod(uri, customer, callParameters, requestHeaders, methodType), building);
+	}
+	
+	/**
+	 * Executes the call described by the given request descriptor, at the
+	 * security level it specifies.
+	 *
+	 * @param request - the call to make.
+	 * @return - the server's response
+	 * @throws Exception - if a server communication error occurs.
+	 */
+	public NetflixAPIResponse execute(APIRequest request) throws Exception
+	{
+		long building = this.startBuilding();
+		HttpMethod method = this.buildMethod(request);
+		request.attach(method);
+		try
+		{
+			return this.executeMethod(request.getUri(), method, building);
+		}
+		finally
+		{
+			request.detach();
+		}
+	}
+	
+	/**
+	 * Executes the call described by the given request descriptor and hands
+	 * the response body to the given handler as a stream, without ever
+	 * reading it into a String.  The connection is released once the
+	 * handler returns.
+	 *
+	 * @param request - the call to make.
+	 * @param handler - consumes the response body.
+	 * @return - whatever the handler returns.
+	 * @throws Exception - if a server communication error occurs, or the handler fails.
+	 */
+	public <T> T execute(APIRequest request, ResponseHandler<T> handler) throws Exception
+	{
+		long building = this.startBuilding();
+		HttpMethod method = this.buildMethod(request);
+		request.attach(method);
+		try
+		{
+			return this.executeMethod(request.getUri(), method, handler, building);
+		}
+		finally
+		{
+			request.detach();
+		}
+	}
+	
+	/**
+	 * Executes a batch of independent requests, at most
+	 * <code>parallelism</code> at a time, on the client's shared worker
+	 * threads.  Every request is attempted; a failure is recorded in its
+	 * result rather than stopping the batch.
+	 *
+	 * @param requests - the calls to make.
+	 * @param parallelism - most requests to have in flight at once.
+	 * @return a result for each request, in the order given, with timing.
+	 * @throws InterruptedException - if interrupted while waiting; requests
+	 * still in flight are aborted.
+	 */
+	public BatchResult<NetflixAPIResponse> executeAll(List<APIRequest> requests, int parallelism) throws InterruptedException
+	{
+		return new BatchRunner<NetflixAPIResponse>(requests)
+		{
+			protected NetflixAPIResponse call(APIRequest request) throws Exception
+			{
+				return execute(request);
+			}
+		}.run(this.getSharedExecutor(), parallelism);
+	}
+	
+	/**
+	 * As <code>executeAll(List, int)</code>, streaming each response body to the handler.
+	 *
+	 * @param requests - the calls to make.
+	 * @param handler - consumes each response body; called concurrently.
+	 * @param parallelism - most requests to have in flight at once.
+	 * @return a result for each request, in the order given, with timing.
+	 * @throws InterruptedException - if interrupted while waiting; requests
+	 * still in flight are aborted.
+	 */
+	public <T> BatchResult<T> executeAll(List<APIRequest> requests, final ResponseHandler<T> handler, int parallelism)
+		throws InterruptedException
+	{
+		return new BatchRunner<T>(requests)
+		{
+			protected T call(APIRequest request) throws Exception
+			{
+				return execute(request, handler);
+			}
+		}.run(this.getSharedExecutor(), parallelism);
+	}
+	
+	/**
+	 * Executes the parts of a composite request concurrently, on the
+	 * client's shared worker threads, and merges their results.  Parts still
+	 * running at the deadline are aborted; the composite succeeds without
+	 * them unless one of them is critical.
+	 *
+	 * @param composite - the sub-calls to make.
+	 * @param timeoutMillis - deadline for the whole composite.
+	 * @return the merged results.
+	 * @throws NetflixAPIException - if a critical part fails or misses the deadline.
+	 * @throws InterruptedException - if interrupted while waiting; all parts are aborted.
+	 */
+	public CompositeResult executeComposite(CompositeRequest composite, long timeoutMillis)
+		throws NetflixAPIException, InterruptedException
+	{
+		return new CompositeRunner(this).run(composite, this.getSharedExecutor(), timeoutMillis);
+	}
+	
+	/**
+	 * Builds, signs and returns the HTTP method for the given request
+	 * descriptor without executing it.
+	 * @param request
+	 * @return a method ready for execution.
+	 * @throws Exception - if signature generation fails.
+	 */
+	public HttpMethod buildMethod(APIRequest request) throws Exception
+	{
+		Map<String, String> callParameters = request.copyCallParameters();
+		callParameters.putAll(methodBuilder.getDefaultOAuthParameters());
+		switch (request.getSecurityLevel())
+		{
+			case UNSIGNED:
+				return methodBuilder.buildConsumerKeyedGetMethod(request.getUri(), callParameters);
+			case CONSUMER_SIGNED:
+				return this.buildConsumerSignedMethod(request.getUri(), callParameters, request.getMethodType());
+			default:
+				return this.buildCustomerAuthorizedMethod(request.getUri(), request.getCustomer(), callParameters,
+						request.getRequestHeaders(), request.getMethodType());
+		}
+	}
+	
+	private HttpMethod buildConsumerSignedMethod(String uri, Map<String, String> callParameters, String methodType) throws Exception
+	{
 		if (methodType.equalsIgnoreCase(GET_METHOD_TYPE))
-			method = methodBuilder.buildCustomerAuthorizedGetMethod(uri, callParameters, customer, requestHeaders);
+			return methodBuilder.buildConsumerSignedGetMethod(uri, callParameters);
 		else if (methodType.equalsIgnoreCase(POST_METHOD_TYPE))
-			method = methodBuilder.buildCustomerAuthorizedPostMethod(uri, callParameters, customer, requestHeaders);
-		else if (methodType.equalsIgnoreCase(DELETE_METHOD_TYPE))
-			method = methodBuilder.buildCustomerAuthorizedDeleteMethod(uri, callParameters, customer, requestHeaders);
-		else throw new NetflixAPIException("No valid HTTP method specified: must be GET, POST or DELETE for customer authorized calls.");
-		
+			return methodBuilder.buildConsumerSignedPostMethod(uri, callParameters);
+		else throw new NetflixAPIException("No valid HTTP method specified: must be GET or POST for consumer-signed calls.");
+	}
+	
+	private HttpMethod buildCustomerAuthorizedMethod(String uri, NetflixAPICustomer customer, Map<String, String> callParameters,
+			Map<String, String> requestHeaders, String methodType) throws Exception
+	{
+		if (requestHeaders == null)
+		{
+			if (methodType.equalsIgnoreCase(GET_METHOD_TYPE))
+				return methodBuilder.buildCustomerAuthorizedGetMethod(uri, callParameters, customer);
+			else if (methodType.equalsIgnoreCase(POST_METHOD_TYPE))
+				return methodBuilder.buildCustomerAuthorizedPostMethod(uri, callParameters, customer);
+			else if (methodType.equalsIgnoreCase(DELETE_METHOD_TYPE))
+				return methodBuilder.buildCustomerAuthorizedDeleteMethod(uri, callParameters, customer);
+		}
+		else
+		{
+			if (methodType.equalsIgnoreCase(GET_METHOD_TYPE))
+				return methodBuilder.buildCustomerAuthorizedGetMethod(uri, callParameters, customer, requestHeaders);
+			else if (methodType.equalsIgnoreCase(POST_METHOD_TYPE))
+				return methodBuilder.buildCustomerAuthorizedPostMethod(uri, callParameters, customer, requestHeaders);
+			else if (methodType.equalsIgnoreCase(DELETE_METHOD_TYPE))
+				return methodBuilder.buildCustomerAuthorizedDeleteMethod(uri, callParameters, customer, requestHeaders);
+		}
+		throw new NetflixAPIException("No valid HTTP method specified: must be GET, POST or DELETE for customer authorized calls.");
+	}
+
+	/**
+	 * @param method
+	 * @return
+	 */
+	public NetflixAPIResponse executeCustomMethod(HttpMethod method) throws Exception
+	{
+		NetflixAPIResponse response = new NetflixAPIResponse();
 		httpClient.executeMethod(method);
 		response.setResponseBody(method.getResponseBodyAsString());
 		response.setStatusCode(method.getStatusCode());
 		response.setStatusLine(method.getStatusLine().toString());
 		response.setResponseHeaders(this.resolveResponseHeaders(method));
+		String executionSummary = "Execution summary:\n" + response.getStatusLine() + "\n" +
+			response.getResponseBody();
+		response.setExecutionSummary(executionSummary);
 		method.releaseConnection();
 		
 		if (logger.isDebugEnabled())
 		{
-			response.setExecutionSummary("Calling [" + uri + "] resulted in status code [" + response.getStatusLine() + "] and response\n" + response.getResponseBody());
 			logger.debug(response.getExecutionSummary());
 		}
-		
 		return response;
 	}
 	
 	/**
+	 * Executes a built method and reads its full response, always handing
+	 * the connection back afterwards.
+	 * @param uri - the uri being called, for logging.
 	 * @param method
 	 * @return
+	 * @throws Exception - if a server communication error occurs.
 	 */
-	public NetflixAPIResponse executeCustomMethod(HttpMethod method) throws Exception
+	protected NetflixAPIResponse executeMethod(String uri, HttpMethod method) throws Exception
 	{
+		return this.executeMethod(uri, method, 0);
+	}
+	
+	/**
+	 * @param building - when building the method started, or 0 if it was
+	 * not timed.
+	 */
+	private NetflixAPIResponse executeMethod(String uri, HttpMethod method, long building) throws Exception
+	{
+		MetricsRegistry metrics = this.metricsRegistry;
+		long start = metrics == null ? 0 : System.nanoTime();
+		RequestTrace trace = this.startTrace(uri, method, building);
 		NetflixAPIResponse response = new NetflixAPIResponse();
-		httpClient.executeMethod(method);
-		response.setResponseBody(method.getResponseBodyAsString());
-		response.setStatusCode(method.getStatusCode());
-		response.setStatusLine(method.getStatusLine().toString());
-		response.setResponseHeaders(this.resolveResponseHeaders(method));
-		String executionSummary = "Execution summary:\n" + response.getStatusLine() + "\n" +
-			response.getResponseBody();
-		response.setExecutionSummary(executionSummary);
-		method.releaseConnection();
+		Exception failure = null;
+		try
+		{
+			this.executeBound(method, trace);
+			if (trace != null)
+				trace.phaseEnded(RequestPhase.TIME_TO_FIRST_BYTE, System.nanoTime());
+			response.setResponseBody(method.getResponseBodyAsString());
+			if (trace != null)
+				trace.phaseEnded(RequestPhase.BODY_READ, System.nanoTime());
+			response.setStatusCode(method.getStatusCode());
+			response.setStatusLine(method.getStatusLine().toString());
+			response.setResponseHeaders(this.resolveResponseHeaders(method));
+			this.recordKeepAlive(method);
+		}
+		catch (Exception e)
+		{
+			failure = e;
+			throw e;
+		}
+		finally
+		{
+			method.releaseConnection();
+			if (metrics != null)
+				recordCall(metrics, uri, method, System.nanoTime() - start);
+			if (trace != null)
+				endTrace(trace, method, failure);
+		}
 		
 		if (logger.isDebugEnabled())
 		{
+			response.setExecutionSummary("Calling [" + uri + "] resulted in status code [" + response.getStatusLine() + "] and response\n" + response.getResponseBody());
 			logger.debug(response.getExecutionSummary());
 		}
 		return response;
 	}
 	
+	/**
+	 * Executes a built method and streams its response body to the handler,
+	 * always handing the connection back afterwards.
+	 * @param uri - the uri being called, for logging.
+	 * @param method
+	 * @param handler
+	 * @return whatever the handler returns.
+	 * @throws Exception - if a server communication error occurs, or the handler fails.
+	 */
+	protected <T> T executeMethod(String uri, HttpMethod method, ResponseHandler<T> handler) throws Exception
+	{
+		return this.executeMethod(uri, method, handler, 0);
+	}
+	
+	/**
+	 * @param building - when building the method started, or 0 if it was
+	 * not timed.
+	 */
+	private <T> T executeMethod(String uri, HttpMethod method, ResponseHandler<T> handler, long building) throws Exception
+	{
+		MetricsRegistry metrics = this.metricsRegistry;
+		long start = metrics == null ? 0 : System.nanoTime();
+		RequestTrace trace = this.startTrace(uri, method, building);
+		NetflixAPIResponse response = new NetflixAPIResponse();
+		Exception failure = null;
+		try
+		{
+			this.executeBound(method, trace);
+			if (trace != null)
+				trace.phaseEnded(RequestPhase.TIME_TO_FIRST_BYTE, System.nanoTime());
+			response.setStatusCode(method.getStatusCode());
+			response.setStatusLine(method.getStatusLine().toString());
+			response.setResponseHeaders(this.resolveResponseHeaders(method));
+			this.recordKeepAlive(method);
+			
+			if (logger.isDebugEnabled())
+				logger.debug("Calling [" + uri + "] resulted in status code [" + response.getStatusLine() + "], streaming response");
+			
+			InputStream body = method.getResponseBodyAsStream();
+			if (body == null)
+				body = new ByteArrayInputStream(new byte[0]);
+			T result = handler.handleResponse(response, body);
+			if (trace != null)
+				trace.phaseEnded(RequestPhase.BODY_READ, System.nanoTime());
+			return result;
+		}
+		catch (Exception e)
+		{
+			failure = e;
+			throw e;
+		}
+		finally
+		{
+			// releasing would read the rest of the body to reuse the connection
+			if (response.isRemainingBodyDiscarded())
+				method.abort();
+			method.releaseConnection();
+			if (metrics != null)
+				recordCall(metrics, uri, method, System.nanoTime() - start);
+			if (trace != null)
+				endTrace(trace, method, failure);
+		}
+	}
+	
+	/**
+	 * Executes the method with the trace bound to this thread, up to the
+	 * status line, so the connection reports no phases for the body.
+	 * @param trace - or null.
+	 */
+	private void executeBound(HttpMethod method, RequestTrace trace) throws Exception
+	{
+		if (trace == null)
+		{
+			httpClient.executeMethod(method);
+			return;
+		}
+		trace.bind();
+		try
+		{
+			httpClient.executeMethod(method);
+		}
+		finally
+		{
+			trace.unbind();
+		}
+	}
+	
+	/**
+	 * @return now, if calls are traced and building a method should be
+	 * timed; 0 otherwise.
+	 */
+	private long startBuilding()
+	{
+		return this.requestListeners.isEmpty() ? 0 : System.nanoTime();
+	}
+	
+	/**
+	 * @param building - when building the method started, or 0 if it was
+	 * not timed.
+	 * @return a trace of the call, with building it as its first phase if it
+	 * was timed, or null if there are no listeners.
+	 */
+	private RequestTrace startTrace(String uri, HttpMethod method, long building)
+	{
+		if (this.requestListeners.isEmpty())
+			return null;
+		long now = System.nanoTime();
+		RequestTrace trace = new RequestTrace(new ArrayList<RequestListener>(this.requestListeners), uri,
+			method.getName(), building == 0 ? now : building);
+		if (building != 0)
+			trace.phaseEnded(RequestPhase.SIGNING, now);
+		return trace;
+	}
+	
+	/**
+	 * @param method - executed, or failed before a response was read.
+	 */
+	private static void endTrace(RequestTrace trace, HttpMethod method, Exception failure)
+	{
+		trace.requestEnded(method.getStatusLine() == null ? 0 : method.getStatusCode(), System.nanoTime(), failure);
+	}
+	
+	/**
+	 * Reports a finished call, whatever its outcome.
+	 * @param method - executed, or failed before a response was read.
+	 */
+	private static void recordCall(MetricsRegistry metrics, String uri, HttpMethod method, long elapsedNanos)
+	{
+		try
+		{
+			StatusClass status = method.getStatusLine() == null ? StatusClass.FAILED
+				: StatusClass.forStatus(method.getStatusCode());
+			metrics.recordCall(EndpointFamily.forUri(uri), method.getName(), status, elapsedNanos);
+		}
+		catch (RuntimeException e)
+		{
+			// metrics must never fail a call
+			logger.warn("Metrics registry failed to record a call to " + uri, e);
+		}
+	}
+	
+	/**
+	 * Passes the server's Keep-Alive timeout on to a striped connection pool,
+	 * so idle connections are evicted before the server closes them.
+	 * @param method - an executed method.
+	 */
+	private void recordKeepAlive(HttpMethod method)
+	{
+		if (!(this.httpClient.getHttpConnectionManager() instanceof StripedHttpConnectionManager))
+			return;
+		Header keepAlive = method.getResponseHeader("Keep-Alive");
+		if (keepAlive == null)
+			return;
+		long timeout = StripedHttpConnectionManager.parseKeepAliveTimeout(keepAlive.getValue());
+		if (timeout < 0)
+			return;
+		try
+		{
+			HostConfiguration target = new HostConfiguration();
+			target.setHost(method.getURI());
+			((StripedHttpConnectionManager) this.httpClient.getHttpConnectionManager())
+				.setKeepAliveTimeout(target.getHost(), target.getPort(), timeout);
+		}
+		catch (URIException e)
+		{
+			logger.warn("Could not record Keep-Alive timeout", e);
+		}
+	}
+	
+	/**
+	 * Starts closing idle and expired pooled connections in the background,
+	 * and turns off per-request stale connection checking, which the
+	 * eviction makes unnecessary.
+	 * @param idleTimeoutMillis - connections idle this long are closed.
+	 * @param intervalMillis - how often to check.
+	 */
+	public synchronized void startIdleConnectionEviction(long idleTimeoutMillis, long intervalMillis)
+	{
+		if (this.connectionEvictor != null)
+			this.connectionEvictor.shutdown();
+		HttpConnectionManager cm = this.httpClient.getHttpConnectionManager();
+		cm.getParams().setStaleCheckingEnabled(false);
+		this.connectionEvictor = new IdleConnectionEvictor(cm, idleTimeoutMillis, intervalMillis);
+		this.connectionEvictor.start();
+	}
+	
+	/**
+	 * Times every call made from now on and reports it, by endpoint family,
+	 * HTTP method and status class, to the given registry, e.g. a
+	 * <code>HistogramRegistry</code>.
+	 * @param metricsRegistry - or null to stop timing calls.
+	 */
+	public void setMetricsRegistry(MetricsRegistry metricsRegistry)
+	{
+		this.metricsRegistry = metricsRegistry;
+	}
+	
+	/**
+	 * @return the registry calls are reported to, or null if they are not timed.
+	 */
+	public MetricsRegistry getMetricsRegistry()
+	{
+		return this.metricsRegistry;
+	}
+	
+	/**
+	 * Reports where the time of every call made from now on goes, phase by
+	 * phase, to the given listener.  Calls made while there are no
+	 * listeners are not traced at all.
+	 * @param listener
+	 */
+	public void addRequestListener(RequestListener listener)
+	{
+		this.requestListeners.add(listener);
+	}
+	
+	public void removeRequestListener(RequestListener listener)
+	{
+		this.requestListeners.remove(listener);
+	}
+	
+	/**
+	 * Pre-resolves the API host, pre-opens pooled connections and runs the
+	 * request signing code until it is compiled, so the first live requests
+	 * after startup don't pay for it.  Call before taking traffic.
+	 * @param connections - number of pooled connections to pre-open.
+	 * @return what was warmed up, and how long it took.
+	 */
+	public ClientWarmUp.Report warmUp(int connections)
+	{
+		return new ClientWarmUp(this).warmUp(connections, ClientWarmUp.DEFAULT_SIGNING_ITERATIONS);
+	}
+	
+	/**
+	 * Downloads the full catalog index to a file, resuming a partial
+	 * download of the same file if there is one.
+	 * @param target - the file to write.
+	 * @param listener - told of progress, or null.
+	 * @return what was downloaded, and how fast.
+	 * @throws Exception - if the download cannot be completed.
+	 */
+	public IndexDownloader.Report downloadIndex(File target, IndexDownloader.ProgressListener listener) throws Exception
+	{
+		return new IndexDownloader(this).download(target, listener);
+	}
+	
+	/**
+	 * @return the worker threads the client runs bulk requests on, started
+	 * on first use.  Threads are created as needed and retire when idle, so
+	 * the connection pool, not this executor, bounds concurrency.
+	 */
+	public synchronized ExecutorService getSharedExecutor()
+	{
+		if (this.sharedExecutor == null)
+		{
+			this.sharedExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+			{
+				private final AtomicInteger count = new AtomicInteger();
+				
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "nfjc-worker-" + this.count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return this.sharedExecutor;
+	}
+	
+	/**
+	 * Stops background work started by this client and closes its pooled
+	 * connections.
+	 */
+	public synchronized void shutdown()
+	{
+		if (this.sharedExecutor != null)
+		{
+			this.sharedExecutor.shutdownNow();
+			this.sharedExecutor = null;
+		}
+		if (this.connectionEvictor != null)
+		{
+			this.connectionEvictor.shutdown();
+			this.connectionEvictor = null;
+		}
+		HttpConnectionManager cm = this.httpClient.getHttpConnectionManager();
+		if (cm instanceof StripedHttpConnectionManager)
+			((StripedHttpConnectionManager) cm).shutdown();
+		else if (cm instanceof MultiThreadedHttpConnectionManager)
+			((MultiThreadedHttpConnectionManager) cm).shutdown();
+	}
+	
 
 	/**
 	 * Returns the URL to redirect the user to so they can perform the
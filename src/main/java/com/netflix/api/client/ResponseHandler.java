@@ -0,0 +1,23 @@
+package com.netflix.api.client;
+
+import java.io.InputStream;
+
+import com.netflix.api.NetflixAPIResponse;
+
+/**
+ * Consumes an API response body as a stream, for callers that decode
+ * responses directly instead of going through a String.
+ */
+public interface ResponseHandler<T>
+{
+	/**
+	 * @param response - status and headers of the response; its body is not set.
+	 * A handler that stops reading well before the end of the body should
+	 * call <code>discardRemainingBody()</code> on it.
+	 * @param body - the response body.  It is closed for the handler once
+	 * this method returns, and must not be used afterwards.
+	 * @return the handler's result.
+	 * @throws Exception - if the body cannot be consumed.
+	 */
+	T handleResponse(NetflixAPIResponse response, InputStream body) throws Exception;
+}
@@ -0,0 +1,97 @@
+package com.netflix.api.client;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.decoder.CatalogDecoder;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Person;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * The sub-calls needed to render a title page: the title details, which
+ * are critical, and its cast, synopsis, similar titles and format
+ * availability, which the page can do without.  Execute with
+ * <code>NetflixAPIClient.executeComposite</code>.
+ */
+public class TitlePageRequest extends CompositeRequest
+{
+	private final Part<ResultPage<CatalogTitle>> details;
+	
+	private final Part<ResultPage<Person>> cast;
+	
+	private final Part<String> synopsis;
+	
+	private final Part<ResultPage<CatalogTitle>> similars;
+	
+	private final Part<String> formats;
+	
+	/**
+	 * @param titleUri - the title's resource, e.g. <code>APIEndpoints.MOVIE_URI + "/70075473"</code>.
+	 * @param decoder - decodes the title, cast and similars responses.
+	 */
+	public TitlePageRequest(String titleUri, CatalogDecoder decoder)
+	{
+		ResponseHandler<String> body = new ResponseHandler<String>()
+		{
+			public String handleResponse(NetflixAPIResponse response, InputStream in) throws Exception
+			{
+				String text = IOUtils.toString(in, "UTF-8");
+				// an error document is a failed part, as the decoders make it
+				if (response.getStatusCode() >= 300)
+					throw new NetflixAPIException("Status " + response.getStatusCode() + ": " + text);
+				return text;
+			}
+		};
+		String output = decoder.getOutputFormat();
+		this.details = this.add("details", request(titleUri, output), decoder.titlesHandler(), true);
+		this.cast = this.add("cast", request(titleUri + "/cast", output), decoder.peopleHandler(), false);
+		this.synopsis = this.add("synopsis", request(titleUri + "/synopsis", output), body, false);
+		this.similars = this.add("similars", request(titleUri + "/similars", output), decoder.titlesHandler(), false);
+		this.formats = this.add("formats", request(titleUri + "/format_availability", output), body, false);
+	}
+	
+	private static APIRequest request(String uri, String output)
+	{
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("output", output);
+		return APIRequest.consumerSigned(uri, parameters, NetflixAPIClient.GET_METHOD_TYPE);
+	}
+	
+	public Part<ResultPage<CatalogTitle>> getDetails()
+	{
+		return details;
+	}
+	
+	public Part<ResultPage<Person>> getCast()
+	{
+		return cast;
+	}
+	
+	/**
+	 * @return the synopsis response body, undecoded.
+	 */
+	public Part<String> getSynopsis()
+	{
+		return synopsis;
+	}
+	
+	public Part<ResultPage<CatalogTitle>> getSimilars()
+	{
+		return similars;
+	}
+	
+	/**
+	 * @return the format availability response body, undecoded.
+	 */
+	public Part<String> getFormats()
+	{
+		return formats;
+	}
+	
+}
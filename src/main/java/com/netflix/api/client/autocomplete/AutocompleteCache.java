@@ -0,0 +1,542 @@
+package com.netflix.api.client.autocomplete;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.api.client.APIEndpoints;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.decoder.AutocompleteDecoder;
+import com.netflix.api.utils.RadixTrie;
+import com.netflix.api.utils.SnapshotFile;
+
+/**
+ * Caches title autocomplete suggestions by prefix, so that most keystrokes
+ * in a search box are answered without calling the API. <br />
+ * A prefix is answered, in order of preference:
+ * <ul>
+ * <li>from its own cached suggestions;</li>
+ * <li>from the suggestions of the longest cached prefix it starts with,
+ * when that list was complete - shorter than the most the API returns - so
+ * it holds every title the narrower prefix can match.  "gat" is answered by
+ * filtering the suggestions for "ga";</li>
+ * <li>by the API, with concurrent lookups of the same prefix sharing one call.</li>
+ * </ul>
+ * Suggestions are kept for a time to live.  Once <code>start</code>ed, a
+ * background pass refetches the hot prefixes - those looked up at least
+ * <code>HOT_LOOKUPS</code> times since they were fetched - so popular
+ * prefixes never expire while in use, and drops expired ones.  When the
+ * cache outgrows its capacity the least popular prefixes are dropped: a
+ * prefix's popularity counts its lookups across refetches, halved on each
+ * refresh pass so that prefixes no longer looked up fade out. <br />
+ * Prefixes are compared case insensitively with runs of whitespace collapsed.
+ * Narrower prefixes are matched against the start of the words of broader
+ * suggestions, as the API matches terms. <br />
+ * The cached suggestions can be saved to a <code>SnapshotFile</code> and
+ * loaded by a restarted node, which then starts with the prefixes still
+ * fresh instead of an empty cache.  Thread safe.
+ */
+public class AutocompleteCache
+{
+	private static final Logger logger = LoggerFactory.getLogger(AutocompleteCache.class);
+
+	/**
+	 * The most suggestions the autocomplete resource returns for a term.
+	 */
+	public static final int DEFAULT_MAX_SUGGESTIONS = 10;
+
+	/**
+	 * Lookups since its last fetch that make a prefix worth refetching.
+	 */
+	public static final int HOT_LOOKUPS = 2;
+
+	static final String SECTION = "autocomplete.suggestions";
+
+	/**
+	 * Bumped whenever the saved layout changes.
+	 */
+	static final int VERSION = 1;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final NetflixAPIClient client;
+
+	private final int capacity;
+
+	private final long timeToLiveMillis;
+
+	private final int maxSuggestions;
+
+	/**
+	 * Guarded by itself.
+	 */
+	private final RadixTrie<Entry> prefixes = new RadixTrie<Entry>();
+
+	private final ConcurrentMap<String, FutureTask<Entry>> pending = new ConcurrentHashMap<String, FutureTask<Entry>>();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong narrowedHits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong refreshes = new AtomicLong();
+
+	private ScheduledExecutorService executor;
+
+	/**
+	 * @param client - fetches the suggestions of uncached prefixes.
+	 * @param capacity - the most prefixes to keep.
+	 * @param timeToLiveMillis - how long fetched suggestions are used.
+	 */
+	public AutocompleteCache(NetflixAPIClient client, int capacity, long timeToLiveMillis)
+	{
+		this(client, capacity, timeToLiveMillis, DEFAULT_MAX_SUGGESTIONS);
+	}
+
+	/**
+	 * @param client - fetches the suggestions of uncached prefixes.
+	 * @param capacity - the most prefixes to keep.
+	 * @param timeToLiveMillis - how long fetched suggestions are used.
+	 * @param maxSuggestions - the most suggestions the API returns for a term;
+	 * shorter lists are taken to be complete.
+	 */
+	public AutocompleteCache(NetflixAPIClient client, int capacity, long timeToLiveMillis, int maxSuggestions)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		this.client = client;
+		this.capacity = capacity;
+		this.timeToLiveMillis = timeToLiveMillis;
+		this.maxSuggestions = maxSuggestions;
+	}
+
+	/**
+	 * Starts refreshing hot prefixes in the background.
+	 * @param intervalMillis - how often to refresh; shorter than the time to
+	 * live, so hot prefixes are refetched before they expire.
+	 */
+	public synchronized void start(long intervalMillis)
+	{
+		if (this.executor != null)
+			return;
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+		{
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "nfjc-autocomplete-refresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.executor.scheduleWithFixedDelay(new Runnable()
+		{
+			public void run()
+			{
+				refresh();
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void shutdown()
+	{
+		if (this.executor != null)
+		{
+			this.executor.shutdownNow();
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * @param prefix - what has been typed so far.
+	 * @return the suggested titles, in the API's order.
+	 * @throws Exception - if the prefix had to be fetched and the call failed.
+	 */
+	public List<String> suggest(String prefix) throws Exception
+	{
+		String key = normalize(prefix);
+		if (key.length() == 0)
+			return Collections.emptyList();
+		long now = System.currentTimeMillis();
+		Entry broader;
+		synchronized (this.prefixes)
+		{
+			Entry entry = this.prefixes.get(key);
+			if (entry != null && entry.isFresh(now, this.timeToLiveMillis))
+			{
+				entry.lookedUp();
+				this.hits.incrementAndGet();
+				return entry.suggestions;
+			}
+			// a broader prefix only; the key's own entry is stale if it is there
+			broader = this.prefixes.getLongestPrefix(key.substring(0, key.length() - 1), 1);
+		}
+		if (broader != null && broader.isFresh(now, this.timeToLiveMillis)
+			&& broader.suggestions.size() < this.maxSuggestions)
+		{
+			broader.lookedUp();
+			this.narrowedHits.incrementAndGet();
+			return narrow(broader.suggestions, key);
+		}
+		this.misses.incrementAndGet();
+		Entry fetched = this.fetch(key);
+		fetched.popularity.incrementAndGet();
+		return fetched.suggestions;
+	}
+
+	/**
+	 * Runs a single refresh pass: refetches hot prefixes, drops expired ones
+	 * and halves the popularity of the rest.
+	 */
+	public void refresh()
+	{
+		long now = System.currentTimeMillis();
+		List<Entry> hot = new ArrayList<Entry>();
+		synchronized (this.prefixes)
+		{
+			for (String key : this.prefixes.keys())
+			{
+				Entry entry = this.prefixes.get(key);
+				if (entry.lookups.get() >= HOT_LOOKUPS)
+					hot.add(entry);
+				else if (!entry.isFresh(now, this.timeToLiveMillis))
+				{
+					this.prefixes.remove(key);
+					continue;
+				}
+				entry.decay();
+			}
+		}
+		for (Entry entry : hot)
+		{
+			try
+			{
+				this.fetch(entry.prefix);
+				this.refreshes.incrementAndGet();
+			}
+			catch (Exception e)
+			{
+				// keep the old suggestions until they expire, and keep refreshing the rest
+				logger.warn("Could not refresh autocomplete suggestions for \"" + entry.prefix + "\"", e);
+			}
+		}
+	}
+
+	/**
+	 * Drops every cached prefix.
+	 */
+	public void clear()
+	{
+		synchronized (this.prefixes)
+		{
+			for (String key : this.prefixes.keys())
+				this.prefixes.remove(key);
+		}
+	}
+
+	/**
+	 * Saves the cached suggestions for <code>load</code>: a count, then for
+	 * each prefix its text, when it was fetched and its suggestions, each
+	 * string as a length and UTF-8 bytes.
+	 * @param file - replaced once the suggestions are completely written.
+	 * @throws IOException
+	 */
+	public void save(File file) throws IOException
+	{
+		List<Entry> entries = new ArrayList<Entry>();
+		synchronized (this.prefixes)
+		{
+			for (String key : this.prefixes.keys())
+				entries.add(this.prefixes.get(key));
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(entries.size());
+		for (Entry entry : entries)
+		{
+			writeString(out, entry.prefix);
+			out.writeLong(entry.fetchedMillis);
+			out.writeInt(entry.suggestions.size());
+			for (String suggestion : entry.suggestions)
+				writeString(out, suggestion);
+		}
+		out.flush();
+		new SnapshotFile.Writer().addSection(SECTION, VERSION, bytes.toByteArray()).write(file);
+	}
+
+	/**
+	 * Adds the saved suggestions that are still within their time to live.
+	 * @param file - as written by <code>save</code>.
+	 * @return prefixes added; 0 if the file holds no suggestions in the
+	 * layout this version reads.
+	 * @throws IOException - if the file cannot be read or is corrupt.
+	 */
+	public int load(File file) throws IOException
+	{
+		ByteBuffer in = SnapshotFile.open(file).getSection(SECTION, VERSION);
+		if (in == null)
+			return 0;
+		long now = System.currentTimeMillis();
+		int loaded = 0;
+		for (int count = in.getInt(); count > 0; count--)
+		{
+			String prefix = readString(in);
+			long fetchedMillis = in.getLong();
+			List<String> suggestions = new ArrayList<String>();
+			for (int n = in.getInt(); n > 0; n--)
+				suggestions.add(readString(in));
+			Entry entry = new Entry(prefix, Collections.unmodifiableList(suggestions), fetchedMillis);
+			if (entry.isFresh(now, this.timeToLiveMillis))
+			{
+				this.put(entry);
+				loaded++;
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * @return prefixes cached.
+	 */
+	public int size()
+	{
+		synchronized (this.prefixes)
+		{
+			return this.prefixes.size();
+		}
+	}
+
+	/**
+	 * @return lookups answered from the prefix's own suggestions.
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return lookups answered by narrowing a broader prefix's suggestions.
+	 */
+	public long getNarrowedHits()
+	{
+		return narrowedHits.get();
+	}
+
+	/**
+	 * @return lookups that called the API.
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return hot prefixes refetched in the background.
+	 */
+	public long getRefreshes()
+	{
+		return refreshes.get();
+	}
+
+	/**
+	 * Fetches a prefix's suggestions and caches them; a fetch of the same
+	 * prefix already running is waited for instead.
+	 */
+	private Entry fetch(final String key) throws Exception
+	{
+		FutureTask<Entry> task = new FutureTask<Entry>(new Callable<Entry>()
+		{
+			public Entry call() throws Exception
+			{
+				Map<String, String> parameters = new HashMap<String, String>();
+				parameters.put("term", key);
+				List<String> suggestions = client.execute(
+					APIRequest.unsigned(APIEndpoints.CATALOG_URI + "/autocomplete", parameters),
+					AutocompleteDecoder.handler());
+				Entry entry = new Entry(key, Collections.unmodifiableList(suggestions), System.currentTimeMillis());
+				put(entry);
+				return entry;
+			}
+		});
+		FutureTask<Entry> running = this.pending.putIfAbsent(key, task);
+		if (running == null)
+		{
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				this.pending.remove(key, task);
+			}
+		}
+		else task = running;
+		try
+		{
+			return task.get();
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw (Error) e.getCause();
+		}
+	}
+
+	/**
+	 * Caches an entry, carrying over the popularity of the one it replaces.
+	 */
+	private void put(Entry entry)
+	{
+		synchronized (this.prefixes)
+		{
+			Entry previous = this.prefixes.put(entry.prefix, entry);
+			if (previous != null)
+				entry.popularity.addAndGet(previous.popularity.get());
+			if (this.prefixes.size() > this.capacity)
+				this.evict(entry);
+		}
+	}
+
+	/**
+	 * Drops the least popular quarter of the prefixes, so eviction does not
+	 * run on every fetch once the cache is full.
+	 * @param kept - the entry just cached, which has had no chance to be looked up.
+	 */
+	private void evict(Entry kept)
+	{
+		List<String> keys = this.prefixes.keys();
+		keys.remove(kept.prefix);
+		int[] popularity = new int[keys.size()];
+		for (int i = 0; i < popularity.length; i++)
+			popularity[i] = this.prefixes.get(keys.get(i)).popularity.get();
+		int[] sorted = popularity.clone();
+		Arrays.sort(sorted);
+		int excess = keys.size() + 1 - this.capacity * 3 / 4;
+		int threshold = sorted[Math.min(Math.max(excess - 1, 0), sorted.length - 1)];
+		for (int i = 0; i < popularity.length && excess > 0; i++)
+		{
+			if (popularity[i] <= threshold)
+			{
+				this.prefixes.remove(keys.get(i));
+				excess--;
+			}
+		}
+	}
+
+	/**
+	 * @return the suggestions with a word starting with the prefix.
+	 */
+	static List<String> narrow(List<String> suggestions, String prefix)
+	{
+		List<String> narrowed = new ArrayList<String>(suggestions.size());
+		for (String suggestion : suggestions)
+		{
+			String title = normalize(suggestion);
+			int at = title.indexOf(prefix);
+			while (at > 0 && Character.isLetterOrDigit(title.charAt(at - 1)))
+				at = title.indexOf(prefix, at + 1);
+			if (at >= 0)
+				narrowed.add(suggestion);
+		}
+		return Collections.unmodifiableList(narrowed);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer in)
+	{
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * @return the prefix in lower case, trimmed, with whitespace runs collapsed.
+	 */
+	static String normalize(String prefix)
+	{
+		if (prefix == null)
+			return "";
+		return prefix.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ENGLISH);
+	}
+
+	private static class Entry
+	{
+		final String prefix;
+
+		final List<String> suggestions;
+
+		final long fetchedMillis;
+
+		/**
+		 * Since the suggestions were fetched, to tell whether to refetch them.
+		 */
+		final AtomicInteger lookups = new AtomicInteger();
+
+		/**
+		 * Across fetches of the prefix, halved on each refresh pass, to tell
+		 * what to evict.
+		 */
+		final AtomicInteger popularity = new AtomicInteger();
+
+		Entry(String prefix, List<String> suggestions, long fetchedMillis)
+		{
+			this.prefix = prefix;
+			this.suggestions = suggestions;
+			this.fetchedMillis = fetchedMillis;
+		}
+
+		void lookedUp()
+		{
+			this.lookups.incrementAndGet();
+			this.popularity.incrementAndGet();
+		}
+
+		void decay()
+		{
+			int value;
+			do
+			{
+				value = this.popularity.get();
+			}
+			while (!this.popularity.compareAndSet(value, value / 2));
+		}
+
+		boolean isFresh(long now, long timeToLiveMillis)
+		{
+			return now - this.fetchedMillis < timeToLiveMillis;
+		}
+	}
+
+}
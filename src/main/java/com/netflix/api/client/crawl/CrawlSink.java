@@ -0,0 +1,35 @@
+package com.netflix.api.client.crawl;
+
+import java.io.OutputStream;
+
+/**
+ * Receives the results of a crawl as they arrive.  Called from the
+ * crawler's worker threads, so implementations must be thread safe.
+ */
+public interface CrawlSink
+{
+	/**
+	 * Called when a resource's response arrives, before its body is read.
+	 * The body is copied to the returned stream as it is read and scanned
+	 * for links, so the crawler never holds it whole.
+	 * @param uri
+	 * @param depth
+	 * @param statusCode
+	 * @return a stream for the body, which the crawler closes; or null to
+	 * not keep it.
+	 */
+	OutputStream bodyStream(String uri, int depth, int statusCode);
+
+	/**
+	 * @param resource - a resource that was fetched, whatever its status,
+	 * once its body has been read.
+	 */
+	void resource(CrawledResource resource);
+
+	/**
+	 * @param uri - a resource that could not be fetched or read.
+	 * @param depth
+	 * @param cause
+	 */
+	void failed(String uri, int depth, Exception cause);
+}
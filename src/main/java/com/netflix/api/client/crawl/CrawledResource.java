@@ -0,0 +1,60 @@
+package com.netflix.api.client.crawl;
+
+import java.util.List;
+
+import com.netflix.api.model.Link;
+
+/**
+ * One resource fetched by a <code>LinkCrawler</code>.  Its body went to
+ * the <code>CrawlSink</code>'s body stream as it was read.
+ */
+public class CrawledResource
+{
+	private final String uri;
+
+	private final int depth;
+
+	private final int statusCode;
+
+	private final List<Link> links;
+
+	CrawledResource(String uri, int depth, int statusCode, List<Link> links)
+	{
+		this.uri = uri;
+		this.depth = depth;
+		this.statusCode = statusCode;
+		this.links = links;
+	}
+
+	public String getUri()
+	{
+		return uri;
+	}
+
+	/**
+	 * @return links followed to reach the resource; 0 for a seed.
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	public int getStatusCode()
+	{
+		return statusCode;
+	}
+
+	/**
+	 * @return every link in the response, followed or not.
+	 */
+	public List<Link> getLinks()
+	{
+		return links;
+	}
+
+	public String toString()
+	{
+		return "[" + this.depth + "] " + this.uri + " (" + this.statusCode + ")";
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.netflix.api.client.crawl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The hrefs queued at one depth of a crawl. <br />
+ * The first <code>memoryLimit</code> are kept in memory and the rest are
+ * spilled to a temporary file, so a wide depth does not hold every href
+ * found in it.  Hrefs are added from any thread, then polled from one,
+ * in the order they were added.
+ */
+class Frontier
+{
+	private final int memoryLimit;
+
+	private final List<String> hrefs = new ArrayList<String>();
+
+	private int size;
+
+	private int polled;
+
+	private File spill;
+
+	private DataOutputStream out;
+
+	private DataInputStream in;
+
+	/**
+	 * @param memoryLimit - hrefs to keep in memory before spilling.
+	 */
+	Frontier(int memoryLimit)
+	{
+		this.memoryLimit = memoryLimit;
+	}
+
+	synchronized void add(String href) throws IOException
+	{
+		if (this.hrefs.size() < this.memoryLimit)
+		{
+			this.hrefs.add(href);
+		}
+		else
+		{
+			if (this.out == null)
+			{
+				this.spill = File.createTempFile("nfjc-crawl", ".frontier");
+				this.spill.deleteOnExit();
+				this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.spill)));
+			}
+			this.out.writeUTF(href);
+		}
+		this.size++;
+	}
+
+	/**
+	 * @return hrefs added.
+	 */
+	synchronized int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * @return the next href, or null once every one has been polled.
+	 * @throws IOException - if the spill file cannot be read.
+	 */
+	synchronized String poll() throws IOException
+	{
+		if (this.polled >= this.size)
+			return null;
+		int index = this.polled++;
+		if (index < this.hrefs.size())
+		{
+			// let it go once it is handed out
+			return this.hrefs.set(index, null);
+		}
+		if (this.in == null)
+		{
+			this.out.close();
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.spill)));
+		}
+		return this.in.readUTF();
+	}
+
+	/**
+	 * Deletes the spill file, if there is one.
+	 */
+	synchronized void close()
+	{
+		this.hrefs.clear();
+		IOUtils.closeQuietly(this.out);
+		IOUtils.closeQuietly(this.in);
+		if (this.spill != null && !this.spill.delete())
+			this.spill.deleteOnExit();
+		this.spill = null;
+	}
+
+}
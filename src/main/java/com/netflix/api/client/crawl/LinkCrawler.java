@@ -0,0 +1,389 @@
+package com.netflix.api.client.crawl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.EndpointFamily;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.ResponseHandler;
+import com.netflix.api.decoder.AbstractCatalogDecoder;
+import com.netflix.api.decoder.LinkScan;
+import com.netflix.api.model.Link;
+import com.netflix.api.model.ResourceIds;
+import com.netflix.api.utils.BloomFilter;
+import com.netflix.api.utils.LongHashSet;
+import com.netflix.api.utils.RateLimiter;
+
+/**
+ * Walks the catalog's link graph breadth first, such as from titles to
+ * their cast, from people to their filmographies and from titles to their
+ * similars. <br />
+ * Each depth is fetched in full, <code>concurrency</code> calls at a time
+ * and no faster than the rate limit, before the links found in it are
+ * followed; nothing deeper than <code>maxDepth</code> links from a seed is
+ * fetched.  Bodies are copied to a <code>CrawlSink</code> as they are
+ * scanned for links, and not kept; the hrefs queued for the next depth
+ * beyond <code>DEFAULT_FRONTIER_MEMORY</code> are spilled to a temporary
+ * file. <br />
+ * Every resource is fetched at most once per crawl.  Titles are remembered
+ * exactly, by numeric ID in a <code>LongHashSet</code>; other resources are
+ * remembered by href in a <code>BloomFilter</code>, so that a crawl of
+ * millions of resources stays within a few megabytes.  The filter's false
+ * positives mean roughly <code>falsePositiveRate</code> of those other
+ * resources may be wrongly taken as seen and skipped.  Calls are consumer
+ * signed.  A crawler may run one crawl at a time.
+ */
+public class LinkCrawler
+{
+	private static final Logger logger = LoggerFactory.getLogger(LinkCrawler.class);
+
+	public static final int DEFAULT_EXPECTED_RESOURCES = 1000000;
+
+	public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.001;
+
+	/**
+	 * Hrefs a depth keeps in memory before spilling the rest to a temporary file.
+	 */
+	public static final int DEFAULT_FRONTIER_MEMORY = 100000;
+
+	/**
+	 * Link relations followed by <code>DEFAULT_FILTER</code>.
+	 */
+	public static final Set<String> GRAPH_RELS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+			AbstractCatalogDecoder.TITLE_REL,
+			"http://schemas.netflix.com/catalog/person",
+			"http://schemas.netflix.com/catalog/people.cast",
+			"http://schemas.netflix.com/catalog/people.directors",
+			"http://schemas.netflix.com/catalog/person.filmography",
+			"http://schemas.netflix.com/catalog/titles.similars")));
+
+	/**
+	 * Follows titles, people, cast and director lists, filmographies and similars.
+	 */
+	public static final LinkFilter DEFAULT_FILTER = new LinkFilter()
+	{
+		public boolean follow(Link link, int depth)
+		{
+			return link.getRel() != null && GRAPH_RELS.contains(link.getRel());
+		}
+	};
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final NetflixAPIClient client;
+
+	private final int concurrency;
+
+	private final int maxDepth;
+
+	private final RateLimiter rateLimiter;
+
+	private final LinkFilter filter;
+
+	private final int expectedResources;
+
+	private final double falsePositiveRate;
+
+	private volatile int frontierMemory = DEFAULT_FRONTIER_MEMORY;
+
+	/**
+	 * Follows <code>DEFAULT_FILTER</code>, sized for <code>DEFAULT_EXPECTED_RESOURCES</code>.
+	 */
+	public LinkCrawler(NetflixAPIClient client, int concurrency, int maxDepth, double requestsPerSecond)
+	{
+		this(client, concurrency, maxDepth, requestsPerSecond, DEFAULT_FILTER, DEFAULT_EXPECTED_RESOURCES,
+			DEFAULT_FALSE_POSITIVE_RATE);
+	}
+
+	/**
+	 * @param client
+	 * @param concurrency - calls that may be in flight at once.
+	 * @param maxDepth - links to follow from a seed; 0 fetches only the seeds.
+	 * @param requestsPerSecond - calls that may start per second.
+	 * @param filter - chooses the links to follow.
+	 * @param expectedResources - resources a crawl is expected to visit, to size the visited set.
+	 * @param falsePositiveRate - share of non title resources that may be wrongly skipped.
+	 */
+	public LinkCrawler(NetflixAPIClient client, int concurrency, int maxDepth, double requestsPerSecond,
+			LinkFilter filter, int expectedResources, double falsePositiveRate)
+	{
+		if (concurrency <= 0 || maxDepth < 0)
+			throw new IllegalArgumentException("Concurrency must be positive and depth not negative");
+		this.client = client;
+		this.concurrency = concurrency;
+		this.maxDepth = maxDepth;
+		this.rateLimiter = new RateLimiter(requestsPerSecond);
+		this.filter = filter;
+		this.expectedResources = expectedResources;
+		this.falsePositiveRate = falsePositiveRate;
+	}
+
+	/**
+	 * Crawls from the given resources, returning once every reachable
+	 * resource within the maximum depth has been handed to the sink.
+	 * @param seeds - resource URIs to start from, at depth 0.
+	 * @param sink - receives each resource, from the crawler's threads.
+	 * @return the number of resources fetched, successfully or not.
+	 * @throws InterruptedException - if interrupted, after aborting the calls in flight.
+	 * @throws IOException - if hrefs queued for the next depth cannot be spilled or read back.
+	 */
+	public long crawl(Collection<String> seeds, CrawlSink sink) throws InterruptedException, IOException
+	{
+		Visited visited = new Visited(this.expectedResources, this.falsePositiveRate);
+		Set<APIRequest> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<APIRequest, Boolean>());
+		Frontier level = new Frontier(this.frontierMemory);
+		for (String seed : seeds)
+		{
+			if (visited.add(seed))
+				level.add(seed);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(this.concurrency, new ThreadFactory()
+		{
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "nfjc-crawler-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// a fetch holds a slot from submission to the end of its links, so
+		// only the calls in flight are queued rather than the whole depth
+		Semaphore slots = new Semaphore(this.concurrency);
+		long fetched = 0;
+		try
+		{
+			for (int depth = 0; level.size() > 0; depth++)
+			{
+				Frontier next = new Frontier(this.frontierMemory);
+				try
+				{
+					String uri;
+					while ((uri = level.poll()) != null)
+					{
+						slots.acquire();
+						executor.execute(new Fetch(uri, depth, next, visited, inFlight, sink, slots));
+					}
+					// the depth is done once every slot is back
+					slots.acquire(this.concurrency);
+					slots.release(this.concurrency);
+				}
+				catch (InterruptedException e)
+				{
+					next.close();
+					throw e;
+				}
+				finally
+				{
+					level.close();
+				}
+				fetched += level.size();
+				if (logger.isDebugEnabled())
+					logger.debug("Crawled " + level.size() + " resources at depth " + depth + ", " + next.size() + " found beyond");
+				level = next;
+			}
+			return fetched;
+		}
+		finally
+		{
+			level.close();
+			executor.shutdownNow();
+			for (APIRequest request : inFlight)
+				request.abort();
+		}
+	}
+
+	/**
+	 * @param frontierMemory - hrefs a depth keeps in memory before spilling
+	 * the rest to a temporary file.
+	 */
+	void setFrontierMemory(int frontierMemory)
+	{
+		this.frontierMemory = frontierMemory;
+	}
+
+	/**
+	 * Fetches one resource and queues its unseen links for the next depth.
+	 */
+	private class Fetch implements Runnable
+	{
+		private final String uri;
+
+		private final int depth;
+
+		private final Frontier next;
+
+		private final Visited visited;
+
+		private final Set<APIRequest> inFlight;
+
+		private final CrawlSink sink;
+
+		private final Semaphore slots;
+
+		Fetch(String uri, int depth, Frontier next, Visited visited, Set<APIRequest> inFlight, CrawlSink sink,
+				Semaphore slots)
+		{
+			this.uri = uri;
+			this.depth = depth;
+			this.next = next;
+			this.visited = visited;
+			this.inFlight = inFlight;
+			this.sink = sink;
+			this.slots = slots;
+		}
+
+		public void run()
+		{
+			try
+			{
+				this.fetch();
+			}
+			catch (RuntimeException e)
+			{
+				// only the sink can get here
+				logger.warn("Crawl sink failed", e);
+			}
+			finally
+			{
+				this.slots.release();
+			}
+		}
+
+		private void fetch()
+		{
+			CrawledResource resource;
+			APIRequest request = APIRequest.consumerSigned(this.uri, null, NetflixAPIClient.GET_METHOD_TYPE);
+			this.inFlight.add(request);
+			try
+			{
+				rateLimiter.acquire();
+				resource = client.execute(request, new ResponseHandler<CrawledResource>()
+				{
+					public CrawledResource handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+					{
+						return read(response.getStatusCode(), body);
+					}
+				});
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (Exception e)
+			{
+				this.sink.failed(this.uri, this.depth, e);
+				return;
+			}
+			finally
+			{
+				this.inFlight.remove(request);
+			}
+
+			this.sink.resource(resource);
+			if (this.depth >= maxDepth)
+				return;
+			try
+			{
+				for (Link link : resource.getLinks())
+				{
+					if (filter.follow(link, this.depth + 1) && this.visited.add(link.getHref()))
+						this.next.add(link.getHref());
+				}
+			}
+			catch (IOException e)
+			{
+				logger.warn("Could not queue the links of [" + this.uri + "]", e);
+			}
+		}
+
+		/**
+		 * Scans the body for links as it is copied to the sink, in one pass.
+		 */
+		private CrawledResource read(int statusCode, InputStream body) throws IOException
+		{
+			OutputStream out = this.sink.bodyStream(this.uri, this.depth, statusCode);
+			if (out == null)
+				out = new NullOutputStream();
+			try
+			{
+				List<Link> links = Collections.emptyList();
+				if (statusCode == 200)
+				{
+					try
+					{
+						links = LinkScan.scan(new TeeInputStream(body, out)).getLinks();
+					}
+					catch (NetflixAPIException e)
+					{
+						// not XML; a leaf as far as the crawl is concerned
+					}
+				}
+				// whatever the scan left unread
+				IOUtils.copy(body, out);
+				return new CrawledResource(this.uri, this.depth, statusCode, links);
+			}
+			finally
+			{
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * The resources a crawl has queued: titles exactly, by numeric ID, and
+	 * everything else approximately, by href.
+	 */
+	private static class Visited
+	{
+		private final LongHashSet titleIds;
+
+		private final BloomFilter others;
+
+		Visited(int expectedResources, double falsePositiveRate)
+		{
+			this.titleIds = new LongHashSet(Math.min(expectedResources, 1 << 20));
+			this.others = new BloomFilter(expectedResources, falsePositiveRate);
+		}
+
+		/**
+		 * @return true if the resource had not been seen.
+		 */
+		synchronized boolean add(String uri)
+		{
+			if (uri == null)
+				return false;
+			if (EndpointFamily.forUri(uri) == EndpointFamily.CATALOG_TITLE)
+			{
+				long id = ResourceIds.numericId(uri);
+				if (id >= 0)
+					return this.titleIds.add(id);
+			}
+			return this.others.put(uri);
+		}
+	}
+
+}
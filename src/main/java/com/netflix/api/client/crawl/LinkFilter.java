@@ -0,0 +1,16 @@
+package com.netflix.api.client.crawl;
+
+import com.netflix.api.model.Link;
+
+/**
+ * Decides which links a <code>LinkCrawler</code> follows.
+ */
+public interface LinkFilter
+{
+	/**
+	 * @param link - a link found in a crawled response.
+	 * @param depth - depth the linked resource would be fetched at.
+	 * @return true to fetch the linked resource.
+	 */
+	boolean follow(Link link, int depth);
+}
@@ -0,0 +1,109 @@
+package com.netflix.api.client.dal;
+
+/**
+ * Point-in-time view of a <code>StripedHttpConnectionManager</code>'s size
+ * and of the age of its idle connections.
+ */
+public class ConnectionPoolStats
+{
+	private final int leasedConnections;
+
+	private final int idleConnections;
+
+	private final long createdConnections;
+
+	private final long evictedConnections;
+
+	private final long meanIdleMillis;
+
+	private final long maxIdleMillis;
+
+	private final long meanIdleConnectionAgeMillis;
+
+	private final long maxIdleConnectionAgeMillis;
+
+	public ConnectionPoolStats(int leasedConnections, int idleConnections, long createdConnections, long evictedConnections,
+			long meanIdleMillis, long maxIdleMillis, long meanIdleConnectionAgeMillis, long maxIdleConnectionAgeMillis)
+	{
+		this.leasedConnections = leasedConnections;
+		this.idleConnections = idleConnections;
+		this.createdConnections = createdConnections;
+		this.evictedConnections = evictedConnections;
+		this.meanIdleMillis = meanIdleMillis;
+		this.maxIdleMillis = maxIdleMillis;
+		this.meanIdleConnectionAgeMillis = meanIdleConnectionAgeMillis;
+		this.maxIdleConnectionAgeMillis = maxIdleConnectionAgeMillis;
+	}
+
+	/**
+	 * @return connections checked out at the time of the snapshot.
+	 */
+	public int getLeasedConnections()
+	{
+		return leasedConnections;
+	}
+
+	/**
+	 * @return connections waiting in the pool at the time of the snapshot.
+	 */
+	public int getIdleConnections()
+	{
+		return idleConnections;
+	}
+
+	/**
+	 * @return connections created over the life of the pool.
+	 */
+	public long getCreatedConnections()
+	{
+		return createdConnections;
+	}
+
+	/**
+	 * @return connections closed for being idle or expired, over the life of the pool.
+	 */
+	public long getEvictedConnections()
+	{
+		return evictedConnections;
+	}
+
+	/**
+	 * @return mean time the idle connections have spent waiting in the pool.
+	 */
+	public long getMeanIdleMillis()
+	{
+		return meanIdleMillis;
+	}
+
+	/**
+	 * @return longest time any idle connection has spent waiting in the pool.
+	 */
+	public long getMaxIdleMillis()
+	{
+		return maxIdleMillis;
+	}
+
+	/**
+	 * @return mean time since the idle connections were created.
+	 */
+	public long getMeanIdleConnectionAgeMillis()
+	{
+		return meanIdleConnectionAgeMillis;
+	}
+
+	/**
+	 * @return time since the oldest idle connection was created.
+	 */
+	public long getMaxIdleConnectionAgeMillis()
+	{
+		return maxIdleConnectionAgeMillis;
+	}
+
+	public String toString()
+	{
+		return "leased=" + this.leasedConnections + " idle=" + this.idleConnections + " created=" + this.createdConnections
+			+ " evicted=" + this.evictedConnections + " meanIdleMillis=" + this.meanIdleMillis + " maxIdleMillis=" + this.maxIdleMillis
+			+ " meanAgeMillis=" + this.meanIdleConnectionAgeMillis + " maxAgeMillis=" + this.maxIdleConnectionAgeMillis;
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.netflix.api.client.dal;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically closes pooled connections that have sat idle too long. <br />
+ * With commons-httpclient 3.1 the alternative is stale checking, which costs
+ * an extra blocking read on every request.  Evicting idle connections on a
+ * schedule keeps the pool free of connections the server has half-closed,
+ * so stale checking can be turned off on the hot path.
+ * <br />
+ * With a <code>StripedHttpConnectionManager</code> each run also closes
+ * connections whose server Keep-Alive timeout is about to run out, and
+ * connections past their time to live.
+ */
+public class IdleConnectionEvictor
+{
+	private static final Logger logger = LoggerFactory.getLogger(IdleConnectionEvictor.class);
+
+	private final HttpConnectionManager connectionManager;
+
+	private final long idleTimeoutMillis;
+
+	private final long intervalMillis;
+
+	private ScheduledExecutorService executor;
+
+	/**
+	 * @param connectionManager - the pool to evict connections from.
+	 * @param idleTimeoutMillis - connections idle this long are closed.
+	 * @param intervalMillis - how often to check.
+	 */
+	public IdleConnectionEvictor(HttpConnectionManager connectionManager, long idleTimeoutMillis, long intervalMillis)
+	{
+		this.connectionManager = connectionManager;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.intervalMillis = intervalMillis;
+	}
+
+	public synchronized void start()
+	{
+		if (this.executor != null)
+			return;
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+		{
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "nfjc-idle-connection-evictor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.executor.scheduleWithFixedDelay(new Runnable()
+		{
+			public void run()
+			{
+				evict();
+			}
+		}, this.intervalMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void shutdown()
+	{
+		if (this.executor != null)
+		{
+			this.executor.shutdownNow();
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * Runs a single eviction pass.
+	 */
+	public void evict()
+	{
+		try
+		{
+			this.connectionManager.closeIdleConnections(this.idleTimeoutMillis);
+			if (this.connectionManager instanceof StripedHttpConnectionManager)
+			{
+				StripedHttpConnectionManager striped = (StripedHttpConnectionManager) this.connectionManager;
+				striped.closeExpiredConnections();
+				if (logger.isDebugEnabled())
+					logger.debug("Connection pool after eviction: " + striped.getPoolStats());
+			}
+			else if (this.connectionManager instanceof MultiThreadedHttpConnectionManager)
+			{
+				((MultiThreadedHttpConnectionManager) this.connectionManager).deleteClosedConnections();
+			}
+		}
+		catch (RuntimeException e)
+		{
+			// never let a failure cancel the schedule
+			logger.warn("Idle connection eviction failed", e);
+		}
+	}
+
+}
@@ -0,0 +1,678 @@
+package com.netflix.api.client.dal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.HttpException;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.api.client.trace.RequestPhase;
+import com.netflix.api.client.trace.RequestTrace;
+
+/**
+ * Connection pool for highly concurrent clients, usable wherever a
+ * <code>MultiThreadedHttpConnectionManager</code> is. <br />
+ * Instead of guarding the whole pool with one monitor, each route (scheme,
+ * host, port and proxy) keeps its idle connections in several lock-free
+ * free-lists, or stripes.  A thread returns connections to, and first
+ * looks for them in, its own stripe; when that is empty it takes one from the
+ * least loaded stripe, i.e. the one holding the most idle connections.
+ * Connection limits are enforced with semaphores, so checkout and return
+ * are O(1) and never block on other threads' bookkeeping.  The total limit
+ * also counts idle connections: opening a new connection when the pool is
+ * full closes an idle one of another route.
+ * <br />
+ * Limits are fixed at construction time; the params returned by
+ * <code>getParams()</code> still supply connection defaults such as socket
+ * timeouts and stale checking.
+ * <br />
+ * Idle connections are only closed when asked to, normally by an
+ * <code>IdleConnectionEvictor</code>.  Besides plain idle timeouts, the pool
+ * can close connections the server is about to drop, using the Keep-Alive
+ * timeouts recorded from responses, and connections older than a configured
+ * time to live.
+ */
+public class StripedHttpConnectionManager implements HttpConnectionManager
+{
+	private static final Logger logger = LoggerFactory.getLogger(StripedHttpConnectionManager.class);
+
+	private HttpConnectionManagerParams params = new HttpConnectionManagerParams();
+
+	/**
+	 * Idle connections are closed this long before a server's advertised
+	 * Keep-Alive timeout, to avoid racing the server's own close.
+	 */
+	public static final long KEEP_ALIVE_SAFETY_MARGIN_MILLIS = 1000;
+
+	private final ConcurrentHashMap<String, RoutePool> routes = new ConcurrentHashMap<String, RoutePool>();
+
+	/**
+	 * Keep-Alive timeouts advertised by servers, keyed by host and port.
+	 */
+	private final ConcurrentHashMap<String, Long> keepAliveTimeouts = new ConcurrentHashMap<String, Long>();
+
+	private final AtomicLong evictedConnections = new AtomicLong();
+
+	private volatile long connectionTimeToLiveMillis = 0;
+
+	private final Semaphore totalPermits;
+
+	private final int maxTotalConnections;
+
+	/**
+	 * Connections the pool holds, leased or idle.
+	 */
+	private final AtomicInteger pooledConnections = new AtomicInteger();
+
+	private final int maxConnectionsPerRoute;
+
+	private final int stripes;
+
+	private volatile boolean shutdown = false;
+
+	/**
+	 * Creates a pool with one stripe per available processor.
+	 * @param maxTotalConnections
+	 * @param maxConnectionsPerRoute
+	 */
+	public StripedHttpConnectionManager(int maxTotalConnections, int maxConnectionsPerRoute)
+	{
+		this(maxTotalConnections, maxConnectionsPerRoute, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param maxTotalConnections
+	 * @param maxConnectionsPerRoute
+	 * @param stripes - number of free-lists per route.
+	 */
+	public StripedHttpConnectionManager(int maxTotalConnections, int maxConnectionsPerRoute, int stripes)
+	{
+		if (maxTotalConnections < 1 || maxConnectionsPerRoute < 1 || stripes < 1)
+			throw new IllegalArgumentException("Connection limits and stripe count must be positive.");
+		this.totalPermits = new Semaphore(maxTotalConnections);
+		this.maxTotalConnections = maxTotalConnections;
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+		this.stripes = stripes;
+		this.params.setMaxTotalConnections(maxTotalConnections);
+		this.params.setDefaultMaxConnectionsPerHost(maxConnectionsPerRoute);
+	}
+
+	public HttpConnection getConnection(HostConfiguration hostConfiguration)
+	{
+		try
+		{
+			return this.getConnectionWithTimeout(hostConfiguration, 0);
+		}
+		catch (ConnectionPoolTimeoutException e)
+		{
+			// cannot happen without a timeout
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	/**
+	 * @deprecated Use {@link #getConnectionWithTimeout(HostConfiguration, long)}
+	 */
+	@Deprecated
+	public HttpConnection getConnection(HostConfiguration hostConfiguration, long timeout)
+		throws HttpException
+	{
+		try
+		{
+			return this.getConnectionWithTimeout(hostConfiguration, timeout);
+		}
+		catch (ConnectionPoolTimeoutException e)
+		{
+			throw new HttpException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks out a connection for the given route, opening a new one if no
+	 * idle connection is available and the limits allow.
+	 * @param hostConfiguration
+	 * @param timeout - milliseconds to wait for a free connection; 0 waits forever.
+	 */
+	public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout)
+		throws ConnectionPoolTimeoutException
+	{
+		if (this.shutdown)
+			throw new IllegalStateException("Connection manager has been shut down.");
+		RoutePool route = this.getRoutePool(hostConfiguration);
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		acquire(route.permits, timeout, deadline);
+		try
+		{
+			acquire(this.totalPermits, timeout, deadline);
+		}
+		catch (ConnectionPoolTimeoutException e)
+		{
+			route.permits.release();
+			throw e;
+		}
+
+		PooledConnection connection = route.pollIdle(this.homeStripe());
+		if (connection == null)
+		{
+			// the permits bound leased connections only; idle ones hold sockets too
+			if (this.pooledConnections.incrementAndGet() > this.maxTotalConnections)
+				this.closeIdleElsewhere(route);
+			connection = new PooledConnection(hostConfiguration, route);
+			connection.setHttpConnectionManager(this);
+			connection.getParams().setDefaults(this.params);
+			route.created.incrementAndGet();
+		}
+		connection.leased.set(true);
+		connection.leasedAtMillis = System.currentTimeMillis();
+		RequestTrace.currentPhaseEnded(RequestPhase.POOL_WAIT);
+		return connection;
+	}
+
+	/**
+	 * Returns a connection to its route's pool, finishing off any unread
+	 * response first.  Releasing a connection more than once has no effect.
+	 */
+	public void releaseConnection(HttpConnection conn)
+	{
+		if (!(conn instanceof PooledConnection))
+		{
+			logger.warn("Ignoring release of a connection this manager did not create.");
+			return;
+		}
+		PooledConnection connection = (PooledConnection) conn;
+		if (!connection.leased.compareAndSet(true, false))
+			return;
+
+		finishLastResponse(connection);
+		RoutePool route = connection.route;
+		if (this.shutdown)
+		{
+			connection.close();
+			this.pooledConnections.decrementAndGet();
+		}
+		else if (this.isPastTimeToLive(connection, System.currentTimeMillis()))
+		{
+			// drop it; a fresh connection takes its place on the next checkout
+			connection.close();
+			this.pooledConnections.decrementAndGet();
+			this.evictedConnections.incrementAndGet();
+		}
+		else
+		{
+			connection.idleSinceMillis = System.currentTimeMillis();
+			route.offerIdle(connection, this.homeStripe());
+		}
+		this.totalPermits.release();
+		route.permits.release();
+	}
+
+	/**
+	 * Closes every idle connection that has been idle for at least the given time.
+	 */
+	public void closeIdleConnections(long idleTimeout)
+	{
+		long cutoff = System.currentTimeMillis() - idleTimeout;
+		int closed = 0;
+		for (RoutePool route : this.routes.values())
+			closed += route.closeIdle(cutoff, Long.MIN_VALUE);
+		this.pooledConnections.addAndGet(-closed);
+		this.evictedConnections.addAndGet(closed);
+	}
+
+	/**
+	 * Closes idle connections that have outlived their time to live, or that
+	 * have been idle long enough for the server's Keep-Alive timeout to be
+	 * close at hand.
+	 * @return number of connections closed.
+	 */
+	public int closeExpiredConnections()
+	{
+		long now = System.currentTimeMillis();
+		long createdCutoff = this.connectionTimeToLiveMillis > 0 ? now - this.connectionTimeToLiveMillis : Long.MIN_VALUE;
+		int closed = 0;
+		for (RoutePool route : this.routes.values())
+		{
+			long idleCutoff = Long.MIN_VALUE;
+			Long keepAlive = this.keepAliveTimeouts.get(route.hostKey);
+			if (keepAlive != null)
+				idleCutoff = now - Math.max(keepAlive.longValue() - KEEP_ALIVE_SAFETY_MARGIN_MILLIS, 0);
+			closed += route.closeIdle(idleCutoff, createdCutoff);
+		}
+		this.pooledConnections.addAndGet(-closed);
+		this.evictedConnections.addAndGet(closed);
+		return closed;
+	}
+
+	/**
+	 * Records the Keep-Alive timeout a server advertised for its connections.
+	 * @param host
+	 * @param port
+	 * @param timeoutMillis
+	 */
+	public void setKeepAliveTimeout(String host, int port, long timeoutMillis)
+	{
+		String key = hostKey(host, port);
+		Long current = this.keepAliveTimeouts.get(key);
+		if (current == null || current.longValue() != timeoutMillis)
+			this.keepAliveTimeouts.put(key, Long.valueOf(timeoutMillis));
+	}
+
+	/**
+	 * Limits how long any connection is reused, regardless of activity;
+	 * 0 (the default) means no limit.
+	 * @param timeToLiveMillis
+	 */
+	public void setConnectionTimeToLive(long timeToLiveMillis)
+	{
+		this.connectionTimeToLiveMillis = timeToLiveMillis;
+	}
+
+	/**
+	 * Reads the timeout from a Keep-Alive response header, e.g.
+	 * <code>timeout=5, max=100</code>.
+	 * @param headerValue
+	 * @return the timeout in milliseconds, or -1 if the header has none.
+	 */
+	public static long parseKeepAliveTimeout(String headerValue)
+	{
+		if (headerValue == null)
+			return -1;
+		String[] elements = headerValue.split(",");
+		for (int i = 0; i < elements.length; i++)
+		{
+			String[] parts = elements[i].trim().split("=");
+			if (parts.length == 2 && parts[0].trim().equalsIgnoreCase("timeout"))
+			{
+				try
+				{
+					return Long.parseLong(parts[1].trim()) * 1000;
+				}
+				catch (NumberFormatException e)
+				{
+					return -1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	public HttpConnectionManagerParams getParams()
+	{
+		return this.params;
+	}
+
+	public void setParams(HttpConnectionManagerParams params)
+	{
+		if (params == null)
+			throw new IllegalArgumentException("Parameters may not be null");
+		this.params = params;
+	}
+
+	/**
+	 * Closes all idle connections; connections in use are closed as they
+	 * are released.
+	 */
+	public void shutdown()
+	{
+		this.shutdown = true;
+		this.closeIdleConnections(0);
+	}
+
+	/**
+	 * @return number of connections currently checked out.
+	 */
+	public int getLeasedConnectionCount()
+	{
+		int leased = 0;
+		for (RoutePool route : this.routes.values())
+			leased += this.maxConnectionsPerRoute - route.permits.availablePermits();
+		return leased;
+	}
+
+	/**
+	 * @return number of open connections waiting in the pool.
+	 */
+	public int getIdleConnectionCount()
+	{
+		int idle = 0;
+		for (RoutePool route : this.routes.values())
+			idle += route.idleCount();
+		return idle;
+	}
+
+	/**
+	 * Takes a snapshot of the pool's size and of the age of its idle
+	 * connections.
+	 * @return
+	 */
+	public ConnectionPoolStats getPoolStats()
+	{
+		long now = System.currentTimeMillis();
+		int idle = 0;
+		long totalIdleMillis = 0, maxIdleMillis = 0, totalAgeMillis = 0, maxAgeMillis = 0;
+		for (RoutePool route : this.routes.values())
+		{
+			for (int i = 0; i < route.idle.length; i++)
+			{
+				for (PooledConnection connection : route.idle[i])
+				{
+					long idleMillis = now - connection.idleSinceMillis;
+					long ageMillis = now - connection.createdAtMillis;
+					idle++;
+					totalIdleMillis += idleMillis;
+					totalAgeMillis += ageMillis;
+					maxIdleMillis = Math.max(maxIdleMillis, idleMillis);
+					maxAgeMillis = Math.max(maxAgeMillis, ageMillis);
+				}
+			}
+		}
+		return new ConnectionPoolStats(this.getLeasedConnectionCount(), idle, this.getCreatedConnectionCount(),
+				this.evictedConnections.get(), idle == 0 ? 0 : totalIdleMillis / idle, maxIdleMillis,
+				idle == 0 ? 0 : totalAgeMillis / idle, maxAgeMillis);
+	}
+
+	/**
+	 * @return number of connections created over the life of this pool.
+	 */
+	public long getCreatedConnectionCount()
+	{
+		long created = 0;
+		for (RoutePool route : this.routes.values())
+			created += route.created.get();
+		return created;
+	}
+
+	private RoutePool getRoutePool(HostConfiguration hostConfiguration)
+	{
+		String key = routeKey(hostConfiguration);
+		RoutePool route = this.routes.get(key);
+		if (route == null)
+		{
+			RoutePool newRoute = new RoutePool(key, hostKey(hostConfiguration.getHost(), hostConfiguration.getPort()),
+					this.maxConnectionsPerRoute, this.stripes);
+			route = this.routes.putIfAbsent(key, newRoute);
+			if (route == null)
+				route = newRoute;
+		}
+		return route;
+	}
+
+	/**
+	 * Closes an idle connection of a route other than the given one, to make
+	 * room for a new connection without exceeding the total limit.  Finding
+	 * none, which only a race with a concurrent checkout allows, the pool
+	 * briefly holds one connection too many.
+	 * @param route - the route about to open a connection.
+	 */
+	private void closeIdleElsewhere(RoutePool route)
+	{
+		for (RoutePool other : this.routes.values())
+		{
+			if (other == route)
+				continue;
+			PooledConnection idle = other.pollIdle(0);
+			if (idle != null)
+			{
+				idle.close();
+				this.pooledConnections.decrementAndGet();
+				this.evictedConnections.incrementAndGet();
+				return;
+			}
+		}
+	}
+
+	private boolean isPastTimeToLive(PooledConnection connection, long now)
+	{
+		return this.connectionTimeToLiveMillis > 0 && now - connection.createdAtMillis >= this.connectionTimeToLiveMillis;
+	}
+
+	private int homeStripe()
+	{
+		return (int) (Thread.currentThread().getId() % this.stripes);
+	}
+
+	private static void acquire(Semaphore semaphore, long timeout, long deadline) throws ConnectionPoolTimeoutException
+	{
+		try
+		{
+			if (timeout <= 0)
+			{
+				semaphore.acquire();
+				return;
+			}
+			if (!semaphore.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+				throw new ConnectionPoolTimeoutException("Timeout waiting for connection");
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalThreadStateException("Interrupted while waiting in StripedHttpConnectionManager");
+		}
+	}
+
+	/**
+	 * Closes the stream of a response that was not read to the end, so the
+	 * connection can be reused (or is closed if the stream cannot be).
+	 * @param conn
+	 */
+	static void finishLastResponse(HttpConnection conn)
+	{
+		InputStream lastResponse = conn.getLastResponseInputStream();
+		if (lastResponse != null)
+		{
+			conn.setLastResponseInputStream(null);
+			try
+			{
+				lastResponse.close();
+			}
+			catch (IOException e)
+			{
+				conn.close();
+			}
+		}
+	}
+
+	static String routeKey(HostConfiguration hostConfiguration)
+	{
+		return routeKey(hostConfiguration.getProtocol().getScheme(), hostConfiguration.getHost(), hostConfiguration.getPort(),
+				hostConfiguration.getProxyHost(), hostConfiguration.getProxyPort());
+	}
+
+	static String hostKey(String host, int port)
+	{
+		return host.toLowerCase() + ":" + port;
+	}
+
+	static String routeKey(String scheme, String host, int port, String proxyHost, int proxyPort)
+	{
+		StringBuilder key = new StringBuilder(scheme).append("://").append(host).append(':').append(port);
+		if (proxyHost != null)
+			key.append(" via ").append(proxyHost).append(':').append(proxyPort);
+		return key.toString();
+	}
+
+	/**
+	 * A connection that knows which route's pool it belongs to.
+	 */
+	static class PooledConnection extends HttpConnection
+	{
+		final RoutePool route;
+
+		final AtomicBoolean leased = new AtomicBoolean(false);
+
+		final long createdAtMillis = System.currentTimeMillis();
+
+		volatile long idleSinceMillis;
+
+		volatile long leasedAtMillis;
+
+		PooledConnection(HostConfiguration hostConfiguration, RoutePool route)
+		{
+			super(hostConfiguration);
+			this.route = route;
+		}
+
+		// the phases below are reported to the call traced on this thread, if any
+
+		public void open() throws IOException
+		{
+			super.open();
+			RequestTrace.currentPhaseEnded(RequestPhase.CONNECT);
+		}
+
+		public void flushRequestOutputStream() throws IOException
+		{
+			super.flushRequestOutputStream();
+			RequestTrace.currentPhaseEnded(RequestPhase.REQUEST_WRITE);
+		}
+
+		public String readLine(String charset) throws IOException, IllegalStateException
+		{
+			String line = super.readLine(charset);
+			// only the first line read after a write ends the wait; the client
+			// unbinds the trace once the status line is read, so draining reports nothing
+			RequestTrace.currentPhaseEnded(RequestPhase.TIME_TO_FIRST_BYTE);
+			return line;
+		}
+	}
+
+	/**
+	 * Idle connections and limits for a single route.
+	 */
+	static class RoutePool
+	{
+		final String key;
+
+		final String hostKey;
+
+		final Semaphore permits;
+
+		final ConcurrentLinkedQueue<PooledConnection>[] idle;
+
+		final AtomicInteger[] idleCounts;
+
+		final AtomicInteger created = new AtomicInteger();
+
+		@SuppressWarnings("unchecked")
+		RoutePool(String key, String hostKey, int maxConnections, int stripes)
+		{
+			this.key = key;
+			this.hostKey = hostKey;
+			this.permits = new Semaphore(maxConnections);
+			// no generic arrays; this one only ever holds pooled connection queues
+			this.idle = (ConcurrentLinkedQueue<PooledConnection>[]) new ConcurrentLinkedQueue<?>[stripes];
+			this.idleCounts = new AtomicInteger[stripes];
+			for (int i = 0; i < stripes; i++)
+			{
+				this.idle[i] = new ConcurrentLinkedQueue<PooledConnection>();
+				this.idleCounts[i] = new AtomicInteger();
+			}
+		}
+
+		/**
+		 * Takes an idle connection from the home stripe, or else from the
+		 * stripe holding the most idle connections.
+		 */
+		PooledConnection pollIdle(int home)
+		{
+			PooledConnection connection = this.pollStripe(home);
+			if (connection != null)
+				return connection;
+
+			int busiest = -1;
+			int most = 0;
+			for (int i = 0; i < this.idle.length; i++)
+			{
+				int count = this.idleCounts[i].get();
+				if (count > most)
+				{
+					most = count;
+					busiest = i;
+				}
+			}
+			if (busiest >= 0)
+			{
+				connection = this.pollStripe(busiest);
+				if (connection != null)
+					return connection;
+			}
+
+			// counts are advisory; sweep before giving up
+			for (int i = 0; i < this.idle.length; i++)
+			{
+				connection = this.pollStripe(i);
+				if (connection != null)
+					return connection;
+			}
+			return null;
+		}
+
+		void offerIdle(PooledConnection connection, int home)
+		{
+			this.idle[home].offer(connection);
+			this.idleCounts[home].incrementAndGet();
+		}
+
+		int idleCount()
+		{
+			int count = 0;
+			for (AtomicInteger stripeCount : this.idleCounts)
+				count += stripeCount.get();
+			return count;
+		}
+
+		/**
+		 * Closes and removes idle connections last returned before the idle
+		 * cutoff, or created before the creation cutoff.
+		 * @param idleCutoffMillis
+		 * @param createdCutoffMillis
+		 * @return number of connections closed.
+		 */
+		int closeIdle(long idleCutoffMillis, long createdCutoffMillis)
+		{
+			int closed = 0;
+			for (int i = 0; i < this.idle.length; i++)
+			{
+				Iterator<PooledConnection> it = this.idle[i].iterator();
+				while (it.hasNext())
+				{
+					PooledConnection connection = it.next();
+					// remove() fails if a concurrent checkout got there first
+					boolean expired = connection.idleSinceMillis <= idleCutoffMillis
+						|| connection.createdAtMillis <= createdCutoffMillis;
+					if (expired && this.idle[i].remove(connection))
+					{
+						this.idleCounts[i].decrementAndGet();
+						connection.close();
+						closed++;
+					}
+				}
+			}
+			return closed;
+		}
+
+		private PooledConnection pollStripe(int stripe)
+		{
+			PooledConnection connection = this.idle[stripe].poll();
+			if (connection != null)
+				this.idleCounts[stripe].decrementAndGet();
+			return connection;
+		}
+	}
+
+}
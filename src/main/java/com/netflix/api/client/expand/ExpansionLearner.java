@@ -0,0 +1,178 @@
+package com.netflix.api.client.expand;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.netflix.api.client.EndpointFamily;
+import com.netflix.api.client.NetflixAPIClient;
+
+/**
+ * Learns which links callers follow after fetching from each
+ * <code>EndpointFamily</code>, and names them in an <code>expand</code>
+ * parameter so the API inlines them in the original response. <br />
+ * Code that fetches a title and then follows its <code>synopsis</code> and
+ * <code>cast</code> links one at a time makes three signed round trips where
+ * one would do.  Once a family has been fetched <code>minFetches</code> times,
+ * every link title that was followed after at least <code>followRatio</code>
+ * of those fetches, and that the family supports expanding, is asked for.
+ * Fetches and follows are recorded by <code>ExpansionSession</code>s, which
+ * also serve the inlined content.  Instances are thread safe and meant to
+ * be shared.
+ */
+public class ExpansionLearner
+{
+	/**
+	 * Share of fetches that must be followed by a link before it is expanded.
+	 */
+	public static final double DEFAULT_FOLLOW_RATIO = 0.5;
+
+	/**
+	 * Fetches of a family seen before anything is expanded for it.
+	 */
+	public static final int DEFAULT_MIN_FETCHES = 20;
+
+	/**
+	 * Link titles the API can inline in catalog title responses.
+	 */
+	public static final Set<String> TITLE_EXPANSIONS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+			"synopsis", "cast", "directors", "formats", "screen formats", "languages and audio",
+			"awards", "similars", "bonus materials", "seasons", "episodes", "discs")));
+
+	private final double followRatio;
+
+	private final int minFetches;
+
+	private final Map<EndpointFamily, FamilyStats> stats = new EnumMap<EndpointFamily, FamilyStats>(EndpointFamily.class);
+
+	public ExpansionLearner()
+	{
+		this(DEFAULT_FOLLOW_RATIO, DEFAULT_MIN_FETCHES);
+	}
+
+	/**
+	 * @param followRatio - share of fetches, from 0 to 1, a link must be followed after.
+	 * @param minFetches - fetches to observe before expanding anything.
+	 */
+	public ExpansionLearner(double followRatio, int minFetches)
+	{
+		if (followRatio <= 0 || followRatio > 1)
+			throw new IllegalArgumentException("Follow ratio must be in (0, 1], not " + followRatio);
+		this.followRatio = followRatio;
+		this.minFetches = Math.max(minFetches, 1);
+		// filled up front so lookups need no locking
+		for (EndpointFamily family : EndpointFamily.values())
+			this.stats.put(family, new FamilyStats());
+		this.setSupportedExpansions(EndpointFamily.CATALOG_SEARCH, TITLE_EXPANSIONS);
+		this.setSupportedExpansions(EndpointFamily.CATALOG_TITLE, TITLE_EXPANSIONS);
+	}
+
+	/**
+	 * @param family
+	 * @param linkTitles - link titles the family's resources can have inlined;
+	 * empty to never expand the family.
+	 */
+	public void setSupportedExpansions(EndpointFamily family, Collection<String> linkTitles)
+	{
+		this.stats.get(family).supported = Collections.unmodifiableSet(new HashSet<String>(linkTitles));
+	}
+
+	/**
+	 * @return a session that learns from, and applies, this learner's statistics.
+	 */
+	public ExpansionSession newSession(NetflixAPIClient client)
+	{
+		return new ExpansionSession(client, this);
+	}
+
+	/**
+	 * @param family
+	 * @return whether the family's responses are worth scanning for links,
+	 * i.e. it supports expanding any.
+	 */
+	public boolean isLearning(EndpointFamily family)
+	{
+		return !this.stats.get(family).supported.isEmpty();
+	}
+
+	/**
+	 * Counts one response fetched from the family.
+	 */
+	public void recordFetch(EndpointFamily family)
+	{
+		this.stats.get(family).fetches.incrementAndGet();
+	}
+
+	/**
+	 * Counts one link followed from a response of the family.  Each link
+	 * title should be counted at most once per response.
+	 * @param family
+	 * @param linkTitle - the <code>title</code> attribute of the link.
+	 */
+	public void recordFollow(EndpointFamily family, String linkTitle)
+	{
+		if (linkTitle == null)
+			return;
+		ConcurrentMap<String, AtomicLong> follows = this.stats.get(family).follows;
+		AtomicLong count = follows.get(linkTitle);
+		if (count == null)
+		{
+			AtomicLong created = new AtomicLong();
+			count = follows.putIfAbsent(linkTitle, created);
+			if (count == null)
+				count = created;
+		}
+		count.incrementAndGet();
+	}
+
+	/**
+	 * @param family
+	 * @return the <code>expand</code> parameter to add to the family's
+	 * requests, as a comma separated list of link titles; or null if none.
+	 */
+	public String getExpansion(EndpointFamily family)
+	{
+		FamilyStats familyStats = this.stats.get(family);
+		long fetches = familyStats.fetches.get();
+		if (fetches < this.minFetches || familyStats.supported.isEmpty())
+			return null;
+		// sorted so the same expansion always makes the same request
+		Set<String> expanded = new TreeSet<String>();
+		for (Map.Entry<String, AtomicLong> entry : familyStats.follows.entrySet())
+		{
+			if (familyStats.supported.contains(entry.getKey()) && entry.getValue().get() >= this.followRatio * fetches)
+				expanded.add(entry.getKey());
+		}
+		if (expanded.isEmpty())
+			return null;
+		StringBuilder sb = new StringBuilder();
+		for (String linkTitle : expanded)
+		{
+			if (sb.length() > 0)
+				sb.append(',');
+			sb.append(linkTitle);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Fetch and follow counts for one family.
+	 */
+	private static class FamilyStats
+	{
+		final AtomicLong fetches = new AtomicLong();
+
+		final ConcurrentMap<String, AtomicLong> follows = new ConcurrentHashMap<String, AtomicLong>();
+
+		volatile Set<String> supported = Collections.emptySet();
+	}
+
+}
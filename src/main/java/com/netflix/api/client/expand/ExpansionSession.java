@@ -0,0 +1,233 @@
+package com.netflix.api.client.expand;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.EndpointFamily;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.ResponseHandler;
+import com.netflix.api.decoder.LinkScan;
+import com.netflix.api.model.Link;
+
+/**
+ * Fetches resources and follows their links for the duration of one unit
+ * of work, such as rendering a page. <br />
+ * Fetches are rewritten with the <code>expand</code> parameter the
+ * <code>ExpansionLearner</code> has learned for their family.  The content
+ * the API inlines is kept, by link href, and handed to later
+ * <code>follow</code> calls without another round trip; links that were not
+ * expanded are fetched as usual, at the security level of the response they
+ * came from.  Every follow is reported back to the learner, so it keeps
+ * learning whether or not the link was served from here. <br />
+ * Only XML responses of families the learner can expand are scanned for
+ * links: requests for <code>output=json</code>, and for other families, are
+ * passed through untouched, so their links are followed consumer signed.
+ * Scanned responses are copied as the handler reads them and scanned once
+ * it returns, unless it discarded the rest of the body.  Sessions are
+ * thread safe, but hold every inlined section they have seen, so should
+ * not outlive the work they are created for.
+ */
+public class ExpansionSession
+{
+	private static final Logger logger = LoggerFactory.getLogger(ExpansionSession.class);
+
+	private final NetflixAPIClient client;
+
+	private final ExpansionLearner learner;
+
+	/**
+	 * Inlined content, by link href.
+	 */
+	private final Map<String, String> expansions = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * The response each link was found in, by link href.
+	 */
+	private final Map<String, Origin> origins = new ConcurrentHashMap<String, Origin>();
+
+	private final AtomicInteger hits = new AtomicInteger();
+
+	private final AtomicInteger misses = new AtomicInteger();
+
+	ExpansionSession(NetflixAPIClient client, ExpansionLearner learner)
+	{
+		this.client = client;
+		this.learner = learner;
+	}
+
+	/**
+	 * Executes the request, with any learned expansion added, and remembers
+	 * the links in its response.
+	 * @param request - a request that does not name <code>expand</code> is rewritten.
+	 * @param handler - consumes the response body, inlined sections included.
+	 * @return whatever the handler returns.
+	 * @throws Exception - if a server communication error occurs, or the handler fails.
+	 */
+	public <T> T fetch(APIRequest request, final ResponseHandler<T> handler) throws Exception
+	{
+		Map<String, String> parameters = request.getCallParameters() == null
+			? Collections.<String, String>emptyMap() : request.getCallParameters();
+		if ("json".equals(parameters.get("output")))
+			return this.client.execute(request, handler);
+
+		final EndpointFamily family = EndpointFamily.forUri(request.getUri());
+		if (!parameters.containsKey("expand") && NetflixAPIClient.GET_METHOD_TYPE.equals(request.getMethodType()))
+		{
+			String expansion = this.learner.getExpansion(family);
+			if (expansion != null)
+				request = request.withCallParameter("expand", expansion);
+		}
+
+		if (!this.learner.isLearning(family))
+			return this.client.execute(request, handler);
+
+		final APIRequest executed = request;
+		return this.client.execute(request, new ResponseHandler<T>()
+		{
+			public T handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+			{
+				if (response.getStatusCode() != 200)
+					return handler.handleResponse(response, body);
+				// the handler streams the body as it arrives; a copy of what
+				// it reads, and of what it leaves, is scanned after it is done
+				ByteArrayOutputStream copy = new ByteArrayOutputStream();
+				T result = handler.handleResponse(response, new TeeInputStream(body, copy));
+				if (!response.isRemainingBodyDiscarded())
+				{
+					IOUtils.copy(body, copy);
+					remember(family, executed, copy.toByteArray());
+				}
+				return result;
+			}
+		});
+	}
+
+	/**
+	 * Follows a link found in a response fetched by this session.
+	 * @param link
+	 * @param handler - consumes the linked resource.
+	 * @return whatever the handler returns.
+	 * @throws Exception - if a server communication error occurs, or the handler fails.
+	 */
+	public <T> T follow(Link link, ResponseHandler<T> handler) throws Exception
+	{
+		return this.follow(link.getHref(), handler);
+	}
+
+	/**
+	 * Follows a link, serving it from the session if its content was inlined.
+	 * Links not found in this session's responses are fetched consumer signed.
+	 * @param href
+	 * @param handler - consumes the linked resource.
+	 * @return whatever the handler returns.
+	 * @throws Exception - if a server communication error occurs, or the handler fails.
+	 */
+	public <T> T follow(String href, ResponseHandler<T> handler) throws Exception
+	{
+		Origin origin = this.origins.get(href);
+		if (origin != null)
+		{
+			String linkTitle = origin.linkTitles.get(href);
+			// counted once per response, however often the link is followed
+			if (linkTitle != null && origin.followed.add(linkTitle))
+				this.learner.recordFollow(origin.family, linkTitle);
+		}
+
+		String expansion = this.expansions.get(href);
+		if (expansion != null)
+		{
+			this.hits.incrementAndGet();
+			NetflixAPIResponse response = new NetflixAPIResponse();
+			response.setStatusCode(200);
+			response.setStatusLine("HTTP/1.1 200 OK");
+			response.setResponseHeaders(new HashMap<String, String>());
+			response.setExecutionSummary("Served from the expansion of [" + origin.request.getUri() + "]");
+			return handler.handleResponse(response, new ByteArrayInputStream(expansion.getBytes("UTF-8")));
+		}
+
+		this.misses.incrementAndGet();
+		APIRequest request = origin != null ? origin.request.forLink(href)
+			: APIRequest.consumerSigned(href, null, NetflixAPIClient.GET_METHOD_TYPE);
+		return this.client.execute(request, handler);
+	}
+
+	/**
+	 * @return follows served from inlined content.
+	 */
+	public int getHitCount()
+	{
+		return this.hits.get();
+	}
+
+	/**
+	 * @return follows that needed a call to the API.
+	 */
+	public int getMissCount()
+	{
+		return this.misses.get();
+	}
+
+	private void remember(EndpointFamily family, APIRequest request, byte[] body)
+	{
+		LinkScan scan;
+		try
+		{
+			scan = LinkScan.scan(new ByteArrayInputStream(body));
+		}
+		catch (NetflixAPIException e)
+		{
+			// not XML after all; nothing to learn from it
+			logger.debug("Could not scan [" + request.getUri() + "] for links", e);
+			return;
+		}
+		catch (IOException e)
+		{
+			logger.debug("Could not scan [" + request.getUri() + "] for links", e);
+			return;
+		}
+		this.learner.recordFetch(family);
+
+		Origin origin = new Origin(family, request, scan.getTitles());
+		for (String href : scan.getTitles().keySet())
+			this.origins.put(href, origin);
+		this.expansions.putAll(scan.getExpansions());
+	}
+
+	/**
+	 * A response links were found in.
+	 */
+	private static class Origin
+	{
+		final EndpointFamily family;
+
+		final APIRequest request;
+
+		final Map<String, String> linkTitles;
+
+		final Set<String> followed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+		Origin(EndpointFamily family, APIRequest request, Map<String, String> linkTitles)
+		{
+			this.family = family;
+			this.request = request;
+			this.linkTitles = linkTitles;
+		}
+	}
+
+}
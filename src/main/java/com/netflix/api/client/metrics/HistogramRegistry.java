@@ -0,0 +1,247 @@
+package com.netflix.api.client.metrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.netflix.api.client.EndpointFamily;
+import com.netflix.api.client.NetflixAPIClient;
+
+/**
+ * Keeps a <code>LatencyHistogram</code> and call count for every endpoint
+ * family, HTTP method and status class seen, and writes them out as plain
+ * text in the Prometheus exposition format. <br />
+ * Histograms live in a fixed array indexed by family, method and status,
+ * created on first use with a compare and set, so recording a call takes
+ * no lock and allocates nothing once each combination has been seen.
+ * Thread safe.
+ */
+public class HistogramRegistry implements MetricsRegistry
+{
+	private static final String[] METHODS = { NetflixAPIClient.GET_METHOD_TYPE, NetflixAPIClient.POST_METHOD_TYPE,
+		NetflixAPIClient.DELETE_METHOD_TYPE, "OTHER" };
+
+	private static final EndpointFamily[] FAMILIES = EndpointFamily.values();
+
+	private static final StatusClass[] STATUSES = StatusClass.values();
+
+	/**
+	 * Percentiles written out for each histogram.
+	 */
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	private final AtomicReferenceArray<LatencyHistogram> histograms =
+		new AtomicReferenceArray<LatencyHistogram>(FAMILIES.length * METHODS.length * STATUSES.length);
+
+	private volatile long startedMillis = System.currentTimeMillis();
+
+	public void recordCall(EndpointFamily family, String method, StatusClass status, long elapsedNanos)
+	{
+		int slot = slot(family, methodIndex(method), status);
+		LatencyHistogram histogram = this.histograms.get(slot);
+		if (histogram == null)
+		{
+			this.histograms.compareAndSet(slot, null, new LatencyHistogram());
+			histogram = this.histograms.get(slot);
+		}
+		histogram.record(elapsedNanos);
+	}
+
+	/**
+	 * @param family
+	 * @param method - e.g. <code>GET</code>.
+	 * @param status
+	 * @return the histogram of those calls, or null if there have been none.
+	 */
+	public LatencyHistogram getHistogram(EndpointFamily family, String method, StatusClass status)
+	{
+		return this.histograms.get(slot(family, methodIndex(method), status));
+	}
+
+	/**
+	 * @return a snapshot of every combination called since the registry was
+	 * created or reset, by family, then method, then status.
+	 */
+	public List<Series> getSeries()
+	{
+		List<Series> series = new ArrayList<Series>();
+		for (int f = 0; f < FAMILIES.length; f++)
+		{
+			for (int m = 0; m < METHODS.length; m++)
+			{
+				for (int s = 0; s < STATUSES.length; s++)
+				{
+					LatencyHistogram histogram = this.histograms.get(slot(FAMILIES[f], m, STATUSES[s]));
+					if (histogram != null)
+						series.add(new Series(FAMILIES[f], METHODS[m], STATUSES[s], histogram.getSnapshot()));
+				}
+			}
+		}
+		return series;
+	}
+
+	/**
+	 * Drops every histogram.  Calls completing meanwhile may be counted in
+	 * the histograms dropped.
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < this.histograms.length(); i++)
+			this.histograms.set(i, null);
+		this.startedMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return when the registry was created or last reset.
+	 */
+	public long getStartedMillis()
+	{
+		return startedMillis;
+	}
+
+	/**
+	 * Writes every series as Prometheus text: a call counter, the mean call
+	 * rate since the registry started, and a latency summary in microseconds
+	 * with its percentiles, sum, count and maximum.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeText(Appendable out) throws IOException
+	{
+		List<Series> series = this.getSeries();
+		double seconds = Math.max(System.currentTimeMillis() - this.startedMillis, 1) / 1000.0;
+
+		out.append("# HELP nfjc_calls_total API calls by endpoint family, HTTP method and status class.\n");
+		out.append("# TYPE nfjc_calls_total counter\n");
+		for (Series one : series)
+			sample(out, "nfjc_calls_total", one, null, Long.toString(one.snapshot.getCount()));
+
+		out.append("# HELP nfjc_calls_per_second Mean API call rate since the registry started.\n");
+		out.append("# TYPE nfjc_calls_per_second gauge\n");
+		for (Series one : series)
+			sample(out, "nfjc_calls_per_second", one, null, format(one.snapshot.getCount() / seconds));
+
+		out.append("# HELP nfjc_call_latency_microseconds API call latency.\n");
+		out.append("# TYPE nfjc_call_latency_microseconds summary\n");
+		for (Series one : series)
+		{
+			for (double percentile : PERCENTILES)
+			{
+				sample(out, "nfjc_call_latency_microseconds", one, format(percentile / 100),
+					Long.toString(one.snapshot.getValueAtPercentile(percentile)));
+			}
+			sample(out, "nfjc_call_latency_microseconds_sum", one, null, Long.toString(one.snapshot.getTotalMicros()));
+			sample(out, "nfjc_call_latency_microseconds_count", one, null, Long.toString(one.snapshot.getCount()));
+		}
+
+		out.append("# HELP nfjc_call_latency_microseconds_max Slowest API call.\n");
+		out.append("# TYPE nfjc_call_latency_microseconds_max gauge\n");
+		for (Series one : series)
+			sample(out, "nfjc_call_latency_microseconds_max", one, null, Long.toString(one.snapshot.getMaxMicros()));
+	}
+
+	/**
+	 * @return the series as <code>writeText</code> writes them.
+	 */
+	public String toText()
+	{
+		StringBuilder text = new StringBuilder();
+		try
+		{
+			this.writeText(text);
+		}
+		catch (IOException e)
+		{
+			// a StringBuilder does not throw
+			throw new IllegalStateException(e);
+		}
+		return text.toString();
+	}
+
+	private static void sample(Appendable out, String name, Series series, String quantile, String value)
+		throws IOException
+	{
+		out.append(name).append("{family=\"").append(series.family.name().toLowerCase(Locale.ENGLISH))
+			.append("\",method=\"").append(series.method).append("\",status=\"").append(series.status.getLabel())
+			.append('"');
+		if (quantile != null)
+			out.append(",quantile=\"").append(quantile).append('"');
+		out.append("} ").append(value).append('\n');
+	}
+
+	private static String format(double value)
+	{
+		String text = String.format(Locale.ENGLISH, "%.3f", value);
+		// trailing zeros say nothing
+		text = text.replaceAll("0+$", "");
+		return text.endsWith(".") ? text.substring(0, text.length() - 1) : text;
+	}
+
+	private static int methodIndex(String method)
+	{
+		for (int i = 0; i < METHODS.length - 1; i++)
+		{
+			if (METHODS[i].equalsIgnoreCase(method))
+				return i;
+		}
+		return METHODS.length - 1;
+	}
+
+	private static int slot(EndpointFamily family, int method, StatusClass status)
+	{
+		return (family.ordinal() * METHODS.length + method) * STATUSES.length + status.ordinal();
+	}
+
+	/**
+	 * The calls of one endpoint family, method and status class.
+	 */
+	public static class Series
+	{
+		private final EndpointFamily family;
+
+		private final String method;
+
+		private final StatusClass status;
+
+		private final LatencyHistogram.Snapshot snapshot;
+
+		Series(EndpointFamily family, String method, StatusClass status, LatencyHistogram.Snapshot snapshot)
+		{
+			this.family = family;
+			this.method = method;
+			this.status = status;
+			this.snapshot = snapshot;
+		}
+
+		public EndpointFamily getFamily()
+		{
+			return family;
+		}
+
+		/**
+		 * @return <code>GET</code>, <code>POST</code>, <code>DELETE</code> or <code>OTHER</code>.
+		 */
+		public String getMethod()
+		{
+			return method;
+		}
+
+		public StatusClass getStatus()
+		{
+			return status;
+		}
+
+		public LatencyHistogram.Snapshot getSnapshot()
+		{
+			return snapshot;
+		}
+
+		public String toString()
+		{
+			return this.family + " " + this.method + " " + this.status.getLabel() + ": " + this.snapshot;
+		}
+	}
+
+}
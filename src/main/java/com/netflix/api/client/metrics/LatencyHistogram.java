@@ -0,0 +1,160 @@
+package com.netflix.api.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in buckets whose width grows with the value, as
+ * HdrHistogram does, so that any percentile can be read back to within
+ * about 3% from a fixed 8KB of counters. <br />
+ * Values are kept in microseconds.  Each power of two is split into 32
+ * buckets of equal width; values below 64 microseconds get a bucket each.
+ * Latencies up to about 19 hours are told apart, longer ones are counted
+ * as that. <br />
+ * Recording is lock free: one atomic increment of the value's bucket, one
+ * atomic add to the total, and a compare and set only when a new maximum
+ * is seen.  Snapshots may be taken while values are recorded, and may then
+ * miss values recorded during the snapshot.
+ */
+public class LatencyHistogram
+{
+	/**
+	 * Values of 2^SUB_BUCKET_BITS and up share buckets.
+	 */
+	private static final int SUB_BUCKET_BITS = 6;
+
+	private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+
+	/**
+	 * The largest value told apart, in microseconds.
+	 */
+	static final long MAX_MICROS = (1L << 36) - 1;
+
+	private static final int BUCKETS = index(MAX_MICROS) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong totalMicros = new AtomicLong();
+
+	private final AtomicLong maxMicros = new AtomicLong();
+
+	/**
+	 * @param nanos - a latency, e.g. the difference of two <code>System.nanoTime()</code> calls.
+	 */
+	public void record(long nanos)
+	{
+		long micros = Math.min(Math.max(nanos / 1000, 0), MAX_MICROS);
+		this.counts.incrementAndGet(index(micros));
+		this.totalMicros.addAndGet(micros);
+		long max = this.maxMicros.get();
+		while (micros > max && !this.maxMicros.compareAndSet(max, micros))
+			max = this.maxMicros.get();
+	}
+
+	/**
+	 * @return the counts recorded so far.
+	 */
+	public Snapshot getSnapshot()
+	{
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			count += counts[i] = this.counts.get(i);
+		return new Snapshot(counts, count, this.totalMicros.get(), this.maxMicros.get());
+	}
+
+	/**
+	 * @return the bucket of a value: the value itself below 2^SUB_BUCKET_BITS,
+	 * then HALF_SUB_BUCKETS buckets per power of two.
+	 */
+	static int index(long micros)
+	{
+		int shift = Math.max(64 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS, 0);
+		return shift * HALF_SUB_BUCKETS + (int) (micros >>> shift);
+	}
+
+	/**
+	 * @return the largest value in a bucket.
+	 */
+	static long highestValue(int index)
+	{
+		if (index < 2 * HALF_SUB_BUCKETS)
+			return index;
+		int shift = index / HALF_SUB_BUCKETS - 1;
+		long mantissa = index - shift * HALF_SUB_BUCKETS;
+		return ((mantissa + 1) << shift) - 1;
+	}
+
+	/**
+	 * The counts of a histogram at one point in time.
+	 */
+	public static class Snapshot
+	{
+		private final long[] counts;
+
+		private final long count;
+
+		private final long totalMicros;
+
+		private final long maxMicros;
+
+		Snapshot(long[] counts, long count, long totalMicros, long maxMicros)
+		{
+			this.counts = counts;
+			this.count = count;
+			this.totalMicros = totalMicros;
+			this.maxMicros = maxMicros;
+		}
+
+		/**
+		 * @return values recorded.
+		 */
+		public long getCount()
+		{
+			return count;
+		}
+
+		public long getTotalMicros()
+		{
+			return totalMicros;
+		}
+
+		public long getMaxMicros()
+		{
+			return maxMicros;
+		}
+
+		public double getMeanMicros()
+		{
+			return this.count == 0 ? 0 : (double) this.totalMicros / this.count;
+		}
+
+		/**
+		 * @param percentile - from 0 to 100, e.g. 99.9.
+		 * @return the smallest value that the given share of values are at
+		 * or below, to within a bucket, in microseconds; 0 if nothing was recorded.
+		 */
+		public long getValueAtPercentile(double percentile)
+		{
+			if (this.count == 0)
+				return 0;
+			long rank = Math.max((long) Math.ceil(percentile / 100 * this.count), 1);
+			long seen = 0;
+			for (int i = 0; i < this.counts.length; i++)
+			{
+				seen += this.counts[i];
+				if (seen >= rank)
+					return Math.min(highestValue(i), this.maxMicros);
+			}
+			return this.maxMicros;
+		}
+
+		public String toString()
+		{
+			return this.count + " values, mean " + (long) this.getMeanMicros() + "us, p50 "
+				+ this.getValueAtPercentile(50) + "us, p99 " + this.getValueAtPercentile(99) + "us, max "
+				+ this.maxMicros + "us";
+		}
+	}
+
+}
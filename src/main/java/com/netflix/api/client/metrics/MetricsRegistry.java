@@ -0,0 +1,23 @@
+package com.netflix.api.client.metrics;
+
+import com.netflix.api.client.EndpointFamily;
+
+/**
+ * Receives the outcome of every call a <code>NetflixAPIClient</code>
+ * makes, once one is set with <code>setMetricsRegistry</code>. <br />
+ * <code>HistogramRegistry</code> keeps latency histograms in process;
+ * other implementations may forward calls to an application's own metrics
+ * library.  Calls are reported on the calling thread, as each completes,
+ * so implementations must be thread safe and should not block.
+ */
+public interface MetricsRegistry
+{
+	/**
+	 * @param family - the kind of resource called.
+	 * @param method - the HTTP method, e.g. <code>GET</code>.
+	 * @param status - the class of the response status.
+	 * @param elapsedNanos - from sending the request until the response was
+	 * read, or handed to its <code>ResponseHandler</code> and consumed.
+	 */
+	void recordCall(EndpointFamily family, String method, StatusClass status, long elapsedNanos);
+}
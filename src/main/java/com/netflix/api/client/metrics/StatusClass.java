@@ -0,0 +1,62 @@
+package com.netflix.api.client.metrics;
+
+/**
+ * The class of an HTTP status code, for metrics kept per class rather than
+ * per code.
+ */
+public enum StatusClass
+{
+	INFORMATIONAL("1xx"),
+
+	SUCCESS("2xx"),
+
+	REDIRECTION("3xx"),
+
+	CLIENT_ERROR("4xx"),
+
+	SERVER_ERROR("5xx"),
+
+	/**
+	 * No response: the call failed before a status line was read.
+	 */
+	FAILED("failed");
+
+	private final String label;
+
+	private StatusClass(String label)
+	{
+		this.label = label;
+	}
+
+	/**
+	 * @param statusCode - an HTTP status code, or 0 or less if there was no response.
+	 * @return the code's class.
+	 */
+	public static StatusClass forStatus(int statusCode)
+	{
+		switch (statusCode / 100)
+		{
+			case 1:
+				return INFORMATIONAL;
+			case 2:
+				return SUCCESS;
+			case 3:
+				return REDIRECTION;
+			case 4:
+				return CLIENT_ERROR;
+			case 5:
+				return SERVER_ERROR;
+			default:
+				return FAILED;
+		}
+	}
+
+	/**
+	 * @return e.g. <code>2xx</code>.
+	 */
+	public String getLabel()
+	{
+		return label;
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.netflix.api.client.paging;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.ResponseHandler;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Fetches pages through a <code>NetflixAPIClient</code>, decoding each with
+ * a response handler such as <code>StaxCatalogDecoder.titlesHandler()</code>.
+ */
+public class ClientPageFetcher<T> implements PageFetcher<T>
+{
+	private final NetflixAPIClient client;
+	
+	private final ResponseHandler<ResultPage<T>> handler;
+	
+	public ClientPageFetcher(NetflixAPIClient client, ResponseHandler<ResultPage<T>> handler)
+	{
+		this.client = client;
+		this.handler = handler;
+	}
+	
+	public ResultPage<T> fetch(APIRequest pageRequest) throws Exception
+	{
+		return this.client.execute(pageRequest, this.handler);
+	}
+	
+}
@@ -0,0 +1,14 @@
+package com.netflix.api.client.paging;
+
+/**
+ * Receives the items of a bulk fetch, one at a time and in order.
+ */
+public interface ItemConsumer<T>
+{
+	/**
+	 * @param item
+	 * @throws Exception - to stop the fetch; the exception is passed on to
+	 * the caller of the fetch.
+	 */
+	void accept(T item) throws Exception;
+}
@@ -0,0 +1,27 @@
+package com.netflix.api.client.paging;
+
+/**
+ * Thrown from paging iteration when a page could not be fetched.  The
+ * original failure is the cause.
+ */
+public class PageFetchException extends RuntimeException
+{
+	private static final long serialVersionUID = -3018402749186535321L;
+	
+	private final int startIndex;
+	
+	public PageFetchException(int startIndex, Throwable cause)
+	{
+		super("Could not fetch the page starting at " + startIndex, cause);
+		this.startIndex = startIndex;
+	}
+	
+	/**
+	 * @return <code>start_index</code> of the page that failed.
+	 */
+	public int getStartIndex()
+	{
+		return startIndex;
+	}
+	
+}
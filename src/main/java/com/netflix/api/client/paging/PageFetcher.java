@@ -0,0 +1,19 @@
+package com.netflix.api.client.paging;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Executes the request for one page of a paginated resource and decodes it.
+ */
+public interface PageFetcher<T>
+{
+	/**
+	 * @param pageRequest - the request, already carrying its
+	 * <code>start_index</code> and <code>max_results</code>.  It may be
+	 * aborted from another thread while the page is being fetched.
+	 * @return the decoded page.
+	 * @throws Exception - if the page cannot be fetched or decoded.
+	 */
+	ResultPage<T> fetch(APIRequest pageRequest) throws Exception;
+}
@@ -0,0 +1,261 @@
+package com.netflix.api.client.paging;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Iterates over every item of a paginated resource, such as a search of
+ * <code>APIEndpoints.CATALOG_URI</code> or <code>PEOPLE_URI</code>, fetching
+ * the next pages in the background while the current one is consumed. <br />
+ * Up to <code>prefetchDepth</code> pages beyond the one being read are kept
+ * in flight, so with a depth of 1 or more the caller only waits at a page
+ * boundary if it consumes faster than pages arrive.  Pages are fetched one
+ * at a time until the first tells how many results there are; none are
+ * requested past the end. <br />
+ * Callers that stop before the end must call <code>close()</code>, which
+ * cancels the prefetches not yet started and aborts those in flight.
+ * Iteration failures are thrown as <code>PageFetchException</code>s.  Not
+ * thread safe: an iterator belongs to the thread consuming it.
+ */
+public class PagingIterator<T> implements Iterator<T>
+{
+	public static final int DEFAULT_PAGE_SIZE = 100;
+
+	public static final int DEFAULT_PREFETCH_DEPTH = 1;
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final APIRequest request;
+
+	private final PageFetcher<T> fetcher;
+
+	private final int pageSize;
+
+	private final int prefetchDepth;
+
+	private final ExecutorService executor;
+
+	private final boolean ownsExecutor;
+
+	/**
+	 * Pages requested and not yet consumed, in order.
+	 */
+	private final LinkedList<PendingPage<T>> pending = new LinkedList<PendingPage<T>>();
+
+	private Iterator<T> current = Collections.<T>emptyList().iterator();
+
+	private int nextStartIndex;
+
+	private int totalResults = -1;
+
+	private boolean lastPageSeen;
+
+	private boolean closed;
+
+	/**
+	 * Fetches on a private pool, sized to the prefetch depth, that is shut
+	 * down when iteration ends.
+	 * @param request - the search; its paging parameters are overwritten per page.
+	 * @param fetcher - executes and decodes each page.
+	 * @param pageSize - <code>max_results</code> for each page; no more than the API allows per page.
+	 * @param prefetchDepth - pages to fetch ahead of the one being read; 0 fetches on demand.
+	 */
+	public PagingIterator(APIRequest request, PageFetcher<T> fetcher, int pageSize, int prefetchDepth)
+	{
+		this(request, fetcher, pageSize, prefetchDepth, newExecutor(prefetchDepth), true);
+	}
+
+	/**
+	 * @param executor - runs the page fetches; it is left running when iteration ends.
+	 */
+	public PagingIterator(APIRequest request, PageFetcher<T> fetcher, int pageSize, int prefetchDepth, ExecutorService executor)
+	{
+		this(request, fetcher, pageSize, prefetchDepth, executor, false);
+	}
+
+	private PagingIterator(APIRequest request, PageFetcher<T> fetcher, int pageSize, int prefetchDepth,
+			ExecutorService executor, boolean ownsExecutor)
+	{
+		if (pageSize <= 0 || prefetchDepth < 0)
+			throw new IllegalArgumentException("Page size must be positive and prefetch depth not negative");
+		this.request = request;
+		this.fetcher = fetcher;
+		this.pageSize = pageSize;
+		this.prefetchDepth = prefetchDepth;
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.nextStartIndex = startIndexOf(request);
+	}
+
+	public boolean hasNext()
+	{
+		while (!this.current.hasNext())
+		{
+			if (this.closed)
+				return false;
+			if (this.pending.isEmpty() && !this.schedule())
+			{
+				this.close();
+				return false;
+			}
+
+			PendingPage<T> next = this.pending.removeFirst();
+			ResultPage<T> page;
+			try
+			{
+				page = next.future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				this.close();
+				throw new PageFetchException(next.startIndex, e);
+			}
+			catch (ExecutionException e)
+			{
+				this.close();
+				throw new PageFetchException(next.startIndex, e.getCause());
+			}
+
+			if (page.getNumberOfResults() >= 0)
+				this.totalResults = page.getNumberOfResults();
+			if (page.getItems().isEmpty() || (this.totalResults < 0 && page.getItems().size() < this.pageSize))
+			{
+				// without totals, a short page is taken to be the last
+				this.lastPageSeen = true;
+				this.cancelPending();
+			}
+			this.current = page.getItems().iterator();
+			this.fill();
+		}
+		return true;
+	}
+
+	public T next()
+	{
+		if (!this.hasNext())
+			throw new NoSuchElementException();
+		return this.current.next();
+	}
+
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stops iteration, cancelling and aborting all outstanding page fetches.
+	 */
+	public void close()
+	{
+		if (this.closed)
+			return;
+		this.closed = true;
+		this.current = Collections.<T>emptyList().iterator();
+		this.cancelPending();
+		if (this.ownsExecutor)
+			this.executor.shutdownNow();
+	}
+
+	/**
+	 * @return total results of the search, once the first page has arrived; else -1.
+	 */
+	public int getTotalResults()
+	{
+		return totalResults;
+	}
+
+	/**
+	 * @return pages requested ahead of the one being read.
+	 */
+	public int getPendingPageCount()
+	{
+		return this.pending.size();
+	}
+
+	/**
+	 * Keeps the prefetch window full.  Until the total is known only the
+	 * first page is in flight, so nothing is requested past a short result.
+	 */
+	private void fill()
+	{
+		if (this.totalResults < 0)
+			return;
+		while (this.pending.size() < this.prefetchDepth && this.schedule())
+		{
+			// scheduled one more
+		}
+	}
+
+	/**
+	 * Requests the next page, if there may be one.
+	 * @return false if there are no more pages.
+	 */
+	private boolean schedule()
+	{
+		if (this.lastPageSeen || this.closed)
+			return false;
+		if (this.totalResults >= 0 && this.nextStartIndex >= this.totalResults)
+			return false;
+		final int startIndex = this.nextStartIndex;
+		final APIRequest pageRequest = this.request.forPage(startIndex, this.pageSize);
+		Future<ResultPage<T>> future = this.executor.submit(new Callable<ResultPage<T>>()
+		{
+			public ResultPage<T> call() throws Exception
+			{
+				return fetcher.fetch(pageRequest);
+			}
+		});
+		this.pending.addLast(new PendingPage<T>(startIndex, pageRequest, future));
+		this.nextStartIndex += this.pageSize;
+		return true;
+	}
+
+	private void cancelPending()
+	{
+		for (PendingPage<T> page : this.pending)
+			page.cancel();
+		this.pending.clear();
+	}
+
+	static int startIndexOf(APIRequest request)
+	{
+		String startIndex = request.getCallParameters() == null ? null : request.getCallParameters().get("start_index");
+		if (startIndex == null)
+			return 0;
+		try
+		{
+			return Integer.parseInt(startIndex);
+		}
+		catch (NumberFormatException e)
+		{
+			return 0;
+		}
+	}
+
+	private static ExecutorService newExecutor(int prefetchDepth)
+	{
+		return Executors.newFixedThreadPool(Math.max(prefetchDepth, 1), new ThreadFactory()
+		{
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "nfjc-page-prefetch-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+}
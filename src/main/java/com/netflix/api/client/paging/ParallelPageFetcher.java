@@ -0,0 +1,144 @@
+package com.netflix.api.client.paging;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Fetches every page of a large paginated resource for bulk jobs. <br />
+ * The first page is fetched alone to learn <code>number_of_results</code>;
+ * the rest are then requested concurrently, at most
+ * <code>parallelism</code> at a time, and handed to the consumer strictly
+ * in page order as soon as each page and all the pages before it are in.
+ * When the first page carries no total, pages are requested the same way
+ * until one comes back short or empty, which is taken to be the last, as
+ * <code>PagingIterator</code> does; the pages requested past it are
+ * cancelled.
+ * No more than <code>parallelism</code> pages are ever held waiting for
+ * their turn, so the full result set never sits in memory. <br />
+ * Fetches run on the given executor, which can be shared with other work;
+ * this class holds no state between calls and is thread safe.
+ */
+public class ParallelPageFetcher
+{
+	private final ExecutorService executor;
+	
+	private final int parallelism;
+	
+	/**
+	 * @param executor - runs the page fetches.
+	 * @param parallelism - most pages to have in flight, or waiting to be consumed, per fetch.
+	 */
+	public ParallelPageFetcher(ExecutorService executor, int parallelism)
+	{
+		if (parallelism <= 0)
+			throw new IllegalArgumentException("Parallelism must be positive");
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Fetches all pages, streaming their items to the consumer in order.  On
+	 * the first failure the remaining fetches are cancelled and aborted.
+	 * @param request - the search; its paging parameters are overwritten per page.
+	 * @param fetcher - executes and decodes each page.
+	 * @param pageSize - <code>max_results</code> for each page; no more than the API allows per page.
+	 * @param consumer - receives every item.
+	 * @return number of items delivered.
+	 * @throws PageFetchException - if a page cannot be fetched.
+	 * @throws Exception - whatever the consumer throws.
+	 */
+	public <T> int fetchAll(APIRequest request, PageFetcher<T> fetcher, int pageSize, ItemConsumer<? super T> consumer)
+		throws Exception
+	{
+		int firstIndex = PagingIterator.startIndexOf(request);
+		ResultPage<T> first;
+		try
+		{
+			first = fetcher.fetch(request.forPage(firstIndex, pageSize));
+		}
+		catch (Exception e)
+		{
+			throw new PageFetchException(firstIndex, e);
+		}
+		int delivered = deliver(first, consumer);
+		int total = first.getNumberOfResults();
+		if (isLast(first, total, pageSize))
+			return delivered;
+		
+		LinkedList<PendingPage<T>> window = new LinkedList<PendingPage<T>>();
+		int nextIndex = firstIndex + pageSize;
+		boolean lastSeen = false;
+		try
+		{
+			while ((!lastSeen && (total < 0 || nextIndex < total)) || !window.isEmpty())
+			{
+				while (window.size() < this.parallelism && !lastSeen && (total < 0 || nextIndex < total))
+				{
+					window.addLast(this.submit(request.forPage(nextIndex, pageSize), nextIndex, fetcher));
+					nextIndex += pageSize;
+				}
+				PendingPage<T> head = window.removeFirst();
+				ResultPage<T> page;
+				try
+				{
+					page = head.future.get();
+				}
+				catch (ExecutionException e)
+				{
+					throw new PageFetchException(head.startIndex, e.getCause());
+				}
+				delivered += deliver(page, consumer);
+				if (isLast(page, total, pageSize))
+				{
+					// nothing lies beyond, whatever was requested past it
+					lastSeen = true;
+					for (PendingPage<T> beyond : window)
+						beyond.cancel();
+					window.clear();
+				}
+			}
+			return delivered;
+		}
+		finally
+		{
+			for (PendingPage<T> page : window)
+				page.cancel();
+		}
+	}
+	
+	private <T> PendingPage<T> submit(final APIRequest pageRequest, int startIndex, final PageFetcher<T> fetcher)
+	{
+		Future<ResultPage<T>> future = this.executor.submit(new Callable<ResultPage<T>>()
+		{
+			public ResultPage<T> call() throws Exception
+			{
+				return fetcher.fetch(pageRequest);
+			}
+		});
+		return new PendingPage<T>(startIndex, pageRequest, future);
+	}
+	
+	/**
+	 * @return whether nothing lies past the page: it is empty, as when the
+	 * result set shrank since the first page, or there is no total and it
+	 * is short.
+	 */
+	private static boolean isLast(ResultPage<?> page, int total, int pageSize)
+	{
+		return page.getItems().isEmpty() || (total < 0 && page.getItems().size() < pageSize);
+	}
+	
+	private static <T> int deliver(ResultPage<T> page, ItemConsumer<? super T> consumer) throws Exception
+	{
+		for (T item : page.getItems())
+			consumer.accept(item);
+		return page.getItems().size();
+	}
+	
+}
@@ -0,0 +1,35 @@
+package com.netflix.api.client.paging;
+
+import java.util.concurrent.Future;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * A page fetch that has been submitted, with the request to abort it by.
+ */
+class PendingPage<T>
+{
+	final int startIndex;
+	
+	final APIRequest request;
+	
+	final Future<ResultPage<T>> future;
+	
+	PendingPage(int startIndex, APIRequest request, Future<ResultPage<T>> future)
+	{
+		this.startIndex = startIndex;
+		this.request = request;
+		this.future = future;
+	}
+	
+	/**
+	 * Cancels the fetch if it has not started, and aborts it if it has.
+	 */
+	void cancel()
+	{
+		this.future.cancel(true);
+		this.request.abort();
+	}
+	
+}
@@ -0,0 +1,13 @@
+package com.netflix.api.client.reactive;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPICustomer;
+
+/**
+ * Builds the request a sweep makes for each customer, e.g. a customer
+ * authorized GET of their queue.
+ */
+public interface CustomerRequestFactory
+{
+	APIRequest requestFor(NetflixAPICustomer customer);
+}
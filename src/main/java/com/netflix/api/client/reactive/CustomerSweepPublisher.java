@@ -0,0 +1,168 @@
+package com.netflix.api.client.reactive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.APIResult;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.NetflixAPICustomer;
+import com.netflix.api.client.ResponseHandler;
+
+/**
+ * Publishes the result of one request per customer, for bulk jobs that
+ * sweep a customer resource across many accounts. <br />
+ * Customers are called only while the subscriber has outstanding demand,
+ * up to <code>concurrency</code> of them at once, and their results are
+ * published in customer order.  A failed call for one customer is
+ * published as a failed <code>APIResult</code> rather than ending the sweep.
+ */
+public class CustomerSweepPublisher<T> extends PullPublisher<APIResult<T>>
+{
+	/**
+	 * Customers called at once, unless given.
+	 */
+	public static final int DEFAULT_CONCURRENCY = 4;
+	
+	private final NetflixAPIClient client;
+	
+	private final List<NetflixAPICustomer> customers;
+	
+	private final CustomerRequestFactory requestFactory;
+	
+	private final ResponseHandler<T> handler;
+	
+	private final Executor executor;
+	
+	private final int concurrency;
+	
+	/**
+	 * @param client - executes the requests.
+	 * @param customers - the customers to sweep, in order.
+	 * @param requestFactory - builds each customer's request.
+	 * @param handler - decodes each response.
+	 * @param executor - runs the calls and delivers the results.
+	 */
+	public CustomerSweepPublisher(NetflixAPIClient client, List<NetflixAPICustomer> customers,
+			CustomerRequestFactory requestFactory, ResponseHandler<T> handler, Executor executor)
+	{
+		this(client, customers, requestFactory, handler, executor, DEFAULT_CONCURRENCY);
+	}
+	
+	/**
+	 * @param client - executes the requests.
+	 * @param customers - the customers to sweep, in order.
+	 * @param requestFactory - builds each customer's request.
+	 * @param handler - decodes each response.
+	 * @param executor - runs the calls and delivers the results.
+	 * @param concurrency - most customers called at once.
+	 */
+	public CustomerSweepPublisher(NetflixAPIClient client, List<NetflixAPICustomer> customers,
+			CustomerRequestFactory requestFactory, ResponseHandler<T> handler, Executor executor, int concurrency)
+	{
+		super(executor);
+		if (concurrency <= 0)
+			throw new IllegalArgumentException("Concurrency must be positive");
+		this.client = client;
+		this.customers = Collections.unmodifiableList(new ArrayList<NetflixAPICustomer>(customers));
+		this.requestFactory = requestFactory;
+		this.handler = handler;
+		this.executor = executor;
+		this.concurrency = concurrency;
+	}
+	
+	protected PullSource<APIResult<T>> openSource()
+	{
+		return new SweepSource();
+	}
+	
+	private class SweepSource implements PullSource<APIResult<T>>
+	{
+		private int next;
+		
+		private volatile List<APIRequest> inFlight;
+		
+		private volatile boolean aborted;
+		
+		public List<APIResult<T>> next(long demand) throws Exception
+		{
+			if (this.next >= customers.size())
+				return null;
+			int count = (int) Math.min(Math.min(demand, concurrency), customers.size() - this.next);
+			List<APIRequest> requests = new ArrayList<APIRequest>(count);
+			List<FutureTask<APIResult<T>>> calls = new ArrayList<FutureTask<APIResult<T>>>(count);
+			for (int i = 0; i < count; i++)
+			{
+				APIRequest request = requestFactory.requestFor(customers.get(this.next++));
+				requests.add(request);
+				calls.add(new FutureTask<APIResult<T>>(call(request)));
+			}
+			this.inFlight = requests;
+			if (this.aborted)
+				this.abort();
+			try
+			{
+				for (int i = 1; i < count; i++)
+				{
+					try
+					{
+						executor.execute(calls.get(i));
+					}
+					catch (RejectedExecutionException e)
+					{
+						// run below, on this thread
+					}
+				}
+				// a call the executor has not started yet is run here, so a
+				// busy or single threaded executor cannot deadlock the sweep
+				List<APIResult<T>> results = new ArrayList<APIResult<T>>(count);
+				for (FutureTask<APIResult<T>> call : calls)
+				{
+					call.run();
+					results.add(call.get());
+				}
+				return results;
+			}
+			finally
+			{
+				this.inFlight = null;
+			}
+		}
+		
+		public void abort()
+		{
+			this.aborted = true;
+			List<APIRequest> requests = this.inFlight;
+			if (requests != null)
+			{
+				for (APIRequest request : requests)
+					request.abort();
+			}
+		}
+	}
+	
+	private Callable<APIResult<T>> call(final APIRequest request)
+	{
+		return new Callable<APIResult<T>>()
+		{
+			public APIResult<T> call()
+			{
+				long start = System.nanoTime();
+				try
+				{
+					return APIResult.success(request, client.execute(request, handler), System.nanoTime() - start);
+				}
+				catch (Exception e)
+				{
+					return APIResult.failure(request, e, System.nanoTime() - start);
+				}
+			}
+		};
+	}
+	
+}
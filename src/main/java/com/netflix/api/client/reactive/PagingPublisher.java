@@ -0,0 +1,93 @@
+package com.netflix.api.client.reactive;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.paging.PageFetcher;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Publishes every item of a paginated resource, such as a catalog or
+ * people search. <br />
+ * A page is requested only when the subscriber has asked for more items
+ * than are left over from the previous one.  Pages are always of
+ * <code>pageSize</code> items, whatever the demand, so a subscriber asking
+ * for one item at a time still costs one call per page; the surplus waits
+ * in the subscription's buffer.  No page past <code>number_of_results</code>
+ * is requested.
+ */
+public class PagingPublisher<T> extends PullPublisher<T>
+{
+	private final APIRequest request;
+	
+	private final PageFetcher<T> fetcher;
+	
+	private final int pageSize;
+	
+	/**
+	 * @param request - the search; its paging parameters are overwritten per page.
+	 * @param fetcher - executes and decodes each page.
+	 * @param pageSize - the <code>max_results</code> to ask for.
+	 * @param executor - runs the fetches and delivers the items.
+	 */
+	public PagingPublisher(APIRequest request, PageFetcher<T> fetcher, int pageSize, Executor executor)
+	{
+		super(executor);
+		if (pageSize <= 0)
+			throw new IllegalArgumentException("Page size must be positive");
+		this.request = request;
+		this.fetcher = fetcher;
+		this.pageSize = pageSize;
+	}
+	
+	protected PullSource<T> openSource()
+	{
+		return new PageSource();
+	}
+	
+	private class PageSource implements PullSource<T>
+	{
+		private int nextStartIndex;
+		
+		private int totalResults = -1;
+		
+		private volatile APIRequest inFlight;
+		
+		private volatile boolean aborted;
+		
+		public List<T> next(long demand) throws Exception
+		{
+			if (this.totalResults >= 0 && this.nextStartIndex >= this.totalResults)
+				return null;
+			APIRequest pageRequest = request.forPage(this.nextStartIndex, pageSize);
+			this.inFlight = pageRequest;
+			if (this.aborted)
+				pageRequest.abort();
+			ResultPage<T> page;
+			try
+			{
+				page = fetcher.fetch(pageRequest);
+			}
+			finally
+			{
+				this.inFlight = null;
+			}
+			if (page.getItems().isEmpty())
+				return null;
+			if (page.getNumberOfResults() >= 0)
+				this.totalResults = page.getNumberOfResults();
+			this.nextStartIndex += page.getItems().size();
+			return page.getItems();
+		}
+		
+		public void abort()
+		{
+			this.aborted = true;
+			APIRequest pageRequest = this.inFlight;
+			if (pageRequest != null)
+				pageRequest.abort();
+		}
+	}
+	
+}
@@ -0,0 +1,16 @@
+package com.netflix.api.client.reactive;
+
+/**
+ * A source of items that are produced only as a subscriber asks for them.
+ * Mirrors <code>java.util.concurrent.Flow.Publisher</code>, so adapting to
+ * Flow or Reactive Streams is a one-line wrapper.
+ */
+public interface Publisher<T>
+{
+	/**
+	 * Starts a new, independent stream of items for the subscriber.  Nothing
+	 * is requested from the API until the subscriber signals demand.
+	 * @param subscriber
+	 */
+	void subscribe(Subscriber<? super T> subscriber);
+}
@@ -0,0 +1,182 @@
+package com.netflix.api.client.reactive;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base for publishers whose items are fetched from the API in batches. <br />
+ * Each subscription opens its own <code>PullSource</code> and fetches from
+ * it only while the subscriber has asked for more items than are buffered,
+ * so a slow subscriber holds back the requests themselves rather than
+ * piling up responses.  Fetching and signalling run on the given executor,
+ * one task per subscription at a time; cancelling aborts the fetch in
+ * flight.
+ */
+public abstract class PullPublisher<T> implements Publisher<T>
+{
+	private static final Logger logger = LoggerFactory.getLogger(PullPublisher.class);
+
+	private final Executor executor;
+
+	protected PullPublisher(Executor executor)
+	{
+		this.executor = executor;
+	}
+
+	public void subscribe(Subscriber<? super T> subscriber)
+	{
+		PullSubscription<T> subscription = new PullSubscription<T>(subscriber, this.openSource(), this.executor);
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * @return a fresh source for a new subscription.
+	 */
+	protected abstract PullSource<T> openSource();
+
+	/**
+	 * Buffers between a source and its subscriber, honouring demand.
+	 */
+	private static class PullSubscription<T> implements Subscription, Runnable
+	{
+		private final Subscriber<? super T> subscriber;
+
+		private final PullSource<T> source;
+
+		private final Executor executor;
+
+		private final AtomicLong demand = new AtomicLong();
+
+		/**
+		 * Number of times the drain has been asked to run; it runs while non zero.
+		 */
+		private final AtomicInteger pendingDrains = new AtomicInteger();
+
+		/**
+		 * Only touched by the draining thread.
+		 */
+		private final LinkedList<T> buffer = new LinkedList<T>();
+
+		private boolean exhausted;
+
+		private volatile boolean cancelled;
+
+		private volatile IllegalArgumentException badRequest;
+
+		PullSubscription(Subscriber<? super T> subscriber, PullSource<T> source, Executor executor)
+		{
+			this.subscriber = subscriber;
+			this.source = source;
+			this.executor = executor;
+		}
+
+		public void request(long n)
+		{
+			if (n <= 0)
+				this.badRequest = new IllegalArgumentException("Subscribers must request a positive number of items, not " + n);
+			else
+			{
+				while (true)
+				{
+					long current = this.demand.get();
+					long updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+					if (this.demand.compareAndSet(current, updated))
+						break;
+				}
+			}
+			this.scheduleDrain();
+		}
+
+		public void cancel()
+		{
+			if (this.cancelled)
+				return;
+			this.cancelled = true;
+			this.source.abort();
+		}
+
+		private void scheduleDrain()
+		{
+			if (this.pendingDrains.getAndIncrement() == 0)
+				this.executor.execute(this);
+		}
+
+		public void run()
+		{
+			int missed = 1;
+			do
+			{
+				try
+				{
+					this.drain();
+				}
+				catch (RuntimeException e)
+				{
+					// a subscriber broke the rules; stop talking to it
+					logger.warn("Subscriber " + this.subscriber + " failed, cancelling", e);
+					this.cancel();
+				}
+				missed = this.pendingDrains.addAndGet(-missed);
+			}
+			while (missed != 0);
+		}
+
+		private void drain()
+		{
+			while (!this.cancelled)
+			{
+				if (this.badRequest != null)
+				{
+					this.cancel();
+					this.subscriber.onError(this.badRequest);
+					return;
+				}
+
+				long wanted = this.demand.get();
+				if (!this.buffer.isEmpty())
+				{
+					if (wanted == 0)
+						return;
+					this.subscriber.onNext(this.buffer.removeFirst());
+					if (wanted != Long.MAX_VALUE)
+						this.demand.decrementAndGet();
+					continue;
+				}
+				if (this.exhausted)
+				{
+					this.cancelled = true;
+					this.subscriber.onComplete();
+					return;
+				}
+				if (wanted == 0)
+					return;
+
+				List<T> batch;
+				try
+				{
+					batch = this.source.next(wanted);
+				}
+				catch (Throwable e)
+				{
+					if (!this.cancelled)
+					{
+						this.cancelled = true;
+						this.subscriber.onError(e);
+					}
+					return;
+				}
+				if (batch == null)
+					this.exhausted = true;
+				else this.buffer.addAll(batch);
+			}
+			this.buffer.clear();
+		}
+	}
+
+}
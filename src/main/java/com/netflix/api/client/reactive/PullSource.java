@@ -0,0 +1,23 @@
+package com.netflix.api.client.reactive;
+
+import java.util.List;
+
+/**
+ * Produces the items of one subscription, in batches, on demand.  Called
+ * by one thread at a time.
+ */
+public interface PullSource<T>
+{
+	/**
+	 * Blocks while fetching the next batch.
+	 * @param demand - items the subscriber is waiting for; a hint.
+	 * @return the next items, or null once there are no more.
+	 * @throws Exception - if fetching failed; ends the stream with an error.
+	 */
+	List<T> next(long demand) throws Exception;
+	
+	/**
+	 * Aborts the fetch in progress, if any.  Called from any thread.
+	 */
+	void abort();
+}
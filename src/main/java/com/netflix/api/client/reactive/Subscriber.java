@@ -0,0 +1,17 @@
+package com.netflix.api.client.reactive;
+
+/**
+ * Receives the items of a <code>Publisher</code>.  Signals to one
+ * subscriber never overlap, but may arrive on different threads.
+ * Mirrors <code>java.util.concurrent.Flow.Subscriber</code>.
+ */
+public interface Subscriber<T>
+{
+	void onSubscribe(Subscription subscription);
+	
+	void onNext(T item);
+	
+	void onError(Throwable error);
+	
+	void onComplete();
+}
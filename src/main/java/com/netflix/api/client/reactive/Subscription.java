@@ -0,0 +1,20 @@
+package com.netflix.api.client.reactive;
+
+/**
+ * Links a subscriber to its publisher.  Mirrors
+ * <code>java.util.concurrent.Flow.Subscription</code>.
+ */
+public interface Subscription
+{
+	/**
+	 * Asks for up to <code>n</code> more items.
+	 * @param n - must be positive; <code>Long.MAX_VALUE</code> means unbounded.
+	 */
+	void request(long n);
+	
+	/**
+	 * Stops the stream.  A request in flight is aborted, and no further
+	 * signals are sent once it has been noticed.
+	 */
+	void cancel();
+}
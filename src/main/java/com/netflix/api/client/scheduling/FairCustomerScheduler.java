@@ -0,0 +1,438 @@
+package com.netflix.api.client.scheduling;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.NetflixAPICustomer;
+
+/**
+ * Interleaves calls made on behalf of many customers using deficit round
+ * robin keyed by customer ID. <br />
+ * Every customer with queued work takes a turn in a ring; each turn adds a
+ * fixed quantum to the customer's deficit, and calls are dispatched while
+ * their cost fits in it.  A customer with thousands of queued calls therefore
+ * gets the same share of the workers as one with a single call.
+ * <br />
+ * Memory stays proportional to the work actually queued: a customer's queue
+ * is created on its first call and dropped as soon as it has nothing queued
+ * or in flight, and each customer may queue at most
+ * <code>maxQueuedPerCustomer</code> calls, after which <code>submit</code>
+ * blocks the producer.  No customer ever has more than
+ * <code>maxInFlightPerCustomer</code> calls executing at once.
+ */
+public class FairCustomerScheduler
+{
+	private static final Logger logger = LoggerFactory.getLogger(FairCustomerScheduler.class);
+
+	/**
+	 * Cost of a call submitted without an explicit cost.
+	 */
+	public static final int DEFAULT_COST = 1;
+
+	private final NetflixAPIClient client;
+
+	private final int quantum;
+
+	private final int maxInFlightPerCustomer;
+
+	private final int maxQueuedPerCustomer;
+
+	/**
+	 * Every customer with queued or in-flight work.
+	 */
+	private final Map<String, CustomerQueue> customers = new HashMap<String, CustomerQueue>();
+
+	/**
+	 * Customers with queued work that are eligible to dispatch, in turn order.
+	 */
+	private final LinkedList<CustomerQueue> ring = new LinkedList<CustomerQueue>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition workAvailable = this.lock.newCondition();
+
+	private final Condition spaceAvailable = this.lock.newCondition();
+
+	private final Thread[] workers;
+
+	private boolean shutdown = false;
+
+	/**
+	 * @param client - client used to execute <code>APIRequest</code>s.
+	 * @param workerThreads - number of calls that may be in flight at once.
+	 * @param maxInFlightPerCustomer - calls one customer may have executing at once.
+	 * @param maxQueuedPerCustomer - calls one customer may have waiting before
+	 * <code>submit</code> blocks.
+	 */
+	public FairCustomerScheduler(NetflixAPIClient client, int workerThreads, int maxInFlightPerCustomer, int maxQueuedPerCustomer)
+	{
+		this(client, workerThreads, maxInFlightPerCustomer, maxQueuedPerCustomer, DEFAULT_COST);
+	}
+
+	/**
+	 * @param client - client used to execute <code>APIRequest</code>s.
+	 * @param workerThreads - number of calls that may be in flight at once.
+	 * @param maxInFlightPerCustomer - calls one customer may have executing at once.
+	 * @param maxQueuedPerCustomer - calls one customer may have waiting before
+	 * <code>submit</code> blocks.
+	 * @param quantum - cost credited to a customer on each turn.
+	 */
+	public FairCustomerScheduler(NetflixAPIClient client, int workerThreads, int maxInFlightPerCustomer,
+			int maxQueuedPerCustomer, int quantum)
+	{
+		if (workerThreads < 1 || maxInFlightPerCustomer < 1 || maxQueuedPerCustomer < 1 || quantum < 1)
+			throw new IllegalArgumentException("Thread, in-flight, queue and quantum limits must all be positive.");
+		this.client = client;
+		this.maxInFlightPerCustomer = maxInFlightPerCustomer;
+		this.maxQueuedPerCustomer = maxQueuedPerCustomer;
+		this.quantum = quantum;
+
+		SchedulerThreadFactory threadFactory = new SchedulerThreadFactory("nfjc-fair-scheduler");
+		this.workers = new Thread[workerThreads];
+		for (int i = 0; i < workerThreads; i++)
+		{
+			this.workers[i] = threadFactory.newThread(new Worker());
+			this.workers[i].start();
+		}
+	}
+
+	/**
+	 * Queues a customer authorized call under its customer's ID, blocking
+	 * while that customer's queue is full.
+	 * @param request
+	 * @return future holding the server's response.
+	 * @throws NetflixAPIException - if the request has no identifiable customer.
+	 * @throws InterruptedException
+	 */
+	public Future<NetflixAPIResponse> submit(final APIRequest request) throws NetflixAPIException, InterruptedException
+	{
+		String customerID = getCustomerKey(request.getCustomer());
+		if (customerID == null)
+			throw new NetflixAPIException("Request has no customer to schedule it under.");
+		return this.submit(customerID, new Callable<NetflixAPIResponse>()
+		{
+			public NetflixAPIResponse call() throws Exception
+			{
+				return client.execute(request);
+			}
+		}, DEFAULT_COST);
+	}
+
+	/**
+	 * Queues arbitrary work under the given customer ID, blocking while that
+	 * customer's queue is full.
+	 * @param customerID
+	 * @param task
+	 * @param cost - relative cost of the work, e.g. expected pages fetched.
+	 * @return future holding the task's result.
+	 * @throws InterruptedException
+	 */
+	public <T> Future<T> submit(String customerID, Callable<T> task, int cost) throws InterruptedException
+	{
+		FutureTask<T> future = new FutureTask<T>(task);
+		this.lock.lock();
+		try
+		{
+			CustomerQueue customer;
+			while (true)
+			{
+				if (this.shutdown)
+					throw new RejectedExecutionException("Scheduler has been shut down.");
+				customer = this.customers.get(customerID);
+				if (customer == null || customer.calls.size() < this.maxQueuedPerCustomer)
+					break;
+				this.spaceAvailable.await();
+			}
+			if (customer == null)
+			{
+				customer = new CustomerQueue(customerID);
+				this.customers.put(customerID, customer);
+			}
+			customer.calls.addLast(new QueuedCall(future, Math.max(cost, 1)));
+			if (!customer.inRing && customer.inFlight < this.maxInFlightPerCustomer)
+			{
+				customer.inRing = true;
+				this.ring.addLast(customer);
+			}
+			this.workAvailable.signal();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		return future;
+	}
+
+	/**
+	 * @return number of customers that currently have queued or in-flight work.
+	 */
+	public int getActiveCustomerCount()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.customers.size();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops accepting calls.  Calls already queued are still executed, after
+	 * which the workers exit.
+	 */
+	public void shutdown()
+	{
+		this.lock.lock();
+		try
+		{
+			this.shutdown = true;
+			this.workAvailable.signalAll();
+			this.spaceAvailable.signalAll();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for the workers to exit after <code>shutdown()</code>.
+	 * @param timeoutMillis
+	 * @return true if every worker exited in time.
+	 * @throws InterruptedException
+	 */
+	public boolean awaitTermination(long timeoutMillis) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		for (Thread worker : this.workers)
+		{
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0)
+				return false;
+			worker.join(remaining);
+			if (worker.isAlive())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Resolves the key a customer's calls are scheduled under: the customer
+	 * ID, falling back on the access token's user ID and then the username.
+	 * @param customer
+	 * @return
+	 */
+	static String getCustomerKey(NetflixAPICustomer customer)
+	{
+		if (customer == null)
+			return null;
+		if (customer.getCustomerID() != null)
+			return customer.getCustomerID();
+		if (customer.getAccessToken() != null && customer.getAccessToken().getTokenUserID() != null)
+			return customer.getAccessToken().getTokenUserID();
+		return customer.getUsername();
+	}
+
+	/**
+	 * Blocks until some customer can dispatch a call, and removes it from
+	 * that customer's queue.
+	 * @return the next call to run, or null once shut down and drained.
+	 * @throws InterruptedException
+	 */
+	private QueuedCall takeNext() throws InterruptedException
+	{
+		this.lock.lock();
+		try
+		{
+			while (true)
+			{
+				QueuedCall next = this.pollNext();
+				if (next != null)
+					return next;
+				if (this.shutdown && this.customers.isEmpty())
+					return null;
+				this.workAvailable.await();
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs the deficit round robin over the ring.  Must be called while
+	 * holding the lock.
+	 * @return
+	 */
+	private QueuedCall pollNext()
+	{
+		while (!this.ring.isEmpty())
+		{
+			CustomerQueue customer = this.ring.getFirst();
+			if (!customer.turnStarted)
+			{
+				customer.deficit += this.quantum;
+				customer.turnStarted = true;
+			}
+
+			QueuedCall head = customer.calls.getFirst();
+			if (head.cost > customer.deficit)
+			{
+				// turn over, keep the remaining deficit for the next round
+				this.endTurn(customer);
+				this.ring.addLast(customer);
+				continue;
+			}
+
+			customer.calls.removeFirst();
+			customer.deficit -= head.cost;
+			customer.inFlight++;
+			head.customer = customer;
+			this.spaceAvailable.signalAll();
+
+			if (customer.calls.isEmpty())
+			{
+				// an emptied queue forfeits its deficit, as in classic DRR
+				customer.deficit = 0;
+				this.endTurn(customer);
+			}
+			else if (customer.inFlight >= this.maxInFlightPerCustomer)
+			{
+				this.endTurn(customer);
+			}
+			else if (customer.calls.getFirst().cost > customer.deficit)
+			{
+				this.endTurn(customer);
+				this.ring.addLast(customer);
+			}
+			return head;
+		}
+		return null;
+	}
+
+	/**
+	 * Takes a customer off the head of the ring and closes its turn.
+	 */
+	private void endTurn(CustomerQueue customer)
+	{
+		this.ring.removeFirst();
+		customer.inRing = false;
+		customer.turnStarted = false;
+	}
+
+	/**
+	 * Accounts for a finished call, returning its customer to the ring or
+	 * forgetting the customer altogether.
+	 * @param customer
+	 */
+	private void complete(CustomerQueue customer)
+	{
+		this.lock.lock();
+		try
+		{
+			customer.inFlight--;
+			if (customer.calls.isEmpty())
+			{
+				if (customer.inFlight == 0)
+				{
+					this.customers.remove(customer.customerID);
+					if (this.shutdown && this.customers.isEmpty())
+						this.workAvailable.signalAll();
+				}
+			}
+			else if (!customer.inRing)
+			{
+				customer.inRing = true;
+				this.ring.addLast(customer);
+				this.workAvailable.signal();
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Scheduling state for a single customer.
+	 */
+	private static class CustomerQueue
+	{
+		final String customerID;
+
+		final LinkedList<QueuedCall> calls = new LinkedList<QueuedCall>();
+
+		int deficit = 0;
+
+		int inFlight = 0;
+
+		boolean inRing = false;
+
+		boolean turnStarted = false;
+
+		CustomerQueue(String customerID)
+		{
+			this.customerID = customerID;
+		}
+	}
+
+	private static class QueuedCall
+	{
+		final FutureTask<?> task;
+
+		final int cost;
+
+		CustomerQueue customer;
+
+		QueuedCall(FutureTask<?> task, int cost)
+		{
+			this.task = task;
+			this.cost = cost;
+		}
+	}
+
+	private class Worker implements Runnable
+	{
+		public void run()
+		{
+			try
+			{
+				QueuedCall call;
+				while ((call = takeNext()) != null)
+				{
+					try
+					{
+						call.task.run();
+					}
+					finally
+					{
+						complete(call.customer);
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				logger.warn("Scheduler worker interrupted, exiting.");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,317 @@
+package com.netflix.api.client.scheduling;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+
+/**
+ * Schedules calls onto a fixed set of worker threads by priority class. <br />
+ * Each <code>RequestPriority</code> has its own FIFO queue, and a free worker
+ * always takes the most urgent queued call, so interactive traffic overtakes
+ * background work waiting in front of the transport.  To keep background work
+ * from being starved entirely, a call that has waited longer than the aging
+ * threshold may be served ahead of more urgent ones, oldest first, but only
+ * for one in every <code>AGED_SHARE</code> calls taken, so a backlog of aged
+ * background work cannot in turn starve interactive calls.
+ * <br />
+ * The number of workers bounds the number of calls in flight, and should
+ * normally match the size of the client's connection pool (the THREADS
+ * property).
+ */
+public class PriorityRequestScheduler
+{
+	private static final Logger logger = LoggerFactory.getLogger(PriorityRequestScheduler.class);
+
+	/**
+	 * Default time a call may wait before it is served regardless of priority.
+	 */
+	public static final long DEFAULT_AGING_THRESHOLD_MILLIS = 2000;
+
+	/**
+	 * Of this many calls taken, at most one is an aged call taken ahead of
+	 * more urgent ones.
+	 */
+	static final int AGED_SHARE = 4;
+
+	private final NetflixAPIClient client;
+
+	private final long agingThresholdNanos;
+
+	private final LinkedList<QueuedCall>[] queues;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition callQueued = this.lock.newCondition();
+
+	/**
+	 * Calls taken since an aged call last overtook a more urgent one, up to
+	 * <code>AGED_SHARE - 1</code>.  Guarded by the lock.
+	 */
+	private int sinceAged = AGED_SHARE - 1;
+
+	private final Thread[] workers;
+
+	private volatile boolean shutdown = false;
+
+	/**
+	 * @param client - client used to execute <code>APIRequest</code>s.
+	 * @param workerThreads - number of calls that may be in flight at once.
+	 */
+	public PriorityRequestScheduler(NetflixAPIClient client, int workerThreads)
+	{
+		this(client, workerThreads, DEFAULT_AGING_THRESHOLD_MILLIS);
+	}
+
+	/**
+	 * @param client - client used to execute <code>APIRequest</code>s.
+	 * @param workerThreads - number of calls that may be in flight at once.
+	 * @param agingThresholdMillis - queueing time after which a call is served
+	 * ahead of more urgent ones.
+	 */
+	public PriorityRequestScheduler(NetflixAPIClient client, int workerThreads, long agingThresholdMillis)
+	{
+		if (workerThreads < 1)
+			throw new IllegalArgumentException("At least one worker thread is required.");
+		this.client = client;
+		this.agingThresholdNanos = TimeUnit.MILLISECONDS.toNanos(agingThresholdMillis);
+		this.queues = newQueues(RequestPriority.values().length);
+
+		SchedulerThreadFactory threadFactory = new SchedulerThreadFactory("nfjc-priority-scheduler");
+		this.workers = new Thread[workerThreads];
+		for (int i = 0; i < workerThreads; i++)
+		{
+			this.workers[i] = threadFactory.newThread(new Worker());
+			this.workers[i].start();
+		}
+	}
+
+	/**
+	 * Queues an API call at the given priority.
+	 * @param request
+	 * @param priority
+	 * @return future holding the server's response.
+	 */
+	public Future<NetflixAPIResponse> submit(final APIRequest request, RequestPriority priority)
+	{
+		return this.submit(new Callable<NetflixAPIResponse>()
+		{
+			public NetflixAPIResponse call() throws Exception
+			{
+				return client.execute(request);
+			}
+		}, priority);
+	}
+
+	/**
+	 * Queues arbitrary work at the given priority, for callers that build
+	 * their own methods or post-process responses on the worker thread.
+	 * @param task
+	 * @param priority
+	 * @return future holding the task's result.
+	 */
+	public <T> Future<T> submit(Callable<T> task, RequestPriority priority)
+	{
+		FutureTask<T> future = new FutureTask<T>(task);
+		this.lock.lock();
+		try
+		{
+			if (this.shutdown)
+				throw new RejectedExecutionException("Scheduler has been shut down.");
+			this.queues[priority.ordinal()].addLast(new QueuedCall(future, System.nanoTime()));
+			this.callQueued.signal();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		return future;
+	}
+
+	/**
+	 * @param priority
+	 * @return number of calls waiting at the given priority.
+	 */
+	public int getQueueDepth(RequestPriority priority)
+	{
+		this.lock.lock();
+		try
+		{
+			return this.queues[priority.ordinal()].size();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops accepting calls.  Calls already queued are still executed, after
+	 * which the workers exit.
+	 */
+	public void shutdown()
+	{
+		this.lock.lock();
+		try
+		{
+			this.shutdown = true;
+			this.callQueued.signalAll();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for the workers to exit after <code>shutdown()</code>.
+	 * @param timeoutMillis
+	 * @return true if every worker exited in time.
+	 * @throws InterruptedException
+	 */
+	public boolean awaitTermination(long timeoutMillis) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		for (Thread worker : this.workers)
+		{
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0)
+				return false;
+			worker.join(remaining);
+			if (worker.isAlive())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Blocks until a call is available and removes it from its queue.
+	 * @return the next call to run, or null once shut down and drained.
+	 * @throws InterruptedException
+	 */
+	private QueuedCall takeNext() throws InterruptedException
+	{
+		this.lock.lock();
+		try
+		{
+			while (true)
+			{
+				QueuedCall next = this.pollNext(System.nanoTime());
+				if (next != null)
+					return next;
+				if (this.shutdown)
+					return null;
+				this.callQueued.await();
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Picks the head of the most urgent non-empty queue, unless it is an
+	 * aged call's turn: then the oldest call that has aged past the
+	 * threshold goes first, whatever its priority.  Must be called while
+	 * holding the lock.
+	 * @param now
+	 * @return
+	 */
+	private QueuedCall pollNext(long now)
+	{
+		int urgent = -1;
+		for (int i = 0; i < this.queues.length && urgent < 0; i++)
+		{
+			if (!this.queues[i].isEmpty())
+				urgent = i;
+		}
+		if (urgent < 0)
+			return null;
+
+		if (this.sinceAged >= AGED_SHARE - 1)
+		{
+			int aged = -1;
+			long oldest = Long.MAX_VALUE;
+			for (int i = urgent; i < this.queues.length; i++)
+			{
+				if (this.queues[i].isEmpty())
+					continue;
+				long enqueued = this.queues[i].getFirst().enqueuedNanos;
+				if (now - enqueued >= this.agingThresholdNanos && enqueued < oldest)
+				{
+					oldest = enqueued;
+					aged = i;
+				}
+			}
+			if (aged > urgent)
+			{
+				this.sinceAged = 0;
+				return this.queues[aged].removeFirst();
+			}
+		}
+		else this.sinceAged++;
+		return this.queues[urgent].removeFirst();
+	}
+
+	/**
+	 * Java has no generic arrays; the array never escapes, and holds only
+	 * queues of <code>QueuedCall</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	private static LinkedList<QueuedCall>[] newQueues(int count)
+	{
+		LinkedList<QueuedCall>[] queues = (LinkedList<QueuedCall>[]) new LinkedList<?>[count];
+		for (int i = 0; i < count; i++)
+			queues[i] = new LinkedList<QueuedCall>();
+		return queues;
+	}
+
+	/**
+	 * A call waiting in one of the priority queues.
+	 */
+	private static class QueuedCall
+	{
+		final FutureTask<?> task;
+
+		final long enqueuedNanos;
+
+		QueuedCall(FutureTask<?> task, long enqueuedNanos)
+		{
+			this.task = task;
+			this.enqueuedNanos = enqueuedNanos;
+		}
+	}
+
+	private class Worker implements Runnable
+	{
+		public void run()
+		{
+			try
+			{
+				QueuedCall call;
+				while ((call = takeNext()) != null)
+				{
+					// FutureTask captures any failure for the submitter
+					call.task.run();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				logger.warn("Scheduler worker interrupted, exiting.");
+			}
+		}
+	}
+
+}
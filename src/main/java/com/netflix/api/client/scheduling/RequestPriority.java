@@ -0,0 +1,22 @@
+package com.netflix.api.client.scheduling;
+
+/**
+ * Priority classes understood by the request schedulers, most urgent first.
+ */
+public enum RequestPriority
+{
+	/**
+	 * User-facing calls, e.g. page rendering.
+	 */
+	INTERACTIVE,
+
+	/**
+	 * Ordinary application traffic.
+	 */
+	NORMAL,
+
+	/**
+	 * Batch and sync jobs that can tolerate queueing delay.
+	 */
+	BACKGROUND
+}
@@ -0,0 +1,28 @@
+package com.netflix.api.client.scheduling;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon worker threads, so that an idle scheduler never
+ * keeps the JVM alive.
+ */
+class SchedulerThreadFactory implements ThreadFactory
+{
+	private final String namePrefix;
+
+	private final AtomicInteger threadCount = new AtomicInteger();
+
+	SchedulerThreadFactory(String namePrefix)
+	{
+		this.namePrefix = namePrefix;
+	}
+
+	public Thread newThread(Runnable runnable)
+	{
+		Thread thread = new Thread(runnable, this.namePrefix + "-" + this.threadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.netflix.api.client.trace;
+
+/**
+ * Told where the time of each call a <code>NetflixAPIClient</code> makes
+ * goes, once added with <code>addRequestListener</code>, so tracing
+ * systems and profilers can attach. <br />
+ * Every method is called on the calling thread, while the call is under
+ * way, so implementations must be thread safe and should not block.
+ * Times are <code>System.nanoTime()</code> readings.  A listener may keep
+ * its own state for a call, such as a span, as the trace's attachment.
+ */
+public interface RequestListener
+{
+	/**
+	 * @param trace - the call; its start time is before any phase.
+	 */
+	void requestStarted(RequestTrace trace);
+
+	/**
+	 * A phase may be reported more than once if the HTTP client retries.
+	 * @param trace
+	 * @param phase
+	 * @param startNanos - when the phase started, which is when the one
+	 * before it ended.
+	 * @param endNanos
+	 */
+	void phaseEnded(RequestTrace trace, RequestPhase phase, long startNanos, long endNanos);
+
+	/**
+	 * @param trace - with the response's status code, if one was read.
+	 * @param endNanos - once the connection was handed back.
+	 * @param failure - what failed the call, or null if it completed.
+	 */
+	void requestEnded(RequestTrace trace, long endNanos, Exception failure);
+}
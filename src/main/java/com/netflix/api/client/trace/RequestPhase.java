@@ -0,0 +1,44 @@
+package com.netflix.api.client.trace;
+
+/**
+ * The phases of a call, in the order they normally end.  A phase starts
+ * where the one before it ended. <br />
+ * <code>POOL_WAIT</code>, <code>CONNECT</code>, <code>REQUEST_WRITE</code>
+ * and an exact <code>TIME_TO_FIRST_BYTE</code> are reported only by the
+ * striped connection pool; with other connection managers the time they
+ * take is all reported as <code>TIME_TO_FIRST_BYTE</code>.
+ */
+public enum RequestPhase
+{
+	/**
+	 * Building the HTTP method, including its OAuth signature.  Not reported
+	 * for methods built by the caller.
+	 */
+	SIGNING,
+
+	/**
+	 * Waiting for the pool to hand out a connection.
+	 */
+	POOL_WAIT,
+
+	/**
+	 * Opening a new connection; not reported when an idle one is reused.
+	 */
+	CONNECT,
+
+	/**
+	 * Writing the request line, headers and body, until they are flushed.
+	 */
+	REQUEST_WRITE,
+
+	/**
+	 * Waiting for the server, until the status line is read.
+	 */
+	TIME_TO_FIRST_BYTE,
+
+	/**
+	 * Reading the response headers and body, or handing the body to a
+	 * <code>ResponseHandler</code> until it returns.
+	 */
+	BODY_READ
+}
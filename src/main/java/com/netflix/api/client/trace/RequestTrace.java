@@ -0,0 +1,231 @@
+package com.netflix.api.client.trace;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.api.client.EndpointFamily;
+
+/**
+ * One call being traced, and the listeners told of its phases. <br />
+ * While the HTTP client executes the call, up to reading the status line,
+ * the trace is bound to the calling thread, so the connection pool can
+ * report the phases only it sees through <code>currentPhaseEnded</code>.
+ * Binding saves whatever trace was bound and unbinding restores it, so
+ * traces nest.  When no call is bound on
+ * any thread that costs a single volatile read.  A phase ending right
+ * after another ending of itself is ignored, so a hook may report the
+ * same boundary more than once, e.g. on each header line read. <br />
+ * Traces are made by <code>NetflixAPIClient</code> only when it has
+ * listeners, and are used from the calling thread only.
+ */
+public class RequestTrace
+{
+	private static final Logger logger = LoggerFactory.getLogger(RequestTrace.class);
+
+	private static final ThreadLocal<RequestTrace> current = new ThreadLocal<RequestTrace>();
+
+	/**
+	 * Traces bound to a thread, on any thread.
+	 */
+	private static final AtomicInteger bound = new AtomicInteger();
+
+	private final List<RequestListener> listeners;
+
+	private final String uri;
+
+	private final String method;
+
+	private final long startNanos;
+
+	private long lastNanos;
+
+	private RequestPhase lastPhase;
+
+	private int statusCode;
+
+	private Object attachment;
+
+	/**
+	 * The trace this one replaced on the thread while bound, or null.
+	 */
+	private RequestTrace previous;
+
+	/**
+	 * Tells the listeners the call has started.
+	 * @param listeners - a snapshot that will not change during the call.
+	 * @param uri - the uri called.
+	 * @param method - the HTTP method, e.g. <code>GET</code>.
+	 * @param startNanos
+	 */
+	public RequestTrace(List<RequestListener> listeners, String uri, String method, long startNanos)
+	{
+		this.listeners = listeners;
+		this.uri = uri;
+		this.method = method;
+		this.startNanos = startNanos;
+		this.lastNanos = startNanos;
+		for (RequestListener listener : listeners)
+		{
+			try
+			{
+				listener.requestStarted(this);
+			}
+			catch (RuntimeException e)
+			{
+				logger.warn("Request listener failed on the start of a call to " + uri, e);
+			}
+		}
+	}
+
+	/**
+	 * Ends a phase of the trace bound to this thread, if there is one.
+	 * Called by the HTTP layer.
+	 * @param phase
+	 */
+	public static void currentPhaseEnded(RequestPhase phase)
+	{
+		if (bound.get() == 0)
+			return;
+		RequestTrace trace = current.get();
+		if (trace != null)
+			trace.phaseEnded(phase, System.nanoTime());
+	}
+
+	/**
+	 * Binds the trace to this thread until <code>unbind</code>, in place of
+	 * any trace already bound.
+	 */
+	public void bind()
+	{
+		this.previous = current.get();
+		current.set(this);
+		bound.incrementAndGet();
+	}
+
+	/**
+	 * Binds again the trace this one replaced, if any.
+	 */
+	public void unbind()
+	{
+		if (this.previous != null)
+			current.set(this.previous);
+		else current.remove();
+		this.previous = null;
+		bound.decrementAndGet();
+	}
+
+	/**
+	 * Ends a phase, which started when the one before it ended.
+	 * @param phase
+	 * @param endNanos
+	 */
+	public void phaseEnded(RequestPhase phase, long endNanos)
+	{
+		if (phase == this.lastPhase)
+			return;
+		long startNanos = this.lastNanos;
+		this.lastPhase = phase;
+		this.lastNanos = endNanos;
+		for (RequestListener listener : this.listeners)
+		{
+			try
+			{
+				listener.phaseEnded(this, phase, startNanos, endNanos);
+			}
+			catch (RuntimeException e)
+			{
+				logger.warn("Request listener failed on " + phase + " of a call to " + this.uri, e);
+			}
+		}
+	}
+
+	/**
+	 * Tells the listeners the call has ended.
+	 * @param statusCode - of the response, or 0 if none was read.
+	 * @param endNanos
+	 * @param failure - or null.
+	 */
+	public void requestEnded(int statusCode, long endNanos, Exception failure)
+	{
+		this.statusCode = statusCode;
+		for (RequestListener listener : this.listeners)
+		{
+			try
+			{
+				listener.requestEnded(this, endNanos, failure);
+			}
+			catch (RuntimeException e)
+			{
+				logger.warn("Request listener failed on the end of a call to " + this.uri, e);
+			}
+		}
+	}
+
+	public String getUri()
+	{
+		return uri;
+	}
+
+	/**
+	 * @return the HTTP method, e.g. <code>GET</code>.
+	 */
+	public String getMethod()
+	{
+		return method;
+	}
+
+	/**
+	 * @return the kind of resource called.
+	 */
+	public EndpointFamily getFamily()
+	{
+		return EndpointFamily.forUri(this.uri);
+	}
+
+	public long getStartNanos()
+	{
+		return startNanos;
+	}
+
+	/**
+	 * @return the last phase to end, or null if none has.
+	 */
+	public RequestPhase getLastPhase()
+	{
+		return lastPhase;
+	}
+
+	/**
+	 * @return the response's status code, or 0 until the call ends or if
+	 * no response was read.
+	 */
+	public int getStatusCode()
+	{
+		return statusCode;
+	}
+
+	/**
+	 * @return whatever a listener attached, or null.
+	 */
+	public Object getAttachment()
+	{
+		return attachment;
+	}
+
+	/**
+	 * @param attachment - state a listener keeps for the call, e.g. a span.
+	 */
+	public void setAttachment(Object attachment)
+	{
+		this.attachment = attachment;
+	}
+
+	public String toString()
+	{
+		return this.method + " " + this.uri;
+	}
+
+}
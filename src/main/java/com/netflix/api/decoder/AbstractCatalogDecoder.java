@@ -0,0 +1,143 @@
+package com.netflix.api.decoder;
+
+import java.io.InputStream;
+import java.util.List;
+
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.ResponseHandler;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Person;
+import com.netflix.api.model.QueueItem;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Adapts a <code>CatalogDecoder</code> to the client's streaming
+ * <code>ResponseHandler</code>s, so responses are decoded as they are read
+ * off the connection, e.g.
+ * <pre>
+ *   ResultPage&lt;CatalogTitle&gt; titles = client.execute(request, decoder.titlesHandler());
+ * </pre>
+ */
+public abstract class AbstractCatalogDecoder implements CatalogDecoder
+{
+	/**
+	 * Category scheme of MPAA ratings.
+	 */
+	public static final String MPAA_RATINGS_SCHEME = "http://api.netflix.com/categories/mpaa_ratings";
+	
+	/**
+	 * Category scheme of TV ratings.
+	 */
+	public static final String TV_RATINGS_SCHEME = "http://api.netflix.com/categories/tv_ratings";
+	
+	/**
+	 * Category scheme of genres.
+	 */
+	public static final String GENRES_SCHEME = "http://api.netflix.com/categories/genres";
+	
+	/**
+	 * Category scheme of delivery formats.
+	 */
+	public static final String FORMATS_SCHEME = "http://api.netflix.com/categories/title_formats";
+	
+	/**
+	 * Link relation pointing a queue item at its catalog title.
+	 */
+	public static final String TITLE_REL = "http://schemas.netflix.com/catalog/title";
+	
+	public ResponseHandler<ResultPage<CatalogTitle>> titlesHandler()
+	{
+		return new ResponseHandler<ResultPage<CatalogTitle>>()
+		{
+			public ResultPage<CatalogTitle> handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+			{
+				return decodeTitles(body);
+			}
+		};
+	}
+	
+	public ResponseHandler<ResultPage<Person>> peopleHandler()
+	{
+		return new ResponseHandler<ResultPage<Person>>()
+		{
+			public ResultPage<Person> handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+			{
+				return decodePeople(body);
+			}
+		};
+	}
+	
+	public ResponseHandler<ResultPage<QueueItem>> queueHandler()
+	{
+		return new ResponseHandler<ResultPage<QueueItem>>()
+		{
+			public ResultPage<QueueItem> handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+			{
+				return decodeQueue(body);
+			}
+		};
+	}
+	
+	/**
+	 * Files a category under the title attribute its scheme describes;
+	 * categories of other schemes are ignored.
+	 */
+	protected static void applyCategory(String scheme, String label, CatalogTitle title,
+			List<String> genres, List<String> formats)
+	{
+		if (scheme == null || label == null)
+			return;
+		if (scheme.equals(GENRES_SCHEME))
+			genres.add(label);
+		else if (scheme.equals(FORMATS_SCHEME))
+			formats.add(label);
+		else if (scheme.equals(MPAA_RATINGS_SCHEME) || scheme.equals(TV_RATINGS_SCHEME))
+			title.setRating(label);
+	}
+	
+	/**
+	 * Parses a number from the API, treating absent or malformed values as 0.
+	 */
+	protected static int parseInt(String value)
+	{
+		if (value == null)
+			return 0;
+		try
+		{
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			return 0;
+		}
+	}
+	
+	protected static long parseLong(String value)
+	{
+		if (value == null)
+			return 0;
+		try
+		{
+			return Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			return 0;
+		}
+	}
+	
+	protected static float parseFloat(String value)
+	{
+		if (value == null)
+			return 0;
+		try
+		{
+			return Float.parseFloat(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			return 0;
+		}
+	}
+	
+}
@@ -0,0 +1,94 @@
+package com.netflix.api.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.ResponseHandler;
+
+/**
+ * Decodes the XML responses of the title autocomplete resource,
+ * <code>APIEndpoints.CATALOG_URI + "/autocomplete"</code>, into the
+ * suggested short titles:
+ * <pre>
+ *   &lt;autocomplete&gt;
+ *     &lt;autocomplete_item&gt;&lt;title short="Gattaca"/&gt;&lt;/autocomplete_item&gt;
+ *   &lt;/autocomplete&gt;
+ * </pre>
+ */
+public class AutocompleteDecoder
+{
+	private static final ResponseHandler<List<String>> handler = new ResponseHandler<List<String>>()
+	{
+		public List<String> handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+		{
+			return decode(body);
+		}
+	};
+
+	private AutocompleteDecoder()
+	{
+		// static helpers only
+	}
+
+	/**
+	 * @return a handler decoding response bodies with <code>decode</code>.
+	 */
+	public static ResponseHandler<List<String>> handler()
+	{
+		return handler;
+	}
+
+	/**
+	 * @param in - an XML response body.
+	 * @return the suggestions, in the API's order.
+	 * @throws IOException
+	 * @throws NetflixAPIException - if the body is an error status or is not well formed.
+	 */
+	public static List<String> decode(InputStream in) throws IOException, NetflixAPIException
+	{
+		List<String> suggestions = new ArrayList<String>();
+		XMLStreamReader reader = StaxSupport.newReader(in);
+		try
+		{
+			if (!StaxSupport.nextStartElement(reader))
+				return suggestions;
+			if (reader.getLocalName().equals("status"))
+				throw StaxSupport.readStatus(reader);
+			while (StaxSupport.nextChild(reader))
+			{
+				if (!reader.getLocalName().equals("autocomplete_item"))
+				{
+					StaxSupport.skipElement(reader);
+					continue;
+				}
+				while (StaxSupport.nextChild(reader))
+				{
+					if (reader.getLocalName().equals("title"))
+					{
+						String title = reader.getAttributeValue(null, "short");
+						if (title != null && title.length() > 0)
+							suggestions.add(title);
+					}
+					StaxSupport.skipElement(reader);
+				}
+			}
+			return suggestions;
+		}
+		catch (XMLStreamException e)
+		{
+			throw StaxSupport.malformed(e);
+		}
+		finally
+		{
+			StaxSupport.close(reader);
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.netflix.api.decoder;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the remaining bytes of a buffer, such as a mapped region of a file,
+ * without copying them first.
+ */
+class ByteBufferInputStream extends InputStream
+{
+	private final ByteBuffer buffer;
+
+	ByteBufferInputStream(ByteBuffer buffer)
+	{
+		this.buffer = buffer;
+	}
+
+	public int read()
+	{
+		return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+	}
+
+	public int read(byte[] bytes, int offset, int length)
+	{
+		if (length == 0)
+			return 0;
+		if (!this.buffer.hasRemaining())
+			return -1;
+		int count = Math.min(length, this.buffer.remaining());
+		this.buffer.get(bytes, offset, count);
+		return count;
+	}
+
+	public int available()
+	{
+		return this.buffer.remaining();
+	}
+
+}
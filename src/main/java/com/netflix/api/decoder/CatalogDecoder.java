@@ -0,0 +1,43 @@
+package com.netflix.api.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.client.ResponseHandler;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Person;
+import com.netflix.api.model.QueueItem;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Decodes API response bodies straight into typed model objects.
+ * <br />
+ * Each method accepts both list resources (e.g. a catalog search) and single
+ * resources (e.g. a title detail call); the latter come back as a page
+ * holding one item.  Error responses from the API are thrown as
+ * <code>NetflixAPIException</code>s carrying the server's message.
+ */
+public interface CatalogDecoder
+{
+	/**
+	 * @return value of the <code>output</code> parameter that produces the
+	 * format this decoder reads.
+	 */
+	String getOutputFormat();
+	
+	ResultPage<CatalogTitle> decodeTitles(InputStream in) throws IOException, NetflixAPIException;
+	
+	ResultPage<Person> decodePeople(InputStream in) throws IOException, NetflixAPIException;
+	
+	ResultPage<QueueItem> decodeQueue(InputStream in) throws IOException, NetflixAPIException;
+	
+	/**
+	 * @return a handler that decodes response bodies with <code>decodeTitles</code>.
+	 */
+	ResponseHandler<ResultPage<CatalogTitle>> titlesHandler();
+	
+	ResponseHandler<ResultPage<Person>> peopleHandler();
+	
+	ResponseHandler<ResultPage<QueueItem>> queueHandler();
+}
@@ -0,0 +1,158 @@
+package com.netflix.api.decoder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The set of fields a caller needs from each item of a response. <br />
+ * Paths are relative to the item element and use <code>/</code> between
+ * element names, with a final <code>@name</code> step for an attribute:
+ * <code>id</code>, <code>title/@short</code>, <code>box_art/@large</code>.
+ * Where an element repeats, the first occurrence wins. <br />
+ * A projection is compiled once into a tree of element names, and may be
+ * shared between threads and reused for any number of responses.
+ */
+public class FieldProjection
+{
+	private final String itemElement;
+	
+	private final List<String> paths;
+	
+	private final Node root;
+	
+	/**
+	 * @param itemElement - name of the element each item is wrapped in, e.g. <code>catalog_title</code>.
+	 * @param paths - fields to extract from each item.
+	 * @throws IllegalArgumentException - if a path is malformed, repeated, or
+	 * asks for the text of an element other paths look inside.
+	 */
+	public FieldProjection(String itemElement, String... paths)
+	{
+		if (itemElement == null || paths.length == 0)
+			throw new IllegalArgumentException("An item element and at least one path are required");
+		this.itemElement = itemElement;
+		List<String> list = new ArrayList<String>(paths.length);
+		Node root = new Node();
+		for (int i = 0; i < paths.length; i++)
+		{
+			if (list.contains(paths[i]))
+				throw new IllegalArgumentException("Path listed twice: " + paths[i]);
+			list.add(paths[i]);
+			add(root, paths[i], i);
+		}
+		root.seal();
+		this.paths = Collections.unmodifiableList(list);
+		this.root = root;
+	}
+	
+	/**
+	 * @param path
+	 * @return the index of the path's value in a <code>ProjectedRecord</code>, or -1.
+	 */
+	public int indexOf(String path)
+	{
+		return this.paths.indexOf(path);
+	}
+	
+	public String getItemElement()
+	{
+		return itemElement;
+	}
+	
+	public List<String> getPaths()
+	{
+		return paths;
+	}
+	
+	public int size()
+	{
+		return this.paths.size();
+	}
+	
+	Node getRoot()
+	{
+		return root;
+	}
+	
+	private static void add(Node root, String path, int index)
+	{
+		String[] steps = path.split("/");
+		Node node = root;
+		for (int i = 0; i < steps.length; i++)
+		{
+			String step = steps[i];
+			if (step.length() == 0)
+				throw new IllegalArgumentException("Empty step in path " + path);
+			if (step.charAt(0) == '@')
+			{
+				if (i != steps.length - 1 || step.length() == 1)
+					throw new IllegalArgumentException("Attributes may only end a path: " + path);
+				node.attributeNames.add(step.substring(1));
+				node.attributeIndexes.add(Integer.valueOf(index));
+				return;
+			}
+			Node child = node.children.get(step);
+			if (child == null)
+			{
+				child = new Node();
+				node.children.put(step, child);
+			}
+			node = child;
+		}
+		node.textIndex = index;
+	}
+	
+	/**
+	 * One element along the projected paths.
+	 */
+	static class Node
+	{
+		final Map<String, Node> children = new HashMap<String, Node>(4);
+		
+		final List<String> attributeNames = new ArrayList<String>(2);
+		
+		final List<Integer> attributeIndexes = new ArrayList<Integer>(2);
+		
+		int textIndex = -1;
+		
+		/**
+		 * Indexes of every value at or below this element, to tell when it
+		 * has nothing left to give.
+		 */
+		int[] subtreeIndexes;
+		
+		private List<Integer> seal()
+		{
+			if (this.textIndex >= 0 && !this.children.isEmpty())
+				throw new IllegalArgumentException("Cannot project both the text of an element and elements inside it");
+			List<Integer> indexes = new ArrayList<Integer>(this.attributeIndexes);
+			if (this.textIndex >= 0)
+				indexes.add(Integer.valueOf(this.textIndex));
+			for (Node child : this.children.values())
+				indexes.addAll(child.seal());
+			this.subtreeIndexes = new int[indexes.size()];
+			for (int i = 0; i < this.subtreeIndexes.length; i++)
+				this.subtreeIndexes[i] = indexes.get(i).intValue();
+			return indexes;
+		}
+		
+		boolean isSatisfied(String[] values)
+		{
+			for (int index : this.subtreeIndexes)
+			{
+				if (values[index] == null)
+					return false;
+			}
+			return true;
+		}
+	}
+	
+	public String toString()
+	{
+		return this.itemElement + this.paths;
+	}
+	
+}
@@ -0,0 +1,497 @@
+package com.netflix.api.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.client.paging.ItemConsumer;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.ResourceIds;
+
+/**
+ * Parses a downloaded catalog index file on many threads at once. <br />
+ * The file is memory mapped and cut into chunks of about
+ * <code>chunkSize</code> bytes, each starting on the start tag of a
+ * top-level title element, so that every chunk holds whole titles and can
+ * be parsed on its own.  Chunks are parsed concurrently, at most
+ * <code>parallelism</code> at a time, and their titles handed to the
+ * consumer strictly in file order as soon as each chunk and all those
+ * before it are done; no more than <code>parallelism</code> parsed chunks
+ * are ever held waiting for their turn. <br />
+ * Chunk boundaries are found by looking for the bytes of a
+ * <code>&lt;title_index_item</code> or <code>&lt;catalog_title</code> start
+ * tag, so the file must be in an encoding that is a superset of ASCII, as
+ * the API's UTF-8 is, and must not hold such tags in comments or CDATA.
+ * Parsing runs on the given executor, which can be shared with other work;
+ * instances hold no state between calls and are thread safe.
+ */
+public class IndexParser
+{
+	public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Bytes mapped at a time while looking for a chunk boundary.
+	 */
+	private static final int SCAN_WINDOW = 64 * 1024;
+
+	private static final byte[][] ITEM_TAGS = { ascii("<title_index_item"), ascii("<catalog_title") };
+
+	private static final int LONGEST_TAG = ITEM_TAGS[0].length + 1;
+
+	private static final byte[] ID_TAG = ascii("<id>");
+
+	private static final Pattern ENCODING = Pattern.compile("<\\?xml[^>]*encoding\\s*=\\s*[\"']([A-Za-z0-9._-]+)[\"']");
+
+	private final StaxCatalogDecoder decoder = new StaxCatalogDecoder();
+
+	private final ExecutorService executor;
+
+	private final int parallelism;
+
+	private final int chunkSize;
+
+	/**
+	 * Parses chunks of <code>DEFAULT_CHUNK_SIZE</code> bytes.
+	 */
+	public IndexParser(ExecutorService executor, int parallelism)
+	{
+		this(executor, parallelism, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param executor - runs the chunk parses.
+	 * @param parallelism - most chunks to have in flight, or waiting to be consumed, per parse.
+	 * @param chunkSize - bytes per chunk, before rounding up to the next title.
+	 */
+	public IndexParser(ExecutorService executor, int parallelism, int chunkSize)
+	{
+		if (parallelism <= 0 || chunkSize <= 0 || chunkSize > (1 << 30))
+			throw new IllegalArgumentException("Parallelism must be positive and chunk size from 1 byte to 1GB");
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Parses every title in the index, streaming them to the consumer in
+	 * file order.  On the first failure the remaining chunks are cancelled.
+	 * @param index - an index file, as written by <code>IndexDownloader</code>.
+	 * @param consumer - receives every title.
+	 * @return number of titles delivered.
+	 * @throws NetflixAPIException - if a chunk is malformed.
+	 * @throws Exception - whatever the consumer throws.
+	 */
+	public int parse(File index, final ItemConsumer<? super CatalogTitle> consumer) throws Exception
+	{
+		return this.parse(index, null, new ItemConsumer<IndexedTitle>()
+		{
+			public void accept(IndexedTitle title) throws Exception
+			{
+				consumer.accept(title.getTitle());
+			}
+		});
+	}
+
+	/**
+	 * Parses the index, decoding only the titles the selector chooses from
+	 * their raw bytes, and streams every title to the consumer in file order.
+	 * Titles passed over are not even tokenized, so a refresh that finds
+	 * most titles unchanged costs little more than reading the file.  Each
+	 * title's bytes run from its start tag to the next title's, less
+	 * trailing white space.
+	 * @param index - an index file, as written by <code>IndexDownloader</code>.
+	 * @param selector - chooses the titles to decode; null to decode all, unhashed.
+	 * @param consumer - receives every title, decoded or not.
+	 * @return number of titles delivered.
+	 * @throws NetflixAPIException - if a chunk is malformed.
+	 * @throws Exception - whatever the consumer throws.
+	 */
+	public int parse(File index, final TitleSelector selector, ItemConsumer<? super IndexedTitle> consumer)
+		throws Exception
+	{
+		RandomAccessFile file = new RandomAccessFile(index, "r");
+		LinkedList<Future<List<IndexedTitle>>> window = new LinkedList<Future<List<IndexedTitle>>>();
+		try
+		{
+			final FileChannel channel = file.getChannel();
+			long size = channel.size();
+			final byte[] prefix = chunkPrefix(readEncoding(channel));
+			long next = findItemStart(channel, 0, size);
+			long end = findItemsEnd(channel, next, size);
+
+			int delivered = 0;
+			while (next < end || !window.isEmpty())
+			{
+				while (window.size() < this.parallelism && next < end)
+				{
+					final long chunkStart = next;
+					final long chunkEnd = findItemStart(channel, Math.min(chunkStart + this.chunkSize, end), end);
+					window.addLast(this.executor.submit(new Callable<List<IndexedTitle>>()
+					{
+						public List<IndexedTitle> call() throws Exception
+						{
+							return parseChunk(channel, chunkStart, chunkEnd, prefix, selector);
+						}
+					}));
+					next = chunkEnd;
+				}
+				List<IndexedTitle> titles;
+				try
+				{
+					titles = window.removeFirst().get();
+				}
+				catch (ExecutionException e)
+				{
+					if (e.getCause() instanceof Exception)
+						throw (Exception) e.getCause();
+					throw e;
+				}
+				for (IndexedTitle title : titles)
+					consumer.accept(title);
+				delivered += titles.size();
+			}
+			return delivered;
+		}
+		finally
+		{
+			for (Future<List<IndexedTitle>> chunk : window)
+				chunk.cancel(true);
+			// mappings stay valid once the file is closed
+			file.close();
+		}
+	}
+
+	/**
+	 * Parses the whole titles in one region of the file, or only those the
+	 * selector chooses.
+	 */
+	private List<IndexedTitle> parseChunk(FileChannel channel, long start, long end, byte[] prefix,
+		TitleSelector selector) throws IOException, NetflixAPIException
+	{
+		MappedByteBuffer region = channel.map(MapMode.READ_ONLY, start, end - start);
+		if (selector == null)
+		{
+			List<CatalogTitle> titles = this.decode(new ByteBufferInputStream(region), prefix, start, end);
+			List<IndexedTitle> indexed = new ArrayList<IndexedTitle>(titles.size());
+			for (CatalogTitle title : titles)
+				indexed.add(new IndexedTitle(title.getNumericId(), 0, title));
+			return indexed;
+		}
+
+		// the region starts on a title, and every title ends where the next starts
+		int length = (int) (end - start);
+		List<long[]> items = new ArrayList<long[]>();
+		List<InputStream> selected = new ArrayList<InputStream>();
+		selected.add(new ByteArrayInputStream(prefix));
+		for (int at = 0; at < length;)
+		{
+			int next = nextItem(region, at + 1, length);
+			int last = next;
+			while (last > at && isSpace(region.get(last - 1)))
+				last--;
+			long id = rawId(region, at, last);
+			long hash = hash(region, at, last);
+			boolean decode = id < 0 || selector.decode(id, hash);
+			items.add(new long[] { id, hash, decode ? 1 : 0 });
+			if (decode)
+			{
+				ByteBuffer item = region.duplicate();
+				item.limit(next).position(at);
+				selected.add(new ByteBufferInputStream(item));
+			}
+			at = next;
+		}
+		selected.add(new ByteArrayInputStream(ascii("</chunk>")));
+
+		Iterator<CatalogTitle> decoded = this.decode(new SequenceInputStream(Collections.enumeration(selected)), null, start, end).iterator();
+		List<IndexedTitle> titles = new ArrayList<IndexedTitle>(items.size());
+		for (long[] item : items)
+		{
+			if (item[2] == 0)
+			{
+				titles.add(new IndexedTitle(item[0], item[1], null));
+				continue;
+			}
+			if (!decoded.hasNext())
+				throw new NetflixAPIException("Malformed catalog index between bytes " + start + " and " + end);
+			CatalogTitle title = decoded.next();
+			titles.add(new IndexedTitle(title.getNumericId(), item[1], title));
+		}
+		if (decoded.hasNext())
+			throw new NetflixAPIException("Malformed catalog index between bytes " + start + " and " + end);
+		return titles;
+	}
+
+	/**
+	 * Decodes the titles in a stream of whole titles.
+	 * @param prefix - to read before the stream, or null if it starts with one.
+	 */
+	private List<CatalogTitle> decode(InputStream titles, byte[] prefix, long start, long end)
+		throws IOException, NetflixAPIException
+	{
+		InputStream in = prefix == null ? titles : new SequenceInputStream(new SequenceInputStream(
+			new ByteArrayInputStream(prefix), titles), new ByteArrayInputStream(ascii("</chunk>")));
+		XMLStreamReader reader = StaxSupport.newReader(in);
+		try
+		{
+			List<CatalogTitle> decoded = new ArrayList<CatalogTitle>();
+			StaxSupport.nextStartElement(reader);
+			while (StaxSupport.nextChild(reader))
+			{
+				if (StaxCatalogDecoder.isTitleElement(reader.getLocalName()))
+					decoded.add(this.decoder.readTitle(reader));
+				else StaxSupport.skipElement(reader);
+			}
+			return decoded;
+		}
+		catch (XMLStreamException e)
+		{
+			throw new NetflixAPIException("Malformed catalog index between bytes " + start + " and " + end, e);
+		}
+		finally
+		{
+			StaxSupport.close(reader);
+		}
+	}
+
+	/**
+	 * @return the offset of the next title start tag in the region, or its length.
+	 */
+	private static int nextItem(ByteBuffer region, int from, int length)
+	{
+		for (int i = from; i < length; i++)
+		{
+			if (region.get(i) == '<' && isItemTag(region, i, length))
+				return i;
+		}
+		return length;
+	}
+
+	/**
+	 * @return the numeric ID in the first <code>&lt;id&gt;</code> element
+	 * between the offsets, or -1 if there is none.
+	 */
+	private static long rawId(ByteBuffer region, int from, int to)
+	{
+		for (int i = from; i + ID_TAG.length < to; i++)
+		{
+			boolean matches = true;
+			for (int j = 0; j < ID_TAG.length && matches; j++)
+				matches = region.get(i + j) == ID_TAG[j];
+			if (!matches)
+				continue;
+			int valueStart = i + ID_TAG.length;
+			int valueEnd = valueStart;
+			while (valueEnd < to && region.get(valueEnd) != '<')
+				valueEnd++;
+			byte[] value = new byte[valueEnd - valueStart];
+			for (int j = 0; j < value.length; j++)
+				value[j] = region.get(valueStart + j);
+			try
+			{
+				return ResourceIds.numericId(new String(value, "ISO-8859-1").trim());
+			}
+			catch (UnsupportedEncodingException e)
+			{
+				// every JVM supports ISO-8859-1
+				throw new IllegalStateException(e);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return a 64 bit FNV-1a hash of the bytes between the offsets.
+	 */
+	private static long hash(ByteBuffer region, int from, int to)
+	{
+		long hash = 0xcbf29ce484222325L;
+		for (int i = from; i < to; i++)
+		{
+			hash ^= region.get(i) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static boolean isSpace(byte b)
+	{
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	/**
+	 * @return the offset of the first title start tag at or after <code>from</code>,
+	 * or <code>limit</code> if there is none before it.
+	 */
+	static long findItemStart(FileChannel channel, long from, long limit) throws IOException
+	{
+		long position = from;
+		while (position < limit)
+		{
+			int length = (int) Math.min(SCAN_WINDOW, limit - position);
+			MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, length);
+			for (int i = 0; i < length; i++)
+			{
+				if (window.get(i) == '<' && isItemTag(window, i, length))
+					return position + i;
+			}
+			if (position + length >= limit)
+				break;
+			// overlap windows so a tag cut by the edge is seen whole in the next
+			position += length - LONGEST_TAG;
+		}
+		return limit;
+	}
+
+	/**
+	 * @return the offset of the root element's end tag, which closes the last title.
+	 */
+	private static long findItemsEnd(FileChannel channel, long itemsStart, long size) throws IOException
+	{
+		long start = Math.max(itemsStart, size - SCAN_WINDOW);
+		int length = (int) (size - start);
+		MappedByteBuffer tail = channel.map(MapMode.READ_ONLY, start, length);
+		for (int i = length - 2; i >= 0; i--)
+		{
+			if (tail.get(i) == '<' && tail.get(i + 1) == '/')
+				return start + i;
+		}
+		return size;
+	}
+
+	private static boolean isItemTag(ByteBuffer window, int offset, int length)
+	{
+		for (byte[] tag : ITEM_TAGS)
+		{
+			// the tag and the character after it, which must end the name
+			if (offset + tag.length >= length)
+				continue;
+			boolean matches = true;
+			for (int j = 1; j < tag.length && matches; j++)
+				matches = window.get(offset + j) == tag[j];
+			if (!matches)
+				continue;
+			byte after = window.get(offset + tag.length);
+			if (after == ' ' || after == '>' || after == '/' || after == '\t' || after == '\r' || after == '\n')
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the encoding named by the file's XML declaration, or null.
+	 */
+	private static String readEncoding(FileChannel channel) throws IOException
+	{
+		int length = (int) Math.min(256, channel.size());
+		byte[] head = new byte[length];
+		channel.map(MapMode.READ_ONLY, 0, length).get(head);
+		Matcher matcher = ENCODING.matcher(new String(head, "ISO-8859-1"));
+		return matcher.find() ? matcher.group(1) : null;
+	}
+
+	/**
+	 * @return what each chunk is parsed behind: a declaration carrying the
+	 * file's encoding, and a wrapper element to hold its titles.
+	 */
+	private static byte[] chunkPrefix(String encoding)
+	{
+		String declaration = encoding == null ? "" : "<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>";
+		return ascii(declaration + "<chunk>");
+	}
+
+	private static byte[] ascii(String text)
+	{
+		try
+		{
+			return text.getBytes("US-ASCII");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			// every JVM supports ASCII
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Chooses, from its raw bytes, whether a title needs decoding.  Called
+	 * from the parsing threads, so must be thread safe.
+	 */
+	public interface TitleSelector
+	{
+		/**
+		 * @param id - the numeric ID of the title's <code>id</code> element.
+		 * Titles whose ID cannot be read from their bytes are always decoded.
+		 * @param hash - a 64 bit FNV-1a hash of the title's bytes.
+		 * @return true to decode the title, false to pass it on undecoded.
+		 */
+		boolean decode(long id, long hash);
+	}
+
+	/**
+	 * A title of the index, decoded or not.
+	 */
+	public static class IndexedTitle
+	{
+		private final long id;
+
+		private final long hash;
+
+		private final CatalogTitle title;
+
+		IndexedTitle(long id, long hash, CatalogTitle title)
+		{
+			this.id = id;
+			this.hash = hash;
+			this.title = title;
+		}
+
+		/**
+		 * @return the title's numeric ID, or -1 if it has none.
+		 */
+		public long getId()
+		{
+			return id;
+		}
+
+		/**
+		 * @return the hash of the title's bytes; 0 if the index was parsed without a selector.
+		 */
+		public long getHash()
+		{
+			return hash;
+		}
+
+		/**
+		 * @return the decoded title, or null if the selector passed it over.
+		 */
+		public CatalogTitle getTitle()
+		{
+			return title;
+		}
+	}
+
+}
@@ -0,0 +1,378 @@
+package com.netflix.api.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.decoder.JsonReader.Token;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Link;
+import com.netflix.api.model.Person;
+import com.netflix.api.model.QueueItem;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Decodes <code>output=json</code> API responses into the same model as
+ * <code>StaxCatalogDecoder</code>. <br />
+ * The API's JSON mirrors its XML: the root element becomes the single key
+ * of the outer object, attributes and child elements become members, and
+ * repeated elements become arrays (or a plain object when there is only
+ * one).  Bodies are tokenized straight from the stream and mapped as they
+ * are read; members the model has no use for are skipped unread.
+ * Instances are stateless and may be shared between threads.
+ */
+public class JsonCatalogDecoder extends AbstractCatalogDecoder
+{
+	public String getOutputFormat()
+	{
+		return "json";
+	}
+
+	public ResultPage<CatalogTitle> decodeTitles(InputStream in) throws IOException, NetflixAPIException
+	{
+		return this.decodeList(in, new ItemReader<CatalogTitle>()
+		{
+			public boolean accepts(String name)
+			{
+				return StaxCatalogDecoder.isTitleElement(name);
+			}
+
+			public CatalogTitle read(JsonReader reader) throws IOException, NetflixAPIException
+			{
+				return readTitle(reader);
+			}
+		});
+	}
+
+	public ResultPage<Person> decodePeople(InputStream in) throws IOException, NetflixAPIException
+	{
+		return this.decodeList(in, new ItemReader<Person>()
+		{
+			public boolean accepts(String name)
+			{
+				return name.equals("person");
+			}
+
+			public Person read(JsonReader reader) throws IOException, NetflixAPIException
+			{
+				return readPerson(reader);
+			}
+		});
+	}
+
+	public ResultPage<QueueItem> decodeQueue(InputStream in) throws IOException, NetflixAPIException
+	{
+		return this.decodeList(in, new ItemReader<QueueItem>()
+		{
+			public boolean accepts(String name)
+			{
+				return name.endsWith("_item") && !name.equals("title_index_item");
+			}
+
+			public QueueItem read(JsonReader reader) throws IOException, NetflixAPIException
+			{
+				return readQueueItem(reader);
+			}
+		});
+	}
+
+	private <T> ResultPage<T> decodeList(InputStream in, ItemReader<T> itemReader) throws IOException, NetflixAPIException
+	{
+		JsonReader reader = new JsonReader(in);
+		try
+		{
+			ResultPage<T> page = new ResultPage<T>();
+			reader.beginObject();
+			if (!reader.hasNext())
+				return page;
+			String root = reader.nextName();
+			if (root.equals("status"))
+				throw readStatus(reader);
+			if (itemReader.accepts(root))
+			{
+				readItems(reader, itemReader, page);
+				page.setNumberOfResults(page.getItems().size());
+				return page;
+			}
+			if (reader.peek() != Token.BEGIN_OBJECT)
+				return page;
+
+			reader.beginObject();
+			while (reader.hasNext())
+			{
+				String name = reader.nextName();
+				if (name.equals("number_of_results"))
+					page.setNumberOfResults(parseInt(readScalar(reader)));
+				else if (name.equals("start_index"))
+					page.setStartIndex(parseInt(readScalar(reader)));
+				else if (name.equals("results_per_page"))
+					page.setResultsPerPage(parseInt(readScalar(reader)));
+				else if (itemReader.accepts(name))
+					readItems(reader, itemReader, page);
+				else reader.skipValue();
+			}
+			return page;
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads a member that holds either one item object or an array of them.
+	 */
+	private static <T> void readItems(JsonReader reader, ItemReader<T> itemReader, ResultPage<T> page)
+		throws IOException, NetflixAPIException
+	{
+		if (reader.peek() == Token.BEGIN_OBJECT)
+		{
+			page.addItem(itemReader.read(reader));
+			return;
+		}
+		if (reader.peek() != Token.BEGIN_ARRAY)
+		{
+			reader.skipValue();
+			return;
+		}
+		reader.beginArray();
+		while (reader.hasNext())
+		{
+			if (reader.peek() == Token.BEGIN_OBJECT)
+				page.addItem(itemReader.read(reader));
+			else reader.skipValue();
+		}
+		reader.endArray();
+	}
+
+	CatalogTitle readTitle(JsonReader reader) throws IOException, NetflixAPIException
+	{
+		CatalogTitle title = new CatalogTitle();
+		List<String> genres = new ArrayList<String>(4);
+		List<String> formats = new ArrayList<String>(4);
+		List<Link> links = new ArrayList<Link>(8);
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			if (!readTitleField(reader, reader.nextName(), title, genres, formats, links))
+				reader.skipValue();
+		}
+		reader.endObject();
+		title.setGenres(genres);
+		title.setFormats(formats);
+		title.setLinks(links);
+		return title;
+	}
+
+	private QueueItem readQueueItem(JsonReader reader) throws IOException, NetflixAPIException
+	{
+		QueueItem item = new QueueItem();
+		CatalogTitle title = new CatalogTitle();
+		List<String> genres = new ArrayList<String>(4);
+		List<String> formats = new ArrayList<String>(4);
+		List<Link> links = new ArrayList<Link>(8);
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			String name = reader.nextName();
+			if (name.equals("id"))
+				item.setId(readScalar(reader));
+			else if (name.equals("position"))
+				item.setPosition(parseInt(readScalar(reader)));
+			else if (name.equals("updated"))
+				item.setUpdated(parseLong(readScalar(reader)));
+			else if (!readTitleField(reader, name, title, genres, formats, links))
+				reader.skipValue();
+		}
+		reader.endObject();
+		title.setGenres(genres);
+		title.setFormats(formats);
+		title.setLinks(links);
+		for (Link link : links)
+		{
+			if (TITLE_REL.equals(link.getRel()))
+				title.setId(link.getHref());
+		}
+		item.setTitle(title);
+		return item;
+	}
+
+	private Person readPerson(JsonReader reader) throws IOException, NetflixAPIException
+	{
+		Person person = new Person();
+		List<Link> links = new ArrayList<Link>();
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			String name = reader.nextName();
+			if (name.equals("id"))
+				person.setId(readScalar(reader));
+			else if (name.equals("name"))
+				person.setName(readScalar(reader));
+			else if (name.equals("bio"))
+				person.setBio(readScalar(reader));
+			else if (name.equals("link"))
+				readLinks(reader, links);
+			else reader.skipValue();
+		}
+		reader.endObject();
+		person.setLinks(links);
+		return person;
+	}
+
+	/**
+	 * Reads one member of a title, if it is one the model keeps.
+	 * @return false if the member's value was not consumed.
+	 */
+	private boolean readTitleField(JsonReader reader, String name, CatalogTitle title, List<String> genres,
+			List<String> formats, List<Link> links) throws IOException, NetflixAPIException
+	{
+		if (name.equals("id"))
+			title.setId(readScalar(reader));
+		else if (name.equals("title"))
+		{
+			String[] values = readAttributes(reader, "short", "regular");
+			title.setShortTitle(values[0]);
+			title.setRegularTitle(values[1]);
+		}
+		else if (name.equals("box_art"))
+		{
+			String[] values = readAttributes(reader, "small", "medium", "large");
+			title.setBoxArtSmall(values[0]);
+			title.setBoxArtMedium(values[1]);
+			title.setBoxArtLarge(values[2]);
+		}
+		else if (name.equals("link"))
+			readLinks(reader, links);
+		else if (name.equals("category"))
+		{
+			boolean array = beginRepeated(reader);
+			while (!array || reader.hasNext())
+			{
+				if (reader.peek() == Token.BEGIN_OBJECT)
+				{
+					String[] values = readAttributes(reader, "scheme", "label");
+					applyCategory(values[0], values[1], title, genres, formats);
+				}
+				else reader.skipValue();
+				if (!array)
+					break;
+			}
+			if (array)
+				reader.endArray();
+		}
+		else if (name.equals("release_year"))
+			title.setReleaseYear(parseInt(readScalar(reader)));
+		else if (name.equals("runtime"))
+			title.setRuntime(parseInt(readScalar(reader)));
+		else if (name.equals("average_rating"))
+			title.setAverageRating(parseFloat(readScalar(reader)));
+		else return false;
+		return true;
+	}
+
+	private static void readLinks(JsonReader reader, List<Link> links) throws IOException, NetflixAPIException
+	{
+		boolean array = beginRepeated(reader);
+		while (!array || reader.hasNext())
+		{
+			if (reader.peek() == Token.BEGIN_OBJECT)
+			{
+				// expanded links carry the linked resource inline; it is skipped
+				String[] values = readAttributes(reader, "href", "rel", "title");
+				links.add(new Link(values[0], values[1], values[2]));
+			}
+			else reader.skipValue();
+			if (!array)
+				break;
+		}
+		if (array)
+			reader.endArray();
+	}
+
+	/**
+	 * Opens a member that holds either one value or an array of them.
+	 * @return true if it is an array, which the caller must end.
+	 */
+	private static boolean beginRepeated(JsonReader reader) throws IOException, NetflixAPIException
+	{
+		if (reader.peek() != Token.BEGIN_ARRAY)
+			return false;
+		reader.beginArray();
+		return true;
+	}
+
+	/**
+	 * Reads the named scalar members of an object, skipping the rest.
+	 * @return their values, in the order asked for.
+	 */
+	private static String[] readAttributes(JsonReader reader, String... names) throws IOException, NetflixAPIException
+	{
+		String[] values = new String[names.length];
+		if (reader.peek() != Token.BEGIN_OBJECT)
+		{
+			reader.skipValue();
+			return values;
+		}
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			String name = reader.nextName();
+			int index = -1;
+			for (int i = 0; i < names.length; i++)
+			{
+				if (names[i].equals(name))
+				{
+					index = i;
+					break;
+				}
+			}
+			if (index >= 0)
+				values[index] = readScalar(reader);
+			else reader.skipValue();
+		}
+		reader.endObject();
+		return values;
+	}
+
+	/**
+	 * Reads a text value.  Text can come as a plain value, or as an object
+	 * holding it under <code>$t</code> or <code>content</code> when the XML
+	 * element it mirrors also had attributes.
+	 */
+	private static String readScalar(JsonReader reader) throws IOException, NetflixAPIException
+	{
+		Token token = reader.peek();
+		if (token == Token.BEGIN_OBJECT)
+		{
+			String[] values = readAttributes(reader, "$t", "content");
+			return values[0] != null ? values[0] : values[1];
+		}
+		if (token == Token.BEGIN_ARRAY)
+		{
+			reader.skipValue();
+			return null;
+		}
+		String value = reader.nextString();
+		return value == null ? null : value.trim();
+	}
+
+	private static NetflixAPIException readStatus(JsonReader reader) throws IOException, NetflixAPIException
+	{
+		String[] values = readAttributes(reader, "status_code", "message");
+		return new NetflixAPIException("API returned status " + values[0] + ": " + values[1]);
+	}
+
+	/**
+	 * Reads the items of one kind of list document.
+	 */
+	private interface ItemReader<T>
+	{
+		boolean accepts(String name);
+
+		T read(JsonReader reader) throws IOException, NetflixAPIException;
+	}
+
+}
@@ -0,0 +1,441 @@
+package com.netflix.api.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import com.netflix.api.NetflixAPIException;
+
+/**
+ * A minimal pull tokenizer for JSON response bodies. <br />
+ * Tokens are read on demand straight from the stream.  Values that are
+ * skipped are scanned past without being turned into Strings, and no tree
+ * is ever built.  Not thread safe.
+ */
+class JsonReader
+{
+	enum Token
+	{
+		BEGIN_OBJECT,
+		END_OBJECT,
+		BEGIN_ARRAY,
+		END_ARRAY,
+		NAME,
+		STRING,
+		NUMBER,
+		BOOLEAN,
+		NULL,
+		END_DOCUMENT
+	}
+
+	private static final int EMPTY_DOCUMENT = 0;
+
+	private static final int NONEMPTY_DOCUMENT = 1;
+
+	private static final int EMPTY_OBJECT = 2;
+
+	private static final int NONEMPTY_OBJECT = 3;
+
+	private static final int DANGLING_NAME = 4;
+
+	private static final int EMPTY_ARRAY = 5;
+
+	private static final int NONEMPTY_ARRAY = 6;
+
+	private final Reader in;
+
+	private final char[] buffer = new char[8192];
+
+	private int pos;
+
+	private int limit;
+
+	private int[] stack = new int[32];
+
+	private int stackSize;
+
+	private Token peeked;
+
+	/**
+	 * Literal text of a peeked boolean.
+	 */
+	private String peekedLiteral;
+
+	JsonReader(InputStream in) throws IOException
+	{
+		// the API always answers JSON in UTF-8
+		this.in = new InputStreamReader(in, "UTF-8");
+		this.stack[this.stackSize++] = EMPTY_DOCUMENT;
+	}
+
+	Token peek() throws IOException, NetflixAPIException
+	{
+		if (this.peeked != null)
+			return this.peeked;
+
+		int context = this.stack[this.stackSize - 1];
+		int c;
+		switch (context)
+		{
+			case EMPTY_ARRAY:
+				this.stack[this.stackSize - 1] = NONEMPTY_ARRAY;
+				c = this.nextNonWhitespace();
+				if (c == ']')
+					return this.peeked = Token.END_ARRAY;
+				this.pos--;
+				return this.peeked = this.peekValue();
+
+			case NONEMPTY_ARRAY:
+				c = this.nextNonWhitespace();
+				if (c == ']')
+					return this.peeked = Token.END_ARRAY;
+				if (c != ',')
+					throw this.syntaxError("Expected ',' or ']'");
+				return this.peeked = this.peekValue();
+
+			case EMPTY_OBJECT:
+			case NONEMPTY_OBJECT:
+				c = this.nextNonWhitespace();
+				if (c == '}')
+					return this.peeked = Token.END_OBJECT;
+				if (context == NONEMPTY_OBJECT)
+				{
+					if (c != ',')
+						throw this.syntaxError("Expected ',' or '}'");
+					c = this.nextNonWhitespace();
+				}
+				if (c != '"')
+					throw this.syntaxError("Expected a name");
+				this.stack[this.stackSize - 1] = DANGLING_NAME;
+				return this.peeked = Token.NAME;
+
+			case DANGLING_NAME:
+				if (this.nextNonWhitespace() != ':')
+					throw this.syntaxError("Expected ':'");
+				this.stack[this.stackSize - 1] = NONEMPTY_OBJECT;
+				return this.peeked = this.peekValue();
+
+			case EMPTY_DOCUMENT:
+				this.stack[this.stackSize - 1] = NONEMPTY_DOCUMENT;
+				return this.peeked = this.peekValue();
+
+			default:
+				if (this.nextNonWhitespace() != -1)
+					throw this.syntaxError("Expected end of document");
+				return this.peeked = Token.END_DOCUMENT;
+		}
+	}
+
+	/**
+	 * @return true if the current object or array has more members.
+	 */
+	boolean hasNext() throws IOException, NetflixAPIException
+	{
+		Token token = this.peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+
+	void beginObject() throws IOException, NetflixAPIException
+	{
+		this.expect(Token.BEGIN_OBJECT);
+	}
+
+	void endObject() throws IOException, NetflixAPIException
+	{
+		this.expect(Token.END_OBJECT);
+		this.stackSize--;
+	}
+
+	void beginArray() throws IOException, NetflixAPIException
+	{
+		this.expect(Token.BEGIN_ARRAY);
+	}
+
+	void endArray() throws IOException, NetflixAPIException
+	{
+		this.expect(Token.END_ARRAY);
+		this.stackSize--;
+	}
+
+	String nextName() throws IOException, NetflixAPIException
+	{
+		this.expect(Token.NAME);
+		return this.readQuoted(true);
+	}
+
+	/**
+	 * @return the next scalar value as text; null for a JSON null.
+	 */
+	String nextString() throws IOException, NetflixAPIException
+	{
+		Token token = this.peek();
+		this.peeked = null;
+		switch (token)
+		{
+			case STRING:
+				return this.readQuoted(true);
+			case NUMBER:
+				return this.readNumber(true);
+			case BOOLEAN:
+				return this.peekedLiteral;
+			case NULL:
+				return null;
+			default:
+				throw this.syntaxError("Expected a value but was " + token);
+		}
+	}
+
+	/**
+	 * Skips the next value, and everything inside it for objects and arrays.
+	 */
+	void skipValue() throws IOException, NetflixAPIException
+	{
+		int depth = 0;
+		do
+		{
+			Token token = this.peek();
+			this.peeked = null;
+			switch (token)
+			{
+				case BEGIN_OBJECT:
+				case BEGIN_ARRAY:
+					depth++;
+					break;
+				case END_OBJECT:
+				case END_ARRAY:
+					this.stackSize--;
+					depth--;
+					break;
+				case NAME:
+				case STRING:
+					this.readQuoted(false);
+					break;
+				case NUMBER:
+					this.readNumber(false);
+					break;
+				case END_DOCUMENT:
+					throw this.syntaxError("Unexpected end of document");
+				default:
+					break;
+			}
+		}
+		while (depth > 0 || this.stack[this.stackSize - 1] == DANGLING_NAME);
+	}
+
+	void close()
+	{
+		try
+		{
+			this.in.close();
+		}
+		catch (IOException e)
+		{
+			// nothing more to read anyway
+		}
+	}
+
+	private void expect(Token expected) throws IOException, NetflixAPIException
+	{
+		Token token = this.peek();
+		if (token != expected)
+			throw this.syntaxError("Expected " + expected + " but was " + token);
+		this.peeked = null;
+	}
+
+	/**
+	 * Works out the kind of value that starts at the next character.
+	 */
+	private Token peekValue() throws IOException, NetflixAPIException
+	{
+		int c = this.nextNonWhitespace();
+		switch (c)
+		{
+			case '{':
+				this.push(EMPTY_OBJECT);
+				return Token.BEGIN_OBJECT;
+			case '[':
+				this.push(EMPTY_ARRAY);
+				return Token.BEGIN_ARRAY;
+			case '"':
+				return Token.STRING;
+			case 't':
+				this.expectLiteral("rue");
+				this.peekedLiteral = "true";
+				return Token.BOOLEAN;
+			case 'f':
+				this.expectLiteral("alse");
+				this.peekedLiteral = "false";
+				return Token.BOOLEAN;
+			case 'n':
+				this.expectLiteral("ull");
+				return Token.NULL;
+			default:
+				if (c == '-' || (c >= '0' && c <= '9'))
+				{
+					this.pos--;
+					return Token.NUMBER;
+				}
+				throw this.syntaxError("Unexpected character");
+		}
+	}
+
+	private void push(int context)
+	{
+		if (this.stackSize == this.stack.length)
+		{
+			int[] grown = new int[this.stackSize * 2];
+			System.arraycopy(this.stack, 0, grown, 0, this.stackSize);
+			this.stack = grown;
+		}
+		this.stack[this.stackSize++] = context;
+	}
+
+	private void expectLiteral(String rest) throws IOException, NetflixAPIException
+	{
+		for (int i = 0; i < rest.length(); i++)
+		{
+			if (this.nextChar() != rest.charAt(i))
+				throw this.syntaxError("Unexpected literal");
+		}
+	}
+
+	/**
+	 * Reads up to the closing quote of a string whose opening quote has been
+	 * consumed.
+	 * @param keep - false to skip the string without building it.
+	 */
+	private String readQuoted(boolean keep) throws IOException, NetflixAPIException
+	{
+		StringBuilder sb = null;
+		while (true)
+		{
+			int start = this.pos;
+			while (this.pos < this.limit)
+			{
+				char c = this.buffer[this.pos++];
+				if (c == '"')
+				{
+					if (!keep)
+						return null;
+					// most strings sit within the buffer and have no escapes
+					if (sb == null)
+						return new String(this.buffer, start, this.pos - start - 1);
+					sb.append(this.buffer, start, this.pos - start - 1);
+					return sb.toString();
+				}
+				if (c == '\\')
+				{
+					if (keep)
+					{
+						if (sb == null)
+							sb = new StringBuilder();
+						sb.append(this.buffer, start, this.pos - start - 1);
+					}
+					char escaped = this.readEscape();
+					if (keep)
+						sb.append(escaped);
+					start = this.pos;
+				}
+			}
+			if (keep)
+			{
+				if (sb == null)
+					sb = new StringBuilder();
+				sb.append(this.buffer, start, this.pos - start);
+			}
+			if (!this.fill())
+				throw this.syntaxError("Unterminated string");
+		}
+	}
+
+	private char readEscape() throws IOException, NetflixAPIException
+	{
+		int c = this.nextChar();
+		switch (c)
+		{
+			case 'b':
+				return '\b';
+			case 'f':
+				return '\f';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 't':
+				return '\t';
+			case 'u':
+				int value = 0;
+				for (int i = 0; i < 4; i++)
+				{
+					int digit = Character.digit(this.nextChar(), 16);
+					if (digit < 0)
+						throw this.syntaxError("Malformed unicode escape");
+					value = (value << 4) | digit;
+				}
+				return (char) value;
+			case -1:
+				throw this.syntaxError("Unterminated escape");
+			default:
+				// \" \\ \/
+				return (char) c;
+		}
+	}
+
+	private String readNumber(boolean keep) throws IOException
+	{
+		StringBuilder sb = keep ? new StringBuilder(16) : null;
+		while (true)
+		{
+			if (this.pos == this.limit && !this.fill())
+				break;
+			char c = this.buffer[this.pos];
+			if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')
+			{
+				if (keep)
+					sb.append(c);
+				this.pos++;
+			}
+			else break;
+		}
+		return keep ? sb.toString() : null;
+	}
+
+	private int nextNonWhitespace() throws IOException
+	{
+		while (true)
+		{
+			int c = this.nextChar();
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+				return c;
+		}
+	}
+
+	private int nextChar() throws IOException
+	{
+		if (this.pos == this.limit && !this.fill())
+			return -1;
+		return this.buffer[this.pos++];
+	}
+
+	private boolean fill() throws IOException
+	{
+		int read = this.in.read(this.buffer, 0, this.buffer.length);
+		while (read == 0)
+			read = this.in.read(this.buffer, 0, this.buffer.length);
+		if (read < 0)
+		{
+			this.pos = this.limit = 0;
+			return false;
+		}
+		this.pos = 0;
+		this.limit = read;
+		return true;
+	}
+
+	private NetflixAPIException syntaxError(String message)
+	{
+		return new NetflixAPIException("Malformed API response: " + message);
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.netflix.api.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.model.Link;
+
+/**
+ * The links of an XML response: the title of every link, by href, and the
+ * content the API inlined into links named by an <code>expand</code>
+ * parameter, as an XML fragment per href.
+ */
+public class LinkScan
+{
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+	
+	private final List<Link> links = new ArrayList<Link>();
+	
+	private final Map<String, String> titles = new HashMap<String, String>();
+	
+	private final Map<String, String> expansions = new HashMap<String, String>();
+	
+	private LinkScan()
+	{
+		// built by scan()
+	}
+	
+	/**
+	 * @param in - an XML response body.
+	 * @return the links found in it.
+	 * @throws IOException
+	 * @throws NetflixAPIException - if the body is not well formed.
+	 */
+	public static LinkScan scan(InputStream in) throws IOException, NetflixAPIException
+	{
+		LinkScan scan = new LinkScan();
+		XMLStreamReader reader = StaxSupport.newReader(in);
+		try
+		{
+			while (reader.hasNext())
+			{
+				if (reader.next() != XMLStreamConstants.START_ELEMENT || !reader.getLocalName().equals("link"))
+					continue;
+				String href = reader.getAttributeValue(null, "href");
+				if (href == null)
+					continue;
+				String title = reader.getAttributeValue(null, "title");
+				scan.links.add(new Link(href, reader.getAttributeValue(null, "rel"), title));
+				scan.titles.put(href, title);
+				
+				StringWriter fragment = null;
+				while (StaxSupport.nextChild(reader))
+				{
+					// expanded content; links nested in it are not followed on their own
+					if (fragment == null)
+						fragment = new StringWriter();
+					XMLStreamWriter writer = outputFactory.createXMLStreamWriter(fragment);
+					StaxSupport.copyElement(reader, writer);
+					writer.flush();
+					writer.close();
+				}
+				if (fragment != null)
+					scan.expansions.put(href, fragment.toString());
+			}
+			return scan;
+		}
+		catch (XMLStreamException e)
+		{
+			throw StaxSupport.malformed(e);
+		}
+		finally
+		{
+			StaxSupport.close(reader);
+		}
+	}
+	
+	/**
+	 * @return every link outside of inlined content, in document order.
+	 */
+	public List<Link> getLinks()
+	{
+		return Collections.unmodifiableList(this.links);
+	}
+	
+	/**
+	 * @return link titles, such as <code>synopsis</code> or <code>cast</code>, by href.
+	 */
+	public Map<String, String> getTitles()
+	{
+		return Collections.unmodifiableMap(this.titles);
+	}
+	
+	/**
+	 * @return inlined content by href, for the links that were expanded.
+	 */
+	public Map<String, String> getExpansions()
+	{
+		return Collections.unmodifiableMap(this.expansions);
+	}
+	
+}
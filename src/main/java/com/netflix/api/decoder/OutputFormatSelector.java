@@ -0,0 +1,256 @@
+package com.netflix.api.decoder;
+
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.EndpointFamily;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.ResponseHandler;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Person;
+import com.netflix.api.model.QueueItem;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Picks the cheaper output format for each <code>EndpointFamily</code>. <br />
+ * Which format is cheaper depends on the endpoint: how much larger the XML
+ * is than the JSON, and how much of either the decoders get to skip.  So
+ * rather than fixing one, the selector measures. For each family it first
+ * tries every decoder a few times, then uses whichever has shown the lowest
+ * cost per decoded item, streaming from the network included, and keeps
+ * re-trying the others now and then in case that changes. <br />
+ * Requests that already name an <code>output</code> parameter are decoded
+ * in that format and not measured.  Instances are thread safe.
+ */
+public class OutputFormatSelector
+{
+	/**
+	 * Responses measured per decoder before the cheapest is preferred.
+	 */
+	public static final int DEFAULT_SAMPLES = 8;
+
+	/**
+	 * One call in this many goes to a decoder other than the cheapest.
+	 */
+	public static final int DEFAULT_PROBE_INTERVAL = 200;
+
+	private final CatalogDecoder[] decoders;
+
+	private final int samples;
+
+	private final int probeInterval;
+
+	private final Map<EndpointFamily, FamilyStats> stats = new EnumMap<EndpointFamily, FamilyStats>(EndpointFamily.class);
+
+	/**
+	 * Chooses between <code>StaxCatalogDecoder</code> and <code>JsonCatalogDecoder</code>.
+	 */
+	public OutputFormatSelector()
+	{
+		this(DEFAULT_SAMPLES, DEFAULT_PROBE_INTERVAL, new StaxCatalogDecoder(), new JsonCatalogDecoder());
+	}
+
+	/**
+	 * @param samples - responses to measure per decoder before choosing.
+	 * @param probeInterval - one call in this many re-measures another decoder.
+	 * @param decoders - the decoders to choose between.
+	 */
+	public OutputFormatSelector(int samples, int probeInterval, CatalogDecoder... decoders)
+	{
+		if (decoders.length == 0)
+			throw new IllegalArgumentException("At least one decoder is required");
+		this.decoders = decoders.clone();
+		this.samples = samples;
+		this.probeInterval = Math.max(probeInterval, 1);
+		// filled up front so lookups need no locking
+		for (EndpointFamily family : EndpointFamily.values())
+			this.stats.put(family, new FamilyStats(decoders.length));
+	}
+
+	public ResultPage<CatalogTitle> fetchTitles(NetflixAPIClient client, APIRequest request) throws Exception
+	{
+		return this.fetch(client, request, new Decode<CatalogTitle>()
+		{
+			public ResultPage<CatalogTitle> decode(CatalogDecoder decoder, InputStream body) throws Exception
+			{
+				return decoder.decodeTitles(body);
+			}
+		});
+	}
+
+	public ResultPage<Person> fetchPeople(NetflixAPIClient client, APIRequest request) throws Exception
+	{
+		return this.fetch(client, request, new Decode<Person>()
+		{
+			public ResultPage<Person> decode(CatalogDecoder decoder, InputStream body) throws Exception
+			{
+				return decoder.decodePeople(body);
+			}
+		});
+	}
+
+	public ResultPage<QueueItem> fetchQueue(NetflixAPIClient client, APIRequest request) throws Exception
+	{
+		return this.fetch(client, request, new Decode<QueueItem>()
+		{
+			public ResultPage<QueueItem> decode(CatalogDecoder decoder, InputStream body) throws Exception
+			{
+				return decoder.decodeQueue(body);
+			}
+		});
+	}
+
+	/**
+	 * @param family
+	 * @return the decoder to use for the next call to the family.
+	 */
+	public CatalogDecoder select(EndpointFamily family)
+	{
+		return this.decoders[this.stats.get(family).select(this.samples, this.probeInterval)];
+	}
+
+	/**
+	 * Records the cost of one decoded response.
+	 * @param family
+	 * @param decoder - one of this selector's decoders.
+	 * @param nanosPerItem - time spent reading and decoding the body, per item decoded.
+	 */
+	public void record(EndpointFamily family, CatalogDecoder decoder, long nanosPerItem)
+	{
+		int index = this.indexOf(decoder);
+		if (index >= 0)
+			this.stats.get(family).record(index, nanosPerItem);
+	}
+
+	/**
+	 * @param family
+	 * @return the output format currently preferred for the family, or null
+	 * while it is still being measured.
+	 */
+	public String getPreferredFormat(EndpointFamily family)
+	{
+		int best = this.stats.get(family).best(this.samples);
+		return best < 0 ? null : this.decoders[best].getOutputFormat();
+	}
+
+	private <T> ResultPage<T> fetch(NetflixAPIClient client, APIRequest request, final Decode<T> decode) throws Exception
+	{
+		final EndpointFamily family = EndpointFamily.forUri(request.getUri());
+		String requested = request.getCallParameters() == null ? null : request.getCallParameters().get("output");
+		final boolean measured = requested == null;
+		final CatalogDecoder decoder;
+		if (measured)
+		{
+			decoder = this.select(family);
+			request = request.withCallParameter("output", decoder.getOutputFormat());
+		}
+		else
+		{
+			decoder = this.forFormat(requested);
+			if (decoder == null)
+				throw new NetflixAPIException("No decoder for output=" + requested);
+		}
+
+		return client.execute(request, new ResponseHandler<ResultPage<T>>()
+		{
+			public ResultPage<T> handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+			{
+				long start = System.nanoTime();
+				ResultPage<T> page = decode.decode(decoder, body);
+				if (measured)
+					record(family, decoder, (System.nanoTime() - start) / Math.max(page.getItems().size(), 1));
+				return page;
+			}
+		});
+	}
+
+	private CatalogDecoder forFormat(String outputFormat)
+	{
+		for (CatalogDecoder decoder : this.decoders)
+		{
+			if (decoder.getOutputFormat().equals(outputFormat))
+				return decoder;
+		}
+		return null;
+	}
+
+	private int indexOf(CatalogDecoder decoder)
+	{
+		for (int i = 0; i < this.decoders.length; i++)
+		{
+			if (this.decoders[i] == decoder)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Measured costs of each decoder for one family.
+	 */
+	private static class FamilyStats
+	{
+		/**
+		 * Weight of the newest sample in the moving average.
+		 */
+		private static final double ALPHA = 0.2;
+
+		private final int[] counts;
+
+		private final double[] costs;
+
+		private long calls;
+
+		FamilyStats(int decoders)
+		{
+			this.counts = new int[decoders];
+			this.costs = new double[decoders];
+		}
+
+		synchronized int select(int samples, int probeInterval)
+		{
+			long call = this.calls++;
+			// round robin over decoders that still need samples
+			int start = (int) (call % this.counts.length);
+			for (int i = 0; i < this.counts.length; i++)
+			{
+				int candidate = (start + i) % this.counts.length;
+				if (this.counts[candidate] < samples)
+					return candidate;
+			}
+			int best = this.best(samples);
+			if (call % probeInterval == 0 && this.counts.length > 1)
+				return (best + 1 + (int) ((call / probeInterval) % (this.counts.length - 1))) % this.counts.length;
+			return best;
+		}
+
+		synchronized void record(int decoder, long cost)
+		{
+			if (this.counts[decoder]++ == 0)
+				this.costs[decoder] = cost;
+			else this.costs[decoder] += ALPHA * (cost - this.costs[decoder]);
+		}
+
+		synchronized int best(int samples)
+		{
+			int best = -1;
+			for (int i = 0; i < this.counts.length; i++)
+			{
+				if (this.counts[i] < samples)
+					return -1;
+				if (best < 0 || this.costs[i] < this.costs[best])
+					best = i;
+			}
+			return best;
+		}
+	}
+
+	private interface Decode<T>
+	{
+		ResultPage<T> decode(CatalogDecoder decoder, InputStream body) throws Exception;
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.netflix.api.decoder;
+
+/**
+ * The values one item of a response holds for the paths of a
+ * <code>FieldProjection</code>.  Values the response did not contain are null.
+ */
+public class ProjectedRecord
+{
+	private final FieldProjection projection;
+	
+	private final String[] values;
+	
+	ProjectedRecord(FieldProjection projection, String[] values)
+	{
+		this.projection = projection;
+		this.values = values;
+	}
+	
+	/**
+	 * @param path - one of the projection's paths.
+	 * @return the value, or null if the item had none.
+	 * @throws IllegalArgumentException - if the path is not part of the projection.
+	 */
+	public String get(String path)
+	{
+		int index = this.projection.indexOf(path);
+		if (index < 0)
+			throw new IllegalArgumentException(path + " is not part of " + this.projection);
+		return this.values[index];
+	}
+	
+	/**
+	 * @param index - position of the path in the projection.
+	 */
+	public String get(int index)
+	{
+		return this.values[index];
+	}
+	
+	/**
+	 * @return true if every projected path had a value.
+	 */
+	public boolean isComplete()
+	{
+		return this.projection.getRoot().isSatisfied(this.values);
+	}
+	
+	public FieldProjection getProjection()
+	{
+		return projection;
+	}
+	
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < this.values.length; i++)
+		{
+			if (i > 0)
+				sb.append(", ");
+			sb.append(this.projection.getPaths().get(i)).append('=').append(this.values[i]);
+		}
+		return sb.append('}').toString();
+	}
+	
+}
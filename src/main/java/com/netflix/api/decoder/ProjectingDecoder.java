@@ -0,0 +1,243 @@
+package com.netflix.api.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.ResponseHandler;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Decodes only the fields of a <code>FieldProjection</code> from XML
+ * responses. <br />
+ * Elements off the projected paths are skipped as parser events, without
+ * their text or attributes ever being read into Strings.  Within an item,
+ * once every projected value has been seen the rest of the item is skipped;
+ * and once a single-item document, or the requested number of items, is
+ * complete the stream is not read any further at all.  The handlers
+ * then have the client close the connection rather than drain the rest of
+ * the response.  Instances are stateless and may be shared between threads.
+ */
+public class ProjectingDecoder
+{
+	/**
+	 * The fields most title listings need.
+	 */
+	public static final FieldProjection TITLE_SUMMARY = TitleField.projection(TitleField.ID, TitleField.SHORT_TITLE,
+			TitleField.BOX_ART_LARGE, TitleField.AVERAGE_RATING);
+	
+	/**
+	 * @see #decode(InputStream, FieldProjection, int)
+	 */
+	public ResultPage<ProjectedRecord> decode(InputStream in, FieldProjection projection)
+		throws IOException, NetflixAPIException
+	{
+		return this.decode(in, projection, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * @param in - the response body.
+	 * @param projection - the fields to extract.
+	 * @param maxItems - stop reading after this many items.
+	 * @return the projected items, with the paging totals of the response
+	 * if they appear before the items.
+	 * @throws IOException
+	 * @throws NetflixAPIException - for error status documents and malformed XML.
+	 */
+	public ResultPage<ProjectedRecord> decode(InputStream in, FieldProjection projection, int maxItems)
+		throws IOException, NetflixAPIException
+	{
+		return this.decode(in, projection, maxItems, null);
+	}
+	
+	/**
+	 * @param response - told to discard the rest of the body if items are
+	 * left unread; may be null.
+	 */
+	private ResultPage<ProjectedRecord> decode(InputStream in, FieldProjection projection, int maxItems,
+		NetflixAPIResponse response) throws IOException, NetflixAPIException
+	{
+		ResultPage<ProjectedRecord> page = new ResultPage<ProjectedRecord>();
+		if (maxItems <= 0)
+		{
+			if (response != null)
+				response.discardRemainingBody();
+			return page;
+		}
+		XMLStreamReader reader = StaxSupport.newReader(in);
+		try
+		{
+			if (!StaxSupport.nextStartElement(reader))
+				return page;
+			String root = reader.getLocalName();
+			if (root.equals("status"))
+				throw StaxSupport.readStatus(reader);
+			if (root.equals(projection.getItemElement()))
+			{
+				page.addItem(readItem(reader, projection));
+				page.setNumberOfResults(1);
+				return page;
+			}
+			
+			while (StaxSupport.nextChild(reader))
+			{
+				String name = reader.getLocalName();
+				if (name.equals(projection.getItemElement()))
+				{
+					page.addItem(readItem(reader, projection));
+					if (page.getItems().size() >= maxItems)
+					{
+						if (response != null)
+							response.discardRemainingBody();
+						break;
+					}
+				}
+				else if (name.equals("number_of_results"))
+					page.setNumberOfResults(AbstractCatalogDecoder.parseInt(StaxSupport.readText(reader)));
+				else if (name.equals("start_index"))
+					page.setStartIndex(AbstractCatalogDecoder.parseInt(StaxSupport.readText(reader)));
+				else if (name.equals("results_per_page"))
+					page.setResultsPerPage(AbstractCatalogDecoder.parseInt(StaxSupport.readText(reader)));
+				else StaxSupport.skipElement(reader);
+			}
+			return page;
+		}
+		catch (XMLStreamException e)
+		{
+			throw StaxSupport.malformed(e);
+		}
+		finally
+		{
+			StaxSupport.close(reader);
+		}
+	}
+	
+	/**
+	 * Decodes <code>catalog_title</code> items into titles with only the
+	 * projected fields set.  Projected paths that are not a
+	 * <code>TitleField</code> are read but ignored.
+	 */
+	public ResultPage<CatalogTitle> decodeTitles(InputStream in, FieldProjection projection, int maxItems)
+		throws IOException, NetflixAPIException
+	{
+		return toTitles(this.decode(in, projection, maxItems), projection);
+	}
+	
+	private static ResultPage<CatalogTitle> toTitles(ResultPage<ProjectedRecord> records, FieldProjection projection)
+	{
+		TitleField[] fields = TitleField.values();
+		int[] indexes = new int[fields.length];
+		for (int i = 0; i < fields.length; i++)
+			indexes[i] = projection.indexOf(fields[i].getPath());
+		
+		ResultPage<CatalogTitle> page = new ResultPage<CatalogTitle>();
+		page.setNumberOfResults(records.getNumberOfResults());
+		page.setStartIndex(records.getStartIndex());
+		page.setResultsPerPage(records.getResultsPerPage());
+		for (ProjectedRecord record : records.getItems())
+		{
+			CatalogTitle title = new CatalogTitle();
+			for (int i = 0; i < fields.length; i++)
+			{
+				if (indexes[i] >= 0 && record.get(indexes[i]) != null)
+					fields[i].apply(title, record.get(indexes[i]));
+			}
+			page.addItem(title);
+		}
+		return page;
+	}
+	
+	public ResponseHandler<ResultPage<ProjectedRecord>> handler(FieldProjection projection)
+	{
+		return this.handler(projection, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * @param projection
+	 * @param maxItems - stop reading after this many items, and have the
+	 * client close the connection rather than read the rest.
+	 */
+	public ResponseHandler<ResultPage<ProjectedRecord>> handler(final FieldProjection projection, final int maxItems)
+	{
+		return new ResponseHandler<ResultPage<ProjectedRecord>>()
+		{
+			public ResultPage<ProjectedRecord> handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+			{
+				return decode(body, projection, maxItems, response);
+			}
+		};
+	}
+	
+	public ResponseHandler<ResultPage<CatalogTitle>> titlesHandler(FieldProjection projection)
+	{
+		return this.titlesHandler(projection, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * @param projection
+	 * @param maxItems - stop reading after this many items, and have the
+	 * client close the connection rather than read the rest.
+	 */
+	public ResponseHandler<ResultPage<CatalogTitle>> titlesHandler(final FieldProjection projection, final int maxItems)
+	{
+		return new ResponseHandler<ResultPage<CatalogTitle>>()
+		{
+			public ResultPage<CatalogTitle> handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+			{
+				return toTitles(decode(body, projection, maxItems, response), projection);
+			}
+		};
+	}
+	
+	/**
+	 * Reads one item element, leaving the reader on its end tag.
+	 */
+	private static ProjectedRecord readItem(XMLStreamReader reader, FieldProjection projection) throws XMLStreamException
+	{
+		String[] values = new String[projection.size()];
+		readElement(reader, projection.getRoot(), values);
+		return new ProjectedRecord(projection, values);
+	}
+	
+	/**
+	 * Fills in the values found at or below the current element, leaving
+	 * the reader on its end tag.
+	 */
+	private static void readElement(XMLStreamReader reader, FieldProjection.Node node, String[] values)
+		throws XMLStreamException
+	{
+		for (int i = 0; i < node.attributeNames.size(); i++)
+		{
+			int index = node.attributeIndexes.get(i).intValue();
+			if (values[index] == null)
+				values[index] = reader.getAttributeValue(null, node.attributeNames.get(i));
+		}
+		if (node.textIndex >= 0)
+		{
+			if (values[node.textIndex] == null)
+				values[node.textIndex] = StaxSupport.readText(reader);
+			else StaxSupport.skipElement(reader);
+			return;
+		}
+		
+		while (StaxSupport.nextChild(reader))
+		{
+			FieldProjection.Node child = node.children.get(reader.getLocalName());
+			if (child == null || child.isSatisfied(values))
+				StaxSupport.skipElement(reader);
+			else readElement(reader, child, values);
+			if (node.isSatisfied(values))
+			{
+				// nothing left to find in here
+				StaxSupport.skipElement(reader);
+				return;
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,282 @@
+package com.netflix.api.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Link;
+import com.netflix.api.model.Person;
+import com.netflix.api.model.QueueItem;
+import com.netflix.api.model.ResultPage;
+
+/**
+ * Decodes XML API responses with a StAX pull parser. <br />
+ * Responses are read once, front to back, and mapped straight onto model
+ * objects: no String copy of the body and no document tree is ever held,
+ * and elements the model has no use for are skipped without being
+ * materialized.  Instances are stateless and may be shared between threads.
+ */
+public class StaxCatalogDecoder extends AbstractCatalogDecoder
+{
+	public String getOutputFormat()
+	{
+		return "pox";
+	}
+	
+	public ResultPage<CatalogTitle> decodeTitles(InputStream in) throws IOException, NetflixAPIException
+	{
+		return this.decodeList(in, new ItemReader<CatalogTitle>()
+		{
+			public boolean accepts(String elementName)
+			{
+				return isTitleElement(elementName);
+			}
+			
+			public CatalogTitle read(XMLStreamReader reader) throws XMLStreamException
+			{
+				return readTitle(reader);
+			}
+		});
+	}
+	
+	public ResultPage<Person> decodePeople(InputStream in) throws IOException, NetflixAPIException
+	{
+		return this.decodeList(in, new ItemReader<Person>()
+		{
+			public boolean accepts(String elementName)
+			{
+				return elementName.equals("person");
+			}
+			
+			public Person read(XMLStreamReader reader) throws XMLStreamException
+			{
+				return readPerson(reader);
+			}
+		});
+	}
+	
+	public ResultPage<QueueItem> decodeQueue(InputStream in) throws IOException, NetflixAPIException
+	{
+		return this.decodeList(in, new ItemReader<QueueItem>()
+		{
+			public boolean accepts(String elementName)
+			{
+				// queue_item, at_home_item, rental_history_item...
+				return elementName.endsWith("_item") && !elementName.equals("title_index_item");
+			}
+			
+			public QueueItem read(XMLStreamReader reader) throws XMLStreamException
+			{
+				return readQueueItem(reader);
+			}
+		});
+	}
+	
+	/**
+	 * @param elementName
+	 * @return true for the elements describing a single catalog title.
+	 */
+	static boolean isTitleElement(String elementName)
+	{
+		return elementName.equals("catalog_title") || elementName.equals("title_index_item");
+	}
+	
+	/**
+	 * Reads a list document (or a single item document) into a page.
+	 */
+	private <T> ResultPage<T> decodeList(InputStream in, ItemReader<T> itemReader) throws IOException, NetflixAPIException
+	{
+		XMLStreamReader reader = StaxSupport.newReader(in);
+		try
+		{
+			ResultPage<T> page = new ResultPage<T>();
+			if (!StaxSupport.nextStartElement(reader))
+				return page;
+			String root = reader.getLocalName();
+			if (root.equals("status"))
+				throw StaxSupport.readStatus(reader);
+			if (itemReader.accepts(root))
+			{
+				page.addItem(itemReader.read(reader));
+				page.setNumberOfResults(1);
+				return page;
+			}
+			
+			while (StaxSupport.nextChild(reader))
+			{
+				String name = reader.getLocalName();
+				if (name.equals("number_of_results"))
+					page.setNumberOfResults(parseInt(StaxSupport.readText(reader)));
+				else if (name.equals("start_index"))
+					page.setStartIndex(parseInt(StaxSupport.readText(reader)));
+				else if (name.equals("results_per_page"))
+					page.setResultsPerPage(parseInt(StaxSupport.readText(reader)));
+				else if (itemReader.accepts(name))
+					page.addItem(itemReader.read(reader));
+				else StaxSupport.skipElement(reader);
+			}
+			return page;
+		}
+		catch (XMLStreamException e)
+		{
+			throw StaxSupport.malformed(e);
+		}
+		finally
+		{
+			StaxSupport.close(reader);
+		}
+	}
+	
+	/**
+	 * Reads a title element, leaving the reader on its end tag.
+	 */
+	CatalogTitle readTitle(XMLStreamReader reader) throws XMLStreamException
+	{
+		CatalogTitle title = new CatalogTitle();
+		TitleAccumulator accumulator = new TitleAccumulator();
+		while (StaxSupport.nextChild(reader))
+		{
+			if (!this.readTitleField(reader, title, accumulator))
+				StaxSupport.skipElement(reader);
+		}
+		accumulator.applyTo(title);
+		return title;
+	}
+	
+	private QueueItem readQueueItem(XMLStreamReader reader) throws XMLStreamException
+	{
+		QueueItem item = new QueueItem();
+		CatalogTitle title = new CatalogTitle();
+		TitleAccumulator accumulator = new TitleAccumulator();
+		while (StaxSupport.nextChild(reader))
+		{
+			String name = reader.getLocalName();
+			if (name.equals("id"))
+				item.setId(StaxSupport.readText(reader));
+			else if (name.equals("position"))
+				item.setPosition(parseInt(StaxSupport.readText(reader)));
+			else if (name.equals("updated"))
+				item.setUpdated(parseLong(StaxSupport.readText(reader)));
+			else if (!this.readTitleField(reader, title, accumulator))
+				StaxSupport.skipElement(reader);
+		}
+		accumulator.applyTo(title);
+		for (Link link : accumulator.links)
+		{
+			if (TITLE_REL.equals(link.getRel()))
+				title.setId(link.getHref());
+		}
+		item.setTitle(title);
+		return item;
+	}
+	
+	private Person readPerson(XMLStreamReader reader) throws XMLStreamException
+	{
+		Person person = new Person();
+		List<Link> links = new ArrayList<Link>();
+		while (StaxSupport.nextChild(reader))
+		{
+			String name = reader.getLocalName();
+			if (name.equals("id"))
+				person.setId(StaxSupport.readText(reader));
+			else if (name.equals("name"))
+				person.setName(StaxSupport.readText(reader));
+			else if (name.equals("bio"))
+				person.setBio(StaxSupport.readText(reader));
+			else if (name.equals("link"))
+			{
+				links.add(readLink(reader));
+				StaxSupport.skipElement(reader);
+			}
+			else StaxSupport.skipElement(reader);
+		}
+		person.setLinks(links);
+		return person;
+	}
+	
+	/**
+	 * Reads one child element of a title, if it is one the model keeps.
+	 * @return false if the element was not consumed.
+	 */
+	private boolean readTitleField(XMLStreamReader reader, CatalogTitle title, TitleAccumulator accumulator)
+		throws XMLStreamException
+	{
+		String name = reader.getLocalName();
+		if (name.equals("id"))
+			title.setId(StaxSupport.readText(reader));
+		else if (name.equals("title"))
+		{
+			title.setShortTitle(reader.getAttributeValue(null, "short"));
+			title.setRegularTitle(reader.getAttributeValue(null, "regular"));
+			StaxSupport.skipElement(reader);
+		}
+		else if (name.equals("box_art"))
+		{
+			title.setBoxArtSmall(reader.getAttributeValue(null, "small"));
+			title.setBoxArtMedium(reader.getAttributeValue(null, "medium"));
+			title.setBoxArtLarge(reader.getAttributeValue(null, "large"));
+			StaxSupport.skipElement(reader);
+		}
+		else if (name.equals("link"))
+		{
+			accumulator.links.add(readLink(reader));
+			StaxSupport.skipElement(reader);
+		}
+		else if (name.equals("category"))
+		{
+			applyCategory(reader.getAttributeValue(null, "scheme"), reader.getAttributeValue(null, "label"),
+					title, accumulator.genres, accumulator.formats);
+			StaxSupport.skipElement(reader);
+		}
+		else if (name.equals("release_year"))
+			title.setReleaseYear(parseInt(StaxSupport.readText(reader)));
+		else if (name.equals("runtime"))
+			title.setRuntime(parseInt(StaxSupport.readText(reader)));
+		else if (name.equals("average_rating"))
+			title.setAverageRating(parseFloat(StaxSupport.readText(reader)));
+		else return false;
+		return true;
+	}
+	
+	private static Link readLink(XMLStreamReader reader)
+	{
+		return new Link(reader.getAttributeValue(null, "href"), reader.getAttributeValue(null, "rel"),
+				reader.getAttributeValue(null, "title"));
+	}
+	
+	/**
+	 * Collects a title's repeated values until the title is complete.
+	 */
+	private static class TitleAccumulator
+	{
+		final List<String> genres = new ArrayList<String>(4);
+		
+		final List<String> formats = new ArrayList<String>(4);
+		
+		final List<Link> links = new ArrayList<Link>(8);
+		
+		void applyTo(CatalogTitle title)
+		{
+			title.setGenres(this.genres);
+			title.setFormats(this.formats);
+			title.setLinks(this.links);
+		}
+	}
+	
+	/**
+	 * Reads the items of one kind of list document.
+	 */
+	private interface ItemReader<T>
+	{
+		boolean accepts(String elementName);
+		
+		T read(XMLStreamReader reader) throws XMLStreamException;
+	}
+	
+}
@@ -0,0 +1,212 @@
+package com.netflix.api.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.netflix.api.NetflixAPIException;
+
+/**
+ * Shared plumbing for the StAX based decoders.
+ */
+class StaxSupport
+{
+	private static final XMLInputFactory factory;
+	
+	static
+	{
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		// API responses never need DTDs; refusing them also rules out external entities
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+	
+	private StaxSupport()
+	{
+		// static helpers only
+	}
+	
+	/**
+	 * Opens a reader over the stream, letting the parser detect the encoding.
+	 */
+	static XMLStreamReader newReader(InputStream in) throws NetflixAPIException
+	{
+		try
+		{
+			return factory.createXMLStreamReader(in);
+		}
+		catch (XMLStreamException e)
+		{
+			throw new NetflixAPIException("Could not read API response", e);
+		}
+	}
+	
+	static void close(XMLStreamReader reader)
+	{
+		try
+		{
+			reader.close();
+		}
+		catch (XMLStreamException e)
+		{
+			// nothing more to read anyway
+		}
+	}
+	
+	/**
+	 * Advances to the next start tag.
+	 * @return false if the document ended first.
+	 */
+	static boolean nextStartElement(XMLStreamReader reader) throws XMLStreamException
+	{
+		while (reader.hasNext())
+		{
+			if (reader.next() == XMLStreamConstants.START_ELEMENT)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Advances to the next child start tag of the current element.
+	 * @return false once the current element's end tag is reached.
+	 */
+	static boolean nextChild(XMLStreamReader reader) throws XMLStreamException
+	{
+		while (reader.hasNext())
+		{
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				return true;
+			if (event == XMLStreamConstants.END_ELEMENT)
+				return false;
+		}
+		return false;
+	}
+	
+	/**
+	 * Skips past the end tag of the current element, without looking at its content.
+	 */
+	static void skipElement(XMLStreamReader reader) throws XMLStreamException
+	{
+		int depth = 1;
+		while (depth > 0 && reader.hasNext())
+		{
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+	}
+	
+	/**
+	 * Writes the current element and everything inside it, leaving the
+	 * reader on its end tag.
+	 */
+	static void copyElement(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException
+	{
+		int depth = 0;
+		do
+		{
+			switch (reader.getEventType())
+			{
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					writer.writeStartElement(reader.getLocalName());
+					for (int i = 0; i < reader.getAttributeCount(); i++)
+						writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					depth--;
+					writer.writeEndElement();
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+					break;
+				default:
+					break;
+			}
+			if (depth == 0)
+				break;
+			reader.next();
+		}
+		while (true);
+	}
+	
+	/**
+	 * Reads the text of the current element, including the text of any
+	 * markup nested in it, leaving the reader on its end tag.
+	 */
+	static String readText(XMLStreamReader reader) throws XMLStreamException
+	{
+		StringBuilder text = null;
+		String first = null;
+		int depth = 1;
+		while (depth > 0 && reader.hasNext())
+		{
+			int event = reader.next();
+			if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+			{
+				// most elements hold a single text event, so avoid the copy
+				if (first == null)
+					first = reader.getText();
+				else
+				{
+					if (text == null)
+						text = new StringBuilder(first);
+					text.append(reader.getText());
+				}
+			}
+			else if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+		if (text != null)
+			return text.toString().trim();
+		return first == null ? "" : first.trim();
+	}
+	
+	/**
+	 * Reads a <code>status</code> error document and turns it into an exception.
+	 * The reader must be on the <code>status</code> start tag.
+	 */
+	static NetflixAPIException readStatus(XMLStreamReader reader) throws XMLStreamException
+	{
+		String code = null;
+		String message = null;
+		while (nextChild(reader))
+		{
+			String name = reader.getLocalName();
+			if (name.equals("status_code"))
+				code = readText(reader);
+			else if (name.equals("message"))
+				message = readText(reader);
+			else skipElement(reader);
+		}
+		return new NetflixAPIException("API returned status " + code + ": " + message);
+	}
+	
+	/**
+	 * Wraps parser failures; an <code>IOException</code> underneath is
+	 * rethrown as is.
+	 */
+	static NetflixAPIException malformed(XMLStreamException e) throws IOException
+	{
+		Throwable cause = e.getNestedException() != null ? e.getNestedException() : e.getCause();
+		if (cause instanceof IOException)
+			throw (IOException) cause;
+		return new NetflixAPIException("Malformed API response", e);
+	}
+	
+}
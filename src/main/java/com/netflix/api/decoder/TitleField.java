@@ -0,0 +1,101 @@
+package com.netflix.api.decoder;
+
+import com.netflix.api.model.CatalogTitle;
+
+/**
+ * The single-valued <code>CatalogTitle</code> fields a projection can fill,
+ * with the path each is read from.
+ */
+public enum TitleField
+{
+	ID("id")
+	{
+		void apply(CatalogTitle title, String value)
+		{
+			title.setId(value);
+		}
+	},
+	SHORT_TITLE("title/@short")
+	{
+		void apply(CatalogTitle title, String value)
+		{
+			title.setShortTitle(value);
+		}
+	},
+	REGULAR_TITLE("title/@regular")
+	{
+		void apply(CatalogTitle title, String value)
+		{
+			title.setRegularTitle(value);
+		}
+	},
+	BOX_ART_SMALL("box_art/@small")
+	{
+		void apply(CatalogTitle title, String value)
+		{
+			title.setBoxArtSmall(value);
+		}
+	},
+	BOX_ART_MEDIUM("box_art/@medium")
+	{
+		void apply(CatalogTitle title, String value)
+		{
+			title.setBoxArtMedium(value);
+		}
+	},
+	BOX_ART_LARGE("box_art/@large")
+	{
+		void apply(CatalogTitle title, String value)
+		{
+			title.setBoxArtLarge(value);
+		}
+	},
+	RELEASE_YEAR("release_year")
+	{
+		void apply(CatalogTitle title, String value)
+		{
+			title.setReleaseYear(AbstractCatalogDecoder.parseInt(value));
+		}
+	},
+	RUNTIME("runtime")
+	{
+		void apply(CatalogTitle title, String value)
+		{
+			title.setRuntime(AbstractCatalogDecoder.parseInt(value));
+		}
+	},
+	AVERAGE_RATING("average_rating")
+	{
+		void apply(CatalogTitle title, String value)
+		{
+			title.setAverageRating(AbstractCatalogDecoder.parseFloat(value));
+		}
+	};
+	
+	private final String path;
+	
+	private TitleField(String path)
+	{
+		this.path = path;
+	}
+	
+	public String getPath()
+	{
+		return path;
+	}
+	
+	abstract void apply(CatalogTitle title, String value);
+	
+	/**
+	 * @param fields
+	 * @return a projection of <code>catalog_title</code> items onto the fields.
+	 */
+	public static FieldProjection projection(TitleField... fields)
+	{
+		String[] paths = new String[fields.length];
+		for (int i = 0; i < fields.length; i++)
+			paths[i] = fields[i].path;
+		return new FieldProjection("catalog_title", paths);
+	}
+	
+}
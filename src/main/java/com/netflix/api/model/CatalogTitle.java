@@ -0,0 +1,221 @@
+package com.netflix.api.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A catalog title (movie, series, season, program or disc) as described by
+ * a <code>catalog_title</code> element. <br />
+ * Kept deliberately compact: numeric values are primitives, and repeated
+ * values are held in arrays, since catalogs hold very many of these.
+ * Values absent from the response are null, or 0 for numbers.
+ */
+public class CatalogTitle
+{
+	private static final String[] NO_STRINGS = new String[0];
+	
+	private static final Link[] NO_LINKS = new Link[0];
+	
+	private String id;
+	
+	private long numericId = -1;
+	
+	private String shortTitle;
+	
+	private String regularTitle;
+	
+	private String boxArtSmall;
+	
+	private String boxArtMedium;
+	
+	private String boxArtLarge;
+	
+	private int releaseYear;
+	
+	private int runtime;
+	
+	private float averageRating;
+	
+	private String rating;
+	
+	private String[] genres = NO_STRINGS;
+	
+	private String[] formats = NO_STRINGS;
+	
+	private Link[] links = NO_LINKS;
+	
+	/**
+	 * @return the title's resource URI.
+	 */
+	public String getId()
+	{
+		return id;
+	}
+	
+	public void setId(String id)
+	{
+		this.id = id;
+		this.numericId = ResourceIds.numericId(id);
+	}
+	
+	/**
+	 * @return the numeric ID at the end of the resource URI, or -1.
+	 */
+	public long getNumericId()
+	{
+		return numericId;
+	}
+	
+	public String getShortTitle()
+	{
+		return shortTitle;
+	}
+	
+	public void setShortTitle(String shortTitle)
+	{
+		this.shortTitle = shortTitle;
+	}
+	
+	public String getRegularTitle()
+	{
+		return regularTitle;
+	}
+	
+	public void setRegularTitle(String regularTitle)
+	{
+		this.regularTitle = regularTitle;
+	}
+	
+	public String getBoxArtSmall()
+	{
+		return boxArtSmall;
+	}
+	
+	public void setBoxArtSmall(String boxArtSmall)
+	{
+		this.boxArtSmall = boxArtSmall;
+	}
+	
+	public String getBoxArtMedium()
+	{
+		return boxArtMedium;
+	}
+	
+	public void setBoxArtMedium(String boxArtMedium)
+	{
+		this.boxArtMedium = boxArtMedium;
+	}
+	
+	public String getBoxArtLarge()
+	{
+		return boxArtLarge;
+	}
+	
+	public void setBoxArtLarge(String boxArtLarge)
+	{
+		this.boxArtLarge = boxArtLarge;
+	}
+	
+	public int getReleaseYear()
+	{
+		return releaseYear;
+	}
+	
+	public void setReleaseYear(int releaseYear)
+	{
+		this.releaseYear = releaseYear;
+	}
+	
+	/**
+	 * @return running time in seconds.
+	 */
+	public int getRuntime()
+	{
+		return runtime;
+	}
+	
+	public void setRuntime(int runtime)
+	{
+		this.runtime = runtime;
+	}
+	
+	/**
+	 * @return average customer rating from 1 to 5, or 0 if unrated.
+	 */
+	public float getAverageRating()
+	{
+		return averageRating;
+	}
+	
+	public void setAverageRating(float averageRating)
+	{
+		this.averageRating = averageRating;
+	}
+	
+	/**
+	 * @return the MPAA or TV rating label, e.g. <code>PG-13</code>.
+	 */
+	public String getRating()
+	{
+		return rating;
+	}
+	
+	public void setRating(String rating)
+	{
+		this.rating = rating;
+	}
+	
+	public List<String> getGenres()
+	{
+		return Collections.unmodifiableList(Arrays.asList(this.genres));
+	}
+	
+	public void setGenres(List<String> genres)
+	{
+		this.genres = genres.toArray(new String[genres.size()]);
+	}
+	
+	/**
+	 * @return delivery formats the title is available in, e.g. <code>DVD</code>.
+	 */
+	public List<String> getFormats()
+	{
+		return Collections.unmodifiableList(Arrays.asList(this.formats));
+	}
+	
+	public void setFormats(List<String> formats)
+	{
+		this.formats = formats.toArray(new String[formats.size()]);
+	}
+	
+	public List<Link> getLinks()
+	{
+		return Collections.unmodifiableList(Arrays.asList(this.links));
+	}
+	
+	public void setLinks(List<Link> links)
+	{
+		this.links = links.toArray(new Link[links.size()]);
+	}
+	
+	/**
+	 * @param title - short name of the relation, e.g. <code>synopsis</code>.
+	 * @return the first link with that name, or null.
+	 */
+	public Link getLink(String title)
+	{
+		for (Link link : this.links)
+		{
+			if (title.equals(link.getTitle()))
+				return link;
+		}
+		return null;
+	}
+	
+	public String toString()
+	{
+		return this.regularTitle + " [" + this.id + "]";
+	}
+	
+}
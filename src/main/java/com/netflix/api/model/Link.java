@@ -0,0 +1,47 @@
+package com.netflix.api.model;
+
+/**
+ * A <code>link</code> element of an API resource, pointing at a related resource.
+ */
+public class Link
+{
+	private final String href;
+	
+	private final String rel;
+	
+	private final String title;
+	
+	public Link(String href, String rel, String title)
+	{
+		this.href = href;
+		this.rel = rel;
+		this.title = title;
+	}
+	
+	public String getHref()
+	{
+		return href;
+	}
+	
+	/**
+	 * @return the relation, e.g. <code>http://schemas.netflix.com/catalog/titles/synopsis</code>.
+	 */
+	public String getRel()
+	{
+		return rel;
+	}
+	
+	/**
+	 * @return the short name of the relation, e.g. <code>synopsis</code>.
+	 */
+	public String getTitle()
+	{
+		return title;
+	}
+	
+	public String toString()
+	{
+		return this.title + " -> " + this.href;
+	}
+	
+}
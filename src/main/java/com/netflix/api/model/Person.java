@@ -0,0 +1,79 @@
+package com.netflix.api.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A person from the catalog, as described by a <code>person</code> element.
+ */
+public class Person
+{
+	private String id;
+	
+	private long numericId = -1;
+	
+	private String name;
+	
+	private String bio;
+	
+	private Link[] links = new Link[0];
+	
+	/**
+	 * @return the person's resource URI.
+	 */
+	public String getId()
+	{
+		return id;
+	}
+	
+	public void setId(String id)
+	{
+		this.id = id;
+		this.numericId = ResourceIds.numericId(id);
+	}
+	
+	/**
+	 * @return the numeric ID at the end of the resource URI, or -1.
+	 */
+	public long getNumericId()
+	{
+		return numericId;
+	}
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	public void setName(String name)
+	{
+		this.name = name;
+	}
+	
+	public String getBio()
+	{
+		return bio;
+	}
+	
+	public void setBio(String bio)
+	{
+		this.bio = bio;
+	}
+	
+	public List<Link> getLinks()
+	{
+		return Collections.unmodifiableList(Arrays.asList(this.links));
+	}
+	
+	public void setLinks(List<Link> links)
+	{
+		this.links = links.toArray(new Link[links.size()]);
+	}
+	
+	public String toString()
+	{
+		return this.name + " [" + this.id + "]";
+	}
+	
+}
@@ -0,0 +1,74 @@
+package com.netflix.api.model;
+
+/**
+ * An entry in a customer's disc or instant queue, as described by a
+ * <code>queue_item</code> element.
+ */
+public class QueueItem
+{
+	private String id;
+	
+	private int position;
+	
+	private long updated;
+	
+	private CatalogTitle title;
+	
+	/**
+	 * @return the queue item's resource URI.
+	 */
+	public String getId()
+	{
+		return id;
+	}
+	
+	public void setId(String id)
+	{
+		this.id = id;
+	}
+	
+	/**
+	 * @return 1-based position in the queue, or 0 if not given.
+	 */
+	public int getPosition()
+	{
+		return position;
+	}
+	
+	public void setPosition(int position)
+	{
+		this.position = position;
+	}
+	
+	/**
+	 * @return when the item was last changed, in seconds since epoch.
+	 */
+	public long getUpdated()
+	{
+		return updated;
+	}
+	
+	public void setUpdated(long updated)
+	{
+		this.updated = updated;
+	}
+	
+	/**
+	 * @return the queued title; its ID is taken from the item's title link.
+	 */
+	public CatalogTitle getTitle()
+	{
+		return title;
+	}
+	
+	public void setTitle(CatalogTitle title)
+	{
+		this.title = title;
+	}
+	
+	public String toString()
+	{
+		return this.position + ": " + this.title;
+	}
+	
+}
@@ -0,0 +1,37 @@
+package com.netflix.api.model;
+
+/**
+ * Helpers for the URIs the API uses as resource IDs, e.g.
+ * <code>http://api.netflix.com/catalog/titles/movies/70075473</code>.
+ */
+public class ResourceIds
+{
+	private ResourceIds()
+	{
+		// static helpers only
+	}
+	
+	/**
+	 * Extracts the numeric ID at the end of a resource URI.
+	 * @param uri
+	 * @return the ID, or -1 if the URI does not end in one.
+	 */
+	public static long numericId(String uri)
+	{
+		if (uri == null)
+			return -1;
+		int end = uri.length();
+		while (end > 0 && uri.charAt(end - 1) == '/')
+			end--;
+		int start = end;
+		while (start > 0 && Character.isDigit(uri.charAt(start - 1)))
+			start--;
+		if (start == end || end - start > 18)
+			return -1;
+		long id = 0;
+		for (int i = start; i < end; i++)
+			id = id * 10 + (uri.charAt(i) - '0');
+		return id;
+	}
+	
+}
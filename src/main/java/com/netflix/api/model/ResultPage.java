@@ -0,0 +1,66 @@
+package com.netflix.api.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a list resource, such as a catalog search or a queue, along
+ * with the paging information the API returned for it.
+ */
+public class ResultPage<T>
+{
+	private int numberOfResults = -1;
+	
+	private int startIndex = 0;
+	
+	private int resultsPerPage = -1;
+	
+	private List<T> items = new ArrayList<T>();
+	
+	/**
+	 * @return total number of results across all pages, or -1 if not given.
+	 */
+	public int getNumberOfResults()
+	{
+		return numberOfResults;
+	}
+	
+	public void setNumberOfResults(int numberOfResults)
+	{
+		this.numberOfResults = numberOfResults;
+	}
+	
+	public int getStartIndex()
+	{
+		return startIndex;
+	}
+	
+	public void setStartIndex(int startIndex)
+	{
+		this.startIndex = startIndex;
+	}
+	
+	/**
+	 * @return page size the API used, or -1 if not given.
+	 */
+	public int getResultsPerPage()
+	{
+		return resultsPerPage;
+	}
+	
+	public void setResultsPerPage(int resultsPerPage)
+	{
+		this.resultsPerPage = resultsPerPage;
+	}
+	
+	public List<T> getItems()
+	{
+		return items;
+	}
+	
+	public void addItem(T item)
+	{
+		this.items.add(item);
+	}
+	
+}
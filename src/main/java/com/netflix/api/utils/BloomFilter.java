@@ -0,0 +1,115 @@
+package com.netflix.api.utils;
+
+/**
+ * A Bloom filter over strings, for remembering very many keys in a few
+ * bits each. <br />
+ * <code>mightContain</code> never answers false for a key that was added,
+ * but may answer true, at about the rate the filter was sized for, for one
+ * that was not.  Keys are hashed once to 64 bits, and the probe positions
+ * derived from the two halves of that hash.  Not thread safe.
+ */
+public class BloomFilter
+{
+	private final long[] bits;
+
+	private final long bitCount;
+
+	private final int hashCount;
+
+	/**
+	 * @param expectedKeys - keys the filter is sized for.
+	 * @param falsePositiveRate - rate of false positives once that many are added, e.g. 0.001.
+	 */
+	public BloomFilter(long expectedKeys, double falsePositiveRate)
+	{
+		if (expectedKeys <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1)
+			throw new IllegalArgumentException("Expected keys must be positive and the false positive rate in (0, 1)");
+		double ln2 = Math.log(2);
+		long optimalBits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+		int words = (int) Math.min((optimalBits + 63) >>> 6, Integer.MAX_VALUE - 8);
+		this.bits = new long[Math.max(words, 1)];
+		this.bitCount = (long) this.bits.length << 6;
+		this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / expectedKeys * ln2));
+	}
+
+	/**
+	 * Adds a key.
+	 * @return true if the key was certainly not present before.
+	 */
+	public boolean put(CharSequence key)
+	{
+		long hash = hash(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		boolean added = false;
+		for (int i = 1; i <= this.hashCount; i++)
+		{
+			long index = this.index(h1 + i * h2);
+			long mask = 1L << index;
+			int word = (int) (index >>> 6);
+			if ((this.bits[word] & mask) == 0)
+			{
+				this.bits[word] |= mask;
+				added = true;
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * @return false if the key was never added; true if it probably was.
+	 */
+	public boolean mightContain(CharSequence key)
+	{
+		long hash = hash(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= this.hashCount; i++)
+		{
+			long index = this.index(h1 + i * h2);
+			if ((this.bits[(int) (index >>> 6)] & (1L << index)) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return size of the filter, in bits.
+	 */
+	public long getBitCount()
+	{
+		return this.bitCount;
+	}
+
+	public int getHashCount()
+	{
+		return this.hashCount;
+	}
+
+	private long index(int combined)
+	{
+		// flip negative hashes rather than losing a bit to abs()
+		return (combined < 0 ? ~combined : combined) % this.bitCount;
+	}
+
+	/**
+	 * 64 bit FNV-1a over the chars, finished with the MurmurHash3 mixer so
+	 * both halves are well distributed.
+	 */
+	static long hash(CharSequence key)
+	{
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++)
+		{
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+}
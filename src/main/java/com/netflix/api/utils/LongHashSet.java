@@ -0,0 +1,150 @@
+package com.netflix.api.utils;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive longs, such as numeric title IDs. <br />
+ * Keys are kept in a single open addressed array, so a set of a million IDs
+ * costs a few megabytes rather than the tens a <code>HashSet&lt;Long&gt;</code>
+ * would, and nothing is allocated per key.  Not thread safe.
+ */
+public class LongHashSet
+{
+	/**
+	 * Marks an empty slot; the key itself is tracked separately.
+	 */
+	private static final long EMPTY = 0;
+
+	private long[] keys;
+
+	private int mask;
+
+	private int size;
+
+	private boolean containsEmpty;
+
+	public LongHashSet()
+	{
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize - keys the set should hold without growing.
+	 */
+	public LongHashSet(int expectedSize)
+	{
+		this.allocate(capacityFor(expectedSize));
+	}
+
+	/**
+	 * @return true if the key was not already present.
+	 */
+	public boolean add(long key)
+	{
+		if (key == EMPTY)
+		{
+			if (this.containsEmpty)
+				return false;
+			this.containsEmpty = true;
+			this.size++;
+			return true;
+		}
+		int slot = this.slot(key);
+		while (this.keys[slot] != EMPTY)
+		{
+			if (this.keys[slot] == key)
+				return false;
+			slot = (slot + 1) & this.mask;
+		}
+		this.keys[slot] = key;
+		if (++this.size > (this.keys.length >>> 1))
+			this.rehash(this.keys.length << 1);
+		return true;
+	}
+
+	public boolean contains(long key)
+	{
+		if (key == EMPTY)
+			return this.containsEmpty;
+		int slot = this.slot(key);
+		while (this.keys[slot] != EMPTY)
+		{
+			if (this.keys[slot] == key)
+				return true;
+			slot = (slot + 1) & this.mask;
+		}
+		return false;
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(this.keys, EMPTY);
+		this.containsEmpty = false;
+		this.size = 0;
+	}
+
+	/**
+	 * @return the keys, in no particular order.
+	 */
+	public long[] toArray()
+	{
+		long[] result = new long[this.size];
+		int i = 0;
+		if (this.containsEmpty)
+			result[i++] = EMPTY;
+		for (long key : this.keys)
+		{
+			if (key != EMPTY)
+				result[i++] = key;
+		}
+		return result;
+	}
+
+	private int slot(long key)
+	{
+		// the MurmurHash3 mixer, so sequential IDs spread over the table
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key & this.mask;
+	}
+
+	private void rehash(int capacity)
+	{
+		long[] old = this.keys;
+		this.allocate(capacity);
+		for (long key : old)
+		{
+			if (key != EMPTY)
+			{
+				int slot = this.slot(key);
+				while (this.keys[slot] != EMPTY)
+					slot = (slot + 1) & this.mask;
+				this.keys[slot] = key;
+			}
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		this.keys = new long[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * @return a power of two at least twice the expected size.
+	 */
+	private static int capacityFor(int expectedSize)
+	{
+		int capacity = 16;
+		while (capacity < 2L * expectedSize && capacity < (1 << 30))
+			capacity <<= 1;
+		return capacity;
+	}
+
+}
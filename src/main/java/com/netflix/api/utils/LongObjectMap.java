@@ -0,0 +1,220 @@
+package com.netflix.api.utils;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive longs, such as numeric title IDs, to objects. <br />
+ * Keys and values sit in two parallel open addressed arrays, so there is no
+ * boxed key and no entry object per mapping.  Maps that change wholesale
+ * are better rebuilt than emptied one mapping at a time.  Not thread safe for
+ * writes, but a map that is no longer written may be read from any number
+ * of threads once safely published.
+ */
+public class LongObjectMap<V>
+{
+	/**
+	 * Marks an empty slot; the key itself is tracked separately.
+	 */
+	private static final long EMPTY = 0;
+
+	private long[] keys;
+
+	private Object[] values;
+
+	private int mask;
+
+	private int size;
+
+	private boolean containsEmpty;
+
+	private Object emptyValue;
+
+	public LongObjectMap()
+	{
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize - mappings the map should hold without growing.
+	 */
+	public LongObjectMap(int expectedSize)
+	{
+		int capacity = 16;
+		while (capacity < 2L * expectedSize && capacity < (1 << 30))
+			capacity <<= 1;
+		this.allocate(capacity);
+	}
+
+	/**
+	 * @param key
+	 * @param value - not null.
+	 * @return the value previously mapped to the key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value)
+	{
+		if (value == null)
+			throw new IllegalArgumentException("Null values are not supported");
+		if (key == EMPTY)
+		{
+			V previous = (V) this.emptyValue;
+			this.emptyValue = value;
+			if (!this.containsEmpty)
+			{
+				this.containsEmpty = true;
+				this.size++;
+			}
+			return previous;
+		}
+		int slot = this.slot(key);
+		while (this.keys[slot] != EMPTY)
+		{
+			if (this.keys[slot] == key)
+			{
+				V previous = (V) this.values[slot];
+				this.values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		this.keys[slot] = key;
+		this.values[slot] = value;
+		if (++this.size > (this.keys.length >>> 1))
+			this.rehash(this.keys.length << 1);
+		return null;
+	}
+
+	/**
+	 * @return the value mapped to the key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key)
+	{
+		if (key == EMPTY)
+			return (V) this.emptyValue;
+		int slot = this.slot(key);
+		while (this.keys[slot] != EMPTY)
+		{
+			if (this.keys[slot] == key)
+				return (V) this.values[slot];
+			slot = (slot + 1) & this.mask;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the value that was mapped to the key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key)
+	{
+		if (key == EMPTY)
+		{
+			V previous = (V) this.emptyValue;
+			if (this.containsEmpty)
+			{
+				this.containsEmpty = false;
+				this.emptyValue = null;
+				this.size--;
+			}
+			return previous;
+		}
+		int slot = this.slot(key);
+		while (this.keys[slot] != key)
+		{
+			if (this.keys[slot] == EMPTY)
+				return null;
+			slot = (slot + 1) & this.mask;
+		}
+		V previous = (V) this.values[slot];
+		// shift back the mappings after it that probed past it, so no lookup stops short
+		int gap = slot;
+		int next = (gap + 1) & this.mask;
+		while (this.keys[next] != EMPTY)
+		{
+			int home = this.slot(this.keys[next]);
+			if (((next - home) & this.mask) >= ((next - gap) & this.mask))
+			{
+				this.keys[gap] = this.keys[next];
+				this.values[gap] = this.values[next];
+				gap = next;
+			}
+			next = (next + 1) & this.mask;
+		}
+		this.keys[gap] = EMPTY;
+		this.values[gap] = null;
+		this.size--;
+		return previous;
+	}
+
+	public boolean containsKey(long key)
+	{
+		return this.get(key) != null;
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * @return the keys, in no particular order.
+	 */
+	public long[] keys()
+	{
+		long[] result = new long[this.size];
+		int i = 0;
+		if (this.containsEmpty)
+			result[i++] = EMPTY;
+		for (long key : this.keys)
+		{
+			if (key != EMPTY)
+				result[i++] = key;
+		}
+		return result;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(this.keys, EMPTY);
+		Arrays.fill(this.values, null);
+		this.containsEmpty = false;
+		this.emptyValue = null;
+		this.size = 0;
+	}
+
+	private int slot(long key)
+	{
+		// the MurmurHash3 mixer, so sequential IDs spread over the table
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key & this.mask;
+	}
+
+	private void rehash(int capacity)
+	{
+		long[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		this.allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldKeys[i] != EMPTY)
+			{
+				int slot = this.slot(oldKeys[i]);
+				while (this.keys[slot] != EMPTY)
+					slot = (slot + 1) & this.mask;
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+	}
+
+}
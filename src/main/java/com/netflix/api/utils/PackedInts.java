@@ -0,0 +1,119 @@
+package com.netflix.api.utils;
+
+/**
+ * A fixed length array of non-negative ints, each stored in only as many
+ * bits as the largest of them needs, packed end to end in a long[]. <br />
+ * Dictionary codes, offsets and small counts rarely need more than a few
+ * bits, so a column of a million of them fits in a fraction of an int[].
+ * Not thread safe for writes, but an array that is no longer written may
+ * be read from any number of threads once safely published.
+ */
+public class PackedInts
+{
+	private final long[] blocks;
+
+	private final int size;
+
+	private final int bitsPerValue;
+
+	private final long mask;
+
+	/**
+	 * @param size - values the array holds, initially all 0.
+	 * @param bitsPerValue - from 0, when every value is 0, to 31.
+	 */
+	public PackedInts(int size, int bitsPerValue)
+	{
+		if (bitsPerValue < 0 || bitsPerValue > 31)
+			throw new IllegalArgumentException("Bits per value must be from 0 to 31: " + bitsPerValue);
+		this.size = size;
+		this.bitsPerValue = bitsPerValue;
+		this.mask = (1L << bitsPerValue) - 1;
+		this.blocks = new long[(int) (((long) size * bitsPerValue + 63) >>> 6)];
+	}
+
+	/**
+	 * @param values - non-negative values.
+	 * @param size - how many of them to copy, from the start.
+	 * @return a packed copy, as narrow as the largest value allows.
+	 */
+	public static PackedInts copyOf(int[] values, int size)
+	{
+		int max = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if (values[i] < 0)
+				throw new IllegalArgumentException("Negative value at " + i + ": " + values[i]);
+			max |= values[i];
+		}
+		PackedInts packed = new PackedInts(size, bitsRequired(max));
+		for (int i = 0; i < size; i++)
+			packed.set(i, values[i]);
+		return packed;
+	}
+
+	/**
+	 * @return the bits needed to store values from 0 up to the given one.
+	 */
+	public static int bitsRequired(int max)
+	{
+		return 32 - Integer.numberOfLeadingZeros(max);
+	}
+
+	public int get(int index)
+	{
+		this.check(index);
+		if (this.bitsPerValue == 0)
+			return 0;
+		long bit = (long) index * this.bitsPerValue;
+		int block = (int) (bit >>> 6);
+		int shift = (int) (bit & 63);
+		long value = this.blocks[block] >>> shift;
+		if (shift + this.bitsPerValue > 64)
+			value |= this.blocks[block + 1] << (64 - shift);
+		return (int) (value & this.mask);
+	}
+
+	public void set(int index, int value)
+	{
+		this.check(index);
+		if (value < 0 || (value & ~this.mask) != 0)
+			throw new IllegalArgumentException(value + " does not fit in " + this.bitsPerValue + " bits");
+		if (this.bitsPerValue == 0)
+			return;
+		long bit = (long) index * this.bitsPerValue;
+		int block = (int) (bit >>> 6);
+		int shift = (int) (bit & 63);
+		this.blocks[block] = (this.blocks[block] & ~(this.mask << shift)) | ((long) value << shift);
+		if (shift + this.bitsPerValue > 64)
+		{
+			int carried = 64 - shift;
+			this.blocks[block + 1] = (this.blocks[block + 1] & ~(this.mask >>> carried)) | ((long) value >>> carried);
+		}
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public int getBitsPerValue()
+	{
+		return this.bitsPerValue;
+	}
+
+	/**
+	 * @return bytes held by the packed values, not counting object headers.
+	 */
+	public long getByteSize()
+	{
+		return this.blocks.length * 8L;
+	}
+
+	private void check(int index)
+	{
+		if (index < 0 || index >= this.size)
+			throw new IndexOutOfBoundsException(index + " of " + this.size);
+	}
+
+}
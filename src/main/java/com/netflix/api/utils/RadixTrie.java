@@ -0,0 +1,257 @@
+package com.netflix.api.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A map from strings to objects that also finds the longest key that is a
+ * prefix of a given string, such as the broadest cached search term a
+ * longer one starts with. <br />
+ * Chains of nodes with one child and no value are collapsed into a single
+ * edge labelled with the whole chain, so a trie of a few thousand short
+ * keys holds about as many nodes as keys.  Not thread safe.
+ */
+public class RadixTrie<V>
+{
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private final Node root = new Node("");
+
+	private int size;
+
+	/**
+	 * @param key
+	 * @param value - not null.
+	 * @return the value previously held for the key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(String key, V value)
+	{
+		if (value == null)
+			throw new IllegalArgumentException("Null values are not supported");
+		Node node = this.root;
+		int depth = 0;
+		while (depth < key.length())
+		{
+			int i = node.find(key.charAt(depth));
+			if (i < 0)
+			{
+				node.insert(new Node(key.substring(depth)));
+				node = node.children[node.find(key.charAt(depth))];
+				depth = key.length();
+				break;
+			}
+			Node child = node.children[i];
+			int common = common(child.label, key, depth);
+			if (common < child.label.length())
+			{
+				// split the edge where the key leaves it
+				Node split = new Node(child.label.substring(0, common));
+				child.label = child.label.substring(common);
+				split.insert(child);
+				node.children[i] = split;
+				child = split;
+			}
+			node = child;
+			depth += common;
+		}
+		V previous = (V) node.value;
+		node.value = value;
+		if (previous == null)
+			this.size++;
+		return previous;
+	}
+
+	/**
+	 * @return the value held for exactly this key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(String key)
+	{
+		Node node = this.find(key);
+		return node == null ? null : (V) node.value;
+	}
+
+	/**
+	 * @param key
+	 * @param minLength - the shortest prefix wanted, e.g. 1 to skip the empty key.
+	 * @return the value of the longest key, no shorter than <code>minLength</code>,
+	 * that the given key starts with, including the key itself; or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V getLongestPrefix(String key, int minLength)
+	{
+		Node node = this.root;
+		Object best = minLength <= 0 ? node.value : null;
+		int depth = 0;
+		while (depth < key.length())
+		{
+			int i = node.find(key.charAt(depth));
+			if (i < 0)
+				break;
+			Node child = node.children[i];
+			if (!key.startsWith(child.label, depth))
+				break;
+			node = child;
+			depth += child.label.length();
+			if (node.value != null && depth >= minLength)
+				best = node.value;
+		}
+		return (V) best;
+	}
+
+	/**
+	 * @return the value that was held for the key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(String key)
+	{
+		Node parent = null;
+		Node node = this.root;
+		int depth = 0;
+		while (depth < key.length())
+		{
+			int i = node.find(key.charAt(depth));
+			if (i < 0 || !key.startsWith(node.children[i].label, depth))
+				return null;
+			parent = node;
+			node = node.children[i];
+			depth += node.label.length();
+		}
+		V previous = (V) node.value;
+		if (previous == null)
+			return null;
+		node.value = null;
+		this.size--;
+		if (parent != null)
+		{
+			if (node.children.length == 0)
+				parent.delete(node);
+			else if (node.children.length == 1)
+				node.absorbChild();
+			if (parent != this.root && parent.value == null && parent.children.length == 1)
+				parent.absorbChild();
+		}
+		return previous;
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * @return every key, in order.
+	 */
+	public List<String> keys()
+	{
+		List<String> keys = new ArrayList<String>(this.size);
+		this.collect(this.root, new StringBuilder(), keys);
+		return keys;
+	}
+
+	private void collect(Node node, StringBuilder prefix, List<String> keys)
+	{
+		int length = prefix.length();
+		prefix.append(node.label);
+		if (node.value != null)
+			keys.add(prefix.toString());
+		for (Node child : node.children)
+			this.collect(child, prefix, keys);
+		prefix.setLength(length);
+	}
+
+	private Node find(String key)
+	{
+		Node node = this.root;
+		int depth = 0;
+		while (depth < key.length())
+		{
+			int i = node.find(key.charAt(depth));
+			if (i < 0 || !key.startsWith(node.children[i].label, depth))
+				return null;
+			node = node.children[i];
+			depth += node.label.length();
+		}
+		return node;
+	}
+
+	/**
+	 * @return how many characters the label shares with the key from the given offset.
+	 */
+	private static int common(String label, String key, int offset)
+	{
+		int n = Math.min(label.length(), key.length() - offset);
+		int i = 0;
+		while (i < n && label.charAt(i) == key.charAt(offset + i))
+			i++;
+		return i;
+	}
+
+	private static class Node
+	{
+		String label;
+
+		Object value;
+
+		/**
+		 * Sorted by the first character of their labels.
+		 */
+		Node[] children = NO_CHILDREN;
+
+		Node(String label)
+		{
+			this.label = label;
+		}
+
+		int find(char first)
+		{
+			int low = 0;
+			int high = this.children.length - 1;
+			while (low <= high)
+			{
+				int middle = (low + high) >>> 1;
+				char c = this.children[middle].label.charAt(0);
+				if (c < first)
+					low = middle + 1;
+				else if (c > first)
+					high = middle - 1;
+				else return middle;
+			}
+			return -1;
+		}
+
+		void insert(Node child)
+		{
+			int i = 0;
+			while (i < this.children.length && this.children[i].label.charAt(0) < child.label.charAt(0))
+				i++;
+			Node[] children = new Node[this.children.length + 1];
+			System.arraycopy(this.children, 0, children, 0, i);
+			children[i] = child;
+			System.arraycopy(this.children, i, children, i + 1, this.children.length - i);
+			this.children = children;
+		}
+
+		void delete(Node child)
+		{
+			int i = this.find(child.label.charAt(0));
+			Node[] children = Arrays.copyOf(this.children, this.children.length - 1);
+			System.arraycopy(this.children, i + 1, children, i, this.children.length - i - 1);
+			this.children = children;
+		}
+
+		/**
+		 * Merges the only child into this node, which holds no value.
+		 */
+		void absorbChild()
+		{
+			Node child = this.children[0];
+			this.label = this.label + child.label;
+			this.value = child.value;
+			this.children = child.children;
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.netflix.api.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out calls so that no more than a given number start per second,
+ * such as to stay within the API's per-second call limits. <br />
+ * Each caller reserves the next free slot and sleeps until it comes round,
+ * so callers are served in the order they arrive and the limit holds
+ * however many threads share it.  No bursts are allowed beyond the rate.
+ * Instances are thread safe.
+ */
+public class RateLimiter
+{
+	private final long intervalNanos;
+
+	private long nextFreeNanos = System.nanoTime();
+
+	/**
+	 * @param permitsPerSecond - calls allowed to start per second.
+	 */
+	public RateLimiter(double permitsPerSecond)
+	{
+		if (permitsPerSecond <= 0)
+			throw new IllegalArgumentException("Rate must be positive, not " + permitsPerSecond);
+		this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+	}
+
+	/**
+	 * Blocks until the caller may start its call.
+	 * @throws InterruptedException
+	 */
+	public void acquire() throws InterruptedException
+	{
+		long waitNanos;
+		synchronized (this)
+		{
+			long now = System.nanoTime();
+			// an idle limiter does not save up permits
+			if (this.nextFreeNanos < now)
+				this.nextFreeNanos = now;
+			waitNanos = this.nextFreeNanos - now;
+			this.nextFreeNanos += this.intervalNanos;
+		}
+		if (waitNanos > 0)
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+	}
+
+	public double getRate()
+	{
+		return (double) TimeUnit.SECONDS.toNanos(1) / this.intervalNanos;
+	}
+
+}
@@ -0,0 +1,521 @@
+package com.netflix.api.utils;
+
+import java.util.Arrays;
+
+/**
+ * An immutable compressed set of non-negative ints, such as the rows of a
+ * column store that hold some value. <br />
+ * Rows are split by their high 16 bits into chunks of 65536.  A chunk with
+ * few rows is a sorted char[] of their low 16 bits; a chunk with more than
+ * <code>MAX_ARRAY</code> rows is a 1024 long bitset, whichever is smaller.
+ * Sparse sets cost two bytes a row and dense ones a bit a row, and both
+ * intersect and merge a word or a char at a time.
+ */
+public class RowBitmap
+{
+	public static final RowBitmap EMPTY = new RowBitmap(new char[0], new Object[0], 0);
+
+	/**
+	 * Rows a chunk holds as an array before it becomes a bitset, where both
+	 * take 8KB.
+	 */
+	static final int MAX_ARRAY = 4096;
+
+	private static final int WORDS = 1024;
+
+	private final char[] keys;
+
+	/**
+	 * char[] or long[] per key.
+	 */
+	private final Object[] chunks;
+
+	private final int cardinality;
+
+	private RowBitmap(char[] keys, Object[] chunks, int cardinality)
+	{
+		this.keys = keys;
+		this.chunks = chunks;
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * @param rows - ascending and distinct.
+	 * @param count - how many of them to use, from the start.
+	 */
+	public static RowBitmap of(int[] rows, int count)
+	{
+		Builder builder = new Builder();
+		for (int i = 0; i < count; i++)
+			builder.add(rows[i]);
+		return builder.build();
+	}
+
+	/**
+	 * @return every row from <code>from</code> up to but not including <code>to</code>.
+	 */
+	public static RowBitmap range(int from, int to)
+	{
+		Builder builder = new Builder();
+		for (int row = from; row < to; row++)
+			builder.add(row);
+		return builder.build();
+	}
+
+	public int getCardinality()
+	{
+		return this.cardinality;
+	}
+
+	public boolean isEmpty()
+	{
+		return this.cardinality == 0;
+	}
+
+	public boolean contains(int row)
+	{
+		if (row < 0)
+			return false;
+		int i = Arrays.binarySearch(this.keys, (char) (row >>> 16));
+		if (i < 0)
+			return false;
+		Object chunk = this.chunks[i];
+		if (chunk instanceof long[])
+			return (((long[]) chunk)[(row & 0xffff) >>> 6] & (1L << row)) != 0;
+		return Arrays.binarySearch((char[]) chunk, (char) row) >= 0;
+	}
+
+	/**
+	 * @return the rows in both.
+	 */
+	public RowBitmap and(RowBitmap other)
+	{
+		Builder result = new Builder();
+		int i = 0;
+		int j = 0;
+		while (i < this.keys.length && j < other.keys.length)
+		{
+			if (this.keys[i] < other.keys[j])
+				i++;
+			else if (this.keys[i] > other.keys[j])
+				j++;
+			else
+			{
+				result.append(this.keys[i], and(this.chunks[i], other.chunks[j]));
+				i++;
+				j++;
+			}
+		}
+		return result.build();
+	}
+
+	/**
+	 * @return the rows in either.
+	 */
+	public RowBitmap or(RowBitmap other)
+	{
+		Builder result = new Builder();
+		int i = 0;
+		int j = 0;
+		while (i < this.keys.length || j < other.keys.length)
+		{
+			if (j == other.keys.length || (i < this.keys.length && this.keys[i] < other.keys[j]))
+			{
+				result.append(this.keys[i], this.chunks[i]);
+				i++;
+			}
+			else if (i == this.keys.length || this.keys[i] > other.keys[j])
+			{
+				result.append(other.keys[j], other.chunks[j]);
+				j++;
+			}
+			else
+			{
+				result.append(this.keys[i], or(this.chunks[i], other.chunks[j]));
+				i++;
+				j++;
+			}
+		}
+		return result.build();
+	}
+
+	/**
+	 * Merges any number of bitmaps in one pass, rather than one
+	 * <code>or</code> at a time, e.g. for a range of values.
+	 * @return the rows in any of them.
+	 */
+	public static RowBitmap union(RowBitmap... bitmaps)
+	{
+		if (bitmaps.length == 1)
+			return bitmaps[0];
+		int maxKey = -1;
+		for (RowBitmap bitmap : bitmaps)
+		{
+			if (bitmap.keys.length > 0)
+				maxKey = Math.max(maxKey, bitmap.keys[bitmap.keys.length - 1]);
+		}
+		// an upper bound of each chunk's rows, to pick its form up front
+		int[] counts = new int[maxKey + 1];
+		for (RowBitmap bitmap : bitmaps)
+		{
+			for (int i = 0; i < bitmap.keys.length; i++)
+				counts[bitmap.keys[i]] += cardinality(bitmap.chunks[i]);
+		}
+		Object[] merged = new Object[maxKey + 1];
+		int[] sizes = new int[maxKey + 1];
+		for (RowBitmap bitmap : bitmaps)
+		{
+			for (int i = 0; i < bitmap.keys.length; i++)
+			{
+				int key = bitmap.keys[i];
+				Object chunk = bitmap.chunks[i];
+				if (counts[key] <= MAX_ARRAY)
+				{
+					// sorted once every chunk is in
+					if (merged[key] == null)
+						merged[key] = new char[counts[key]];
+					char[] values = (char[]) chunk;
+					System.arraycopy(values, 0, merged[key], sizes[key], values.length);
+					sizes[key] += values.length;
+					continue;
+				}
+				if (merged[key] == null)
+					merged[key] = new long[WORDS];
+				long[] words = (long[]) merged[key];
+				if (chunk instanceof char[])
+				{
+					for (char value : (char[]) chunk)
+						words[value >>> 6] |= 1L << value;
+				}
+				else
+				{
+					long[] other = (long[]) chunk;
+					for (int w = 0; w < WORDS; w++)
+						words[w] |= other[w];
+				}
+			}
+		}
+		Builder result = new Builder();
+		for (int key = 0; key <= maxKey; key++)
+		{
+			if (merged[key] instanceof char[])
+			{
+				char[] values = (char[]) merged[key];
+				Arrays.sort(values);
+				int n = 0;
+				for (int i = 0; i < values.length; i++)
+				{
+					if (n == 0 || values[i] != values[n - 1])
+						values[n++] = values[i];
+				}
+				result.append((char) key, n == values.length ? values : Arrays.copyOf(values, n));
+			}
+			else if (merged[key] != null)
+				result.append((char) key, merged[key]);
+		}
+		return result.build();
+	}
+
+	/**
+	 * @return the rows in this one but not the other.
+	 */
+	public RowBitmap andNot(RowBitmap other)
+	{
+		Builder result = new Builder();
+		int j = 0;
+		for (int i = 0; i < this.keys.length; i++)
+		{
+			while (j < other.keys.length && other.keys[j] < this.keys[i])
+				j++;
+			if (j < other.keys.length && other.keys[j] == this.keys[i])
+				result.append(this.keys[i], andNot(this.chunks[i], other.chunks[j]));
+			else result.append(this.keys[i], this.chunks[i]);
+		}
+		return result.build();
+	}
+
+	/**
+	 * @return the rows, ascending.
+	 */
+	public int[] toArray()
+	{
+		int[] rows = new int[this.cardinality];
+		int n = 0;
+		for (int i = 0; i < this.keys.length; i++)
+		{
+			int high = this.keys[i] << 16;
+			Object chunk = this.chunks[i];
+			if (chunk instanceof char[])
+			{
+				for (char low : (char[]) chunk)
+					rows[n++] = high | low;
+			}
+			else
+			{
+				long[] words = (long[]) chunk;
+				for (int w = 0; w < WORDS; w++)
+				{
+					long word = words[w];
+					while (word != 0)
+					{
+						rows[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+						word &= word - 1;
+					}
+				}
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * @return bytes held by the chunks, not counting object headers.
+	 */
+	public long getByteSize()
+	{
+		long bytes = this.keys.length * 2L;
+		for (Object chunk : this.chunks)
+			bytes += chunk instanceof long[] ? WORDS * 8 : ((char[]) chunk).length * 2;
+		return bytes;
+	}
+
+	public String toString()
+	{
+		return "RowBitmap[" + this.cardinality + " rows in " + this.keys.length + " chunks]";
+	}
+
+	private static Object and(Object a, Object b)
+	{
+		if (a instanceof char[] && b instanceof char[])
+		{
+			char[] x = (char[]) a;
+			char[] y = (char[]) b;
+			char[] result = new char[Math.min(x.length, y.length)];
+			int n = 0;
+			int i = 0;
+			int j = 0;
+			while (i < x.length && j < y.length)
+			{
+				if (x[i] < y[j])
+					i++;
+				else if (x[i] > y[j])
+					j++;
+				else
+				{
+					result[n++] = x[i];
+					i++;
+					j++;
+				}
+			}
+			return Arrays.copyOf(result, n);
+		}
+		if (a instanceof char[] || b instanceof char[])
+		{
+			char[] values = (char[]) (a instanceof char[] ? a : b);
+			long[] words = (long[]) (a instanceof char[] ? b : a);
+			char[] result = new char[values.length];
+			int n = 0;
+			for (char value : values)
+			{
+				if ((words[value >>> 6] & (1L << value)) != 0)
+					result[n++] = value;
+			}
+			return Arrays.copyOf(result, n);
+		}
+		long[] x = (long[]) a;
+		long[] y = (long[]) b;
+		long[] result = new long[WORDS];
+		for (int w = 0; w < WORDS; w++)
+			result[w] = x[w] & y[w];
+		return result;
+	}
+
+	private static Object or(Object a, Object b)
+	{
+		if (a instanceof char[] && b instanceof char[] && ((char[]) a).length + ((char[]) b).length <= MAX_ARRAY)
+		{
+			char[] x = (char[]) a;
+			char[] y = (char[]) b;
+			char[] result = new char[x.length + y.length];
+			int n = 0;
+			int i = 0;
+			int j = 0;
+			while (i < x.length || j < y.length)
+			{
+				if (j == y.length || (i < x.length && x[i] < y[j]))
+					result[n++] = x[i++];
+				else if (i == x.length || x[i] > y[j])
+					result[n++] = y[j++];
+				else
+				{
+					result[n++] = x[i++];
+					j++;
+				}
+			}
+			return Arrays.copyOf(result, n);
+		}
+		long[] result = words(a);
+		if (b instanceof char[])
+		{
+			for (char value : (char[]) b)
+				result[value >>> 6] |= 1L << value;
+		}
+		else
+		{
+			long[] y = (long[]) b;
+			for (int w = 0; w < WORDS; w++)
+				result[w] |= y[w];
+		}
+		return result;
+	}
+
+	private static Object andNot(Object a, Object b)
+	{
+		if (a instanceof char[])
+		{
+			char[] values = (char[]) a;
+			char[] result = new char[values.length];
+			int n = 0;
+			for (char value : values)
+			{
+				boolean excluded = b instanceof char[] ? Arrays.binarySearch((char[]) b, value) >= 0
+					: (((long[]) b)[value >>> 6] & (1L << value)) != 0;
+				if (!excluded)
+					result[n++] = value;
+			}
+			return Arrays.copyOf(result, n);
+		}
+		long[] result = ((long[]) a).clone();
+		if (b instanceof char[])
+		{
+			for (char value : (char[]) b)
+				result[value >>> 6] &= ~(1L << value);
+		}
+		else
+		{
+			long[] y = (long[]) b;
+			for (int w = 0; w < WORDS; w++)
+				result[w] &= ~y[w];
+		}
+		return result;
+	}
+
+	/**
+	 * @return a new bitset copy of the chunk.
+	 */
+	private static long[] words(Object chunk)
+	{
+		if (chunk instanceof long[])
+			return ((long[]) chunk).clone();
+		long[] words = new long[WORDS];
+		for (char value : (char[]) chunk)
+			words[value >>> 6] |= 1L << value;
+		return words;
+	}
+
+	private static int cardinality(Object chunk)
+	{
+		if (chunk instanceof char[])
+			return ((char[]) chunk).length;
+		int count = 0;
+		for (long word : (long[]) chunk)
+			count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * Builds a bitmap from rows added in ascending order.
+	 */
+	public static class Builder
+	{
+		private char[] keys = new char[4];
+
+		private Object[] chunks = new Object[4];
+
+		private int size;
+
+		private int cardinality;
+
+		/**
+		 * Rows of the last chunk, not yet stored.
+		 */
+		private char[] pending = new char[16];
+
+		private int pendingCount;
+
+		private int pendingKey = -1;
+
+		private int last = -1;
+
+		/**
+		 * @param row - greater than any added before.
+		 */
+		public Builder add(int row)
+		{
+			if (row <= this.last)
+				throw new IllegalArgumentException("Rows must be added in ascending order: " + row + " after " + this.last);
+			this.last = row;
+			int key = row >>> 16;
+			if (key != this.pendingKey)
+			{
+				this.flush();
+				this.pendingKey = key;
+			}
+			if (this.pendingCount == this.pending.length)
+				this.pending = Arrays.copyOf(this.pending, this.pendingCount * 2);
+			this.pending[this.pendingCount++] = (char) row;
+			return this;
+		}
+
+		public RowBitmap build()
+		{
+			this.flush();
+			return new RowBitmap(Arrays.copyOf(this.keys, this.size), Arrays.copyOf(this.chunks, this.size), this.cardinality);
+		}
+
+		private void flush()
+		{
+			if (this.pendingCount == 0)
+				return;
+			this.append((char) this.pendingKey, Arrays.copyOf(this.pending, this.pendingCount));
+			this.pendingCount = 0;
+		}
+
+		/**
+		 * Stores a chunk in its smaller form, leaving out empty ones.
+		 */
+		void append(char key, Object chunk)
+		{
+			int count = cardinality(chunk);
+			if (count == 0)
+				return;
+			if (chunk instanceof char[] && count > MAX_ARRAY)
+				chunk = words(chunk);
+			else if (chunk instanceof long[] && count <= MAX_ARRAY)
+			{
+				char[] values = new char[count];
+				int n = 0;
+				long[] words = (long[]) chunk;
+				for (int w = 0; w < WORDS; w++)
+				{
+					long word = words[w];
+					while (word != 0)
+					{
+						values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+				chunk = values;
+			}
+			if (this.size == this.keys.length)
+			{
+				this.keys = Arrays.copyOf(this.keys, this.size * 2);
+				this.chunks = Arrays.copyOf(this.chunks, this.size * 2);
+			}
+			this.keys[this.size] = key;
+			this.chunks[this.size] = chunk;
+			this.size++;
+			this.cardinality += count;
+		}
+	}
+
+}
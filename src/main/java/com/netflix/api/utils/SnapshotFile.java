@@ -0,0 +1,317 @@
+package com.netflix.api.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A file of named binary sections, such as a saved catalog or cached
+ * responses, written in one go and read back by memory mapping it, so a
+ * restarted node can use the data where it lies instead of rebuilding it. <br />
+ * The header holds a magic number, the version of this layout and, for
+ * every section, its name, the version of its content, where it lies and a
+ * CRC32 of it; the header has a CRC32 of its own.  A reader asks for a
+ * section by name and content version, and gets nothing if the file was
+ * written by a version that lays it out differently.  Opening a file
+ * checks every checksum, which reads it once from end to end and so also
+ * brings it into the page cache. <br />
+ * Files are written beside their destination and renamed over it, so a
+ * reader never maps a half written file.  Sections are limited to what one
+ * mapping can hold, 2GB in all.  The buffers returned are read only and
+ * may be read from any number of threads with absolute gets.
+ */
+public class SnapshotFile
+{
+	/**
+	 * "NFJS".
+	 */
+	static final int MAGIC = 0x4e464a53;
+
+	/**
+	 * The version of the header and section layout.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	private final File file;
+
+	private final long createdMillis;
+
+	private final Map<String, Section> sections;
+
+	private final ByteBuffer mapping;
+
+	private SnapshotFile(File file, long createdMillis, Map<String, Section> sections, ByteBuffer mapping)
+	{
+		this.file = file;
+		this.createdMillis = createdMillis;
+		this.sections = sections;
+		this.mapping = mapping;
+	}
+
+	/**
+	 * Maps a file and checks it.
+	 * @param file
+	 * @return the file, with its sections ready to read.
+	 * @throws IOException - if the file cannot be read, is not a snapshot
+	 * file of this format version, or fails a checksum.
+	 */
+	public static SnapshotFile open(File file) throws IOException
+	{
+		ByteBuffer mapping;
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = in.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException(file + " is too large to map: " + channel.size() + " bytes");
+			mapping = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			// mappings stay valid once the file is closed
+			in.close();
+		}
+
+		try
+		{
+			if (mapping.getInt(0) != MAGIC)
+				throw new IOException(file + " is not a snapshot file");
+			if (mapping.getInt(4) != FORMAT_VERSION)
+				throw new IOException(file + " has format version " + mapping.getInt(4) + ", not " + FORMAT_VERSION);
+			long createdMillis = mapping.getLong(8);
+			int count = mapping.getInt(16);
+			int position = 20;
+			Map<String, Section> sections = new LinkedHashMap<String, Section>();
+			for (int i = 0; i < count; i++)
+			{
+				byte[] name = new byte[mapping.getShort(position) & 0xffff];
+				ByteBuffer at = mapping.duplicate();
+				at.position(position + 2);
+				at.get(name);
+				position += 2 + name.length;
+				Section section = new Section(new String(name, "UTF-8"), mapping.getInt(position),
+					mapping.getLong(position + 4), mapping.getLong(position + 12), mapping.getInt(position + 20));
+				position += 24;
+				sections.put(section.name, section);
+			}
+			if (checksum(mapping, 0, position) != mapping.getInt(position))
+				throw new IOException(file + " has a corrupt header");
+			for (Section section : sections.values())
+			{
+				if (section.offset < position || section.offset + section.length > mapping.capacity())
+					throw new IOException(file + " is truncated in section " + section.name);
+				if (checksum(mapping, (int) section.offset, (int) section.length) != section.checksum)
+					throw new IOException(file + " has a corrupt section " + section.name);
+			}
+			return new SnapshotFile(file, createdMillis, sections, mapping);
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw new IOException(file + " is truncated");
+		}
+	}
+
+	/**
+	 * @param name
+	 * @param version - the content version the caller reads.
+	 * @return a read only, big endian view of the section, or null if the
+	 * file has no such section or holds another version of it.
+	 */
+	public ByteBuffer getSection(String name, int version)
+	{
+		Section section = this.sections.get(name);
+		if (section == null || section.version != version)
+			return null;
+		ByteBuffer view = this.mapping.duplicate();
+		view.position((int) section.offset);
+		view.limit((int) (section.offset + section.length));
+		return view.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return the names of the sections, in the order they were written.
+	 */
+	public List<String> getSectionNames()
+	{
+		return Collections.unmodifiableList(new ArrayList<String>(this.sections.keySet()));
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * @return when the file was written.
+	 */
+	public long getCreatedMillis()
+	{
+		return createdMillis;
+	}
+
+	public String toString()
+	{
+		return this.file + " " + this.sections.keySet();
+	}
+
+	/**
+	 * @return the CRC32 of a range of the buffer.
+	 */
+	private static int checksum(ByteBuffer buffer, int offset, int length)
+	{
+		CRC32 crc = new CRC32();
+		ByteBuffer range = buffer.duplicate();
+		range.position(offset);
+		byte[] chunk = new byte[Math.min(length, 65536)];
+		for (int remaining = length; remaining > 0; remaining -= chunk.length)
+		{
+			int n = Math.min(remaining, chunk.length);
+			range.get(chunk, 0, n);
+			crc.update(chunk, 0, n);
+			if (n < chunk.length)
+				break;
+		}
+		return (int) crc.getValue();
+	}
+
+	private static int checksum(byte[] bytes)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return (int) crc.getValue();
+	}
+
+	private static class Section
+	{
+		final String name;
+
+		final int version;
+
+		final long offset;
+
+		final long length;
+
+		final int checksum;
+
+		Section(String name, int version, long offset, long length, int checksum)
+		{
+			this.name = name;
+			this.version = version;
+			this.offset = offset;
+			this.length = length;
+			this.checksum = checksum;
+		}
+	}
+
+	/**
+	 * Collects sections, then writes them as a snapshot file.
+	 */
+	public static class Writer
+	{
+		private final Map<String, byte[]> contents = new LinkedHashMap<String, byte[]>();
+
+		private final Map<String, Integer> versions = new LinkedHashMap<String, Integer>();
+
+		/**
+		 * @param name - unique within the file.
+		 * @param version - the version of the content's layout.
+		 * @param content
+		 * @return this writer.
+		 */
+		public Writer addSection(String name, int version, byte[] content)
+		{
+			if (this.contents.containsKey(name))
+				throw new IllegalArgumentException("Duplicate section " + name);
+			this.contents.put(name, content);
+			this.versions.put(name, version);
+			return this;
+		}
+
+		/**
+		 * Writes the sections beside the file, then renames them over it.
+		 * @param file
+		 * @throws IOException
+		 */
+		public void write(File file) throws IOException
+		{
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(header);
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(this.contents.size());
+			int headerLength = 24;
+			for (String name : this.contents.keySet())
+				headerLength += 2 + name.getBytes("UTF-8").length + 24;
+			// sections start 8 byte aligned, so their longs are too
+			long offset = align(headerLength);
+			List<Long> offsets = new ArrayList<Long>();
+			for (Map.Entry<String, byte[]> section : this.contents.entrySet())
+			{
+				byte[] name = section.getKey().getBytes("UTF-8");
+				out.writeShort(name.length);
+				out.write(name);
+				out.writeInt(this.versions.get(section.getKey()));
+				out.writeLong(offset);
+				out.writeLong(section.getValue().length);
+				out.writeInt(checksum(section.getValue()));
+				offsets.add(offset);
+				offset = align(offset + section.getValue().length);
+			}
+			out.flush();
+			out.writeInt(checksum(header.toByteArray()));
+
+			File temporary = new File(file.getPath() + ".tmp");
+			FileOutputStream stream = new FileOutputStream(temporary);
+			try
+			{
+				DataOutputStream data = new DataOutputStream(new BufferedOutputStream(stream, 65536));
+				header.writeTo(data);
+				long written = header.size();
+				int i = 0;
+				for (byte[] content : this.contents.values())
+				{
+					for (long start = offsets.get(i++); written < start; written++)
+						data.write(0);
+					data.write(content);
+					written += content.length;
+				}
+				data.flush();
+				stream.getFD().sync();
+			}
+			finally
+			{
+				stream.close();
+			}
+			if (!temporary.renameTo(file))
+			{
+				// some platforms will not rename over an existing file
+				file.delete();
+				if (!temporary.renameTo(file))
+				{
+					temporary.delete();
+					throw new IOException("Could not rename " + temporary + " to " + file);
+				}
+			}
+		}
+
+		private static long align(long offset)
+		{
+			return (offset + 7) & ~7L;
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.netflix.api.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns each distinct string a small int code, in the order they are
+ * first seen, so a column can hold codes instead of references and every
+ * repeat of a value shares one String. <br />
+ * Code 0 always stands for null.  Not thread safe while strings are being
+ * added; once complete it may be read from any number of threads.
+ */
+public class StringDictionary
+{
+	/**
+	 * The code of null.
+	 */
+	public static final int NULL = 0;
+
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+
+	private final List<String> values = new ArrayList<String>();
+
+	public StringDictionary()
+	{
+		this.values.add(null);
+	}
+
+	/**
+	 * @param value - may be null.
+	 * @return the value's code, assigning the next one if it is new.
+	 */
+	public int encode(String value)
+	{
+		if (value == null)
+			return NULL;
+		Integer code = this.codes.get(value);
+		if (code == null)
+		{
+			code = this.values.size();
+			this.codes.put(value, code);
+			this.values.add(value);
+		}
+		return code;
+	}
+
+	/**
+	 * @param value - may be null.
+	 * @return the value's code, or -1 if it has none.
+	 */
+	public int code(String value)
+	{
+		if (value == null)
+			return NULL;
+		Integer code = this.codes.get(value);
+		return code == null ? -1 : code;
+	}
+
+	/**
+	 * @return the shared copy of the value with the given code.
+	 */
+	public String decode(int code)
+	{
+		return this.values.get(code);
+	}
+
+	/**
+	 * @return codes assigned so far, counting null's.
+	 */
+	public int size()
+	{
+		return this.values.size();
+	}
+
+	/**
+	 * @return the bits a code needs.
+	 */
+	public int getBitsPerCode()
+	{
+		return PackedInts.bitsRequired(this.values.size() - 1);
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.netflix.api.catalog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.netflix.api.client.paging.ItemConsumer;
+import com.netflix.api.decoder.IndexParser;
+import com.netflix.api.model.CatalogTitle;
+
+/**
+ * Compares the heap a catalog takes held two ways: as the
+ * <code>CatalogTitle</code>s the decoder returns, each with its own copy of
+ * every string; and as a <code>CatalogSnapshot</code>, which holds them in
+ * <code>TitleColumns</code>.  Each is measured as the used heap, after
+ * collecting, that holding it takes. <br />
+ * Run with a heap large enough for both, e.g.
+ * <code>java -Xmx2g ... com.netflix.api.catalog.CatalogMemoryBenchmark [titles]</code>
+ */
+public class CatalogMemoryBenchmark
+{
+	public static void main(String[] args) throws Exception
+	{
+		int titles = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		File index = File.createTempFile("index", ".xml");
+		index.deleteOnExit();
+		TestCatalog.writeIndex(index, titles, 42);
+		System.out.println("Index: " + titles + " titles, " + index.length() + " bytes");
+
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try
+		{
+			long before = usedHeap();
+			final List<CatalogTitle> decoded = new ArrayList<CatalogTitle>(titles);
+			new IndexParser(executor, 2).parse(index, new ItemConsumer<CatalogTitle>()
+			{
+				public void accept(CatalogTitle title)
+				{
+					decoded.add(title);
+				}
+			});
+			long objects = usedHeap() - before;
+			report("Decoded titles", objects, titles, objects);
+			decoded.clear();
+
+			CatalogReplica replica = new CatalogReplica(executor, 2);
+			replica.refresh(index);
+			if (replica.getSnapshot().size() != titles)
+				throw new IllegalStateException("The snapshot holds " + replica.getSnapshot().size() + " titles");
+			// measured as what letting go of it frees, so the refresh's garbage is not counted
+			long held = usedHeap();
+			replica = null;
+			long columnar = held - usedHeap();
+			report("Snapshot", columnar, titles, objects);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private static void report(String name, long bytes, int titles, long baseline)
+	{
+		System.out.println(String.format("%-16s %,14d bytes  %,8.1f bytes/title  %5.1f%%", name, bytes,
+			(double) bytes / titles, 100.0 * bytes / baseline));
+	}
+
+	private static long usedHeap() throws InterruptedException
+	{
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		// collect until the heap stops shrinking
+		for (int i = 0; i < 10; i++)
+		{
+			System.gc();
+			Thread.sleep(50);
+			long now = runtime.totalMemory() - runtime.freeMemory();
+			if (now >= used)
+				break;
+			used = now;
+		}
+		return used;
+	}
+
+}
@@ -0,0 +1,152 @@
+package com.netflix.api.catalog;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.api.model.CatalogTitle;
+
+public class CatalogReplicaTest
+{
+	private static final String MOVIES = "http://api.netflix.com/catalog/titles/movies/";
+
+	private ExecutorService executor;
+
+	private File index;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		executor = Executors.newFixedThreadPool(2);
+		index = File.createTempFile("index", ".xml");
+	}
+
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+		index.delete();
+	}
+
+	@Test
+	public void refreshRebuildsOnlyChangedTitles() throws Exception
+	{
+		CatalogReplica replica = new CatalogReplica(executor, 2);
+		writeIndex(item(1, "Kill Bill", 2003), item(2, "Jackie Brown", 1997), item(3, "Death Proof", 2007));
+		CatalogReplica.Report report = replica.refresh(index);
+		assertEquals(3, report.getAdded());
+		CatalogSnapshot first = replica.getSnapshot();
+		CatalogTitle unchanged = replica.getTitle(MOVIES + "1");
+		assertEquals("Kill Bill", unchanged.getRegularTitle());
+		assertEquals(1997, replica.getTitle(2).getReleaseYear());
+
+		writeIndex(item(1, "Kill Bill", 2003), item(2, "Jackie Brown", 1998), item(4, "Grindhouse", 2007));
+		report = replica.refresh(index);
+		assertEquals(1, report.getUnchanged());
+		assertEquals(1, report.getChanged());
+		assertEquals(1, report.getAdded());
+		assertEquals(1, report.getRemoved());
+		assertEquals(3, report.getTitles());
+
+		assertNotSame("Each lookup should decode a copy", unchanged, replica.getTitle(MOVIES + "1"));
+		assertEquals(TestCatalog.contentHash(unchanged), TestCatalog.contentHash(replica.getTitle(MOVIES + "1")));
+		assertEquals(1998, replica.getTitle(MOVIES + "2").getReleaseYear());
+		assertNull(replica.getTitle(MOVIES + "3"));
+		assertEquals("Grindhouse", replica.getTitle(4).getRegularTitle());
+		assertSame("Genres should be shared between titles", replica.getTitle(1).getGenres().get(0),
+			replica.getTitle(4).getGenres().get(0));
+
+		assertEquals("A snapshot taken earlier should not change", 1997, first.getTitle(2).getReleaseYear());
+		assertNull("Other resources are not titles", replica.getTitle(MOVIES + "1/cast"));
+	}
+
+	@Test
+	public void startsFromASavedSnapshot() throws Exception
+	{
+		CatalogReplica replica = new CatalogReplica(executor, 2);
+		writeIndex(item(1, "Kill Bill", 2003), item(2, "Jackie Brown", 1997), item(3, "Am\u00e9lie", 2001));
+		replica.refresh(index);
+		File saved = File.createTempFile("catalog", ".snapshot");
+		try
+		{
+			replica.save(saved);
+
+			CatalogReplica restarted = new CatalogReplica(executor, 2);
+			final List<Long> changed = new ArrayList<Long>();
+			restarted.addChangeListener(new CatalogReplica.ChangeListener()
+			{
+				public void titleChanged(long id, CatalogTitle previous, CatalogTitle current)
+				{
+					changed.add(id);
+				}
+			});
+			CatalogSnapshot loaded = restarted.load(saved);
+			assertEquals(3, loaded.size());
+			assertEquals(replica.getSnapshot().getCreatedMillis(), loaded.getCreatedMillis());
+			assertEquals(3, changed.size());
+			for (long id = 1; id <= 3; id++)
+				assertEquals(TestCatalog.contentHash(replica.getTitle(id)), TestCatalog.contentHash(restarted.getTitle(id)));
+			assertEquals("Am\u00e9lie", restarted.getTitle(MOVIES + "3").getRegularTitle());
+			assertEquals("Action", restarted.getTitle(1).getGenres().get(0));
+			assertNull(restarted.getTitle(4));
+
+			changed.clear();
+			writeIndex(item(1, "Kill Bill", 2003), item(2, "Jackie Brown", 1998), item(3, "Am\u00e9lie", 2001));
+			CatalogReplica.Report report = restarted.refresh(index);
+			assertEquals(2, report.getUnchanged());
+			assertEquals(1, report.getChanged());
+			assertEquals("Only titles changed since the save are reported", 1, changed.size());
+			assertEquals(2L, (long) changed.get(0));
+			assertEquals(1998, restarted.getTitle(2).getReleaseYear());
+		}
+		finally
+		{
+			saved.delete();
+		}
+	}
+
+	@Test
+	public void countsDuplicateIdsOnce() throws Exception
+	{
+		CatalogReplica replica = new CatalogReplica(executor, 2);
+		writeIndex(item(1, "Kill Bill", 2003), item(1, "Kill Bill", 2003), item(2, "Jackie Brown", 1997));
+		CatalogReplica.Report report = replica.refresh(index);
+		assertEquals(2, report.getAdded());
+		assertEquals(1, report.getDuplicates());
+
+		writeIndex(item(1, "Kill Bill", 2003), item(1, "Kill Bill", 2004), item(2, "Jackie Brown", 1997),
+			item(2, "Jackie Brown", 1997));
+		report = replica.refresh(index);
+		assertEquals("The last entry for an ID wins", 2004, replica.getTitle(1).getReleaseYear());
+		assertEquals(1, report.getChanged());
+		assertEquals(1, report.getUnchanged());
+		assertEquals(0, report.getRemoved());
+		assertEquals(2, report.getDuplicates());
+	}
+
+	private void writeIndex(String... items) throws Exception
+	{
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" standalone=\"yes\"?><catalog_titles>");
+		for (String item : items)
+			xml.append(item);
+		FileUtils.writeStringToFile(index, xml.append("</catalog_titles>").toString(), "UTF-8");
+	}
+
+	private static String item(int id, String name, int year)
+	{
+		return "<title_index_item><id>" + MOVIES + id + "</id><title regular=\"" + name + "\"/>"
+			+ "<release_year>" + year + "</release_year>"
+			+ "<category scheme=\"http://api.netflix.com/categories/genres\" label=\"Action\"/>"
+			+ "</title_index_item>";
+	}
+
+}
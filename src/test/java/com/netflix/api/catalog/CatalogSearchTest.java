@@ -0,0 +1,153 @@
+package com.netflix.api.catalog;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.ResponseHandler;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Person;
+import com.netflix.api.model.ResultPage;
+
+public class CatalogSearchTest
+{
+	private static final String PEOPLE = "http://api.netflix.com/catalog/people/";
+
+	private final List<APIRequest> calls = Collections.synchronizedList(new ArrayList<APIRequest>());
+
+	/**
+	 * Finds one title and one person, whatever the term.
+	 */
+	private final NetflixAPIClient client = new NetflixAPIClient("key", "secret")
+	{
+		public <T> T execute(APIRequest request, ResponseHandler<T> handler) throws Exception
+		{
+			calls.add(request);
+			String body;
+			if (request.getUri().endsWith("/people"))
+				body = "<people><number_of_results>1</number_of_results><person><id>" + PEOPLE + "55</id>"
+					+ "<name>Uma Thurman</name></person></people>";
+			else body = "<catalog_titles><number_of_results>1</number_of_results><catalog_title><id>"
+				+ TestCatalog.MOVIES + "99</id><title regular=\"Gattaca\"/></catalog_title></catalog_titles>";
+			NetflixAPIResponse response = new NetflixAPIResponse();
+			response.setStatusCode(200);
+			return handler.handleResponse(response, new ByteArrayInputStream(body.getBytes("UTF-8")));
+		}
+	};
+
+	private ExecutorService executor;
+
+	private File index;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		executor = Executors.newFixedThreadPool(2);
+		index = File.createTempFile("index", ".xml");
+	}
+
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+		index.delete();
+	}
+
+	@Test
+	public void followsTheReplicaAndFallsBackToTheAPI() throws Exception
+	{
+		CatalogReplica replica = new CatalogReplica(executor, 2);
+		writeIndex(item(1, "Kill Bill: Vol. 1"), item(2, "Jackie Brown"));
+		replica.refresh(index);
+		CatalogSearch search = new CatalogSearch(replica);
+		assertEquals(2, search.getTitleIndex().size());
+
+		ResultPage<CatalogTitle> page = search.searchTitles(client, "bill", 10);
+		assertEquals("Kill Bill: Vol. 1", page.getItems().get(0).getRegularTitle());
+		assertEquals(0, calls.size());
+
+		writeIndex(item(1, "Kill Bill: Vol. 1"), item(2, "Jackie Brown (Special Edition)"), item(3, "Death Proof"));
+		replica.refresh(index);
+		assertEquals("Changed titles are reindexed", 1, search.searchTitles(client, "special edition", 10).getItems().size());
+		assertEquals(3, search.searchTitles(client, "\"death proof\"", 10).getItems().get(0).getNumericId());
+		assertEquals(0, calls.size());
+
+		writeIndex(item(1, "Kill Bill: Vol. 1"));
+		replica.refresh(index);
+		assertEquals(1, search.getTitleIndex().size());
+		page = search.searchTitles(client, "jackie", 10);
+		assertEquals("Removed titles are found through the API", 1, calls.size());
+		assertEquals("Gattaca", page.getItems().get(0).getRegularTitle());
+		assertEquals("jackie", calls.get(0).getCallParameters().get("term"));
+		assertEquals(3, search.getLocalSearches());
+		assertEquals(1, search.getFallbacks());
+	}
+
+	@Test
+	public void cachesThePeoplePagesOfTheAPI() throws Exception
+	{
+		CatalogSearch search = new CatalogSearch(new CatalogReplica(executor, 2));
+		ResultPage<Person> page = search.searchPeople(client, "Uma Thurman", 10);
+		assertEquals("Uma Thurman", page.getItems().get(0).getName());
+		assertEquals(1, calls.size());
+
+		page.getItems().clear();
+		page = search.searchPeople(client, "uma  THURMAN", 10);
+		assertEquals("Uma Thurman", page.getItems().get(0).getName());
+		assertEquals("The same query should be answered from the cache", 1, calls.size());
+
+		search.searchPeople(client, "uma", 10);
+		assertEquals("A person seen before is no answer to a broader query", 2, calls.size());
+		search.searchPeople(client, "uma thurman", 20);
+		assertEquals(3, calls.size());
+
+		search.removePerson(55);
+		search.searchPeople(client, "uma thurman", 10);
+		assertEquals(4, calls.size());
+		assertEquals(1, search.getLocalSearches());
+		assertEquals(4, search.getFallbacks());
+
+		calls.clear();
+		search.searchPeople(client, "Robin Williams", 10);
+		search.searchPeople(client, "robin william", 10);
+		search.searchPeople(client, "Robin William's", 10);
+		assertEquals("Queries the API matches differently each reach it", 3, calls.size());
+		assertEquals("robin william", calls.get(1).getCallParameters().get("term"));
+		search.searchPeople(client, " ROBIN williams", 10);
+		assertEquals(3, calls.size());
+		calls.clear();
+
+		search = new CatalogSearch(new CatalogReplica(executor, 2), 1, 0);
+		search.searchPeople(client, "uma thurman", 10);
+		search.searchPeople(client, "uma thurman", 10);
+		assertEquals("Expired pages are fetched again", 2, calls.size());
+	}
+
+	private void writeIndex(String... items) throws Exception
+	{
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" standalone=\"yes\"?><catalog_titles>");
+		for (String item : items)
+			xml.append(item);
+		FileUtils.writeStringToFile(index, xml.append("</catalog_titles>").toString(), "UTF-8");
+	}
+
+	private static String item(int id, String name)
+	{
+		return "<title_index_item><id>" + TestCatalog.MOVIES + id + "</id><title regular=\"" + name + "\"/></title_index_item>";
+	}
+
+}
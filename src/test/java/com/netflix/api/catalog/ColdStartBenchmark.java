@@ -0,0 +1,75 @@
+package com.netflix.api.catalog;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares the two ways a restarted node can get its catalog back: parsing
+ * the downloaded index, as a refresh does, and loading a saved snapshot.
+ * Each is timed up to the first lookups, and the load again once a sample
+ * of titles has been looked up. <br />
+ * Run as <code>java ... com.netflix.api.catalog.ColdStartBenchmark [titles]</code>;
+ * the saved file is in the page cache, as it is on a restart that does not
+ * reboot the machine.
+ */
+public class ColdStartBenchmark
+{
+	private static final int LOOKUPS = 10000;
+
+	public static void main(String[] args) throws Exception
+	{
+		int titles = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		File index = File.createTempFile("index", ".xml");
+		File saved = File.createTempFile("catalog", ".snapshot");
+		index.deleteOnExit();
+		saved.deleteOnExit();
+		TestCatalog.writeIndex(index, titles, 42);
+
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try
+		{
+			for (int round = 0; round < 3; round++)
+			{
+				long start = System.nanoTime();
+				CatalogReplica refreshed = new CatalogReplica(executor, 2);
+				refreshed.refresh(index);
+				long refresh = System.nanoTime() - start;
+				long lookups = lookUp(refreshed, titles);
+
+				refreshed.save(saved);
+				start = System.nanoTime();
+				CatalogReplica loaded = new CatalogReplica(executor, 2);
+				loaded.load(saved);
+				long load = System.nanoTime() - start;
+				long mappedLookups = lookUp(loaded, titles);
+
+				System.out.println(String.format("%,d titles: index %,d bytes refreshed in %,d ms; snapshot %,d bytes "
+					+ "loaded in %,d ms.  %,d lookups: %,d us from the heap, %,d us from the mapping", titles,
+					index.length(), refresh / 1000000, saved.length(), load / 1000000, LOOKUPS, lookups / 1000,
+					mappedLookups / 1000));
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private static long lookUp(CatalogReplica replica, int titles)
+	{
+		Random random = new Random(7);
+		long start = System.nanoTime();
+		int found = 0;
+		for (int i = 0; i < LOOKUPS; i++)
+		{
+			if (replica.getTitle(1 + random.nextInt(titles)) != null)
+				found++;
+		}
+		if (found == 0)
+			throw new IllegalStateException("No titles found");
+		return System.nanoTime() - start;
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.netflix.api.catalog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import com.netflix.api.decoder.AbstractCatalogDecoder;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Link;
+
+/**
+ * Writes index files of made up but catalog like titles: a few dozen
+ * genres, ratings and formats, box art and links under each title's own
+ * URI, and cast links to a shared pool of people.
+ */
+class TestCatalog
+{
+	static final String MOVIES = "http://api.netflix.com/catalog/titles/movies/";
+
+	static final String[] GENRES = { "Action & Adventure", "Comedy", "Drama", "Thrillers", "Horror", "Romance",
+		"Documentary", "Children & Family", "Sci-Fi & Fantasy", "Anime", "Classics", "Independent", "Music",
+		"Sports", "Faith & Spirituality", "Foreign", "Gay & Lesbian", "Television", "Westerns", "Musicals" };
+
+	static final String[] RATINGS = { "G", "PG", "PG-13", "R", "NC-17", "NR", "UR" };
+
+	static final String[] FORMATS = { "DVD", "Blu-ray", "instant", "HD" };
+
+	static final String[] RELS = { "synopsis", "cast", "directors", "format_availability", "screen_formats",
+		"languages_and_audio", "similars" };
+
+	private TestCatalog()
+	{
+		// static helpers only
+	}
+
+	/**
+	 * Writes the given number of titles, with IDs from 1, the same for the
+	 * same seed.
+	 */
+	static void writeIndex(File index, int titles, long seed) throws Exception
+	{
+		Random random = new Random(seed);
+		Writer out = new OutputStreamWriter(new FileOutputStream(index), "UTF-8");
+		try
+		{
+			out.write("<?xml version=\"1.0\" standalone=\"yes\"?><catalog_titles>");
+			StringBuilder item = new StringBuilder(4096);
+			for (int i = 1; i <= titles; i++)
+			{
+				item.setLength(0);
+				appendTitle(item, i, random);
+				out.write(item.toString());
+			}
+			out.write("</catalog_titles>");
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	private static void appendTitle(StringBuilder xml, int number, Random random)
+	{
+		String id = MOVIES + number;
+		xml.append("<title_index_item><id>").append(id).append("</id>");
+		xml.append("<title short=\"Title ").append(number).append("\" regular=\"The Title Number ").append(number).append("\"/>");
+		xml.append("<box_art small=\"http://cdn.nflximg.com/us/boxshots/tiny/").append(number)
+			.append(".jpg\" medium=\"http://cdn.nflximg.com/us/boxshots/small/").append(number)
+			.append(".jpg\" large=\"http://cdn.nflximg.com/us/boxshots/large/").append(number).append(".jpg\"/>");
+		for (String rel : RELS)
+		{
+			xml.append("<link href=\"").append(id).append('/').append(rel)
+				.append("\" rel=\"http://schemas.netflix.com/catalog/titles/").append(rel)
+				.append("\" title=\"").append(rel).append("\"/>");
+		}
+		for (int i = 0; i < 4; i++)
+		{
+			int person = random.nextInt(20000);
+			xml.append("<link href=\"http://api.netflix.com/catalog/people/").append(person)
+				.append("\" rel=\"http://schemas.netflix.com/catalog/person\" title=\"Person ").append(person).append("\"/>");
+		}
+		xml.append("<release_year>").append(1950 + random.nextInt(60)).append("</release_year>");
+		category(xml, AbstractCatalogDecoder.MPAA_RATINGS_SCHEME, RATINGS[random.nextInt(RATINGS.length)]);
+		int first = random.nextInt(GENRES.length);
+		category(xml, AbstractCatalogDecoder.GENRES_SCHEME, GENRES[first]);
+		if (random.nextBoolean())
+			category(xml, AbstractCatalogDecoder.GENRES_SCHEME, GENRES[(first + 1 + random.nextInt(GENRES.length - 1)) % GENRES.length]);
+		for (String format : FORMATS)
+		{
+			if (random.nextInt(3) > 0)
+				category(xml, AbstractCatalogDecoder.FORMATS_SCHEME, format);
+		}
+		xml.append("<runtime>").append(1200 + random.nextInt(9000)).append("</runtime>");
+		xml.append("<average_rating>").append(1 + random.nextInt(4)).append('.').append(random.nextInt(10)).append("</average_rating>");
+		xml.append("</title_index_item>");
+	}
+
+	private static void category(StringBuilder xml, String scheme, String label)
+	{
+		xml.append("<category scheme=\"").append(scheme).append("\" label=\"").append(label.replace("&", "&amp;")).append("\"/>");
+	}
+
+	/**
+	 * @return a 64 bit FNV-1a hash of every value the title holds, for
+	 * comparing decoded titles.
+	 */
+	static long contentHash(CatalogTitle title)
+	{
+		long hash = 0xcbf29ce484222325L;
+		hash = mix(hash, title.getId());
+		hash = mix(hash, title.getShortTitle());
+		hash = mix(hash, title.getRegularTitle());
+		hash = mix(hash, title.getBoxArtSmall());
+		hash = mix(hash, title.getBoxArtMedium());
+		hash = mix(hash, title.getBoxArtLarge());
+		hash = mix(hash, title.getReleaseYear());
+		hash = mix(hash, title.getRuntime());
+		hash = mix(hash, Float.floatToIntBits(title.getAverageRating()));
+		hash = mix(hash, title.getRating());
+		for (String genre : title.getGenres())
+			hash = mix(hash, genre);
+		hash = mix(hash, -1);
+		for (String format : title.getFormats())
+			hash = mix(hash, format);
+		hash = mix(hash, -1);
+		for (Link link : title.getLinks())
+		{
+			hash = mix(hash, link.getHref());
+			hash = mix(hash, link.getRel());
+			hash = mix(hash, link.getTitle());
+		}
+		return hash;
+	}
+
+	private static long mix(long hash, String value)
+	{
+		if (value == null)
+			return mix(hash, -2);
+		for (int i = 0; i < value.length(); i++)
+		{
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		// a separator, so that "ab" + "c" differs from "a" + "bc"
+		return mix(hash, value.length());
+	}
+
+	private static long mix(long hash, int value)
+	{
+		for (int shift = 0; shift < 32; shift += 8)
+		{
+			hash ^= (value >>> shift) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.netflix.api.catalog;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TextIndexTest
+{
+	@Test
+	public void analyzesNamesAndQueriesAlike()
+	{
+		assertEquals(Arrays.asList("schindler", "list"), TextAnalyzer.terms("Schindler's List"));
+		assertEquals(Arrays.asList("amelie"), TextAnalyzer.terms("Am\u00e9lie"));
+		assertEquals(Arrays.asList("run", "with", "scissor"), TextAnalyzer.terms("Running with Scissors"));
+		assertEquals(TextAnalyzer.terms("the matrix"), TextAnalyzer.terms("THE MATRIX!"));
+		assertEquals(Arrays.asList("story", "2"), TextAnalyzer.terms("Stories 2"));
+	}
+
+	@Test
+	public void ranksByRelevance()
+	{
+		TextIndex index = new TextIndex();
+		index.put(1, "Kill Bill: Vol. 1");
+		index.put(2, "Kill Bill: Vol. 2");
+		index.put(3, "Bill & Ted's Excellent Adventure");
+		index.put(4, "To Kill a Mockingbird");
+		index.put(5, "The Killing Fields");
+
+		TextIndex.Result result = index.search("kill bill", 10);
+		assertEquals(5, result.getCount());
+		assertEquals(1, result.getIds()[0]);
+		assertEquals(2, result.getIds()[1]);
+		assertTrue("Titles with both terms come first", result.getScores()[1] > result.getScores()[2]);
+
+		result = index.search("killing", 2);
+		assertEquals("Stems match, and the short title ranks first", 4, result.getCount());
+		assertEquals(2, result.getIds().length);
+		assertEquals(0, index.search("godfather", 10).getCount());
+	}
+
+	@Test
+	public void phrasesMustMatchInOrder()
+	{
+		TextIndex index = new TextIndex();
+		index.put(1, "The Man Who Knew Too Much");
+		index.put(2, "Too Much Man");
+		index.put(3, "The Man", "Too Much");
+
+		TextIndex.Result result = index.search("\"man who\"", 10);
+		assertEquals(1, result.getCount());
+		assertEquals(1, result.getIds()[0]);
+
+		result = index.search("\"too much\" man", 10);
+		assertEquals(3, result.getCount());
+		assertEquals("A phrase does not span fields", 0, index.search("\"man too\"", 10).getCount());
+		assertEquals(1, index.search("\"the man\" \"too much\" knew", 10).getIds()[0]);
+	}
+
+	@Test
+	public void updatesInPlace()
+	{
+		TextIndex index = new TextIndex();
+		for (int id = 0; id < 1000; id++)
+			index.put(id, "Title " + id);
+		index.put(7, "Pulp Fiction");
+		assertEquals(0, index.search("\"title 7\"", 10).getCount());
+		assertEquals(7, index.search("pulp", 10).getIds()[0]);
+
+		for (int id = 0; id < 1000; id += 2)
+			assertTrue(index.remove(id));
+		assertFalse(index.remove(0));
+		assertEquals(500, index.size());
+		assertEquals(499, index.search("title", 1000).getCount());
+		assertEquals(1, index.search("fiction", 10).getCount());
+		assertEquals(1, index.search("\"title 999\"", 10).getCount());
+	}
+
+	@Test
+	public void returnsTheBestOfManyMatchesInOrder()
+	{
+		TextIndex index = new TextIndex();
+		for (int id = 1; id <= 2000; id++)
+			index.put(id, id % 7 == 0 ? "Star Wars" : "Star Trek " + (id % 5 == 0 ? "" : "The Next Generation"));
+		TextIndex.Result all = index.search("star wars", 3000);
+		TextIndex.Result top = index.search("star wars", 50);
+		assertEquals(2000, top.getCount());
+		assertEquals(50, top.getIds().length);
+		for (int i = 0; i < 50; i++)
+		{
+			assertEquals(all.getIds()[i], top.getIds()[i]);
+			assertEquals(all.getScores()[i], top.getScores()[i], 0);
+		}
+		for (int i = 1; i < all.getIds().length; i++)
+		{
+			assertTrue(all.getScores()[i] <= all.getScores()[i - 1]);
+			if (all.getScores()[i] == all.getScores()[i - 1])
+				assertTrue("Ties go to the lower ID", all.getIds()[i] > all.getIds()[i - 1]);
+		}
+		assertEquals(7, top.getIds()[0]);
+		assertEquals(0, index.search("star", 0).getIds().length);
+	}
+
+}
@@ -0,0 +1,188 @@
+package com.netflix.api.catalog;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.api.client.paging.ItemConsumer;
+import com.netflix.api.decoder.IndexParser;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Link;
+
+public class TitleColumnsTest
+{
+	private ExecutorService executor;
+
+	private File index;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		executor = Executors.newFixedThreadPool(2);
+		index = File.createTempFile("index", ".xml");
+	}
+
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+		index.delete();
+	}
+
+	@Test
+	public void storesEveryValueOfEveryTitle() throws Exception
+	{
+		TestCatalog.writeIndex(index, 500, 42);
+		final Map<Long, CatalogTitle> decoded = new HashMap<Long, CatalogTitle>();
+		new IndexParser(executor, 2).parse(index, new ItemConsumer<CatalogTitle>()
+		{
+			public void accept(CatalogTitle title)
+			{
+				decoded.put(title.getNumericId(), title);
+			}
+		});
+		CatalogReplica replica = new CatalogReplica(executor, 2);
+		replica.refresh(index);
+		TitleColumns columns = replica.getSnapshot().getColumns();
+		assertEquals(500, columns.size());
+
+		for (long id = 1; id <= 500; id++)
+		{
+			CatalogTitle expected = decoded.get(id);
+			CatalogTitle actual = columns.getTitle(id);
+			assertEquals(expected.getId(), actual.getId());
+			assertEquals(expected.getNumericId(), actual.getNumericId());
+			assertEquals(expected.getRegularTitle(), actual.getRegularTitle());
+			assertEquals(expected.getShortTitle(), actual.getShortTitle());
+			assertEquals(expected.getBoxArtSmall(), actual.getBoxArtSmall());
+			assertEquals(expected.getBoxArtMedium(), actual.getBoxArtMedium());
+			assertEquals(expected.getBoxArtLarge(), actual.getBoxArtLarge());
+			assertEquals(expected.getReleaseYear(), actual.getReleaseYear());
+			assertEquals(expected.getRuntime(), actual.getRuntime());
+			assertEquals(expected.getAverageRating(), actual.getAverageRating(), 0);
+			assertEquals(expected.getRating(), actual.getRating());
+			assertEquals(expected.getGenres(), actual.getGenres());
+			assertEquals(expected.getFormats(), actual.getFormats());
+			assertEquals(expected.getLinks().size(), actual.getLinks().size());
+			for (int i = 0; i < expected.getLinks().size(); i++)
+			{
+				Link link = expected.getLinks().get(i);
+				assertEquals(link.getHref(), actual.getLinks().get(i).getHref());
+				assertEquals(link.getRel(), actual.getLinks().get(i).getRel());
+				assertEquals(link.getTitle(), actual.getLinks().get(i).getTitle());
+			}
+			assertEquals("Hashes should agree", TestCatalog.contentHash(expected), TestCatalog.contentHash(actual));
+		}
+		assertNull(columns.getTitle(501));
+		assertEquals(-1, columns.getRow(0));
+		assertEquals(1, columns.getId(0));
+	}
+
+	@Test
+	public void sharesRepeatedValues() throws Exception
+	{
+		TestCatalog.writeIndex(index, 50, 7);
+		CatalogReplica replica = new CatalogReplica(executor, 2);
+		replica.refresh(index);
+		TitleColumns columns = replica.getSnapshot().getColumns();
+		String rating = null;
+		for (int row = 0; row < columns.size(); row++)
+		{
+			if (TestCatalog.RATINGS[0].equals(columns.getRating(row)))
+			{
+				if (rating == null)
+					rating = columns.getRating(row);
+				assertSame(rating, columns.getRating(row));
+			}
+		}
+		assertSame(columns.getTitleAt(0).getLinks().get(0).getRel(), columns.getTitleAt(1).getLinks().get(0).getRel());
+	}
+
+	@Test
+	public void titlesWithoutValues()
+	{
+		CatalogTitle title = new CatalogTitle();
+		title.setId(TestCatalog.MOVIES + "0");
+		title.setRegularTitle("Nothing Known");
+		TitleColumns.Builder builder = new TitleColumns.Builder(1);
+		builder.add(0, title, 0);
+		TitleColumns columns = builder.build();
+
+		CatalogTitle stored = columns.getTitle(0);
+		assertEquals(TestCatalog.MOVIES + "0", stored.getId());
+		assertEquals("Nothing Known", stored.getRegularTitle());
+		assertNull(stored.getShortTitle());
+		assertNull(stored.getRating());
+		assertNull(stored.getBoxArtSmall());
+		assertEquals(0, stored.getGenres().size());
+		assertEquals(0, stored.getLinks().size());
+	}
+
+	@Test
+	public void buildsInIdOrderKeepingTheLastOfAnId()
+	{
+		TitleColumns.Builder builder = new TitleColumns.Builder(0);
+		builder.add(3, title(3, "Death Proof"), 30);
+		builder.add(1, title(1, "Kill Bill"), 10);
+		builder.add(3, title(3, "Grindhouse"), 31);
+		builder.add(2, title(2, "Jackie Brown"), 20);
+		assertEquals(4, builder.size());
+		TitleColumns columns = builder.build();
+
+		assertEquals(3, columns.size());
+		assertArrayEquals(new long[] { 1, 2, 3 }, columns.getIds());
+		assertEquals("Grindhouse", columns.getRegularTitle(2));
+		assertEquals(31, columns.getHash(2));
+		assertEquals(TestCatalog.MOVIES + "3", columns.getTitle(3).getId());
+		assertEquals("Kill Bill", columns.getTitle(1).getRegularTitle());
+	}
+
+	@Test
+	public void copiesEncodedRowsIntoOtherDictionaries() throws Exception
+	{
+		TestCatalog.writeIndex(index, 300, 5);
+		CatalogReplica replica = new CatalogReplica(executor, 2);
+		replica.refresh(index);
+		TitleColumns columns = replica.getSnapshot().getColumns();
+
+		CatalogTitle first = title(1000, "Grindhouse");
+		first.setRating("NC-17");
+		first.setGenres(Arrays.asList("Exploitation", "Action"));
+		TitleColumns.Builder builder = new TitleColumns.Builder(columns.size());
+		// codes taken first, so the copied rows' codes must be translated
+		builder.add(1000, first, 7);
+		for (int row = columns.size() - 1; row >= 0; row -= 2)
+			builder.copy(columns, row);
+		TitleColumns copied = builder.build();
+
+		assertEquals(151, copied.size());
+		assertEquals("Action", copied.getTitle(1000).getGenres().get(1));
+		for (int row = columns.size() - 1; row >= 0; row -= 2)
+		{
+			long id = columns.getId(row);
+			CatalogTitle title = copied.getTitle(id);
+			assertEquals(TestCatalog.contentHash(columns.getTitleAt(row)), TestCatalog.contentHash(title));
+			assertEquals(columns.getHash(row), copied.getHash(copied.getRow(id)));
+		}
+	}
+
+	private static CatalogTitle title(long id, String name)
+	{
+		CatalogTitle title = new CatalogTitle();
+		title.setId(TestCatalog.MOVIES + id);
+		title.setRegularTitle(name);
+		title.setGenres(Arrays.asList("Action"));
+		title.setLinks(Arrays.asList(new Link(TestCatalog.MOVIES + id + "/cast", "cast", "cast")));
+		return title;
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.netflix.api.catalog;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.netflix.api.model.CatalogTitle;
+
+public class TitleIndexTest
+{
+	private static TitleIndex index;
+
+	private static List<CatalogTitle> titles;
+
+	private static File saved;
+
+	@BeforeClass
+	public static void setUpClass() throws Exception
+	{
+		File file = File.createTempFile("index", ".xml");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			TestCatalog.writeIndex(file, 3000, 11);
+			CatalogReplica replica = new CatalogReplica(executor, 2);
+			replica.refresh(file);
+			index = new TitleIndex(replica.getSnapshot().getColumns());
+			titles = new ArrayList<CatalogTitle>();
+			for (long id = 1; id <= 3000; id++)
+				titles.add(replica.getTitle(id));
+			saved = File.createTempFile("catalog", ".snapshot");
+			replica.save(saved);
+		}
+		finally
+		{
+			executor.shutdownNow();
+			file.delete();
+		}
+	}
+
+	@AfterClass
+	public static void tearDownClass()
+	{
+		index = null;
+		titles = null;
+		saved.delete();
+	}
+
+	@Test
+	public void conjunctionsAndDisjunctions()
+	{
+		TitleFilter filter = TitleFilter.genre("Drama").or(TitleFilter.genre("Comedy"))
+			.and(TitleFilter.releasedBetween(1980, 1999)).and(TitleFilter.rating("PG-13"));
+		List<CatalogTitle> expected = new ArrayList<CatalogTitle>();
+		for (CatalogTitle title : titles)
+		{
+			if ((title.getGenres().contains("Drama") || title.getGenres().contains("Comedy"))
+				&& title.getReleaseYear() >= 1980 && title.getReleaseYear() <= 1999 && "PG-13".equals(title.getRating()))
+				expected.add(title);
+		}
+		assertTrue("The filter should match a few titles", expected.size() > 5);
+		assertEquals(expected.size(), index.count(filter));
+		TitleIndex.Result result = index.search(filter, TitleOrder.ID, 1000);
+		assertEquals(expected.size(), result.getCount());
+		for (int i = 0; i < expected.size(); i++)
+			assertEquals(expected.get(i).getNumericId(), result.getIds()[i]);
+
+		Collections.sort(expected, new Comparator<CatalogTitle>()
+		{
+			public int compare(CatalogTitle a, CatalogTitle b)
+			{
+				return b.getReleaseYear() - a.getReleaseYear();
+			}
+		});
+		result = index.search(filter, TitleOrder.NEWEST, 5);
+		for (int i = 0; i < 5; i++)
+			assertEquals(expected.get(i).getNumericId(), result.getIds()[i]);
+	}
+
+	@Test
+	public void topTitlesInOrder()
+	{
+		TitleFilter filter = TitleFilter.format("instant").andNot(TitleFilter.rating("R"))
+			.and(TitleFilter.averageRatingBetween(3.5f, 5));
+		List<CatalogTitle> expected = new ArrayList<CatalogTitle>();
+		for (CatalogTitle title : titles)
+		{
+			if (title.getFormats().contains("instant") && !"R".equals(title.getRating()) && title.getAverageRating() >= 3.5f)
+				expected.add(title);
+		}
+		// stable, so ties stay in ID order
+		Collections.sort(expected, new Comparator<CatalogTitle>()
+		{
+			public int compare(CatalogTitle a, CatalogTitle b)
+			{
+				return Float.compare(b.getAverageRating(), a.getAverageRating());
+			}
+		});
+		TitleIndex.Result result = index.search(filter, TitleOrder.HIGHEST_RATED, 25);
+		assertEquals(expected.size(), result.getCount());
+		assertEquals(25, result.getTitles().size());
+		for (int i = 0; i < 25; i++)
+		{
+			assertEquals(expected.get(i).getNumericId(), result.getIds()[i]);
+			assertEquals(expected.get(i).getId(), result.getTitles().get(i).getId());
+		}
+
+		result = index.search(TitleFilter.all(), TitleOrder.OLDEST, 3);
+		assertEquals(3000, result.getCount());
+		int oldest = Integer.MAX_VALUE;
+		for (CatalogTitle title : titles)
+			oldest = Math.min(oldest, title.getReleaseYear());
+		assertEquals(oldest, result.getTitles().get(0).getReleaseYear());
+		assertTrue(result.getTitles().get(2).getReleaseYear() >= result.getTitles().get(1).getReleaseYear());
+	}
+
+	@Test
+	public void unknownValuesMatchNothing()
+	{
+		assertEquals(0, index.count(TitleFilter.genre("Polka")));
+		assertEquals(0, index.count(TitleFilter.releasedBetween(Integer.MIN_VALUE, 1900)));
+		assertEquals(3000, index.count(TitleFilter.genre("Polka").or(TitleFilter.all())));
+		assertEquals(0, index.search(TitleFilter.genre("Polka"), TitleOrder.NEWEST, 10).getTitles().size());
+	}
+
+	@Test
+	public void searchesASnapshotLoadedFromAFile() throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			CatalogReplica restarted = new CatalogReplica(executor, 2);
+			restarted.load(saved);
+			TitleIndex loaded = new TitleIndex(restarted.getSnapshot().getColumns());
+			assertSame("The columns are built once", restarted.getSnapshot().getColumns(), loaded.getColumns());
+			TitleFilter filter = TitleFilter.genre("Drama").and(TitleFilter.releasedBetween(1980, 1999));
+			assertEquals(index.count(filter), loaded.count(filter));
+			TitleIndex.Result expected = index.search(filter, TitleOrder.HIGHEST_RATED, 20);
+			TitleIndex.Result result = loaded.search(filter, TitleOrder.HIGHEST_RATED, 20);
+			assertEquals(expected.getCount(), result.getCount());
+			for (int i = 0; i < 20; i++)
+			{
+				assertEquals(expected.getIds()[i], result.getIds()[i]);
+				assertEquals(TestCatalog.contentHash(expected.getTitles().get(i)), TestCatalog.contentHash(result.getTitles().get(i)));
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+}
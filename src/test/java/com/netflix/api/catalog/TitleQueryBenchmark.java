@@ -0,0 +1,65 @@
+package com.netflix.api.catalog;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Times typical browse queries against a <code>TitleIndex</code> over a
+ * generated catalog: a single genre, a disjunction narrowed by year and
+ * rating, and a top 25 by average rating. <br />
+ * Run with: <code>java -Xmx1g ... com.netflix.api.catalog.TitleQueryBenchmark [titles]</code>
+ */
+public class TitleQueryBenchmark
+{
+	private static final int ITERATIONS = 2000;
+
+	public static void main(String[] args) throws Exception
+	{
+		int titles = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		File file = File.createTempFile("index", ".xml");
+		file.deleteOnExit();
+		TestCatalog.writeIndex(file, titles, 42);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		TitleIndex index;
+		try
+		{
+			CatalogReplica replica = new CatalogReplica(executor, 2);
+			replica.refresh(file);
+			long start = System.nanoTime();
+			index = new TitleIndex(replica.getSnapshot().getColumns());
+			System.out.println(String.format("Indexed %,d titles in %.1f ms", titles, (System.nanoTime() - start) / 1e6));
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		TitleFilter genre = TitleFilter.genre("Drama");
+		TitleFilter browse = TitleFilter.genre("Drama").or(TitleFilter.genre("Comedy")).or(TitleFilter.genre("Thrillers"))
+			.and(TitleFilter.releasedBetween(1980, 1999)).and(TitleFilter.rating("PG-13"));
+		TitleFilter instant = TitleFilter.format("instant").and(TitleFilter.averageRatingBetween(3, 5));
+		for (int round = 0; round < 3; round++)
+		{
+			time("genre count", index, genre, null);
+			time("browse count", index, browse, null);
+			time("browse top 25 newest", index, browse, TitleOrder.NEWEST);
+			time("instant top 25 rated", index, instant, TitleOrder.HIGHEST_RATED);
+		}
+	}
+
+	private static void time(String name, TitleIndex index, TitleFilter filter, TitleOrder order)
+	{
+		int matches = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			if (order == null)
+				matches = index.count(filter);
+			else matches = index.search(filter, order, 25).getCount();
+		}
+		long nanos = System.nanoTime() - start;
+		System.out.println(String.format("%-22s %,8d matches  %,8.1f us/query", name, matches, nanos / 1000.0 / ITERATIONS));
+	}
+
+}
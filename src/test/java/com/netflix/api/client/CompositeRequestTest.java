@@ -0,0 +1,81 @@
+package com.netflix.api.client;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.decoder.StaxCatalogDecoder;
+
+public class CompositeRequestTest
+{
+	/**
+	 * Answers each sub-call after a delay chosen by its path, honouring aborts.
+	 */
+	private final NetflixAPIClient client = new NetflixAPIClient("key", "secret")
+	{
+		public <T> T execute(APIRequest request, ResponseHandler<T> handler) throws Exception
+		{
+			String uri = request.getUri();
+			long delay = uri.endsWith("/similars") ? 5000 : uri.endsWith("/cast") ? 50 : 10;
+			if (uri.endsWith("/70075473") && slowDetails)
+				delay = 5000;
+			long until = System.currentTimeMillis() + delay;
+			while (System.currentTimeMillis() < until)
+			{
+				if (request.isAborted())
+					throw new NetflixAPIException("aborted");
+				Thread.sleep(5);
+			}
+			String body = uri.endsWith("/cast") ? "<people><person><name>Uma Thurman</name></person></people>"
+				: uri.endsWith("/70075473") ? "<catalog_title><id>" + uri + "</id></catalog_title>" : "<synopsis>text</synopsis>";
+			NetflixAPIResponse response = new NetflixAPIResponse();
+			response.setStatusCode(200);
+			if (uri.endsWith("/format_availability"))
+			{
+				response.setStatusCode(404);
+				body = "<status><status_code>404</status_code><message>Resource Not Found</message></status>";
+			}
+			return handler.handleResponse(response, new ByteArrayInputStream(body.getBytes("UTF-8")));
+		}
+	};
+	
+	private volatile boolean slowDetails;
+	
+	@After
+	public void shutdown()
+	{
+		client.shutdown();
+	}
+	
+	@Test
+	public void returnsPartialResultsWhenOptionalPartsTimeOut() throws Exception
+	{
+		TitlePageRequest page = new TitlePageRequest(APIEndpoints.MOVIE_URI + "/70075473", new StaxCatalogDecoder());
+		long start = System.currentTimeMillis();
+		CompositeResult result = client.executeComposite(page, 300);
+		assertTrue("The deadline should be honoured", System.currentTimeMillis() - start < 2000);
+		assertEquals(70075473L, result.getValue(page.getDetails()).getItems().get(0).getNumericId());
+		assertEquals("Uma Thurman", result.getValue(page.getCast()).getItems().get(0).getName());
+		assertEquals("<synopsis>text</synopsis>", result.getValue(page.getSynopsis()));
+		assertFalse("An error document is a failed part", result.get(page.getFormats()).isSuccess());
+		assertTrue(result.get(page.getFormats()).getError() instanceof NetflixAPIException);
+		assertNull(result.getValue(page.getFormats()));
+		assertNull("A part past the deadline should be left out", result.getValue(page.getSimilars()));
+		assertEquals("similars", result.getTimedOut().get(0));
+		assertFalse(result.isComplete());
+		assertFalse("The caller's request should not be marked aborted", page.getSimilars().getRequest().isAborted());
+	}
+	
+	@Test(expected = NetflixAPIException.class)
+	public void failsWhenCriticalPartTimesOut() throws Exception
+	{
+		slowDetails = true;
+		client.executeComposite(new TitlePageRequest(APIEndpoints.MOVIE_URI + "/70075473", new StaxCatalogDecoder()), 200);
+	}
+	
+}
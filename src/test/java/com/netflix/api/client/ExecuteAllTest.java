@@ -0,0 +1,81 @@
+package com.netflix.api.client;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.netflix.api.NetflixAPIResponse;
+
+public class ExecuteAllTest
+{
+	private final AtomicInteger inFlight = new AtomicInteger();
+	
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	
+	private final NetflixAPIClient client = new NetflixAPIClient("key", "secret")
+	{
+		public NetflixAPIResponse execute(APIRequest request) throws Exception
+		{
+			int now = inFlight.incrementAndGet();
+			synchronized (maxInFlight)
+			{
+				maxInFlight.set(Math.max(maxInFlight.get(), now));
+			}
+			try
+			{
+				int id = Integer.parseInt(request.getCallParameters().get("id"));
+				// later requests finish first
+				Thread.sleep(20 - id % 20);
+				if (id % 10 == 7)
+					throw new Exception("failed " + id);
+				NetflixAPIResponse response = new NetflixAPIResponse();
+				response.setResponseBody(String.valueOf(id));
+				return response;
+			}
+			finally
+			{
+				inFlight.decrementAndGet();
+			}
+		}
+	};
+	
+	@After
+	public void shutdown()
+	{
+		client.shutdown();
+	}
+	
+	@Test
+	public void resultsFollowSubmissionOrder() throws Exception
+	{
+		List<APIRequest> requests = new ArrayList<APIRequest>();
+		for (int i = 0; i < 60; i++)
+		{
+			Map<String, String> parameters = new HashMap<String, String>();
+			parameters.put("id", String.valueOf(i));
+			requests.add(APIRequest.consumerSigned(APIEndpoints.MOVIE_URI + "/" + i, parameters, NetflixAPIClient.GET_METHOD_TYPE));
+		}
+		
+		BatchResult<NetflixAPIResponse> batch = client.executeAll(requests, 8);
+		assertEquals(60, batch.size());
+		for (int i = 0; i < 60; i++)
+		{
+			APIResult<NetflixAPIResponse> result = batch.get(i);
+			assertSame("Results should refer to the submitted request", requests.get(i), result.getRequest());
+			if (i % 10 == 7)
+				assertFalse("Failures should be reported per item", result.isSuccess());
+			else assertEquals(String.valueOf(i), result.getValue().getResponseBody());
+		}
+		assertEquals(6, batch.getFailureCount());
+		assertTrue("At most 8 requests should run at once, saw " + maxInFlight.get(), maxInFlight.get() <= 8);
+		assertTrue("Requests should overlap", batch.getTotalRequestNanos() > batch.getElapsedNanos());
+	}
+	
+}
@@ -0,0 +1,186 @@
+package com.netflix.api.client;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexDownloaderTest
+{
+	private static final byte[] INDEX = new byte[300000];
+
+	static
+	{
+		for (int i = 0; i < INDEX.length; i++)
+			INDEX[i] = (byte) ('a' + i % 26);
+	}
+
+	private ServerSocket server;
+
+	private final List<String> ranges = new ArrayList<String>();
+
+	/**
+	 * Responses, without a body, to give before serving the index.
+	 */
+	private final Queue<String> canned = new ConcurrentLinkedQueue<String>();
+
+	private File target;
+
+	/**
+	 * Gives any canned responses, then serves the index once, hanging up
+	 * half way, then honours ranges.
+	 */
+	@Before
+	public void startServer() throws Exception
+	{
+		server = new ServerSocket(0);
+		target = File.createTempFile("index", ".xml");
+		target.delete();
+		Thread thread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					for (int call = 0; ; call++)
+					{
+						Socket socket = server.accept();
+						BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+						String range = null;
+						String line;
+						while ((line = in.readLine()) != null && line.length() > 0)
+						{
+							if (line.startsWith("Range:"))
+								range = line.substring(line.indexOf('=') + 1, line.indexOf('-')).trim();
+						}
+						ranges.add(range);
+						String response = canned.poll();
+						if (response != null)
+						{
+							socket.getOutputStream().write((response + "Content-Length: 0\r\nConnection: close\r\n\r\n").getBytes("ISO-8859-1"));
+							socket.close();
+							call--;
+							continue;
+						}
+						int from = range == null ? 0 : Integer.parseInt(range);
+						OutputStream out = socket.getOutputStream();
+						String headers = (from == 0 ? "HTTP/1.1 200 OK\r\n" : "HTTP/1.1 206 Partial Content\r\n"
+							+ "Content-Range: bytes " + from + "-" + (INDEX.length - 1) + "/" + INDEX.length + "\r\n")
+							+ "ETag: \"v1\"\r\nContent-Length: " + (INDEX.length - from) + "\r\nConnection: close\r\n\r\n";
+						out.write(headers.getBytes("ISO-8859-1"));
+						out.write(INDEX, from, call == 0 ? INDEX.length / 2 : INDEX.length - from);
+						out.flush();
+						socket.close();
+					}
+				}
+				catch (Exception e)
+				{
+					// server closed
+				}
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@After
+	public void stopServer() throws Exception
+	{
+		server.close();
+		target.delete();
+	}
+
+	@Test
+	public void resumesAfterConnectionLoss() throws Exception
+	{
+		final List<Long> resumedFrom = new ArrayList<Long>();
+		IndexDownloader downloader = new IndexDownloader(new NetflixAPIClient("key", "secret"),
+			"http://localhost:" + server.getLocalPort() + "/catalog/titles/index", 8192, 2, 10);
+		IndexDownloader.Report report = downloader.download(target, new IndexDownloader.ProgressListener()
+		{
+			public void progress(long bytesReceived, long totalBytes, double bytesPerSecond)
+			{
+				assertEquals(INDEX.length, totalBytes);
+			}
+
+			public void resuming(long offset, Exception cause)
+			{
+				resumedFrom.add(offset);
+			}
+		});
+
+		assertTrue("The index should be complete", Arrays.equals(INDEX, FileUtils.readFileToByteArray(target)));
+		assertEquals(1, report.getResumes());
+		assertEquals(INDEX.length, report.getBytes());
+		assertEquals(Arrays.asList((long) INDEX.length / 2), resumedFrom);
+		assertEquals("The second request should ask for the rest", String.valueOf(INDEX.length / 2), ranges.get(1));
+		assertFalse("The partial file should be gone", new File(target.getPath() + ".part").exists());
+	}
+
+	@Test
+	public void retriesServerErrors() throws Exception
+	{
+		canned.add("HTTP/1.1 503 Service Unavailable\r\n");
+		IndexDownloader.Report report = this.downloader(2).download(target, null);
+		assertTrue(Arrays.equals(INDEX, FileUtils.readFileToByteArray(target)));
+		assertEquals(2, report.getResumes());
+	}
+
+	@Test
+	public void checksTheRangeAgainstThePartialFile() throws Exception
+	{
+		// a partial file the index is not as long as
+		this.writePart(INDEX.length + 10);
+		canned.add("HTTP/1.1 416 Requested Range Not Satisfiable\r\nContent-Range: bytes */" + INDEX.length + "\r\n");
+		this.downloader(2).download(target, null);
+		assertTrue("A 416 should not pass the partial file off as whole",
+			Arrays.equals(INDEX, FileUtils.readFileToByteArray(target)));
+		assertNull("The download should start over", ranges.get(1));
+
+		// a range that does not start where the partial file ends
+		ranges.clear();
+		this.writePart(1000);
+		canned.add("HTTP/1.1 206 Partial Content\r\nContent-Range: bytes 0-" + (INDEX.length - 1) + "/" + INDEX.length + "\r\n");
+		this.downloader(2).download(target, null);
+		assertTrue(Arrays.equals(INDEX, FileUtils.readFileToByteArray(target)));
+		assertEquals("1000", ranges.get(0));
+		assertNull(ranges.get(1));
+
+		// a partial file that is whole
+		ranges.clear();
+		this.writePart(INDEX.length);
+		canned.add("HTTP/1.1 416 Requested Range Not Satisfiable\r\nContent-Range: bytes */" + INDEX.length + "\r\n");
+		this.downloader(2).download(target, null);
+		assertTrue(Arrays.equals(INDEX, FileUtils.readFileToByteArray(target)));
+		assertEquals(1, ranges.size());
+	}
+
+	private IndexDownloader downloader(int maxRetries)
+	{
+		return new IndexDownloader(new NetflixAPIClient("key", "secret"),
+			"http://localhost:" + server.getLocalPort() + "/catalog/titles/index", 8192, maxRetries, 10);
+	}
+
+	private void writePart(int length) throws Exception
+	{
+		byte[] part = new byte[length];
+		System.arraycopy(INDEX, 0, part, 0, Math.min(length, INDEX.length));
+		FileUtils.writeByteArrayToFile(new File(target.getPath() + ".part"), part);
+		FileUtils.writeStringToFile(new File(target.getPath() + ".part.etag"), "\"v1\"", "UTF-8");
+	}
+
+}
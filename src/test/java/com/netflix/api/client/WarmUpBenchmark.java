@@ -0,0 +1,75 @@
+package com.netflix.api.client;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.netflix.api.client.dal.HttpMethodBuilder;
+
+/**
+ * Measures time-to-steady-state of the request preparation path, with and
+ * without an explicit warm-up.  Each mode must run in a fresh JVM:
+ * <pre>
+ *   java ... com.netflix.api.client.WarmUpBenchmark cold
+ *   java ... com.netflix.api.client.WarmUpBenchmark warm
+ * </pre>
+ * Reports the latency of the first request, and how many requests it takes
+ * before a window of requests runs within 1.5x of the steady-state median.
+ * No network traffic is generated: connections are not pre-opened.
+ */
+public class WarmUpBenchmark
+{
+	private static final int REQUESTS = 20000;
+	
+	private static final int WINDOW = 100;
+	
+	public static void main(String[] args) throws Exception
+	{
+		boolean warm = args.length > 0 && args[0].equalsIgnoreCase("warm");
+		NetflixAPIClient client = new NetflixAPIClient("benchmark-key", "benchmark-secret");
+		
+		long warmUpNanos = 0;
+		if (warm)
+		{
+			long start = System.nanoTime();
+			new ClientWarmUp(client).warmUp(0, ClientWarmUp.DEFAULT_SIGNING_ITERATIONS);
+			warmUpNanos = System.nanoTime() - start;
+		}
+		
+		HttpMethodBuilder builder = client.getMethodBuilder();
+		long[] latencies = new long[REQUESTS];
+		for (int i = 0; i < REQUESTS; i++)
+		{
+			long start = System.nanoTime();
+			Map<String, String> parameters = new HashMap<String, String>();
+			parameters.put("term", "live request " + i);
+			parameters.putAll(builder.getDefaultOAuthParameters());
+			builder.buildConsumerSignedGetMethod(APIEndpoints.MOVIE_URI + "/" + (70000000 + i), parameters);
+			latencies[i] = System.nanoTime() - start;
+		}
+		
+		long steadyMedian = median(latencies, REQUESTS - 2000, REQUESTS);
+		int steadyAt = -1;
+		for (int i = 0; i + WINDOW <= REQUESTS; i += WINDOW)
+		{
+			if (median(latencies, i, i + WINDOW) <= steadyMedian * 3 / 2)
+			{
+				steadyAt = i;
+				break;
+			}
+		}
+		
+		System.out.println(String.format("mode=%s warm-up=%dms first=%dus first-%d-median=%dus steady-median=%dus steady-state-after=%d requests",
+				warm ? "warm" : "cold", warmUpNanos / 1000000, latencies[0] / 1000, WINDOW,
+				median(latencies, 0, WINDOW) / 1000, steadyMedian / 1000, steadyAt));
+	}
+	
+	private static long median(long[] values, int from, int to)
+	{
+		long[] window = new long[to - from];
+		System.arraycopy(values, from, window, 0, window.length);
+		Arrays.sort(window);
+		return window[window.length / 2];
+	}
+	
+}
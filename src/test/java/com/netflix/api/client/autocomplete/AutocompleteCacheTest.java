@@ -0,0 +1,219 @@
+package com.netflix.api.client.autocomplete;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.ResponseHandler;
+
+public class AutocompleteCacheTest
+{
+	private static final List<String> TITLES = Arrays.asList("Star Wars", "Stardust", "Starman", "A Star Is Born",
+		"Stand by Me", "Stalker", "Gattaca", "Gandhi", "Ghost", "Ghostbusters", "The Fast & the Furious");
+
+	private final List<String> terms = Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 * Suggests the titles with a word starting with the term, at most five.
+	 */
+	private final NetflixAPIClient client = new NetflixAPIClient("key", "secret")
+	{
+		public <T> T execute(APIRequest request, ResponseHandler<T> handler) throws Exception
+		{
+			assertEquals(APIRequest.SecurityLevel.UNSIGNED, request.getSecurityLevel());
+			assertTrue(request.getUri().endsWith("/autocomplete"));
+			String term = request.getCallParameters().get("term");
+			terms.add(term);
+			StringBuilder xml = new StringBuilder("<autocomplete>");
+			int count = 0;
+			for (String title : TITLES)
+			{
+				if (count < 5 && (" " + title.toLowerCase()).contains(" " + term))
+				{
+					xml.append("<autocomplete_item><title short=\"").append(title.replace("&", "&amp;"))
+						.append("\"/></autocomplete_item>");
+					count++;
+				}
+			}
+			NetflixAPIResponse response = new NetflixAPIResponse();
+			response.setStatusCode(200);
+			return handler.handleResponse(response, new ByteArrayInputStream(xml.append("</autocomplete>").toString().getBytes("UTF-8")));
+		}
+	};
+
+	@Test
+	public void narrowsCompleteSuggestions() throws Exception
+	{
+		AutocompleteCache cache = new AutocompleteCache(client, 100, 60000, 5);
+		assertEquals(Arrays.asList("Gattaca", "Gandhi"), cache.suggest("Ga"));
+		assertEquals(Arrays.asList("Gattaca"), cache.suggest("gat"));
+		assertEquals(Arrays.asList("Gattaca"), cache.suggest("GATT "));
+		assertEquals(Collections.emptyList(), cache.suggest("gax"));
+		assertEquals(Arrays.asList("ga"), terms);
+		assertEquals(3, cache.getNarrowedHits());
+
+		assertEquals("Five is as many as the API returns, so more may match", 5, cache.suggest("st").size());
+		assertEquals(5, cache.suggest("sta").size());
+		assertEquals(Arrays.asList("Star Wars", "Stardust", "Starman", "A Star Is Born"), cache.suggest("star"));
+		assertEquals("Narrowed from \"star\", not \"st\"", Arrays.asList("Stardust"), cache.suggest("stard"));
+		assertEquals(Arrays.asList("A Star Is Born"), cache.suggest("star is"));
+		assertEquals(Arrays.asList("ga", "st", "sta", "star"), terms);
+		assertEquals(Arrays.asList("The Fast & the Furious"), cache.suggest("fast"));
+		assertEquals(Arrays.asList("The Fast & the Furious"), cache.suggest("fast &"));
+		assertEquals(0, cache.suggest("  ").size());
+		assertEquals(5, terms.size());
+	}
+
+	@Test
+	public void narrowsToTheStartOfWords()
+	{
+		List<String> titles = Arrays.asList("Lone Star", "Stalker", "Gandhi");
+		assertEquals(Arrays.asList("Lone Star", "Stalker"), AutocompleteCache.narrow(titles, "st"));
+		assertEquals(Collections.emptyList(), AutocompleteCache.narrow(titles, "and"));
+		assertEquals(Arrays.asList("Lone Star"), AutocompleteCache.narrow(titles, "lone s"));
+	}
+
+	@Test
+	public void refreshesHotPrefixes() throws Exception
+	{
+		AutocompleteCache cache = new AutocompleteCache(client, 100, 60000, 5);
+		cache.suggest("gh");
+		cache.suggest("gh");
+		cache.suggest("ghost");
+		cache.suggest("s");
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getNarrowedHits());
+		assertEquals(2, cache.getMisses());
+
+		cache.refresh();
+		assertEquals("Only \"gh\" was looked up twice", Arrays.asList("gh", "s", "gh"), terms);
+		assertEquals(1, cache.getRefreshes());
+		cache.refresh();
+		assertEquals("Refetching resets the count", 1, cache.getRefreshes());
+
+		cache = new AutocompleteCache(client, 100, 1, 5);
+		cache.suggest("gh");
+		Thread.sleep(5);
+		cache.refresh();
+		assertEquals("Expired prefixes are dropped", 0, cache.size());
+		cache.suggest("gh");
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void dropsColdPrefixesWhenFull() throws Exception
+	{
+		AutocompleteCache cache = new AutocompleteCache(client, 8, 60000, 5);
+		for (int i = 0; i < 3; i++)
+			cache.suggest("st");
+		for (char c = 'a'; c <= 'z'; c++)
+			cache.suggest("q" + c);
+		assertTrue(cache.size() <= 8);
+		cache.suggest("st");
+		assertEquals("The hot prefix is kept", 3, cache.getHits());
+	}
+
+	@Test
+	public void keepsPopularityAcrossRefetches() throws Exception
+	{
+		AutocompleteCache cache = new AutocompleteCache(client, 4, 60000, 5);
+		for (int i = 0; i < 5; i++)
+			cache.suggest("gh");
+		cache.refresh();
+		assertEquals(1, cache.getRefreshes());
+		for (char c = 'a'; c <= 'e'; c++)
+			cache.suggest("q" + c);
+		cache.suggest("gh");
+		assertEquals("A prefix just refetched is not the coldest", 5, cache.getHits());
+
+		cache = new AutocompleteCache(client, 4, 60000, 5);
+		for (int i = 0; i < 3; i++)
+			cache.suggest("st");
+		cache.suggest("ga");
+		cache.suggest("ga");
+		cache.suggest("gh");
+		cache.suggest("gh");
+		cache.suggest("qa");
+		cache.suggest("qb");
+		terms.clear();
+		cache.suggest("qb");
+		assertEquals("The prefix just fetched is kept", Collections.emptyList(), terms);
+		cache.suggest("st");
+		assertEquals(Collections.emptyList(), terms);
+	}
+
+	@Test
+	public void narrowsFromABroaderPrefixWhenItsOwnIsStale() throws Exception
+	{
+		AutocompleteCache cache = new AutocompleteCache(client, 100, 400, 5);
+		cache.suggest("gat");
+		Thread.sleep(250);
+		cache.suggest("ga");
+		Thread.sleep(250);
+		assertEquals(Arrays.asList("Gattaca"), cache.suggest("gat"));
+		assertEquals(Arrays.asList("gat", "ga"), terms);
+		assertEquals(1, cache.getNarrowedHits());
+	}
+
+	@Test
+	public void startsWarmFromSavedSuggestions() throws Exception
+	{
+		AutocompleteCache cache = new AutocompleteCache(client, 100, 60000, 5);
+		cache.suggest("ga");
+		cache.suggest("fast");
+		File saved = File.createTempFile("autocomplete", ".snapshot");
+		try
+		{
+			cache.save(saved);
+			AutocompleteCache restarted = new AutocompleteCache(client, 100, 60000, 5);
+			assertEquals(2, restarted.load(saved));
+			assertEquals(Arrays.asList("Gattaca"), restarted.suggest("gatt"));
+			assertEquals(Arrays.asList("The Fast & the Furious"), restarted.suggest("fast"));
+			assertEquals(0, restarted.getMisses());
+			assertEquals(2, terms.size());
+
+			Thread.sleep(5);
+			assertEquals("Expired suggestions are not loaded", 0, new AutocompleteCache(client, 100, 1, 5).load(saved));
+		}
+		finally
+		{
+			saved.delete();
+		}
+	}
+
+	@Test
+	public void reportsAPIErrors() throws Exception
+	{
+		NetflixAPIClient failing = new NetflixAPIClient("key", "secret")
+		{
+			public <T> T execute(APIRequest request, ResponseHandler<T> handler) throws Exception
+			{
+				String xml = "<status><status_code>403</status_code><message>Over queries per second limit</message></status>";
+				return handler.handleResponse(new NetflixAPIResponse(), new ByteArrayInputStream(xml.getBytes("UTF-8")));
+			}
+		};
+		AutocompleteCache cache = new AutocompleteCache(failing, 10, 60000);
+		try
+		{
+			cache.suggest("ga");
+			fail();
+		}
+		catch (NetflixAPIException e)
+		{
+			assertTrue(e.getMessage().contains("403"));
+		}
+		assertEquals(0, cache.size());
+	}
+
+}
@@ -0,0 +1,140 @@
+package com.netflix.api.client.crawl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.ResponseHandler;
+
+public class LinkCrawlerTest
+{
+	private static final String BASE = "http://api.netflix.com/catalog";
+
+	private final AtomicInteger active = new AtomicInteger();
+
+	private final AtomicInteger maxActive = new AtomicInteger();
+
+	/**
+	 * Title n has cast [person n, person n + 1] and similars [title n + 1];
+	 * person n's filmography is [title n].
+	 */
+	private final NetflixAPIClient client = new NetflixAPIClient("key", "secret")
+	{
+		public <T> T execute(APIRequest request, ResponseHandler<T> handler) throws Exception
+		{
+			int now = active.incrementAndGet();
+			while (now > maxActive.get())
+				maxActive.compareAndSet(maxActive.get(), now);
+			try
+			{
+				Thread.sleep(5);
+				String uri = request.getUri();
+				int n = Integer.parseInt(uri.replaceAll("^\\D*(\\d+).*$", "$1"));
+				String body;
+				if (uri.endsWith("/cast"))
+					body = "<people>" + link("/people/" + n, "catalog/person") + link("/people/" + (n + 1), "catalog/person") + "</people>";
+				else if (uri.endsWith("/similars"))
+					body = "<similars>" + link("/titles/movies/" + (n + 1), "catalog/title") + "</similars>";
+				else if (uri.endsWith("/filmography"))
+					body = "<filmography>" + link("/titles/movies/" + n, "catalog/title") + "</filmography>";
+				else if (uri.contains("/people/"))
+					body = "<person><id>" + uri + "</id>" + link("/people/" + n + "/filmography", "catalog/person.filmography") + "</person>";
+				else body = "<catalog_title><id>" + uri + "</id>" + link("/titles/movies/" + n + "/cast", "catalog/people.cast")
+					+ link("/titles/movies/" + n + "/similars", "catalog/titles.similars")
+					+ link("/titles/movies/" + n + "/synopsis", "catalog/titles.synopsis") + "</catalog_title>";
+				NetflixAPIResponse response = new NetflixAPIResponse();
+				response.setStatusCode(200);
+				return handler.handleResponse(response, new ByteArrayInputStream(body.getBytes("UTF-8")));
+			}
+			finally
+			{
+				active.decrementAndGet();
+			}
+		}
+	};
+
+	private final List<CrawledResource> resources = Collections.synchronizedList(new ArrayList<CrawledResource>());
+
+	private final Map<String, ByteArrayOutputStream> bodies = new ConcurrentHashMap<String, ByteArrayOutputStream>();
+
+	private final CrawlSink sink = new CrawlSink()
+	{
+		public OutputStream bodyStream(String uri, int depth, int statusCode)
+		{
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			bodies.put(uri, body);
+			return body;
+		}
+
+		public void resource(CrawledResource resource)
+		{
+			resources.add(resource);
+		}
+
+		public void failed(String uri, int depth, Exception cause)
+		{
+			fail(uri + ": " + cause);
+		}
+	};
+
+	private static String link(String path, String rel)
+	{
+		return "<link href=\"" + BASE + path + "\" rel=\"http://schemas.netflix.com/" + rel + "\" title=\"x\"/>";
+	}
+
+	@Test
+	public void crawlsBreadthFirstOnceEachWithinDepth() throws Exception
+	{
+		LinkCrawler crawler = new LinkCrawler(client, 3, 3, 10000);
+		long fetched = crawler.crawl(Arrays.asList(BASE + "/titles/movies/1"), sink);
+
+		// depth 0: title 1; 1: cast 1, similars 1; 2: people 1 and 2, title 2;
+		// 3: filmographies 1 and 2, cast 2, similars 2
+		assertEquals(10, fetched);
+		assertEquals(10, resources.size());
+		int lastDepth = 0;
+		List<String> uris = new ArrayList<String>();
+		for (CrawledResource resource : resources)
+		{
+			assertTrue("Resources should arrive breadth first", resource.getDepth() >= lastDepth);
+			lastDepth = resource.getDepth();
+			assertFalse("No resource should be fetched twice", uris.contains(resource.getUri()));
+			uris.add(resource.getUri());
+			assertFalse("Unfollowed relations should be left alone", resource.getUri().endsWith("/synopsis"));
+		}
+		assertEquals(3, lastDepth);
+		assertTrue("Fetches should overlap, up to the concurrency", maxActive.get() > 1 && maxActive.get() <= 3);
+		assertTrue("The sink should get each body", bodies.get(BASE + "/titles/movies/1").toString("UTF-8")
+			.endsWith("/synopsis\" rel=\"http://schemas.netflix.com/catalog/titles.synopsis\" title=\"x\"/></catalog_title>"));
+	}
+
+	@Test
+	public void spillsWideDepthsAndCrawlsTheSame() throws Exception
+	{
+		LinkCrawler crawler = new LinkCrawler(client, 2, 3, 10000);
+		crawler.setFrontierMemory(1);
+		assertEquals(10, crawler.crawl(Arrays.asList(BASE + "/titles/movies/1"), sink));
+		int lastDepth = 0;
+		for (CrawledResource resource : resources)
+		{
+			assertTrue(resource.getDepth() >= lastDepth);
+			lastDepth = resource.getDepth();
+		}
+		assertEquals(3, lastDepth);
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.netflix.api.client.dal;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+
+/**
+ * Measures checkout/return throughput of the connection managers under
+ * contention.  Connections are never opened, so this isolates pool
+ * bookkeeping from network time. <br />
+ * Run with: <code>java ... com.netflix.api.client.dal.ConnectionPoolBenchmark [threads...]</code>
+ */
+public class ConnectionPoolBenchmark
+{
+	private static final int OPERATIONS_PER_THREAD = 200000;
+	
+	public static void main(String[] args) throws Exception
+	{
+		int[] threadCounts = { 8, 32, 64, 128 };
+		if (args.length > 0)
+		{
+			threadCounts = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				threadCounts[i] = Integer.parseInt(args[i]);
+		}
+		
+		HostConfiguration host = new HostConfiguration();
+		host.setHost("api.netflix.com", 80, "http");
+		
+		for (int threads : threadCounts)
+		{
+			int connections = Math.max(threads / 2, 1);
+			// warm up both before measuring
+			run(newMultiThreaded(connections), host, threads);
+			run(new StripedHttpConnectionManager(connections, connections), host, threads);
+			
+			double multiThreaded = run(newMultiThreaded(connections), host, threads);
+			double striped = run(new StripedHttpConnectionManager(connections, connections), host, threads);
+			System.out.println(String.format("threads=%4d connections=%4d  MultiThreaded: %,12.0f ops/s  Striped: %,12.0f ops/s  (x%.1f)",
+					threads, connections, multiThreaded, striped, striped / multiThreaded));
+		}
+	}
+	
+	@SuppressWarnings("deprecation")
+	private static HttpConnectionManager newMultiThreaded(int connections)
+	{
+		MultiThreadedHttpConnectionManager cm = new MultiThreadedHttpConnectionManager();
+		cm.setMaxTotalConnections(connections);
+		cm.setMaxConnectionsPerHost(connections);
+		return cm;
+	}
+	
+	/**
+	 * @return checkout/return pairs per second across all threads.
+	 */
+	private static double run(final HttpConnectionManager manager, final HostConfiguration host, int threads) throws Exception
+	{
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++)
+		{
+			new Thread(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						start.await();
+						for (int i = 0; i < OPERATIONS_PER_THREAD; i++)
+						{
+							HttpConnection connection = manager.getConnectionWithTimeout(host, 0);
+							manager.releaseConnection(connection);
+						}
+					}
+					catch (Exception e)
+					{
+						e.printStackTrace();
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		long began = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsed = System.nanoTime() - began;
+		return (double) threads * OPERATIONS_PER_THREAD / (elapsed / 1e9);
+	}
+	
+}
@@ -0,0 +1,124 @@
+package com.netflix.api.client.dal;
+
+import static org.junit.Assert.*;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StripedHttpConnectionManagerTest
+{
+	private StripedHttpConnectionManager manager;
+	
+	private HostConfiguration host;
+	
+	@Test
+	public void releasedConnectionIsReused() throws Exception
+	{
+		HttpConnection first = manager.getConnectionWithTimeout(host, 100);
+		manager.releaseConnection(first);
+		HttpConnection second = manager.getConnectionWithTimeout(host, 100);
+		assertSame("Idle connection should be handed out again", first, second);
+		assertEquals("Only one connection should have been created", 1, manager.getCreatedConnectionCount());
+		manager.releaseConnection(second);
+	}
+	
+	@Test
+	public void checkoutTimesOutWhenRouteIsExhausted() throws Exception
+	{
+		HttpConnection first = manager.getConnectionWithTimeout(host, 100);
+		HttpConnection second = manager.getConnectionWithTimeout(host, 100);
+		assertEquals("Both connections should be leased", 2, manager.getLeasedConnectionCount());
+		try
+		{
+			manager.getConnectionWithTimeout(host, 50);
+			fail("Third checkout should time out.");
+		}
+		catch (ConnectionPoolTimeoutException e)
+		{
+			// expected
+		}
+		manager.releaseConnection(first);
+		manager.releaseConnection(second);
+		assertEquals("No connections should be leased", 0, manager.getLeasedConnectionCount());
+	}
+	
+	@Test
+	public void doubleReleaseIsIgnored() throws Exception
+	{
+		HttpConnection connection = manager.getConnectionWithTimeout(host, 100);
+		manager.releaseConnection(connection);
+		manager.releaseConnection(connection);
+		assertEquals("Connection should be pooled once", 1, manager.getIdleConnectionCount());
+		assertEquals("Permits should not be over-released", 0, manager.getLeasedConnectionCount());
+	}
+	
+	@Test
+	public void idleConnectionsAreClosed() throws Exception
+	{
+		manager.releaseConnection(manager.getConnectionWithTimeout(host, 100));
+		manager.closeIdleConnections(0);
+		assertEquals("Idle connection should have been evicted", 0, manager.getIdleConnectionCount());
+	}
+	
+	@Test
+	public void keepAliveTimeoutIsParsed()
+	{
+		assertEquals(5000, StripedHttpConnectionManager.parseKeepAliveTimeout("timeout=5, max=100"));
+		assertEquals(-1, StripedHttpConnectionManager.parseKeepAliveTimeout("max=100"));
+	}
+	
+	@Test
+	public void connectionsNearKeepAliveTimeoutAreExpired() throws Exception
+	{
+		manager.releaseConnection(manager.getConnectionWithTimeout(host, 100));
+		assertEquals("Unknown keep-alive should not expire anything", 0, manager.closeExpiredConnections());
+		
+		manager.setKeepAliveTimeout("api.netflix.com", 80, StripedHttpConnectionManager.KEEP_ALIVE_SAFETY_MARGIN_MILLIS);
+		assertEquals("Connection should be expired", 1, manager.closeExpiredConnections());
+		assertEquals("Eviction should be counted", 1, manager.getPoolStats().getEvictedConnections());
+	}
+	
+	@Test
+	public void connectionsPastTimeToLiveAreNotPooled() throws Exception
+	{
+		manager.setConnectionTimeToLive(1);
+		HttpConnection connection = manager.getConnectionWithTimeout(host, 100);
+		Thread.sleep(5);
+		manager.releaseConnection(connection);
+		assertEquals("Expired connection should be dropped", 0, manager.getIdleConnectionCount());
+	}
+	
+	@Test
+	public void idleConnectionsCountTowardsTheTotal() throws Exception
+	{
+		manager = new StripedHttpConnectionManager(2, 2, 4);
+		HttpConnection first = manager.getConnectionWithTimeout(host, 100);
+		HttpConnection second = manager.getConnectionWithTimeout(host, 100);
+		manager.releaseConnection(first);
+		manager.releaseConnection(second);
+		HostConfiguration other = new HostConfiguration();
+		other.setHost("cdn.netflix.com", 80, "http");
+		HttpConnection third = manager.getConnectionWithTimeout(other, 100);
+		assertEquals("An idle connection of the other route should make room", 1, manager.getIdleConnectionCount());
+		HttpConnection fourth = manager.getConnectionWithTimeout(other, 100);
+		assertEquals("Open connections should never exceed the total", 0, manager.getIdleConnectionCount());
+		assertEquals(2, manager.getLeasedConnectionCount());
+		manager.releaseConnection(third);
+		manager.releaseConnection(fourth);
+		manager.getConnectionWithTimeout(other, 100);
+		assertEquals("Reusing an idle connection closes nothing", 1, manager.getIdleConnectionCount());
+		assertEquals(4, manager.getCreatedConnectionCount());
+	}
+	
+	@Before
+	public void before()
+	{
+		manager = new StripedHttpConnectionManager(4, 2, 4);
+		host = new HostConfiguration();
+		host.setHost("api.netflix.com", 80, "http");
+	}
+	
+}
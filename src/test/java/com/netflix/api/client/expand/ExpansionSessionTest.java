@@ -0,0 +1,107 @@
+package com.netflix.api.client.expand;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.EndpointFamily;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.ResponseHandler;
+
+public class ExpansionSessionTest
+{
+	private static final String TITLE_URI = "http://api.netflix.com/catalog/titles/movies/70075473";
+
+	private static final ResponseHandler<String> TEXT = new ResponseHandler<String>()
+	{
+		public String handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+		{
+			return IOUtils.toString(body, "UTF-8");
+		}
+	};
+
+	private final List<APIRequest> calls = Collections.synchronizedList(new ArrayList<APIRequest>());
+
+	private volatile InputStream served;
+
+	/**
+	 * Serves a title with synopsis and cast links, inlining those named in <code>expand</code>.
+	 */
+	private final NetflixAPIClient client = new NetflixAPIClient("key", "secret")
+	{
+		public <T> T execute(APIRequest request, ResponseHandler<T> handler) throws Exception
+		{
+			calls.add(request);
+			String body;
+			if (request.getUri().equals(TITLE_URI))
+			{
+				String expand = request.getCallParameters() == null ? null : request.getCallParameters().get("expand");
+				body = "<catalog_title><id>" + TITLE_URI + "</id>"
+					+ "<link href=\"" + TITLE_URI + "/synopsis\" rel=\"http://schemas.netflix.com/catalog/titles/synopsis\" title=\"synopsis\">"
+					+ (expand != null && expand.contains("synopsis") ? "<synopsis>A bride seeks revenge.</synopsis>" : "")
+					+ "</link>"
+					+ "<link href=\"" + TITLE_URI + "/cast\" rel=\"http://schemas.netflix.com/catalog/people.cast\" title=\"cast\"/>"
+					+ "</catalog_title>";
+			}
+			else body = "<synopsis>A bride seeks revenge.</synopsis>";
+			NetflixAPIResponse response = new NetflixAPIResponse();
+			response.setStatusCode(200);
+			served = new ByteArrayInputStream(body.getBytes("UTF-8"));
+			return handler.handleResponse(response, served);
+		}
+	};
+
+	@Test
+	public void expandsFollowedLinksAndServesThemInline() throws Exception
+	{
+		ExpansionLearner learner = new ExpansionLearner(0.5, 2);
+		for (int i = 0; i < 2; i++)
+		{
+			ExpansionSession session = learner.newSession(client);
+			session.fetch(APIRequest.consumerSigned(TITLE_URI, null, NetflixAPIClient.GET_METHOD_TYPE), TEXT);
+			session.follow(TITLE_URI + "/synopsis", TEXT);
+			session.follow(TITLE_URI + "/synopsis", TEXT);
+			assertEquals(0, session.getHitCount());
+		}
+		assertEquals("synopsis", learner.getExpansion(EndpointFamily.CATALOG_TITLE));
+
+		calls.clear();
+		ExpansionSession session = learner.newSession(client);
+		String title = session.fetch(APIRequest.consumerSigned(TITLE_URI, null, NetflixAPIClient.GET_METHOD_TYPE), TEXT);
+		assertTrue("The handler should see the inlined section", title.contains("<synopsis>"));
+		assertEquals("synopsis", calls.get(0).getCallParameters().get("expand"));
+
+		assertEquals("<synopsis>A bride seeks revenge.</synopsis>", session.follow(TITLE_URI + "/synopsis", TEXT));
+		assertEquals("An expanded link should not be fetched again", 1, calls.size());
+		assertEquals(1, session.getHitCount());
+
+		session.follow(TITLE_URI + "/cast", TEXT);
+		assertEquals(2, calls.size());
+		assertEquals(1, session.getMissCount());
+	}
+
+	@Test
+	public void passesFamiliesThatCannotBeExpandedThrough() throws Exception
+	{
+		ExpansionSession session = new ExpansionLearner().newSession(client);
+		session.fetch(APIRequest.consumerSigned("http://api.netflix.com/catalog/people/20004", null,
+			NetflixAPIClient.GET_METHOD_TYPE), new ResponseHandler<Object>()
+		{
+			public Object handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+			{
+				assertSame("The body should not be copied", served, body);
+				return null;
+			}
+		});
+	}
+
+}
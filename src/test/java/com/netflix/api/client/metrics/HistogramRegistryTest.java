@@ -0,0 +1,147 @@
+package com.netflix.api.client.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.EndpointFamily;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.ResponseHandler;
+
+public class HistogramRegistryTest
+{
+	private ServerSocket server;
+
+	/**
+	 * Answers paths holding "missing" with a 404, and others with a 200.
+	 */
+	@Before
+	public void startServer() throws Exception
+	{
+		server = new ServerSocket(0);
+		Thread thread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					while (true)
+					{
+						Socket socket = server.accept();
+						BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+						String request = in.readLine();
+						String line;
+						while ((line = in.readLine()) != null && line.length() > 0)
+						{
+							// skip the headers
+						}
+						String status = request.contains("missing") ? "404 Not Found" : "200 OK";
+						OutputStream out = socket.getOutputStream();
+						out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 4\r\nConnection: close\r\n\r\nbody")
+							.getBytes("ISO-8859-1"));
+						out.flush();
+						socket.close();
+					}
+				}
+				catch (Exception e)
+				{
+					// server closed
+				}
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@After
+	public void stopServer() throws Exception
+	{
+		server.close();
+	}
+
+	@Test
+	public void timesEveryCall() throws Exception
+	{
+		String base = "http://localhost:" + server.getLocalPort();
+		NetflixAPIClient client = new NetflixAPIClient("key", "secret");
+		HistogramRegistry registry = new HistogramRegistry();
+		client.setMetricsRegistry(registry);
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("term", "ga");
+
+		client.makeUnsignedApiCall(base + "/catalog/titles/autocomplete", parameters);
+		client.makeUnsignedApiCall(base + "/catalog/titles/autocomplete", parameters);
+		assertEquals(404, client.makeUnsignedApiCall(base + "/catalog/titles/movies/missing", parameters).getStatusCode());
+		String body = client.execute(APIRequest.unsigned(base + "/catalog/people/1", parameters), new ResponseHandler<String>()
+		{
+			public String handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+			{
+				return new BufferedReader(new InputStreamReader(body, "UTF-8")).readLine();
+			}
+		});
+		assertEquals("body", body);
+		ServerSocket closed = new ServerSocket(0);
+		closed.close();
+		try
+		{
+			client.makeUnsignedApiCall("http://localhost:" + closed.getLocalPort() + "/catalog/people/2", parameters);
+			fail();
+		}
+		catch (Exception e)
+		{
+			// refused
+		}
+
+		assertEquals(2, registry.getHistogram(EndpointFamily.AUTOCOMPLETE, "GET", StatusClass.SUCCESS).getSnapshot().getCount());
+		assertEquals(1, registry.getHistogram(EndpointFamily.CATALOG_TITLE, "get", StatusClass.CLIENT_ERROR).getSnapshot().getCount());
+		assertEquals(1, registry.getHistogram(EndpointFamily.PEOPLE, "GET", StatusClass.SUCCESS).getSnapshot().getCount());
+		assertEquals(1, registry.getHistogram(EndpointFamily.PEOPLE, "GET", StatusClass.FAILED).getSnapshot().getCount());
+		assertNull(registry.getHistogram(EndpointFamily.PEOPLE, "POST", StatusClass.SUCCESS));
+		List<HistogramRegistry.Series> series = registry.getSeries();
+		assertEquals(4, series.size());
+		assertEquals(EndpointFamily.CATALOG_TITLE, series.get(0).getFamily());
+		assertTrue(series.get(0).getSnapshot().getMaxMicros() > 0);
+
+		client.setMetricsRegistry(null);
+		registry.reset();
+		assertTrue(registry.getSeries().isEmpty());
+	}
+
+	@Test
+	public void writesPrometheusText()
+	{
+		HistogramRegistry registry = new HistogramRegistry();
+		for (int i = 1; i <= 100; i++)
+			registry.recordCall(EndpointFamily.CATALOG_SEARCH, "GET", StatusClass.SUCCESS, i * 1000000L);
+		registry.recordCall(EndpointFamily.USER, "POST", StatusClass.forStatus(503), 2500000);
+		registry.recordCall(EndpointFamily.USER, "PUT", StatusClass.SUCCESS, 1000);
+
+		String text = registry.toText();
+		assertTrue(text, text.contains("# TYPE nfjc_calls_total counter\n"));
+		assertTrue(text, text.contains("nfjc_calls_total{family=\"catalog_search\",method=\"GET\",status=\"2xx\"} 100\n"));
+		assertTrue(text, text.contains("nfjc_calls_total{family=\"user\",method=\"POST\",status=\"5xx\"} 1\n"));
+		assertTrue(text, text.contains("nfjc_calls_total{family=\"user\",method=\"OTHER\",status=\"2xx\"} 1\n"));
+		assertTrue(text, text.contains(
+			"nfjc_call_latency_microseconds{family=\"catalog_search\",method=\"GET\",status=\"2xx\",quantile=\"0.5\"} 50"));
+		assertTrue(text, text.contains(
+			"nfjc_call_latency_microseconds_count{family=\"catalog_search\",method=\"GET\",status=\"2xx\"} 100\n"));
+		assertTrue(text, text.contains(
+			"nfjc_call_latency_microseconds_max{family=\"user\",method=\"POST\",status=\"5xx\"} 2500\n"));
+		assertEquals("One line per sample, a HELP and TYPE line per metric", 8 + 3 * 9, text.split("\n").length);
+	}
+
+}
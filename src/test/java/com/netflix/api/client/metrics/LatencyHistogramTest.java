@@ -0,0 +1,98 @@
+package com.netflix.api.client.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+	@Test
+	public void bucketsAreContiguous()
+	{
+		assertEquals(0, LatencyHistogram.index(0));
+		assertEquals(63, LatencyHistogram.index(63));
+		for (long value = 1; value < 1000000; value++)
+		{
+			int index = LatencyHistogram.index(value);
+			assertTrue(index == LatencyHistogram.index(value - 1) || index == LatencyHistogram.index(value - 1) + 1);
+			assertTrue(value <= LatencyHistogram.highestValue(index));
+			assertTrue(value > LatencyHistogram.highestValue(index - 1));
+		}
+		assertEquals(1023, LatencyHistogram.index(LatencyHistogram.MAX_MICROS));
+	}
+
+	@Test
+	public void percentilesAreWithinThreePercent()
+	{
+		Random random = new Random(42);
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] micros = new long[100000];
+		for (int i = 0; i < micros.length; i++)
+		{
+			// log-normal, as latencies tend to be
+			micros[i] = (long) Math.exp(8 + random.nextGaussian());
+			histogram.record(micros[i] * 1000 + 999);
+		}
+		Arrays.sort(micros);
+		LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+		assertEquals(micros.length, snapshot.getCount());
+		assertEquals(micros[micros.length - 1], snapshot.getMaxMicros());
+		for (double percentile : new double[] { 1, 50, 90, 99, 99.9, 100 })
+		{
+			long exact = micros[(int) Math.ceil(percentile / 100 * micros.length) - 1];
+			long estimate = snapshot.getValueAtPercentile(percentile);
+			assertTrue(percentile + ": " + estimate + " for " + exact, estimate >= exact && estimate <= exact * 1.035);
+		}
+		long total = 0;
+		for (long value : micros)
+			total += value;
+		assertEquals(total, snapshot.getTotalMicros());
+
+		assertEquals(0, new LatencyHistogram().getSnapshot().getValueAtPercentile(99));
+		histogram = new LatencyHistogram();
+		histogram.record(Long.MAX_VALUE);
+		histogram.record(-5);
+		assertEquals(LatencyHistogram.MAX_MICROS, histogram.getSnapshot().getValueAtPercentile(100));
+		assertEquals(0, histogram.getSnapshot().getValueAtPercentile(50));
+	}
+
+	@Test
+	public void recordsConcurrently() throws Exception
+	{
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final int offset = t;
+			threads[t] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						start.await();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+					for (int i = 0; i < 50000; i++)
+						histogram.record((i % 1000 + offset) * 1000L);
+				}
+			});
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+		LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+		assertEquals(200000, snapshot.getCount());
+		assertEquals(1002, snapshot.getMaxMicros());
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.netflix.api.client.metrics;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.netflix.api.client.EndpointFamily;
+
+/**
+ * Measures what timing a call costs: a <code>HistogramRegistry</code>
+ * recording from one thread and from several at once, all into the same
+ * histogram, the worst case for contention.  An API call takes tens of
+ * milliseconds, so anything under a microsecond is lost in its noise. <br />
+ * Run as <code>java ... com.netflix.api.client.metrics.MetricsOverheadBenchmark [threads]</code>
+ */
+public class MetricsOverheadBenchmark
+{
+	private static final int CALLS = 5000000;
+
+	public static void main(String[] args) throws Exception
+	{
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		for (int round = 0; round < 3; round++)
+		{
+			System.out.println(String.format("1 thread:  %,6.1f ns per call", run(1)));
+			System.out.println(String.format("%d threads: %,6.1f ns per call", threads, run(threads)));
+		}
+	}
+
+	private static double run(int threads) throws InterruptedException
+	{
+		final HistogramRegistry registry = new HistogramRegistry();
+		final CountDownLatch start = new CountDownLatch(1);
+		final int calls = CALLS / threads;
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++)
+		{
+			workers[t] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						start.await();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+					for (int i = 0; i < calls; i++)
+					{
+						long begin = System.nanoTime();
+						registry.recordCall(EndpointFamily.CATALOG_TITLE, "GET", StatusClass.SUCCESS,
+							System.nanoTime() - begin + (i & 0xffff) * 1000L);
+					}
+				}
+			});
+			workers[t].start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread worker : workers)
+			worker.join();
+		long elapsed = System.nanoTime() - begin;
+		long recorded = registry.getHistogram(EndpointFamily.CATALOG_TITLE, "GET", StatusClass.SUCCESS).getSnapshot()
+			.getCount();
+		if (recorded != (long) calls * threads)
+			throw new IllegalStateException("Recorded " + recorded + " calls");
+		// per call on each thread, as each call waits for its own recording
+		return (double) elapsed * threads / recorded;
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.netflix.api.client.paging;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.model.ResultPage;
+
+public class PagingIteratorTest
+{
+	private static final APIRequest SEARCH = APIRequest.consumerSigned("http://api.netflix.com/catalog/titles",
+			new HashMap<String, String>(Collections.singletonMap("term", "kill bill")), NetflixAPIClient.GET_METHOD_TYPE);
+	
+	@Test
+	public void iteratesEveryItemInOrder() throws Exception
+	{
+		NumberPages pages = new NumberPages(250);
+		PagingIterator<Integer> iterator = new PagingIterator<Integer>(SEARCH, pages, 100, 2);
+		int expected = 0;
+		while (iterator.hasNext())
+			assertEquals("Items should arrive in order", expected++, iterator.next().intValue());
+		assertEquals("Every item should be read", 250, expected);
+		assertEquals("No page past the end should be requested", 3, pages.requested.size());
+		assertEquals(250, iterator.getTotalResults());
+	}
+	
+	@Test
+	public void prefetchesAheadOfTheConsumer() throws Exception
+	{
+		NumberPages pages = new NumberPages(1000);
+		PagingIterator<Integer> iterator = new PagingIterator<Integer>(SEARCH, pages, 100, 3);
+		iterator.next();
+		assertEquals("Pages should be fetched ahead", 3, iterator.getPendingPageCount());
+		iterator.close();
+		assertFalse("A closed iterator should be empty", iterator.hasNext());
+	}
+	
+	@Test
+	public void closeAbortsOutstandingPages() throws Exception
+	{
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final List<APIRequest> inFlight = Collections.synchronizedList(new ArrayList<APIRequest>());
+		PageFetcher<Integer> fetcher = new PageFetcher<Integer>()
+		{
+			public ResultPage<Integer> fetch(APIRequest pageRequest) throws Exception
+			{
+				if (!"0".equals(pageRequest.getCallParameters().get("start_index")))
+				{
+					inFlight.add(pageRequest);
+					blocked.countDown();
+					while (!pageRequest.isAborted())
+						Thread.sleep(5);
+					throw new Exception("aborted");
+				}
+				return NumberPages.page(0, 10, 100);
+			}
+		};
+		PagingIterator<Integer> iterator = new PagingIterator<Integer>(SEARCH, fetcher, 10, 1);
+		iterator.next();
+		assertTrue("The next page should be in flight", blocked.await(5, TimeUnit.SECONDS));
+		iterator.close();
+		assertTrue("Closing should abort the page in flight", inFlight.get(0).isAborted());
+	}
+	
+	/**
+	 * Serves pages of consecutive numbers.
+	 */
+	static class NumberPages implements PageFetcher<Integer>
+	{
+		final List<Integer> requested = Collections.synchronizedList(new ArrayList<Integer>());
+		
+		private final int total;
+		
+		NumberPages(int total)
+		{
+			this.total = total;
+		}
+		
+		public ResultPage<Integer> fetch(APIRequest pageRequest) throws Exception
+		{
+			int start = Integer.parseInt(pageRequest.getCallParameters().get("start_index"));
+			int max = Integer.parseInt(pageRequest.getCallParameters().get("max_results"));
+			requested.add(start);
+			return page(start, max, this.total);
+		}
+		
+		static ResultPage<Integer> page(int start, int max, int total)
+		{
+			ResultPage<Integer> page = new ResultPage<Integer>();
+			page.setNumberOfResults(total);
+			page.setStartIndex(start);
+			page.setResultsPerPage(max);
+			for (int i = start; i < Math.min(start + max, total); i++)
+				page.addItem(i);
+			return page;
+		}
+	}
+	
+}
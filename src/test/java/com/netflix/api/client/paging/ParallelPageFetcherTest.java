@@ -0,0 +1,151 @@
+package com.netflix.api.client.paging;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.model.ResultPage;
+
+public class ParallelPageFetcherTest
+{
+	private final ExecutorService executor = Executors.newFixedThreadPool(16);
+	
+	@After
+	public void shutdown()
+	{
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void deliversAllItemsInOrderWithBoundedParallelism() throws Exception
+	{
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final Random random = new Random(42);
+		PageFetcher<Integer> fetcher = new PageFetcher<Integer>()
+		{
+			PagingIteratorTest.NumberPages pages = new PagingIteratorTest.NumberPages(1234);
+			
+			public ResultPage<Integer> fetch(APIRequest pageRequest) throws Exception
+			{
+				int now = inFlight.incrementAndGet();
+				synchronized (maxInFlight)
+				{
+					maxInFlight.set(Math.max(maxInFlight.get(), now));
+				}
+				try
+				{
+					// finish out of order
+					Thread.sleep(random.nextInt(10));
+					return pages.fetch(pageRequest);
+				}
+				finally
+				{
+					inFlight.decrementAndGet();
+				}
+			}
+		};
+		
+		final List<Integer> received = new ArrayList<Integer>();
+		int count = new ParallelPageFetcher(executor, 4).fetchAll(search(), fetcher, 50, new ItemConsumer<Integer>()
+		{
+			public void accept(Integer item)
+			{
+				received.add(item);
+			}
+		});
+		assertEquals("Every item should be delivered", 1234, count);
+		for (int i = 0; i < received.size(); i++)
+			assertEquals("Items should be delivered in order", i, received.get(i).intValue());
+		assertTrue("At most 4 pages should be in flight, saw " + maxInFlight.get(), maxInFlight.get() <= 4);
+		assertTrue("Pages should be fetched concurrently", maxInFlight.get() > 1);
+	}
+	
+	@Test
+	public void failureStopsTheFetch() throws Exception
+	{
+		final PagingIteratorTest.NumberPages pages = new PagingIteratorTest.NumberPages(1000);
+		PageFetcher<Integer> fetcher = new PageFetcher<Integer>()
+		{
+			public ResultPage<Integer> fetch(APIRequest pageRequest) throws Exception
+			{
+				if ("300".equals(pageRequest.getCallParameters().get("start_index")))
+					throw new Exception("boom");
+				return pages.fetch(pageRequest);
+			}
+		};
+		final AtomicInteger received = new AtomicInteger();
+		try
+		{
+			new ParallelPageFetcher(executor, 3).fetchAll(search(), fetcher, 100, new ItemConsumer<Integer>()
+			{
+				public void accept(Integer item)
+				{
+					received.incrementAndGet();
+				}
+			});
+			fail("The failed page should be reported");
+		}
+		catch (PageFetchException e)
+		{
+			assertEquals(300, e.getStartIndex());
+		}
+		assertEquals("Only the pages before the failure should be delivered", 300, received.get());
+	}
+	
+	@Test
+	public void pagesUntilAShortPageWithoutATotal() throws Exception
+	{
+		final PagingIteratorTest.NumberPages pages = new PagingIteratorTest.NumberPages(1234);
+		PageFetcher<Integer> fetcher = new PageFetcher<Integer>()
+		{
+			public ResultPage<Integer> fetch(APIRequest pageRequest) throws Exception
+			{
+				ResultPage<Integer> page = pages.fetch(pageRequest);
+				page.setNumberOfResults(-1);
+				return page;
+			}
+		};
+		final List<Integer> received = new ArrayList<Integer>();
+		ItemConsumer<Integer> consumer = new ItemConsumer<Integer>()
+		{
+			public void accept(Integer item)
+			{
+				received.add(item);
+			}
+		};
+		assertEquals(1234, new ParallelPageFetcher(executor, 4).fetchAll(search(), fetcher, 100, consumer));
+		for (int i = 0; i < received.size(); i++)
+			assertEquals(i, received.get(i).intValue());
+		assertTrue("No more than a window past the last page: " + pages.requested.size(), pages.requested.size() <= 13 + 4);
+		
+		received.clear();
+		assertEquals("A full last page is followed by an empty one", 1200,
+			new ParallelPageFetcher(executor, 1).fetchAll(search(), new PageFetcher<Integer>()
+			{
+				public ResultPage<Integer> fetch(APIRequest pageRequest) throws Exception
+				{
+					int start = Integer.parseInt(pageRequest.getCallParameters().get("start_index"));
+					ResultPage<Integer> page = PagingIteratorTest.NumberPages.page(start, 100, 1200);
+					page.setNumberOfResults(-1);
+					return page;
+				}
+			}, 100, consumer));
+	}
+	
+	private static APIRequest search()
+	{
+		return APIRequest.consumerSigned("http://api.netflix.com/catalog/titles", null, NetflixAPIClient.GET_METHOD_TYPE);
+	}
+	
+}
@@ -0,0 +1,226 @@
+package com.netflix.api.client.reactive;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.APIResult;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.NetflixAPICustomer;
+import com.netflix.api.client.ResponseHandler;
+import com.netflix.api.client.paging.PageFetcher;
+import com.netflix.api.model.ResultPage;
+
+public class PagingPublisherTest
+{
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	
+	@After
+	public void shutdown()
+	{
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void requestsPagesOnlyAsDemandArrives() throws Exception
+	{
+		final List<String> requested = new ArrayList<String>();
+		PageFetcher<Integer> fetcher = new PageFetcher<Integer>()
+		{
+			public ResultPage<Integer> fetch(APIRequest pageRequest)
+			{
+				int start = Integer.parseInt(pageRequest.getCallParameters().get("start_index"));
+				int max = Integer.parseInt(pageRequest.getCallParameters().get("max_results"));
+				synchronized (requested)
+				{
+					requested.add(start + "+" + max);
+				}
+				ResultPage<Integer> page = new ResultPage<Integer>();
+				page.setNumberOfResults(30);
+				for (int i = start; i < Math.min(start + max, 30); i++)
+					page.addItem(i);
+				return page;
+			}
+		};
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+		new PagingPublisher<Integer>(search(), fetcher, 20, executor).subscribe(subscriber);
+		assertTrue("Nothing should be fetched without demand", requested.isEmpty());
+		
+		subscriber.subscription.request(1);
+		subscriber.awaitItems(1);
+		assertEquals("A whole page should be fetched whatever the demand", Arrays.asList("0+20"), requested);
+		subscriber.subscription.request(4);
+		subscriber.awaitItems(5);
+		assertEquals("Items left from the page should be served first", 1, requested.size());
+		
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertTrue("The stream should complete", subscriber.completed.await(5, TimeUnit.SECONDS));
+		assertEquals(30, subscriber.items.size());
+		assertEquals(Arrays.asList("0+20", "20+20"), requested);
+		for (int i = 0; i < 30; i++)
+			assertEquals(i, subscriber.items.get(i).intValue());
+	}
+	
+	@Test
+	public void cancelAbortsRequestInFlight() throws Exception
+	{
+		final CountDownLatch fetching = new CountDownLatch(1);
+		final List<APIRequest> seen = new ArrayList<APIRequest>();
+		PageFetcher<Integer> fetcher = new PageFetcher<Integer>()
+		{
+			public ResultPage<Integer> fetch(APIRequest pageRequest) throws Exception
+			{
+				seen.add(pageRequest);
+				fetching.countDown();
+				while (!pageRequest.isAborted())
+					Thread.sleep(5);
+				throw new Exception("aborted");
+			}
+		};
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+		new PagingPublisher<Integer>(search(), fetcher, 20, executor).subscribe(subscriber);
+		subscriber.subscription.request(1);
+		assertTrue(fetching.await(5, TimeUnit.SECONDS));
+		subscriber.subscription.cancel();
+		assertTrue("Cancelling should abort the request", seen.get(0).isAborted());
+		Thread.sleep(50);
+		assertNull("No error should follow a cancel", subscriber.error);
+	}
+	
+	@Test
+	public void sweepPublishesOneResultPerCustomer() throws Exception
+	{
+		NetflixAPIClient client = new NetflixAPIClient("key", "secret")
+		{
+			@SuppressWarnings("unchecked")
+			public <T> T execute(APIRequest request, ResponseHandler<T> handler) throws Exception
+			{
+				if (request.getCustomer().getUsername().equals("bad"))
+					throw new Exception("revoked");
+				return (T) request.getCustomer().getUsername();
+			}
+		};
+		List<NetflixAPICustomer> customers = Arrays.asList(new NetflixAPICustomer("a", "x"),
+				new NetflixAPICustomer("bad", "x"), new NetflixAPICustomer("c", "x"));
+		CustomerRequestFactory requests = new CustomerRequestFactory()
+		{
+			public APIRequest requestFor(NetflixAPICustomer customer)
+			{
+				return APIRequest.customerAuthorized("http://api.netflix.com/users/x/queues/disc", customer, null,
+						NetflixAPIClient.GET_METHOD_TYPE);
+			}
+		};
+		RecordingSubscriber<APIResult<String>> subscriber = new RecordingSubscriber<APIResult<String>>();
+		new CustomerSweepPublisher<String>(client, customers, requests, null, executor).subscribe(subscriber);
+		subscriber.subscription.request(10);
+		assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+		assertEquals(3, subscriber.items.size());
+		assertEquals("a", subscriber.items.get(0).getValue());
+		assertFalse("A failed customer should not end the sweep", subscriber.items.get(1).isSuccess());
+		assertEquals("c", subscriber.items.get(2).getValue());
+	}
+	
+	@Test
+	public void sweepCallsCustomersInParallelUpToTheDemand() throws Exception
+	{
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger mostRunning = new AtomicInteger();
+		final AtomicInteger calls = new AtomicInteger();
+		NetflixAPIClient client = new NetflixAPIClient("key", "secret")
+		{
+			@SuppressWarnings("unchecked")
+			public <T> T execute(APIRequest request, ResponseHandler<T> handler) throws Exception
+			{
+				calls.incrementAndGet();
+				int now = running.incrementAndGet();
+				synchronized (mostRunning)
+				{
+					mostRunning.set(Math.max(mostRunning.get(), now));
+				}
+				Thread.sleep(50);
+				running.decrementAndGet();
+				return (T) request.getCustomer().getUsername();
+			}
+		};
+		List<NetflixAPICustomer> customers = new ArrayList<NetflixAPICustomer>();
+		for (int i = 0; i < 7; i++)
+			customers.add(new NetflixAPICustomer("c" + i, "x"));
+		CustomerRequestFactory requests = new CustomerRequestFactory()
+		{
+			public APIRequest requestFor(NetflixAPICustomer customer)
+			{
+				return APIRequest.customerAuthorized("http://api.netflix.com/users/x/queues/disc", customer, null,
+						NetflixAPIClient.GET_METHOD_TYPE);
+			}
+		};
+		RecordingSubscriber<APIResult<String>> subscriber = new RecordingSubscriber<APIResult<String>>();
+		new CustomerSweepPublisher<String>(client, customers, requests, null, executor, 3).subscribe(subscriber);
+		subscriber.subscription.request(1);
+		subscriber.awaitItems(1);
+		assertEquals("Only the demanded customer should be called", 1, calls.get());
+		
+		subscriber.subscription.request(10);
+		assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+		assertEquals(3, mostRunning.get());
+		assertEquals(7, calls.get());
+		for (int i = 0; i < 7; i++)
+			assertEquals("Results should keep customer order", "c" + i, subscriber.items.get(i).getValue());
+	}
+	
+	private static APIRequest search()
+	{
+		return APIRequest.consumerSigned("http://api.netflix.com/catalog/titles", null, NetflixAPIClient.GET_METHOD_TYPE);
+	}
+	
+	static class RecordingSubscriber<T> implements Subscriber<T>
+	{
+		final List<T> items = new ArrayList<T>();
+		
+		final CountDownLatch completed = new CountDownLatch(1);
+		
+		volatile Subscription subscription;
+		
+		volatile Throwable error;
+		
+		public void onSubscribe(Subscription subscription)
+		{
+			this.subscription = subscription;
+		}
+		
+		public synchronized void onNext(T item)
+		{
+			items.add(item);
+			notifyAll();
+		}
+		
+		public void onError(Throwable error)
+		{
+			this.error = error;
+		}
+		
+		public void onComplete()
+		{
+			completed.countDown();
+		}
+		
+		synchronized void awaitItems(int count) throws InterruptedException
+		{
+			long deadline = System.currentTimeMillis() + 5000;
+			while (items.size() < count && System.currentTimeMillis() < deadline)
+				wait(100);
+			assertEquals(count, items.size());
+		}
+	}
+	
+}
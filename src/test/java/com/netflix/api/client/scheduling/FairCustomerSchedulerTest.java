@@ -0,0 +1,120 @@
+package com.netflix.api.client.scheduling;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.NetflixAPICustomer;
+
+public class FairCustomerSchedulerTest
+{
+	private FairCustomerScheduler scheduler;
+
+	private List<String> executionOrder = new Vector<String>();
+
+	@Test
+	public void heavyCustomerDoesNotMonopolizeWorkers() throws Exception
+	{
+		scheduler = new FairCustomerScheduler(new NetflixAPIClient("foo", "bar"), 1, 1, 10);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		scheduler.submit("blocker", new Callable<String>()
+		{
+			public String call() throws Exception
+			{
+				started.countDown();
+				gate.await();
+				return "blocker";
+			}
+		}, 1);
+		started.await();
+
+		for (int i = 0; i < 4; i++)
+			scheduler.submit("heavy", this.record("heavy"), 1);
+		Future<String> last = null;
+		for (int i = 0; i < 2; i++)
+			last = scheduler.submit("light", this.record("light"), 1);
+		gate.countDown();
+
+		last.get();
+		assertEquals("Customers should be interleaved",
+				Arrays.asList("heavy", "light", "heavy", "light"), executionOrder.subList(0, 4));
+	}
+
+	@Test
+	public void inFlightIsBoundedPerCustomer() throws Exception
+	{
+		scheduler = new FairCustomerScheduler(new NetflixAPIClient("foo", "bar"), 4, 2, 100);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		Future<?> last = null;
+		for (int i = 0; i < 20; i++)
+		{
+			last = scheduler.submit("customer", new Callable<String>()
+			{
+				public String call() throws Exception
+				{
+					int now = running.incrementAndGet();
+					synchronized (maxRunning)
+					{
+						if (now > maxRunning.get())
+							maxRunning.set(now);
+					}
+					Thread.sleep(5);
+					running.decrementAndGet();
+					return null;
+				}
+			}, 1);
+		}
+		last.get();
+		assertTrue("At most two calls should run at once for one customer", maxRunning.get() <= 2);
+	}
+
+	@Test
+	public void requestWithoutCustomerIsRejected() throws Exception
+	{
+		scheduler = new FairCustomerScheduler(new NetflixAPIClient("foo", "bar"), 1, 1, 1);
+		try
+		{
+			scheduler.submit(APIRequest.customerAuthorized("http://foo.com", new NetflixAPICustomer(), null, "GET"));
+		}
+		catch (NetflixAPIException e)
+		{
+			return;
+		}
+		fail("A request without a customer should be rejected.");
+	}
+
+	@After
+	public void after() throws Exception
+	{
+		scheduler.shutdown();
+		assertTrue("Workers should exit after shutdown", scheduler.awaitTermination(5000));
+		assertEquals("Idle customers should be forgotten", 0, scheduler.getActiveCustomerCount());
+	}
+
+	private Callable<String> record(final String name)
+	{
+		return new Callable<String>()
+		{
+			public String call()
+			{
+				executionOrder.add(name);
+				return name;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.netflix.api.client.scheduling;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.netflix.api.client.NetflixAPIClient;
+
+public class PriorityRequestSchedulerTest
+{
+	private PriorityRequestScheduler scheduler;
+
+	private List<String> executionOrder = new Vector<String>();
+
+	@Test
+	public void interactiveOvertakesBackground() throws Exception
+	{
+		scheduler = new PriorityRequestScheduler(new NetflixAPIClient("foo", "bar"), 1, 60000);
+		CountDownLatch gate = this.blockWorker();
+
+		scheduler.submit(this.record("background-1"), RequestPriority.BACKGROUND);
+		scheduler.submit(this.record("background-2"), RequestPriority.BACKGROUND);
+		Future<String> last = scheduler.submit(this.record("interactive"), RequestPriority.INTERACTIVE);
+		assertEquals("Calls should be waiting", 2, scheduler.getQueueDepth(RequestPriority.BACKGROUND));
+		gate.countDown();
+
+		last.get();
+		assertEquals("Interactive call should run first", "interactive", executionOrder.get(1));
+	}
+
+	@Test
+	public void agedBackgroundIsNotStarved() throws Exception
+	{
+		scheduler = new PriorityRequestScheduler(new NetflixAPIClient("foo", "bar"), 1, 0);
+		CountDownLatch gate = this.blockWorker();
+
+		Future<String> background = scheduler.submit(this.record("background"), RequestPriority.BACKGROUND);
+		scheduler.submit(this.record("interactive"), RequestPriority.INTERACTIVE);
+		gate.countDown();
+
+		background.get();
+		assertEquals("Aged background call should run first", "background", executionOrder.get(1));
+	}
+
+	@Test
+	public void agedBackgroundDoesNotStarveInteractive() throws Exception
+	{
+		scheduler = new PriorityRequestScheduler(new NetflixAPIClient("foo", "bar"), 1, 20);
+		final AtomicInteger backgroundRun = new AtomicInteger();
+		Callable<String> background = new Callable<String>()
+		{
+			public String call() throws Exception
+			{
+				Thread.sleep(1);
+				backgroundRun.incrementAndGet();
+				return "background";
+			}
+		};
+		for (int i = 0; i < 100; i++)
+			scheduler.submit(background, RequestPriority.BACKGROUND);
+		Thread.sleep(50);
+
+		for (int round = 0; round < 10; round++)
+		{
+			// keep the aged backlog growing
+			for (int i = 0; i < 10; i++)
+				scheduler.submit(background, RequestPriority.BACKGROUND);
+			final int before = backgroundRun.get();
+			int overtaken = scheduler.submit(new Callable<Integer>()
+			{
+				public Integer call()
+				{
+					return backgroundRun.get() - before;
+				}
+			}, RequestPriority.INTERACTIVE).get();
+			// the one running, one started before the submission lands, and one aged call
+			assertTrue("Background calls run ahead of an interactive one: " + overtaken, overtaken <= 3);
+		}
+		assertTrue("The backlog should still be waiting", scheduler.getQueueDepth(RequestPriority.BACKGROUND) > 100);
+		assertTrue("Aged background calls should still make progress", backgroundRun.get() > 0);
+	}
+
+	@Test
+	public void failuresReachTheSubmitter() throws Exception
+	{
+		scheduler = new PriorityRequestScheduler(new NetflixAPIClient("foo", "bar"), 1);
+		Future<String> future = scheduler.submit(new Callable<String>()
+		{
+			public String call() throws Exception
+			{
+				throw new IllegalStateException("boom");
+			}
+		}, RequestPriority.NORMAL);
+		try
+		{
+			future.get();
+		}
+		catch (Exception e)
+		{
+			assertTrue("Cause should be preserved", e.getCause() instanceof IllegalStateException);
+			return;
+		}
+		fail("Failure should have been reported through the future.");
+	}
+
+	@After
+	public void after() throws Exception
+	{
+		scheduler.shutdown();
+		assertTrue("Workers should exit after shutdown", scheduler.awaitTermination(5000));
+	}
+
+	/**
+	 * Occupies the single worker until the returned latch is released.
+	 */
+	private CountDownLatch blockWorker() throws Exception
+	{
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		scheduler.submit(new Callable<String>()
+		{
+			public String call() throws Exception
+			{
+				executionOrder.add("blocker");
+				started.countDown();
+				gate.await();
+				return "blocker";
+			}
+		}, RequestPriority.INTERACTIVE);
+		started.await();
+		return gate;
+	}
+
+	private Callable<String> record(final String name)
+	{
+		return new Callable<String>()
+		{
+			public String call()
+			{
+				executionOrder.add(name);
+				return name;
+			}
+		};
+	}
+
+}
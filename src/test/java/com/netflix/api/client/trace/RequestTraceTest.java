@@ -0,0 +1,280 @@
+package com.netflix.api.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.api.NetflixAPIResponse;
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.EndpointFamily;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.ResponseHandler;
+import com.netflix.api.client.dal.StripedHttpConnectionManager;
+
+public class RequestTraceTest
+{
+	private ServerSocket server;
+
+	private String base;
+
+	private Map<String, String> parameters;
+
+	/**
+	 * Answers every request with a 200.
+	 */
+	@Before
+	public void startServer() throws Exception
+	{
+		server = new ServerSocket(0);
+		Thread thread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					while (true)
+					{
+						Socket socket = server.accept();
+						BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+						String line;
+						while ((line = in.readLine()) != null && line.length() > 0)
+						{
+							// skip the request line and headers
+						}
+						OutputStream out = socket.getOutputStream();
+						out.write("HTTP/1.1 200 OK\r\nContent-Length: 4\r\nConnection: close\r\n\r\nbody".getBytes("ISO-8859-1"));
+						out.flush();
+						socket.close();
+					}
+				}
+				catch (Exception e)
+				{
+					// server closed
+				}
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+		base = "http://localhost:" + server.getLocalPort();
+		parameters = new HashMap<String, String>();
+		parameters.put("term", "ga");
+	}
+
+	@After
+	public void stopServer() throws Exception
+	{
+		server.close();
+	}
+
+	@Test
+	public void reportsEveryPhaseThroughAStripedPool() throws Exception
+	{
+		NetflixAPIClient client = new NetflixAPIClient("key", "secret");
+		client.getHttpClient().setHttpConnectionManager(new StripedHttpConnectionManager(2, 2));
+		RecordingListener listener = new RecordingListener();
+		client.addRequestListener(listener);
+
+		assertEquals(200, client.makeUnsignedApiCall(base + "/catalog/titles/autocomplete", parameters).getStatusCode());
+		assertEquals(Arrays.asList(RequestPhase.SIGNING, RequestPhase.POOL_WAIT, RequestPhase.CONNECT,
+			RequestPhase.REQUEST_WRITE, RequestPhase.TIME_TO_FIRST_BYTE, RequestPhase.BODY_READ), listener.phases);
+		listener.assertContiguous();
+		assertEquals(1, listener.ended.size());
+		RequestTrace trace = listener.ended.get(0);
+		assertEquals("GET", trace.getMethod());
+		assertEquals(EndpointFamily.AUTOCOMPLETE, trace.getFamily());
+		assertEquals(200, trace.getStatusCode());
+		assertEquals("The listener's own state stays with the call", "span", trace.getAttachment());
+		assertNull(listener.failures.get(0));
+
+		listener.clear();
+		String body = client.execute(APIRequest.unsigned(base + "/catalog/people/1", parameters), new ResponseHandler<String>()
+		{
+			public String handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+			{
+				return new BufferedReader(new InputStreamReader(body, "UTF-8")).readLine();
+			}
+		});
+		assertEquals("body", body);
+		assertEquals(RequestPhase.SIGNING, listener.phases.get(0));
+		assertEquals(RequestPhase.BODY_READ, listener.phases.get(listener.phases.size() - 1));
+		listener.assertContiguous();
+
+		listener.clear();
+		client.removeRequestListener(listener);
+		client.makeUnsignedApiCall(base + "/catalog/titles/autocomplete", parameters);
+		assertTrue(listener.phases.isEmpty());
+		assertTrue(listener.ended.isEmpty());
+	}
+
+	@Test
+	public void reportsTheWaitAsOneWithOtherPools() throws Exception
+	{
+		NetflixAPIClient client = new NetflixAPIClient("key", "secret");
+		RecordingListener listener = new RecordingListener();
+		client.addRequestListener(listener);
+
+		client.makeUnsignedApiCall(base + "/catalog/titles/autocomplete", parameters);
+		assertEquals(Arrays.asList(RequestPhase.SIGNING, RequestPhase.TIME_TO_FIRST_BYTE, RequestPhase.BODY_READ),
+			listener.phases);
+		listener.assertContiguous();
+
+		listener.clear();
+		ServerSocket closed = new ServerSocket(0);
+		closed.close();
+		try
+		{
+			client.makeUnsignedApiCall("http://localhost:" + closed.getLocalPort() + "/catalog/people/2", parameters);
+			fail();
+		}
+		catch (Exception e)
+		{
+			assertSame(e, listener.failures.get(0));
+		}
+		assertEquals(Arrays.asList(RequestPhase.SIGNING), listener.phases);
+		assertEquals(0, listener.ended.get(0).getStatusCode());
+	}
+
+	@Test
+	public void nestedCallsKeepTheirOwnTraces() throws Exception
+	{
+		final NetflixAPIClient client = new NetflixAPIClient("key", "secret");
+		client.getHttpClient().setHttpConnectionManager(new StripedHttpConnectionManager(2, 2));
+		final RecordingListener listener = new RecordingListener();
+		client.addRequestListener(listener);
+
+		String body = client.execute(APIRequest.unsigned(base + "/catalog/people/1", parameters), new ResponseHandler<String>()
+		{
+			public String handleResponse(NetflixAPIResponse response, InputStream body) throws Exception
+			{
+				// the pool's reports once the status line is read, e.g. while draining, are not the call's
+				RequestTrace.currentPhaseEnded(RequestPhase.CONNECT);
+				assertEquals(200, client.makeUnsignedApiCall(base + "/catalog/titles/autocomplete", parameters).getStatusCode());
+				RequestTrace.currentPhaseEnded(RequestPhase.REQUEST_WRITE);
+				return new BufferedReader(new InputStreamReader(body, "UTF-8")).readLine();
+			}
+		});
+		assertEquals("body", body);
+		assertEquals(2, listener.ended.size());
+		List<RequestPhase> all = Arrays.asList(RequestPhase.SIGNING, RequestPhase.POOL_WAIT, RequestPhase.CONNECT,
+			RequestPhase.REQUEST_WRITE, RequestPhase.TIME_TO_FIRST_BYTE, RequestPhase.BODY_READ);
+		assertEquals("The inner call", all, listener.byTrace.get(listener.ended.get(0)));
+		assertEquals("The outer call reports nothing after its status line but reading the body", all,
+			listener.byTrace.get(listener.ended.get(1)));
+
+		RequestTrace outer = new RequestTrace(Collections.<RequestListener>singletonList(listener), "/outer", "GET", 0);
+		RequestTrace inner = new RequestTrace(Collections.<RequestListener>singletonList(listener), "/inner", "GET", 0);
+		outer.bind();
+		inner.bind();
+		RequestTrace.currentPhaseEnded(RequestPhase.CONNECT);
+		inner.unbind();
+		RequestTrace.currentPhaseEnded(RequestPhase.REQUEST_WRITE);
+		outer.unbind();
+		RequestTrace.currentPhaseEnded(RequestPhase.TIME_TO_FIRST_BYTE);
+		assertEquals(Arrays.asList(RequestPhase.CONNECT), listener.byTrace.get(inner));
+		assertEquals(Arrays.asList(RequestPhase.REQUEST_WRITE), listener.byTrace.get(outer));
+	}
+
+	@Test
+	public void aFailingListenerDoesNotFailTheCall() throws Exception
+	{
+		NetflixAPIClient client = new NetflixAPIClient("key", "secret");
+		client.addRequestListener(new RequestListener()
+		{
+			public void requestStarted(RequestTrace trace)
+			{
+				throw new IllegalStateException();
+			}
+
+			public void phaseEnded(RequestTrace trace, RequestPhase phase, long startNanos, long endNanos)
+			{
+				throw new IllegalStateException();
+			}
+
+			public void requestEnded(RequestTrace trace, long endNanos, Exception failure)
+			{
+				throw new IllegalStateException();
+			}
+		});
+		RecordingListener listener = new RecordingListener();
+		client.addRequestListener(listener);
+
+		assertEquals("body", client.makeUnsignedApiCall(base + "/catalog/titles/autocomplete", parameters).getResponseBody());
+		assertEquals(3, listener.phases.size());
+		assertEquals(1, listener.ended.size());
+	}
+
+	private static class RecordingListener implements RequestListener
+	{
+		final List<RequestPhase> phases = new ArrayList<RequestPhase>();
+
+		final List<long[]> times = new ArrayList<long[]>();
+
+		final List<RequestTrace> ended = new ArrayList<RequestTrace>();
+
+		final List<Exception> failures = new ArrayList<Exception>();
+
+		final Map<RequestTrace, List<RequestPhase>> byTrace = new IdentityHashMap<RequestTrace, List<RequestPhase>>();
+
+		public void requestStarted(RequestTrace trace)
+		{
+			trace.setAttachment("span");
+			this.times.add(new long[] { trace.getStartNanos(), trace.getStartNanos() });
+		}
+
+		public void phaseEnded(RequestTrace trace, RequestPhase phase, long startNanos, long endNanos)
+		{
+			this.phases.add(phase);
+			this.times.add(new long[] { startNanos, endNanos });
+			List<RequestPhase> phases = this.byTrace.get(trace);
+			if (phases == null)
+				this.byTrace.put(trace, phases = new ArrayList<RequestPhase>());
+			phases.add(phase);
+		}
+
+		public void requestEnded(RequestTrace trace, long endNanos, Exception failure)
+		{
+			this.ended.add(trace);
+			this.failures.add(failure);
+			this.times.add(new long[] { endNanos, endNanos });
+		}
+
+		/**
+		 * Checks each phase starts where the one before it ended.
+		 */
+		void assertContiguous()
+		{
+			for (int i = 1; i < this.times.size() - 1; i++)
+			{
+				assertEquals("Start of " + this.phases.get(i - 1), this.times.get(i - 1)[1], this.times.get(i)[0]);
+				assertTrue(this.times.get(i)[1] >= this.times.get(i)[0]);
+			}
+			assertTrue(this.times.get(this.times.size() - 1)[0] >= this.times.get(this.times.size() - 2)[1]);
+		}
+
+		void clear()
+		{
+			this.phases.clear();
+			this.times.clear();
+			this.ended.clear();
+			this.failures.clear();
+			this.byTrace.clear();
+		}
+	}
+
+}
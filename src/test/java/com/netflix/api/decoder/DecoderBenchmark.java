@@ -0,0 +1,165 @@
+package com.netflix.api.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jdom.Document;
+import org.jdom.Element;
+
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Link;
+import com.netflix.api.model.ResultPage;
+import com.netflix.api.utils.XMLUtils;
+
+/**
+ * Compares decoding a catalog search response with <code>StaxCatalogDecoder</code>
+ * against the String-then-JDOM path callers use today, mapping both to
+ * <code>CatalogTitle</code>s.  Reports time per response and, where the JVM
+ * supports it, bytes allocated per response.  <code>ProjectingDecoder</code>
+ * is measured too, extracting only <code>ProjectingDecoder.TITLE_SUMMARY</code>. <br />
+ * Run with: <code>java ... com.netflix.api.decoder.DecoderBenchmark [titlesPerResponse]</code>
+ */
+public class DecoderBenchmark
+{
+	private static final int ITERATIONS = 2000;
+	
+	public static void main(String[] args) throws Exception
+	{
+		int titles = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		byte[] response = buildResponse(titles).getBytes("UTF-8");
+		System.out.println("Response: " + titles + " titles, " + response.length + " bytes");
+		
+		// warm up both before measuring
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			decodeStax(response);
+			decodeJdom(response);
+		}
+		
+		for (int round = 0; round < 3; round++)
+		{
+			long jdomAllocated = allocatedBytes();
+			long start = System.nanoTime();
+			int jdomCount = 0;
+			for (int i = 0; i < ITERATIONS; i++)
+				jdomCount += decodeJdom(response).size();
+			long jdomNanos = System.nanoTime() - start;
+			jdomAllocated = allocatedBytes() - jdomAllocated;
+			
+			long staxAllocated = allocatedBytes();
+			start = System.nanoTime();
+			int staxCount = 0;
+			for (int i = 0; i < ITERATIONS; i++)
+				staxCount += decodeStax(response).size();
+			long staxNanos = System.nanoTime() - start;
+			staxAllocated = allocatedBytes() - staxAllocated;
+			
+			long projectedAllocated = allocatedBytes();
+			start = System.nanoTime();
+			int projectedCount = 0;
+			for (int i = 0; i < ITERATIONS; i++)
+				projectedCount += decodeProjected(response).size();
+			long projectedNanos = System.nanoTime() - start;
+			projectedAllocated = allocatedBytes() - projectedAllocated;
+			
+			if (jdomCount != staxCount || staxCount != projectedCount)
+				throw new IllegalStateException("Decoders disagree: " + jdomCount + " vs " + staxCount + " vs " + projectedCount);
+			System.out.println(String.format("JDOM: %8.1f us %,10d B/op   StAX: %8.1f us %,10d B/op   Projected: %8.1f us %,10d B/op",
+					jdomNanos / 1000.0 / ITERATIONS, jdomAllocated / ITERATIONS, staxNanos / 1000.0 / ITERATIONS,
+					staxAllocated / ITERATIONS, projectedNanos / 1000.0 / ITERATIONS, projectedAllocated / ITERATIONS));
+		}
+	}
+	
+	private static List<CatalogTitle> decodeStax(byte[] response) throws Exception
+	{
+		ResultPage<CatalogTitle> page = new StaxCatalogDecoder().decodeTitles(new ByteArrayInputStream(response));
+		return page.getItems();
+	}
+	
+	private static List<CatalogTitle> decodeProjected(byte[] response) throws Exception
+	{
+		return new ProjectingDecoder().decodeTitles(new ByteArrayInputStream(response), ProjectingDecoder.TITLE_SUMMARY,
+				Integer.MAX_VALUE).getItems();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static List<CatalogTitle> decodeJdom(byte[] response) throws Exception
+	{
+		// as NetflixAPIResponse does: the whole body as a String first
+		String body = new String(response, "UTF-8");
+		Document document = XMLUtils.createDocumentFromString(body);
+		List<CatalogTitle> result = new ArrayList<CatalogTitle>();
+		for (Element element : (List<Element>) document.getRootElement().getChildren("catalog_title"))
+		{
+			CatalogTitle title = new CatalogTitle();
+			title.setId(element.getChildTextTrim("id"));
+			Element name = element.getChild("title");
+			title.setShortTitle(name.getAttributeValue("short"));
+			title.setRegularTitle(name.getAttributeValue("regular"));
+			Element boxArt = element.getChild("box_art");
+			title.setBoxArtSmall(boxArt.getAttributeValue("small"));
+			title.setBoxArtMedium(boxArt.getAttributeValue("medium"));
+			title.setBoxArtLarge(boxArt.getAttributeValue("large"));
+			title.setReleaseYear(Integer.parseInt(element.getChildTextTrim("release_year")));
+			title.setRuntime(Integer.parseInt(element.getChildTextTrim("runtime")));
+			title.setAverageRating(Float.parseFloat(element.getChildTextTrim("average_rating")));
+			List<Link> links = new ArrayList<Link>();
+			for (Element link : (List<Element>) element.getChildren("link"))
+				links.add(new Link(link.getAttributeValue("href"), link.getAttributeValue("rel"), link.getAttributeValue("title")));
+			title.setLinks(links);
+			List<String> genres = new ArrayList<String>();
+			List<String> formats = new ArrayList<String>();
+			for (Element category : (List<Element>) element.getChildren("category"))
+				AbstractCatalogDecoder.applyCategory(category.getAttributeValue("scheme"), category.getAttributeValue("label"),
+						title, genres, formats);
+			title.setGenres(genres);
+			title.setFormats(formats);
+			result.add(title);
+		}
+		return result;
+	}
+	
+	private static long allocatedBytes()
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+			if (sun.isThreadAllocatedMemorySupported())
+				return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+	
+	static String buildResponse(int titles)
+	{
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" standalone=\"yes\"?><catalog_titles>");
+		xml.append("<number_of_results>").append(titles * 10).append("</number_of_results>");
+		xml.append("<start_index>0</start_index><results_per_page>").append(titles).append("</results_per_page>");
+		for (int i = 0; i < titles; i++)
+		{
+			String id = "http://api.netflix.com/catalog/titles/movies/" + (60000000 + i);
+			xml.append("<catalog_title><id>").append(id).append("</id>");
+			xml.append("<title short=\"Title ").append(i).append("\" regular=\"The Title Number ").append(i).append("\"/>");
+			xml.append("<box_art small=\"http://cdn.nflximg.com/us/boxshots/tiny/").append(i)
+				.append(".jpg\" medium=\"http://cdn.nflximg.com/us/boxshots/small/").append(i)
+				.append(".jpg\" large=\"http://cdn.nflximg.com/us/boxshots/large/").append(i).append(".jpg\"/>");
+			String[] rels = { "synopsis", "cast", "directors", "format_availability", "screen_formats", "languages_and_audio", "similars" };
+			for (String rel : rels)
+				xml.append("<link href=\"").append(id).append('/').append(rel)
+					.append("\" rel=\"http://schemas.netflix.com/catalog/titles/").append(rel).append("\" title=\"").append(rel).append("\"/>");
+			xml.append("<release_year>").append(1990 + i % 20).append("</release_year>");
+			xml.append("<category scheme=\"http://api.netflix.com/categories/mpaa_ratings\" label=\"PG-13\"/>");
+			xml.append("<category scheme=\"http://api.netflix.com/categories/genres\" label=\"Drama\"/>");
+			xml.append("<category scheme=\"http://api.netflix.com/categories/genres\" label=\"Thrillers\"/>");
+			xml.append("<runtime>").append(5400 + i).append("</runtime>");
+			xml.append("<average_rating>3.").append(i % 10).append("</average_rating>");
+			xml.append("</catalog_title>");
+		}
+		return xml.append("</catalog_titles>").toString();
+	}
+	
+}
@@ -0,0 +1,76 @@
+package com.netflix.api.decoder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.netflix.api.client.paging.ItemConsumer;
+import com.netflix.api.model.CatalogTitle;
+
+/**
+ * Measures how <code>IndexParser</code> scales with threads, parsing the
+ * same generated index file with 1, 2, 4... threads up to the number of
+ * cores. <br />
+ * Run with: <code>java ... com.netflix.api.decoder.IndexParseBenchmark [titles]</code>
+ */
+public class IndexParseBenchmark
+{
+	public static void main(String[] args) throws Exception
+	{
+		int titles = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		File index = File.createTempFile("index", ".xml");
+		index.deleteOnExit();
+		Writer out = new OutputStreamWriter(new FileOutputStream(index), "UTF-8");
+		try
+		{
+			// written in batches, as the whole index would not fit in one String
+			String batch = DecoderBenchmark.buildResponse(1000);
+			String items = batch.substring(batch.indexOf("<catalog_title>"), batch.lastIndexOf("</catalog_titles>"));
+			out.write("<?xml version=\"1.0\" standalone=\"yes\"?><catalog_titles>");
+			for (int i = 0; i < titles / 1000; i++)
+				out.write(items);
+			out.write("</catalog_titles>");
+		}
+		finally
+		{
+			out.close();
+		}
+		System.out.println("Index: " + (titles / 1000 * 1000) + " titles, " + index.length() + " bytes");
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		ItemConsumer<CatalogTitle> discard = new ItemConsumer<CatalogTitle>()
+		{
+			public void accept(CatalogTitle title)
+			{
+				// only parsing is measured
+			}
+		};
+		double single = 0;
+		for (int round = 0; round < 2; round++)
+		{
+			for (int threads = 1; threads <= cores; threads = threads * 2 > cores && threads < cores ? cores : threads * 2)
+			{
+				ExecutorService executor = Executors.newFixedThreadPool(threads);
+				try
+				{
+					IndexParser parser = new IndexParser(executor, threads);
+					long start = System.nanoTime();
+					int count = parser.parse(index, discard);
+					long nanos = System.nanoTime() - start;
+					if (threads == 1)
+						single = nanos;
+					System.out.println(String.format("%3d threads: %,8.1f ms  %,10.0f titles/s  speedup %.2fx",
+						threads, nanos / 1e6, count * 1e9 / nanos, single / nanos));
+				}
+				finally
+				{
+					executor.shutdownNow();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.netflix.api.decoder;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.api.client.paging.ItemConsumer;
+import com.netflix.api.model.CatalogTitle;
+
+public class IndexParserTest
+{
+	private ExecutorService executor;
+
+	private File index;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		executor = Executors.newFixedThreadPool(3);
+		index = File.createTempFile("index", ".xml");
+	}
+
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+		index.delete();
+	}
+
+	@Test
+	public void parsesChunksInFileOrder() throws Exception
+	{
+		String xml = DecoderBenchmark.buildResponse(500);
+		FileUtils.writeStringToFile(index, xml, "UTF-8");
+		List<CatalogTitle> expected = new StaxCatalogDecoder().decodeTitles(new ByteArrayInputStream(xml.getBytes("UTF-8"))).getItems();
+
+		final List<CatalogTitle> parsed = new ArrayList<CatalogTitle>();
+		// small chunks, so that boundaries fall in every part of a title
+		int count = new IndexParser(executor, 3, 997).parse(index, new ItemConsumer<CatalogTitle>()
+		{
+			public void accept(CatalogTitle title)
+			{
+				parsed.add(title);
+			}
+		});
+
+		assertEquals(500, count);
+		assertEquals(expected.size(), parsed.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertEquals(expected.get(i).getId(), parsed.get(i).getId());
+			assertEquals(expected.get(i).getRegularTitle(), parsed.get(i).getRegularTitle());
+			assertEquals(expected.get(i).getLinks().size(), parsed.get(i).getLinks().size());
+		}
+	}
+
+	@Test
+	public void decodesOnlySelectedTitles() throws Exception
+	{
+		String xml = DecoderBenchmark.buildResponse(200);
+		FileUtils.writeStringToFile(index, xml, "UTF-8");
+		final List<IndexParser.IndexedTitle> all = new ArrayList<IndexParser.IndexedTitle>();
+		new IndexParser(executor, 3, 997).parse(index, new IndexParser.TitleSelector()
+		{
+			public boolean decode(long id, long hash)
+			{
+				return true;
+			}
+		}, new ItemConsumer<IndexParser.IndexedTitle>()
+		{
+			public void accept(IndexParser.IndexedTitle title)
+			{
+				all.add(title);
+			}
+		});
+
+		final List<IndexParser.IndexedTitle> some = new ArrayList<IndexParser.IndexedTitle>();
+		// other chunk boundaries, to show they do not change a title's hash
+		new IndexParser(executor, 2, 4099).parse(index, new IndexParser.TitleSelector()
+		{
+			public boolean decode(long id, long hash)
+			{
+				return id % 2 == 0;
+			}
+		}, new ItemConsumer<IndexParser.IndexedTitle>()
+		{
+			public void accept(IndexParser.IndexedTitle title)
+			{
+				some.add(title);
+			}
+		});
+
+		assertEquals(200, all.size());
+		assertEquals(200, some.size());
+		for (int i = 0; i < all.size(); i++)
+		{
+			IndexParser.IndexedTitle title = some.get(i);
+			assertEquals(all.get(i).getId(), title.getId());
+			assertEquals(all.get(i).getHash(), title.getHash());
+			if (title.getId() % 2 == 0)
+				assertEquals(all.get(i).getTitle().getId(), title.getTitle().getId());
+			else assertNull("Titles passed over should not be decoded", title.getTitle());
+		}
+		assertFalse(all.get(0).getHash() == all.get(1).getHash());
+	}
+
+	@Test
+	public void honoursDeclaredEncoding() throws Exception
+	{
+		String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><catalog_titles>"
+			+ "<title_index_item><id>http://api.netflix.com/catalog/titles/movies/1</id><title regular=\"Am\u00e9lie\"/></title_index_item>"
+			+ "<title_index_item><id>http://api.netflix.com/catalog/titles/movies/2</id><title regular=\"Cach\u00e9\"/></title_index_item>"
+			+ "</catalog_titles>";
+		FileUtils.writeStringToFile(index, xml, "ISO-8859-1");
+		final List<String> names = new ArrayList<String>();
+		new IndexParser(executor, 2, 10).parse(index, new ItemConsumer<CatalogTitle>()
+		{
+			public void accept(CatalogTitle title)
+			{
+				names.add(title.getRegularTitle());
+			}
+		});
+		assertEquals("[Am\u00e9lie, Cach\u00e9]", names.toString());
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.netflix.api.decoder;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.client.EndpointFamily;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Person;
+import com.netflix.api.model.QueueItem;
+import com.netflix.api.model.ResultPage;
+
+public class JsonCatalogDecoderTest
+{
+	static final String TITLE =
+		"{\"id\": \"http://api.netflix.com/catalog/titles/movies/60031236\","
+		+ " \"title\": {\"short\": \"Kill Bill: Vol. 1\", \"regular\": \"Kill Bill: Volume 1\"},"
+		+ " \"box_art\": {\"small\": \"http://cdn/s.jpg\", \"medium\": \"http://cdn/m.jpg\", \"large\": \"http://cdn/l.jpg\"},"
+		+ " \"link\": [{\"href\": \"http://api.netflix.com/catalog/titles/movies/60031236/synopsis\", \"rel\": \"http://schemas.netflix.com/catalog/titles/synopsis\", \"title\": \"synopsis\","
+		+ "     \"synopsis\": {\"$t\": \"The Bride wakes \\\"up\\\" \\u2014 and wants revenge.\"}},"
+		+ "   {\"href\": \"http://api.netflix.com/catalog/titles/movies/60031236/cast\", \"rel\": \"http://schemas.netflix.com/catalog/people.cast\", \"title\": \"cast\","
+		+ "     \"people\": {\"link\": [{\"href\": \"http://api.netflix.com/catalog/people/20008295\", \"title\": \"Uma Thurman\"}]}}],"
+		+ " \"release_year\": \"2003\","
+		+ " \"category\": [{\"scheme\": \"http://api.netflix.com/categories/mpaa_ratings\", \"label\": \"R\"},"
+		+ "   {\"scheme\": \"http://api.netflix.com/categories/genres\", \"label\": \"Action & Adventure\"}],"
+		+ " \"runtime\": 6660, \"average_rating\": 3.8, \"awards\": [true, false, null, -1.5e3]}";
+	
+	private final JsonCatalogDecoder decoder = new JsonCatalogDecoder();
+	
+	@Test
+	public void decodesTitleList() throws Exception
+	{
+		String json = "{\"catalog_titles\": {\"number_of_results\": 1140, \"start_index\": 0, \"results_per_page\": 2,"
+			+ " \"catalog_title\": [" + TITLE + ", {\"id\": \"http://api.netflix.com/catalog/titles/movies/60032294\"}]}}";
+		ResultPage<CatalogTitle> page = decoder.decodeTitles(StaxCatalogDecoderTest.stream(json));
+		assertEquals(1140, page.getNumberOfResults());
+		assertEquals(2, page.getResultsPerPage());
+		assertEquals(2, page.getItems().size());
+		
+		CatalogTitle title = page.getItems().get(0);
+		assertEquals(60031236L, title.getNumericId());
+		assertEquals("Kill Bill: Vol. 1", title.getShortTitle());
+		assertEquals("http://cdn/m.jpg", title.getBoxArtMedium());
+		assertEquals(2003, title.getReleaseYear());
+		assertEquals(6660, title.getRuntime());
+		assertEquals(3.8f, title.getAverageRating(), 0.0001f);
+		assertEquals("R", title.getRating());
+		assertEquals("Action & Adventure", title.getGenres().get(0));
+		assertEquals("Expanded link content should not add links", 2, title.getLinks().size());
+		assertEquals(60032294L, page.getItems().get(1).getNumericId());
+	}
+	
+	@Test
+	public void decodesSameModelAsXml() throws Exception
+	{
+		CatalogTitle json = decoder.decodeTitles(StaxCatalogDecoderTest.stream("{\"catalog_title\": " + TITLE + "}")).getItems().get(0);
+		CatalogTitle xml = new StaxCatalogDecoder().decodeTitles(StaxCatalogDecoderTest.stream(StaxCatalogDecoderTest.TITLE)).getItems().get(0);
+		assertEquals(xml.getId(), json.getId());
+		assertEquals(xml.getRegularTitle(), json.getRegularTitle());
+		assertEquals(xml.getBoxArtLarge(), json.getBoxArtLarge());
+		assertEquals(xml.getRating(), json.getRating());
+		assertEquals(xml.getLinks().get(1).getHref(), json.getLinks().get(1).getHref());
+	}
+	
+	@Test
+	public void decodesPeopleAndQueues() throws Exception
+	{
+		String people = "{\"people\": {\"number_of_results\": 1, \"person\": {\"id\": \"http://api.netflix.com/catalog/people/20008295\","
+			+ " \"name\": \"Uma Thurman\", \"bio\": \"Line one\\nline two\", \"link\": {\"href\": \"x\", \"rel\": \"y\", \"title\": \"filmography\"}}}}";
+		Person person = decoder.decodePeople(StaxCatalogDecoderTest.stream(people)).getItems().get(0);
+		assertEquals("Uma Thurman", person.getName());
+		assertEquals("Escapes should be decoded", "Line one\nline two", person.getBio());
+		assertEquals("A single link object should be read like an array of one", 1, person.getLinks().size());
+		
+		String queue = "{\"queue\": {\"queue_item\": [{\"id\": \"q1\", \"position\": 2, \"updated\": 1262304000,"
+			+ " \"link\": {\"href\": \"http://api.netflix.com/catalog/titles/movies/60031236\", \"rel\": \"http://schemas.netflix.com/catalog/title\", \"title\": \"t\"}}]}}";
+		QueueItem item = decoder.decodeQueue(StaxCatalogDecoderTest.stream(queue)).getItems().get(0);
+		assertEquals(2, item.getPosition());
+		assertEquals(1262304000L, item.getUpdated());
+		assertEquals(60031236L, item.getTitle().getNumericId());
+	}
+	
+	@Test
+	public void errorsAreThrown() throws Exception
+	{
+		try
+		{
+			decoder.decodeTitles(StaxCatalogDecoderTest.stream("{\"status\": {\"status_code\": 404, \"message\": \"Title not found\"}}"));
+			fail("Status documents should be thrown");
+		}
+		catch (NetflixAPIException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().indexOf("Title not found") >= 0);
+		}
+		try
+		{
+			decoder.decodeTitles(StaxCatalogDecoderTest.stream("{\"catalog_titles\": {\"catalog_title\": [{\"id\": }]}}"));
+			fail("Malformed documents should be thrown");
+		}
+		catch (NetflixAPIException e)
+		{
+			// expected
+		}
+	}
+	
+	@Test
+	public void selectorPrefersCheaperFormat() throws Exception
+	{
+		CatalogDecoder xml = new StaxCatalogDecoder();
+		CatalogDecoder json = new JsonCatalogDecoder();
+		OutputFormatSelector selector = new OutputFormatSelector(2, 10, xml, json);
+		EndpointFamily family = EndpointFamily.CATALOG_SEARCH;
+		for (int i = 0; i < 4; i++)
+		{
+			CatalogDecoder decoder = selector.select(family);
+			selector.record(family, decoder, decoder == json ? 100 : 300);
+		}
+		assertEquals("JSON should be preferred once measured", "json", selector.getPreferredFormat(family));
+		assertNull("Other families should still be measuring", selector.getPreferredFormat(EndpointFamily.USER));
+		
+		int probes = 0;
+		for (int i = 0; i < 100; i++)
+		{
+			if (selector.select(family) == xml)
+				probes++;
+		}
+		assertEquals("The other format should only be probed now and then", 10, probes);
+	}
+	
+}
@@ -0,0 +1,196 @@
+package com.netflix.api.decoder;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.netflix.api.client.APIRequest;
+import com.netflix.api.client.NetflixAPIClient;
+import com.netflix.api.client.dal.StripedHttpConnectionManager;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.ResultPage;
+
+public class ProjectingDecoderTest
+{
+	private final ProjectingDecoder decoder = new ProjectingDecoder();
+	
+	@Test
+	public void extractsOnlyProjectedFields() throws Exception
+	{
+		FieldProjection projection = new FieldProjection("catalog_title", "id", "title/@short", "box_art/@large",
+				"average_rating", "link/@href");
+		ResultPage<ProjectedRecord> page = decoder.decode(StaxCatalogDecoderTest.stream(StaxCatalogDecoderTest.TITLES), projection);
+		assertEquals("Paging totals should be read", 1140, page.getNumberOfResults());
+		assertEquals(2, page.getItems().size());
+		
+		ProjectedRecord first = page.getItems().get(0);
+		assertTrue("All fields should be found", first.isComplete());
+		assertEquals("http://api.netflix.com/catalog/titles/movies/60031236", first.get("id"));
+		assertEquals("Kill Bill: Vol. 1", first.get("title/@short"));
+		assertEquals("http://cdn/l.jpg", first.get("box_art/@large"));
+		assertEquals("3.8", first.get("average_rating"));
+		assertTrue("The first link should win", first.get("link/@href").endsWith("/synopsis"));
+		
+		ProjectedRecord second = page.getItems().get(1);
+		assertFalse("Missing fields should be reported", second.isComplete());
+		assertNull(second.get("box_art/@large"));
+	}
+	
+	@Test
+	public void mapsProjectionOntoTitles() throws Exception
+	{
+		ResultPage<CatalogTitle> page = decoder.decodeTitles(StaxCatalogDecoderTest.stream(StaxCatalogDecoderTest.TITLE),
+				ProjectingDecoder.TITLE_SUMMARY, Integer.MAX_VALUE);
+		CatalogTitle title = page.getItems().get(0);
+		assertEquals(60031236L, title.getNumericId());
+		assertEquals("Kill Bill: Vol. 1", title.getShortTitle());
+		assertEquals(3.8f, title.getAverageRating(), 0.0001f);
+		assertNull("Fields outside the projection should not be set", title.getRegularTitle());
+		assertEquals(0, title.getReleaseYear());
+	}
+	
+	@Test
+	public void stopsReadingOnceItemsAreComplete() throws Exception
+	{
+		String xml = DecoderBenchmark.buildResponse(5000);
+		CountingInputStream in = new CountingInputStream(xml.getBytes("UTF-8"));
+		ResultPage<ProjectedRecord> page = decoder.decode(in, ProjectingDecoder.TITLE_SUMMARY, 3);
+		assertEquals(3, page.getItems().size());
+		assertTrue("Only the start of the response should be read, but read " + in.count + " of " + xml.length(),
+				in.count < xml.length() / 10);
+	}
+	
+	@Test
+	public void closesTheConnectionInsteadOfDrainingIt() throws Exception
+	{
+		final byte[] body = DecoderBenchmark.buildResponse(5000).getBytes("UTF-8");
+		final ServerSocket server = new ServerSocket(0);
+		final AtomicInteger connections = new AtomicInteger();
+		Thread thread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					while (true)
+					{
+						final Socket socket = server.accept();
+						connections.incrementAndGet();
+						new Thread(new Runnable()
+						{
+							public void run()
+							{
+								serve(socket, body);
+							}
+						}).start();
+					}
+				}
+				catch (Exception e)
+				{
+					// server closed
+				}
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+		try
+		{
+			NetflixAPIClient client = new NetflixAPIClient("key", "secret");
+			client.getHttpClient().setHttpConnectionManager(new StripedHttpConnectionManager(1, 1));
+			APIRequest request = APIRequest.unsigned("http://localhost:" + server.getLocalPort() + "/catalog/titles", null);
+			
+			assertEquals(5000, client.execute(request, decoder.handler(ProjectingDecoder.TITLE_SUMMARY)).getItems().size());
+			assertEquals(5000, client.execute(request, decoder.handler(ProjectingDecoder.TITLE_SUMMARY)).getItems().size());
+			assertEquals("A response read to the end should leave the connection reusable", 1, connections.get());
+			
+			assertEquals(3, client.execute(request, decoder.titlesHandler(ProjectingDecoder.TITLE_SUMMARY, 3)).getItems()
+				.size());
+			assertEquals(1, client.execute(request, decoder.handler(ProjectingDecoder.TITLE_SUMMARY, 1)).getItems().size());
+			assertEquals("A response stopped early should not be drained", 2, connections.get());
+		}
+		finally
+		{
+			server.close();
+		}
+	}
+	
+	/**
+	 * Answers requests on one connection until the client closes it.
+	 */
+	private static void serve(Socket socket, byte[] body)
+	{
+		try
+		{
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+			OutputStream out = socket.getOutputStream();
+			while (in.readLine() != null)
+			{
+				String line;
+				while ((line = in.readLine()) != null && line.length() > 0)
+				{
+					// skip the headers
+				}
+				out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes("ISO-8859-1"));
+				out.write(body);
+				out.flush();
+			}
+		}
+		catch (IOException e)
+		{
+			// the client closed the connection
+		}
+		finally
+		{
+			try
+			{
+				socket.close();
+			}
+			catch (IOException e)
+			{
+				// closing anyway
+			}
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTextAndChildrenOfOneElement()
+	{
+		new FieldProjection("catalog_title", "title", "title/@short", "title/sub");
+	}
+	
+	private static class CountingInputStream extends ByteArrayInputStream
+	{
+		int count;
+		
+		CountingInputStream(byte[] bytes)
+		{
+			super(bytes);
+		}
+		
+		public synchronized int read()
+		{
+			int b = super.read();
+			if (b >= 0)
+				count++;
+			return b;
+		}
+		
+		public synchronized int read(byte[] b, int off, int len)
+		{
+			int n = super.read(b, off, len);
+			if (n > 0)
+				count += n;
+			return n;
+		}
+	}
+	
+}
@@ -0,0 +1,137 @@
+package com.netflix.api.decoder;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import com.netflix.api.NetflixAPIException;
+import com.netflix.api.model.CatalogTitle;
+import com.netflix.api.model.Person;
+import com.netflix.api.model.QueueItem;
+import com.netflix.api.model.ResultPage;
+
+public class StaxCatalogDecoderTest
+{
+	static final String TITLE =
+		"<catalog_title>"
+		+ "<id>http://api.netflix.com/catalog/titles/movies/60031236</id>"
+		+ "<title short=\"Kill Bill: Vol. 1\" regular=\"Kill Bill: Volume 1\"/>"
+		+ "<box_art small=\"http://cdn/s.jpg\" medium=\"http://cdn/m.jpg\" large=\"http://cdn/l.jpg\"/>"
+		+ "<link href=\"http://api.netflix.com/catalog/titles/movies/60031236/synopsis\" rel=\"http://schemas.netflix.com/catalog/titles/synopsis\" title=\"synopsis\"/>"
+		+ "<link href=\"http://api.netflix.com/catalog/titles/movies/60031236/cast\" rel=\"http://schemas.netflix.com/catalog/people.cast\" title=\"cast\">"
+		+ "<people><link href=\"http://api.netflix.com/catalog/people/20008295\" rel=\"http://schemas.netflix.com/catalog/person\" title=\"Uma Thurman\"/></people>"
+		+ "</link>"
+		+ "<release_year>2003</release_year>"
+		+ "<category scheme=\"http://api.netflix.com/categories/mpaa_ratings\" label=\"R\"/>"
+		+ "<category scheme=\"http://api.netflix.com/categories/genres\" label=\"Action &amp; Adventure\"/>"
+		+ "<category scheme=\"http://api.netflix.com/categories/title_formats\" label=\"DVD\"/>"
+		+ "<runtime>6660</runtime>"
+		+ "<average_rating>3.8</average_rating>"
+		+ "<unknown_element><nested>ignored</nested></unknown_element>"
+		+ "</catalog_title>";
+	
+	static final String TITLES =
+		"<?xml version=\"1.0\" standalone=\"yes\"?>"
+		+ "<catalog_titles>"
+		+ "<number_of_results>1140</number_of_results>"
+		+ "<start_index>0</start_index>"
+		+ "<results_per_page>2</results_per_page>"
+		+ TITLE
+		+ "<catalog_title><id>http://api.netflix.com/catalog/titles/movies/60032294</id>"
+		+ "<title short=\"Kill Bill: Vol. 2\" regular=\"Kill Bill: Volume 2\"/></catalog_title>"
+		+ "</catalog_titles>";
+	
+	private final StaxCatalogDecoder decoder = new StaxCatalogDecoder();
+	
+	@Test
+	public void decodesTitleList() throws Exception
+	{
+		ResultPage<CatalogTitle> page = decoder.decodeTitles(stream(TITLES));
+		assertEquals("Total should be read", 1140, page.getNumberOfResults());
+		assertEquals("Start index should be read", 0, page.getStartIndex());
+		assertEquals("Page size should be read", 2, page.getResultsPerPage());
+		assertEquals("Both titles should be read", 2, page.getItems().size());
+		
+		CatalogTitle title = page.getItems().get(0);
+		assertEquals("Numeric ID should come from the ID URI", 60031236L, title.getNumericId());
+		assertEquals("Kill Bill: Vol. 1", title.getShortTitle());
+		assertEquals("Kill Bill: Volume 1", title.getRegularTitle());
+		assertEquals("http://cdn/l.jpg", title.getBoxArtLarge());
+		assertEquals(2003, title.getReleaseYear());
+		assertEquals(6660, title.getRuntime());
+		assertEquals(3.8f, title.getAverageRating(), 0.0001f);
+		assertEquals("R", title.getRating());
+		assertEquals("Action & Adventure", title.getGenres().get(0));
+		assertEquals("DVD", title.getFormats().get(0));
+		assertEquals("Nested links should not be added to the title", 2, title.getLinks().size());
+		assertNotNull("Links should be found by title", title.getLink("cast"));
+		
+		assertEquals("Kill Bill: Vol. 2", page.getItems().get(1).getShortTitle());
+	}
+	
+	@Test
+	public void decodesSingleTitle() throws Exception
+	{
+		ResultPage<CatalogTitle> page = decoder.decodeTitles(stream(TITLE));
+		assertEquals("A single title should be one result", 1, page.getNumberOfResults());
+		assertEquals(60031236L, page.getItems().get(0).getNumericId());
+	}
+	
+	@Test
+	public void decodesPeople() throws Exception
+	{
+		String xml = "<people><number_of_results>1</number_of_results>"
+			+ "<person><id>http://api.netflix.com/catalog/people/20008295</id><name>Uma Thurman</name>"
+			+ "<bio>Born in <i>Boston</i>.</bio>"
+			+ "<link href=\"http://api.netflix.com/catalog/people/20008295/filmography\" rel=\"http://schemas.netflix.com/catalog/titles.filmography\" title=\"filmography\"/>"
+			+ "</person></people>";
+		ResultPage<Person> page = decoder.decodePeople(stream(xml));
+		Person person = page.getItems().get(0);
+		assertEquals(20008295L, person.getNumericId());
+		assertEquals("Uma Thurman", person.getName());
+		assertEquals("Markup in a bio should be flattened to text", "Born in Boston.", person.getBio());
+		assertEquals(1, person.getLinks().size());
+	}
+	
+	@Test
+	public void decodesQueue() throws Exception
+	{
+		String xml = "<queue><number_of_results>1</number_of_results>"
+			+ "<queue_item><id>http://api.netflix.com/users/T1/queues/disc/available/1/60031236</id>"
+			+ "<position>1</position><updated>1262304000</updated>"
+			+ "<title short=\"Kill Bill: Vol. 1\" regular=\"Kill Bill: Volume 1\"/>"
+			+ "<link href=\"http://api.netflix.com/catalog/titles/movies/60031236\" rel=\"http://schemas.netflix.com/catalog/title\" title=\"Kill Bill: Vol. 1\"/>"
+			+ "</queue_item></queue>";
+		ResultPage<QueueItem> page = decoder.decodeQueue(stream(xml));
+		QueueItem item = page.getItems().get(0);
+		assertEquals(1, item.getPosition());
+		assertEquals(1262304000L, item.getUpdated());
+		assertTrue("Queue item ID should be kept", item.getId().endsWith("/1/60031236"));
+		assertEquals("Title ID should come from the title link", 60031236L, item.getTitle().getNumericId());
+		assertEquals("Kill Bill: Vol. 1", item.getTitle().getShortTitle());
+	}
+	
+	@Test
+	public void errorStatusIsThrown() throws Exception
+	{
+		String xml = "<status><status_code>401</status_code><message>Invalid Signature</message></status>";
+		try
+		{
+			decoder.decodeTitles(stream(xml));
+			fail("Status documents should be thrown");
+		}
+		catch (NetflixAPIException e)
+		{
+			assertTrue("Message should carry the API message: " + e.getMessage(), e.getMessage().indexOf("Invalid Signature") >= 0);
+		}
+	}
+	
+	static InputStream stream(String xml) throws Exception
+	{
+		return new ByteArrayInputStream(xml.getBytes("UTF-8"));
+	}
+	
+}
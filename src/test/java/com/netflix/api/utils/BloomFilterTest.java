@@ -0,0 +1,42 @@
+package com.netflix.api.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BloomFilterTest
+{
+	@Test
+	public void neverForgetsAndRarelyImagines()
+	{
+		BloomFilter filter = new BloomFilter(10000, 0.01);
+		for (int i = 0; i < 10000; i++)
+			filter.put("http://api.netflix.com/catalog/people/" + i);
+		for (int i = 0; i < 10000; i++)
+			assertTrue(filter.mightContain("http://api.netflix.com/catalog/people/" + i));
+		assertFalse("A second put should find the key", filter.put("http://api.netflix.com/catalog/people/1"));
+
+		int falsePositives = 0;
+		for (int i = 10000; i < 20000; i++)
+		{
+			if (filter.mightContain("http://api.netflix.com/catalog/people/" + i))
+				falsePositives++;
+		}
+		assertTrue("Too many false positives: " + falsePositives, falsePositives < 200);
+	}
+
+	@Test
+	public void longSetHoldsEveryKey()
+	{
+		LongHashSet set = new LongHashSet(4);
+		for (long id = 0; id < 5000; id++)
+			assertTrue(set.add(id * 70000001L));
+		assertFalse(set.add(0));
+		assertFalse(set.add(70000001L * 4999));
+		assertEquals(5000, set.size());
+		assertTrue(set.contains(70000001L * 1234));
+		assertFalse(set.contains(70000001L * 1234 + 1));
+		assertEquals(5000, set.toArray().length);
+	}
+
+}
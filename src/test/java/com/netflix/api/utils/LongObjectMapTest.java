@@ -0,0 +1,39 @@
+package com.netflix.api.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LongObjectMapTest
+{
+	@Test
+	public void keepsProbedKeysAfterRemovals()
+	{
+		LongObjectMap<String> map = new LongObjectMap<String>(4);
+		for (long id = 0; id < 5000; id++)
+			map.put(id, "title " + id);
+		for (long id = 0; id < 5000; id += 3)
+			assertEquals("title " + id, map.remove(id));
+		assertNull(map.remove(0));
+		assertEquals(3333, map.size());
+		for (long id = 0; id < 5000; id++)
+			assertEquals(id % 3 == 0 ? null : "title " + id, map.get(id));
+	}
+
+	@Test
+	public void holdsTheEmptyKeyApart()
+	{
+		LongObjectMap<String> map = new LongObjectMap<String>();
+		assertNull(map.put(0, "zero"));
+		assertNull(map.put(16, "sixteen"));
+		assertEquals("zero", map.put(0, "none"));
+		assertEquals(2, map.size());
+		assertTrue(map.containsKey(0));
+		assertEquals(2, map.keys().length);
+		assertEquals("none", map.remove(0));
+		assertFalse(map.containsKey(0));
+		assertEquals("sixteen", map.get(16));
+		assertEquals(1, map.size());
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.netflix.api.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PackedIntsTest
+{
+	@Test
+	public void valuesSpanningBlocksRoundTrip()
+	{
+		Random random = new Random(1);
+		for (int bits = 0; bits <= 31; bits++)
+		{
+			int[] values = new int[1000];
+			for (int i = 0; i < values.length; i++)
+				values[i] = bits == 0 ? 0 : random.nextInt() >>> (32 - bits);
+			PackedInts packed = PackedInts.copyOf(values, values.length);
+			assertTrue(packed.getBitsPerValue() <= bits);
+			for (int i = 0; i < values.length; i++)
+				assertEquals(bits + " bits at " + i, values[i], packed.get(i));
+		}
+	}
+
+	@Test
+	public void setOverwritesOnlyItsValue()
+	{
+		PackedInts packed = new PackedInts(100, 7);
+		for (int i = 0; i < 100; i++)
+			packed.set(i, 127);
+		packed.set(9, 5);
+		assertEquals(127, packed.get(8));
+		assertEquals(5, packed.get(9));
+		assertEquals(127, packed.get(10));
+		assertEquals(7 * 100 / 64 + 1, packed.getByteSize() / 8);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsValuesTooWide()
+	{
+		new PackedInts(10, 3).set(0, 8);
+	}
+
+}
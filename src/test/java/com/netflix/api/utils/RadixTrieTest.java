@@ -0,0 +1,65 @@
+package com.netflix.api.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RadixTrieTest
+{
+	@Test
+	public void splitsAndMergesEdges()
+	{
+		RadixTrie<String> trie = new RadixTrie<String>();
+		assertNull(trie.put("star", "1"));
+		assertNull(trie.put("star wars", "2"));
+		assertNull(trie.put("stardust", "3"));
+		assertNull(trie.put("st", "4"));
+		assertEquals("1", trie.put("star", "5"));
+		assertEquals(4, trie.size());
+		assertEquals(Arrays.asList("st", "star", "star wars", "stardust"), trie.keys());
+		assertNull(trie.get("sta"));
+		assertNull(trie.get("starw"));
+
+		assertEquals("2", trie.getLongestPrefix("star wars: a new hope", 1));
+		assertEquals("5", trie.getLongestPrefix("starman", 1));
+		assertEquals("4", trie.getLongestPrefix("stand by me", 1));
+		assertNull(trie.getLongestPrefix("s", 1));
+		assertNull("Shorter keys are skipped", trie.getLongestPrefix("starman", 5));
+
+		assertEquals("5", trie.remove("star"));
+		assertNull(trie.remove("star"));
+		assertNull(trie.remove("sta"));
+		assertEquals("4", trie.getLongestPrefix("starman", 1));
+		assertEquals("2", trie.get("star wars"));
+		assertEquals("3", trie.remove("stardust"));
+		assertEquals(Arrays.asList("st", "star wars"), trie.keys());
+	}
+
+	@Test
+	public void agreesWithAHashMap()
+	{
+		Random random = new Random(42);
+		RadixTrie<Integer> trie = new RadixTrie<Integer>();
+		Map<String, Integer> map = new HashMap<String, Integer>();
+		for (int i = 0; i < 20000; i++)
+		{
+			StringBuilder key = new StringBuilder();
+			for (int length = random.nextInt(6); length > 0; length--)
+				key.append((char) ('a' + random.nextInt(3)));
+			String k = key.toString();
+			if (random.nextInt(3) == 0)
+				assertEquals(map.remove(k), trie.remove(k));
+			else assertEquals(map.put(k, i), trie.put(k, i));
+			assertEquals(map.size(), trie.size());
+		}
+		for (String key : trie.keys())
+			assertEquals(map.get(key), trie.get(key));
+		assertEquals(map.size(), trie.keys().size());
+	}
+
+}
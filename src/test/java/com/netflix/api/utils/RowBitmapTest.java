@@ -0,0 +1,90 @@
+package com.netflix.api.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RowBitmapTest
+{
+	@Test
+	public void operationsAgreeWithBitSet()
+	{
+		Random random = new Random(3);
+		// sparse and dense chunks, and chunks only one side has
+		BitSet a = randomRows(random, 300000, 0.01, 0.5);
+		BitSet b = randomRows(random, 300000, 0.6, 0.002);
+		RowBitmap x = bitmap(a);
+		RowBitmap y = bitmap(b);
+		assertRows(a, x);
+
+		BitSet expected = (BitSet) a.clone();
+		expected.and(b);
+		assertRows(expected, x.and(y));
+
+		expected = (BitSet) a.clone();
+		expected.or(b);
+		assertRows(expected, x.or(y));
+		assertRows(expected, RowBitmap.union(x, y, RowBitmap.EMPTY));
+
+		expected = (BitSet) a.clone();
+		expected.andNot(b);
+		assertRows(expected, x.andNot(y));
+
+		for (int row = 0; row < 300000; row += 7)
+			assertEquals(a.get(row), x.contains(row));
+		assertFalse(x.contains(-1));
+	}
+
+	@Test
+	public void denseBitmapsAreSmallerThanArrays()
+	{
+		RowBitmap all = RowBitmap.range(0, 1 << 20);
+		assertEquals(1 << 20, all.getCardinality());
+		assertTrue(all.getByteSize() < (1 << 20) / 8 + 1024);
+		assertTrue(all.andNot(all).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rowsMustAscend()
+	{
+		new RowBitmap.Builder().add(5).add(5);
+	}
+
+	/**
+	 * Rows from the first half of the range with one density and the second
+	 * half with another.
+	 */
+	private static BitSet randomRows(Random random, int rows, double first, double second)
+	{
+		BitSet set = new BitSet(rows);
+		for (int row = 0; row < rows; row++)
+		{
+			if (random.nextDouble() < (row < rows / 2 ? first : second))
+				set.set(row);
+		}
+		return set;
+	}
+
+	private static RowBitmap bitmap(BitSet set)
+	{
+		RowBitmap.Builder builder = new RowBitmap.Builder();
+		for (int row = set.nextSetBit(0); row >= 0; row = set.nextSetBit(row + 1))
+			builder.add(row);
+		return builder.build();
+	}
+
+	private static void assertRows(BitSet expected, RowBitmap actual)
+	{
+		int[] rows = new int[expected.cardinality()];
+		int n = 0;
+		for (int row = expected.nextSetBit(0); row >= 0; row = expected.nextSetBit(row + 1))
+			rows[n++] = row;
+		assertEquals(rows.length, actual.getCardinality());
+		assertTrue(Arrays.equals(rows, actual.toArray()));
+	}
+
+}
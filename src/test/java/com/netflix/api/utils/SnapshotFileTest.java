@@ -0,0 +1,92 @@
+package com.netflix.api.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotFileTest
+{
+	private File file;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		file = File.createTempFile("snapshot", ".bin");
+	}
+
+	@After
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	@Test
+	public void readsSectionsInPlace() throws Exception
+	{
+		byte[] big = new byte[100001];
+		for (int i = 0; i < big.length; i++)
+			big[i] = (byte) i;
+		new SnapshotFile.Writer().addSection("small", 3, new byte[] { 1, 2, 3 }).addSection("big", 1, big)
+			.addSection("empty", 1, new byte[0]).write(file);
+
+		SnapshotFile snapshot = SnapshotFile.open(file);
+		assertEquals(Arrays.asList("small", "big", "empty"), snapshot.getSectionNames());
+		ByteBuffer small = snapshot.getSection("small", 3);
+		assertEquals(3, small.remaining());
+		assertEquals(3, small.get(2));
+		ByteBuffer section = snapshot.getSection("big", 1);
+		assertEquals(big.length, section.remaining());
+		assertEquals((byte) 100000, section.get(100000));
+		assertTrue(section.isReadOnly());
+		assertEquals(0, snapshot.getSection("empty", 1).remaining());
+
+		assertNull("Other versions are not read", snapshot.getSection("small", 2));
+		assertNull(snapshot.getSection("missing", 1));
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+	}
+
+	@Test
+	public void rejectsDamagedFiles() throws Exception
+	{
+		new SnapshotFile.Writer().addSection("data", 1, new byte[1000]).write(file);
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		out.seek(file.length() - 10);
+		out.write(1);
+		out.close();
+		assertRejected("corrupt section");
+
+		new SnapshotFile.Writer().addSection("data", 1, new byte[1000]).write(file);
+		out = new RandomAccessFile(file, "rw");
+		out.setLength(500);
+		out.close();
+		assertRejected("truncated");
+
+		out = new RandomAccessFile(file, "rw");
+		out.seek(0);
+		out.writeInt(42);
+		out.close();
+		assertRejected("not a snapshot file");
+	}
+
+	private void assertRejected(String reason)
+	{
+		try
+		{
+			SnapshotFile.open(file);
+			fail();
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains(reason));
+		}
+	}
+
+}